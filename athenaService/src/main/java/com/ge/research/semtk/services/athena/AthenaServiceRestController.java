@@ -17,13 +17,16 @@
 
 package com.ge.research.semtk.services.athena;
 
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
-import org.json.simple.JSONObject;
 
 import com.amazonaws.regions.Regions;
 import com.ge.research.semtk.query.rdb.AthenaConnector;
@@ -48,17 +51,18 @@ public class AthenaServiceRestController {
 	 */
 	@CrossOrigin
 	@RequestMapping(value="/query", method= RequestMethod.POST)
-	public JSONObject queryAthena(@RequestBody AthenaServiceQueryRequestBody requestBody){
+	public void queryAthena(@RequestBody AthenaServiceQueryRequestBody requestBody, HttpServletResponse resp) throws IOException {
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		String query = requestBody.query;
 		String database = requestBody.database;
-		return runQuery (requestBody, query, database);
+		runQuery(requestBody, query, database).writeJson(resp.getWriter());
 	}
 
 
 	/**
 	 * Execute query in Athena
 	 */
-	private JSONObject runQuery (AthenaServiceQueryRequestBody requestBody, String query, String database) {
+	private TableResultSet runQuery (AthenaServiceQueryRequestBody requestBody, String query, String database) {
 		
 		// get properties from property file
 		String awsRegionId = props.getAwsRegionId();
@@ -84,7 +88,7 @@ public class AthenaServiceRestController {
 			tableResultSet.addRationaleMessage("Failed executing query " + query + ": " + e.getMessage());
 		}
 
-		return tableResultSet.toJson();
+		return tableResultSet;
 	}
 
 }
@@ -31,6 +31,8 @@ public class HiveProperties extends Properties {
 	private String password;
 	private String executionEngine;  // e.g. mr/tez/spark or blank to not specify
 	private Integer loginTimeoutSec;	// login timeout (sec)
+	private int poolMaxSize = 10;		// max pooled connections per database and user.  0 for no pooling.
+	private int poolIdleTimeoutSec = 300;	// close pooled connections idle this long
 
 	public HiveProperties() {
 		super();
@@ -43,6 +45,8 @@ public class HiveProperties extends Properties {
 		checkNoneMaskValue("password", password);
 		checkNone("executionEngine", executionEngine);  // can be empty
 		checkNone("loginTimeoutSec", loginTimeoutSec);	// can be empty
+		checkNone("poolMaxSize", poolMaxSize);
+		checkNone("poolIdleTimeoutSec", poolIdleTimeoutSec);
 	}
 	
 	public void setUsername(String username){
@@ -76,4 +80,20 @@ public class HiveProperties extends Properties {
 	public Integer getLoginTimeoutSec() {
 		return loginTimeoutSec;
 	}
+
+	public int getPoolMaxSize() {
+		return poolMaxSize;
+	}
+
+	public void setPoolMaxSize(int poolMaxSize) {
+		this.poolMaxSize = poolMaxSize;
+	}
+
+	public int getPoolIdleTimeoutSec() {
+		return poolIdleTimeoutSec;
+	}
+
+	public void setPoolIdleTimeoutSec(int poolIdleTimeoutSec) {
+		this.poolIdleTimeoutSec = poolIdleTimeoutSec;
+	}
 }
@@ -28,11 +28,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
 
 import org.json.simple.JSONObject;
 
 import com.ge.research.semtk.query.rdb.HiveConnector;
+import com.ge.research.semtk.query.rdb.JdbcConnectionPool;
 import com.ge.research.semtk.resultSet.Table;
 import com.ge.research.semtk.resultSet.TableOrJobIdResultSet;
 import com.ge.research.semtk.resultSet.TableResultSet;
@@ -53,7 +57,7 @@ import com.ge.research.semtk.edc.services.hive.HiveProperties;
 public class HiveServiceRestController {
  	private static final String SERVICE_NAME = "HiveService";
  	
-	private static String setStmt = "set hive.exec.stagingdir=/tmp/hive-staging;";
+	private static String setStmt = "set hive.exec.stagingdir=/tmp/hive-staging";
 
 	private boolean ASYNC = true;	// true for asynchronous mode (returns job id), false for synchronous mode (returns query results)
 	
@@ -73,6 +77,25 @@ public class HiveServiceRestController {
 		props.validateWithExit();
 		resultsProps.validateWithExit();
 		statusProps.validateWithExit();
+		JdbcConnectionPool.setDefaults(props.getPoolMaxSize(), props.getPoolIdleTimeoutSec());
+	}
+	
+	/**
+	 * Get metrics of the pooled database connections
+	 */
+	@CrossOrigin
+	@RequestMapping(value="/poolStats", method= RequestMethod.POST)
+	public JSONObject poolStats(){
+		TableResultSet res = new TableResultSet();
+		try {
+			res.addResults(JdbcConnectionPool.getAllMetrics());
+			res.setSuccess(true);
+		} catch (Exception e) {
+			LocalLogger.printStackTrace(e);
+			res.setSuccess(false);
+			res.addRationaleMessage(SERVICE_NAME, "poolStats", e);
+		}
+		return res.toJson();
 	}
 	
 	/**
@@ -95,12 +118,13 @@ public class HiveServiceRestController {
 	 */
 	@CrossOrigin
 	@RequestMapping(value="/queryHiveSync", method= RequestMethod.POST)
-	public JSONObject queryHiveSync(@RequestBody DatabaseQueryRequest requestBody){
+	public void queryHiveSync(@RequestBody DatabaseQueryRequest requestBody, HttpServletResponse resp) throws IOException {
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		long startTimeMillis = System.currentTimeMillis();
 		String query = requestBody.query;
-		JSONObject ret =  runQuery(requestBody, query, false);
+		TableOrJobIdResultSet ret = runQueryToResultSet(requestBody, query, false);
 		LocalLogger.logToStdOut(SERVICE_NAME + " queryHiveSync completed in " + Utility.getSecondsSince(startTimeMillis) + " sec for query " + query);
-		return ret;
+		ret.writeJson(resp.getWriter());
 	}
 
 	/**
@@ -298,13 +322,22 @@ public class HiveServiceRestController {
 	 * Execute query in Hive
 	 */
 	private JSONObject runQuery (DatabaseRequest requestBody, String query, boolean async) {
+		return runQueryToResultSet(requestBody, query, async).toJson();
+	}
+	
+	/**
+	 * Execute query in Hive
+	 */
+	private TableOrJobIdResultSet runQueryToResultSet (DatabaseRequest requestBody, String query, boolean async) {
 		
-		// prepend statement to set execution engine (should be mr/tez/spark - Hive itself will give a nice error if not)
-		String setStmtExecutionEngine = "";  
+		// set staging dir and execution engine (should be mr/tez/spark - Hive itself will give a nice error if not)
+		// once per connection, so pooled connections can be reused
+		String [] initStmts;
 		if(props.getExecutionEngine() != null && !props.getExecutionEngine().trim().isEmpty()){ // if property missing or blank, then don't include this clause
-			setStmtExecutionEngine = "set hive.execution.engine=" + props.getExecutionEngine().trim() + ";";
+			initStmts = new String [] { setStmt, "set hive.execution.engine=" + props.getExecutionEngine().trim() };
+		} else {
+			initStmts = new String [] { setStmt };
 		}
-		query = setStmt + " " + setStmtExecutionEngine + " " + query;
 		
 		TableOrJobIdResultSet resultSet = new TableOrJobIdResultSet();
 
@@ -316,9 +349,9 @@ public class HiveServiceRestController {
 			LocalLogger.logToStdOut("Connecting to: " + HiveConnector.getDatabaseURL(requestBody.host, Integer.valueOf(requestBody.port), requestBody.database));
 			HiveConnector oc;
 			if(props.getLoginTimeoutSec() == null){
-				oc = new HiveConnector(requestBody.host, Integer.valueOf(requestBody.port), requestBody.database, username, password); // use default timeout
+				oc = new HiveConnector(requestBody.host, Integer.valueOf(requestBody.port), requestBody.database, username, password, 30, initStmts); // use default timeout
 			}else{
-				oc = new HiveConnector(requestBody.host, Integer.valueOf(requestBody.port), requestBody.database, username, password, props.getLoginTimeoutSec().intValue()); 
+				oc = new HiveConnector(requestBody.host, Integer.valueOf(requestBody.port), requestBody.database, username, password, props.getLoginTimeoutSec().intValue(), initStmts); 
 			}
 				
 			if (async) {
@@ -340,7 +373,7 @@ public class HiveServiceRestController {
 			resultSet.addRationaleMessage("Failed executing query " + query + ": " + e.getMessage());
 		}
 		
-		return resultSet.toJson();
+		return resultSet;
 	}
 
 }
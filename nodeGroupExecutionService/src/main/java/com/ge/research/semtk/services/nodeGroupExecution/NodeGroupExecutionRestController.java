@@ -17,10 +17,12 @@
 
 package com.ge.research.semtk.services.nodeGroupExecution;
 
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -354,9 +356,10 @@ public class NodeGroupExecutionRestController {
 			)
 	@CrossOrigin
 	@RequestMapping(value="/getResultsTable", method=RequestMethod.POST)
-	public JSONObject getResultsTable(@RequestBody StatusRequestBody requestBody, @RequestHeader HttpHeaders headers) {
+	public void getResultsTable(@RequestBody StatusRequestBody requestBody, @RequestHeader HttpHeaders headers, HttpServletResponse resp) throws IOException {
 		//final String ENDPOINT_NAME="getResultsTable";
 		HeadersManager.setHeaders(headers);
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		//LoggerRestClient logger = LoggerRestClient.getInstance(log_prop, ThreadAuthenticator.getThreadUserName());
 		try {
 			TableResultSet retval = new TableResultSet();
@@ -374,7 +377,7 @@ public class NodeGroupExecutionRestController {
 				retval.setSuccess(false);
 				retval.addRationaleMessage(SERVICE_NAME, "getResultsTable", e);
 			} 
-			return retval.toJson();
+			retval.writeJson(resp.getWriter());
 		    
 		} finally {
 	    	HeadersManager.clearHeaders();
@@ -653,9 +656,10 @@ public class NodeGroupExecutionRestController {
 			)
 	@CrossOrigin
 	@RequestMapping(value="/dispatchSelectByIdSync", method=RequestMethod.POST)
-	public JSONObject dispatchSelectByIdSync(@RequestBody DispatchByIdRequestBody requestBody, @RequestHeader HttpHeaders headers) {
+	public void dispatchSelectByIdSync(@RequestBody DispatchByIdRequestBody requestBody, @RequestHeader HttpHeaders headers, HttpServletResponse resp) throws IOException {
 		final String ENDPOINT_NAME="dispatchSelectByIdSync";
 		HeadersManager.setHeaders(headers);
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		LoggerRestClient logger = LoggerRestClient.getInstance(log_prop, ThreadAuthenticator.getThreadUserName());
 		LoggerRestClient.easyLog(logger, SERVICE_NAME, ENDPOINT_NAME, "nodegroupId", requestBody.getNodeGroupId());
     	try {
@@ -697,7 +701,7 @@ public class NodeGroupExecutionRestController {
 			    ret.addRationaleMessage(SERVICE_NAME, ENDPOINT_NAME, e);
 			} 
 			
-			return ret.toJson();
+			ret.writeJson(resp.getWriter());
 		    
 		} finally {
 	    	HeadersManager.clearHeaders();
@@ -17,15 +17,16 @@
 
 package com.ge.research.semtk.services.nodegroupStore.service;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
@@ -47,12 +48,14 @@ import com.ge.research.semtk.auth.AuthorizationManager;
 import com.ge.research.semtk.belmont.NodeGroup;
 import com.ge.research.semtk.belmont.runtimeConstraints.RuntimeConstraintManager;
 import com.ge.research.semtk.demo.DemoSetupThread;
+import com.ge.research.semtk.load.DirectoryConnector;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.utility.LocalLogger;
 import com.ge.research.semtk.resultSet.SimpleResultSet;
 import com.ge.research.semtk.resultSet.Table;
 import com.ge.research.semtk.resultSet.TableResultSet;
 import com.ge.research.semtk.services.nodegroupStore.NgStore;
+import com.ge.research.semtk.services.nodegroupStore.NgStoreCache;
 import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 
 @RestController
@@ -82,6 +85,9 @@ public class NodeGroupStoreRestController {
 	ServicesGraphProperties servicesgraph_prop;
 	private static final String SERVICE_NAME="nodeGroupStore";
 	
+	private DirectoryConnector blobStore = null;
+	private NgStoreCache ngCache = null;
+	
 	@PostConstruct
     public void init() throws Exception {
 		EnvironmentProperties env_prop = new EnvironmentProperties(appContext, EnvironmentProperties.SEMTK_REQ_PROPS, EnvironmentProperties.SEMTK_OPT_PROPS);
@@ -106,6 +112,15 @@ public class NodeGroupStoreRestController {
 			AuthorizationManager.clearSemtkSuper();
 		}
 		
+		if (! prop.getBlobDirectory().isEmpty()) {
+			Files.createDirectories(Paths.get(prop.getBlobDirectory()));
+			this.blobStore = new DirectoryConnector(prop.getBlobDirectory());
+			LocalLogger.logToStdOut("Storing nodegroup json in " + prop.getBlobDirectory());
+		}
+		if (prop.getCacheSize() > 0) {
+			this.ngCache = new NgStoreCache(prop.getCacheSize(), prop.getCacheTtlSeconds());
+		}
+		
 		setupDemo();
 		
 	}
@@ -139,7 +154,7 @@ public class NodeGroupStoreRestController {
 				requestBody.validate();	
 	
 				// check that the ID does not already exist. if it does, fail.
-				NgStore store = new NgStore(this.getStoreDataSei());
+				NgStore store = this.buildStore();
 				Table instanceTable = store.getNodegroupTable(requestBody.getName(), true);
 				
 				if(instanceTable.getNumRows() > 0){
@@ -180,7 +195,7 @@ public class NodeGroupStoreRestController {
 
 			TableResultSet retval = new TableResultSet();	
 			try{
-				NgStore store = new NgStore(this.getStoreDataSei());
+				NgStore store = this.buildStore();
 				Table ngTab = store.getNodegroupTable(requestBody.getId(), true);
 				
 				retval.setSuccess(true);
@@ -201,14 +216,15 @@ public class NodeGroupStoreRestController {
 
 	@CrossOrigin
 	@RequestMapping(value="/getNodeGroupList", method=RequestMethod.POST)
-	public JSONObject getNodeGroupList(@RequestHeader HttpHeaders headers) {
+	public void getNodeGroupList(@RequestHeader HttpHeaders headers, HttpServletResponse resp) throws IOException {
 		HeadersManager.setHeaders(headers);
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		try {
 			final String SVC_ENDPOINT_NAME = SERVICE_NAME + "/getNodeGroupList";
 			TableResultSet retval = new TableResultSet(true);		
 	
 			try{
-				NgStore store = new NgStore(this.getStoreDataSei());
+				NgStore store = this.buildStore();
 				Table tab = store.getFullNodeGroupList(true);
 				retval.addResults(tab);
 				retval.setSuccess(true);
@@ -220,7 +236,7 @@ public class NodeGroupStoreRestController {
 				retval.addRationaleMessage(SVC_ENDPOINT_NAME, e);
 			}  
 	
-			return retval.toJson();  // whatever we have... send it out. 
+			retval.writeJson(resp.getWriter());  // whatever we have... send it out. 
 		    
 		} finally {
 	    	HeadersManager.clearHeaders();
@@ -229,13 +245,14 @@ public class NodeGroupStoreRestController {
 
 	@CrossOrigin
 	@RequestMapping(value="/getNodeGroupMetadata", method=RequestMethod.POST)
-	public JSONObject getNodeGroupMetadata(@RequestHeader HttpHeaders headers) {
+	public void getNodeGroupMetadata(@RequestHeader HttpHeaders headers, HttpServletResponse resp) throws IOException {
 		HeadersManager.setHeaders(headers);
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		try {
 			final String SVC_ENDPOINT_NAME = SERVICE_NAME + "/getNodeGroupMetadata";
 			TableResultSet retval = new TableResultSet();		
 			try{
-				NgStore store = new NgStore(this.getStoreDataSei());
+				NgStore store = this.buildStore();
 				Table tab = store.getNodeGroupMetadata(true);
 				retval.addResults(tab);
 				retval.setSuccess(true);
@@ -245,7 +262,7 @@ public class NodeGroupStoreRestController {
 				retval.setSuccess(false);
 				retval.addRationaleMessage(SVC_ENDPOINT_NAME, e);
 			} 
-			return retval.toJson();   
+			retval.writeJson(resp.getWriter());   
 		    
 		} finally {
 	    	HeadersManager.clearHeaders();
@@ -262,18 +279,10 @@ public class NodeGroupStoreRestController {
 	
 			try{
 				// get the nodegroup
-				NgStore store = new NgStore(this.getStoreDataSei());
-				Table tbl = store.getNodegroupTable(requestBody.getId(), true);
+				NgStore store = this.buildStore();
+				SparqlGraphJson sgJson = store.getNodegroup(requestBody.getId(), true);
 
-				if(tbl.getNumRows() > 0){
-					// we have a result. for now, let's assume that only the first result is valid.
-					ArrayList<String> tmpRow = tbl.getRows().get(0);
-					int targetCol = tbl.getColumnIndex("NodeGroup");
-	
-					String ngJSONstr = tmpRow.get(targetCol);
-					JSONParser jParse = new JSONParser();
-					JSONObject json = (JSONObject) jParse.parse(ngJSONstr); 
-					SparqlGraphJson sgJson = new SparqlGraphJson(json);
+				if(sgJson != null){
 					NodeGroup ng = sgJson.getNodeGroup();
 	
 					// get the runtime constraints. 
@@ -325,7 +334,7 @@ public class NodeGroupStoreRestController {
 			// ideally, the node groups would be able to write deletion queries, using filters and runtime constraints to
 			// determine what to remove. if we moved to that point, we could probably use the same NG for insertions and deletions.
 	
-			NgStore store = new NgStore(this.getStoreDataSei());
+			NgStore store = this.buildStore();
 
 	
 			try{
@@ -349,6 +358,13 @@ public class NodeGroupStoreRestController {
 	    }
 	}
 	
+    /**
+     * Store using the configured blob directory and the service's nodegroup cache
+     */
+    private NgStore buildStore() throws Exception {
+    	return new NgStore(this.getStoreDataSei(), this.blobStore, this.ngCache);
+    }
+    
     private SparqlEndpointInterface getStoreDataSei() throws Exception{
 
         SparqlEndpointInterface ret = SparqlEndpointInterface.getInstance(    
@@ -31,6 +31,13 @@ public class StoreProperties {
     private String sparqlConnDomain = "";
     private String sparqlConnType = "";
     
+    // nodegroup json as gzipped files in this directory, or "" to keep it in the triplestore
+    private String blobDirectory = "";
+    
+    // cache of nodegroups read:  0 entries turns it off
+    private int cacheSize = 500;
+    private int cacheTtlSeconds = 60;
+    
 	public String getSparqlConnServerAndPort() {
 		return sparqlConnServerAndPort;
 	}
@@ -61,6 +68,24 @@ public class StoreProperties {
 	public void setSparqlConnType(String sparqlConnType) {
 		this.sparqlConnType = sparqlConnType;
 	}
+	public String getBlobDirectory() {
+		return blobDirectory;
+	}
+	public void setBlobDirectory(String blobDirectory) {
+		this.blobDirectory = blobDirectory;
+	}
+	public int getCacheSize() {
+		return cacheSize;
+	}
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+	public int getCacheTtlSeconds() {
+		return cacheTtlSeconds;
+	}
+	public void setCacheTtlSeconds(int cacheTtlSeconds) {
+		this.cacheTtlSeconds = cacheTtlSeconds;
+	}
     
 
 }
@@ -357,6 +357,34 @@ public class OntologyInfoServiceRestController {
 		return retval.toJson();		
 	}
 	
+	@ApiOperation(
+			value="Re-check cached oInfo built from any model dataset in the given connection.",
+			notes="Only graphs whose ModelGraphVersion changed are reloaded.  Callers must record or clear the version first.<p>"
+					+ "Otherwise use <i>/uncacheChangedModel</i>."
+			)
+	@CrossOrigin
+	@RequestMapping(value="/revalidateChangedModel", method=RequestMethod.POST)
+	public JSONObject revalidateChangedModel(@RequestBody OntologyInfoRequestBody requestBody, @RequestHeader HttpHeaders headers){
+		HeadersManager.setHeaders(headers);
+		final String ENDPOINT_NAME = "revalidateChangedModel";
+		SimpleResultSet retval = new SimpleResultSet(false);
+
+		try {
+			SparqlConnection conn = requestBody.buildSparqlConnection();
+
+			oInfoCache.revalidateSimilar(conn);
+
+			retval.setSuccess(true);
+		}
+		catch (Exception e) {
+			retval.addRationaleMessage(SERVICE_NAME, ENDPOINT_NAME, e);
+			retval.setSuccess(false);
+			LocalLogger.printStackTrace(e);
+		}
+
+		return retval.toJson();
+	}
+
 	@ApiOperation(
 			value="Un-cache the ontology loaded by given connection.",
 			notes="For very specific UI operations only.<p>Generally, use <i>/uncacheChangedModel</i> instead."
@@ -26,6 +26,9 @@ import com.ge.research.semtk.properties.Properties;
 @ConfigurationProperties(prefix="dispatch", ignoreUnknownFields = true)
 public class DispatchProperties extends Properties {	
 	private String dispatcherClassName;
+	private String fdcStaging = "TRIPLESTORE";		// TRIPLESTORE or INMEMORY
+	private int maxThreads = 32;					// jobs that run at once
+	private int maxQueued = 1000;					// jobs that wait for a thread before new ones are rejected
 	
 	public DispatchProperties() {
 		super();
@@ -39,9 +42,36 @@ public class DispatchProperties extends Properties {
 		this.dispatcherClassName = dispatcherClassName;
 	}
 
+	public String getFdcStaging() {
+		return fdcStaging;
+	}
+	public void setFdcStaging(String fdcStaging) {
+		this.fdcStaging = fdcStaging;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+	public void setMaxQueued(int maxQueued) {
+		this.maxQueued = maxQueued;
+	}
+
 	public void validate() throws Exception {
 		super.validate();
 		checkNotEmpty("dispatcherClassName", dispatcherClassName);
+		checkNone("fdcStaging", fdcStaging);
+		if (!fdcStaging.trim().equalsIgnoreCase("TRIPLESTORE") && !fdcStaging.trim().equalsIgnoreCase("INMEMORY")) {
+			throw new Exception(getPrefix() + ".fdcStaging must be TRIPLESTORE or INMEMORY: " + fdcStaging);
+		}
+		checkRangeInclusive("maxThreads", maxThreads, 1, 10000);
+		checkRangeInclusive("maxQueued", maxQueued, 0, 1000000);
 	}
 	
 }
@@ -35,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ge.research.semtk.auth.AuthorizationManager;
+import com.ge.research.semtk.auth.ThreadAuthenticator;
 import com.ge.research.semtk.edc.JobTracker;
 import com.ge.research.semtk.edc.client.OntologyInfoClient;
 import com.ge.research.semtk.edc.client.OntologyInfoClientConfig;
@@ -58,6 +59,8 @@ import com.ge.research.semtk.springutillib.properties.EnvironmentProperties;
 import com.ge.research.semtk.springutillib.properties.ServicesGraphProperties;
 import com.ge.research.semtk.sparqlX.asynchronousQuery.AsynchronousNodeGroupBasedQueryDispatcher;
 import com.ge.research.semtk.sparqlX.asynchronousQuery.DispatcherSupportedQueryTypes;
+import com.ge.research.semtk.sparqlX.dispatch.DispatchExecutor;
+import com.ge.research.semtk.sparqlX.dispatch.FdcDispatcher;
 
 @RestController
 @RequestMapping("/dispatcher")
@@ -84,6 +87,8 @@ public class DispatcherServiceRestController {
 	@Autowired 
 	private ApplicationContext appContext;
 	
+	private DispatchExecutor executor = null;
+	
 	@PostConstruct
     public void init() {
 		props.validateWithExit();
@@ -99,6 +104,8 @@ public class DispatcherServiceRestController {
 		auth_prop.validateWithExit();
 		AuthorizationManager.authorizeWithExit(auth_prop);
 
+		FdcDispatcher.setStaging(FdcDispatcher.FdcStaging.valueOf(props.getFdcStaging().trim().toUpperCase()));
+		this.executor = new DispatchExecutor(props.getMaxThreads(), props.getMaxQueued());
 	}
 	
 	// select uses the original endpoint name for BC
@@ -221,6 +228,9 @@ public class DispatcherServiceRestController {
 		
 		// get the things we need for the dispatcher
 		try {
+			// turn away requests that can't be queued before building a dispatcher
+			this.executor.checkNotBusy();
+			
 			SparqlGraphJson sgjson = new SparqlGraphJson();
 			sgjson.setSparqlConn( requestBody.getConnection());
 			
@@ -238,8 +248,8 @@ public class DispatcherServiceRestController {
 				thread.setRawSparqlSquery(qry);
 			}
 			
-			// set up a thread for the actual processing of the request
-			thread.start();
+			// queue the actual processing of the request
+			this.submit(dsp, thread);
 			 
 		} catch (Exception e) {
 			LocalLogger.printStackTrace(e);
@@ -278,6 +288,9 @@ public class DispatcherServiceRestController {
 		
 		// get the things we need for the dispatcher
 		try {
+			// turn away requests that can't be queued before building a dispatcher
+			this.executor.checkNotBusy();
+			
 			dsp = getDispatcher(props, jobId, (NodegroupRequestBody) requestBody, useAuth, true);
 			dsp.getJobTracker().incrementPercentComplete(dsp.getJobId(), 1, 10);
 
@@ -289,8 +302,8 @@ public class DispatcherServiceRestController {
 				thread.setTargetObjectSparqlID(target);
 			}
 		
-			// set up a thread for the actual processing of the request
-			thread.start();
+			// queue the actual processing of the request
+			this.submit(dsp, thread);
 			 
 		} catch (Exception e) {
 			LocalLogger.printStackTrace(e);
@@ -346,6 +359,37 @@ public class DispatcherServiceRestController {
 	    }
 	}
 	
+	@CrossOrigin
+	@RequestMapping(value="/getQueueInfo", method=RequestMethod.POST)
+	public JSONObject getQueueInfo(@RequestHeader HttpHeaders headers) {
+		HeadersManager.setHeaders(headers);
+		try {
+			SimpleResultSet retval = new SimpleResultSet(true);
+			retval.addResult("maxThreads", this.executor.getMaxThreads());
+			retval.addResult("maxQueued", this.executor.getMaxQueued());
+			retval.addResult("running", this.executor.getRunningCount());
+			retval.addResult("queued", this.executor.getQueueDepth());
+			retval.addResult("averageWaitMsec", this.executor.getAverageWaitMsec());
+			retval.addResult("maxWaitMsec", this.executor.getMaxWaitMsec());
+			retval.addResult("rejected", this.executor.getRejectedCount());
+			return retval.toJson();
+		    
+		} finally {
+	    	HeadersManager.clearHeaders();
+	    }
+	}
+	
+	/**
+	 * Queue a job on the executor, noting in its status if it has to wait
+	 */
+	private void submit(AsynchronousNodeGroupBasedQueryDispatcher dsp, WorkThread thread) throws Exception {
+		int waiting = this.executor.getWaitingCount();
+		if (waiting > 0) {
+			dsp.getJobTracker().setJobPercentComplete(dsp.getJobId(), 1, "Waiting for the dispatcher: " + waiting + " queries ahead, " + this.executor.getRunningCount() + " running");
+		}
+		this.executor.submit(ThreadAuthenticator.getThreadUserName(), thread);
+	}
+	
 	private String generateJobId(){
 		return "req_" + UUID.randomUUID();
 	}
@@ -31,7 +31,12 @@ import com.ge.research.semtk.sparqlX.dispatch.QueryFlags;
 import com.ge.research.semtk.utility.LocalLogger;
 
 
-public class WorkThread extends Thread {
+/**
+ * Runs one dispatch job.  Runs on the controller's DispatchExecutor.
+ */
+public class WorkThread implements Runnable {
+	private static final long REPORT_WAIT_MSEC = 1000;		// report a wait for the dispatcher longer than this
+	
 	AsynchronousNodeGroupBasedQueryDispatcher dsp;
 	JSONObject externalConstraintsJson;
 	QueryFlags queryFlags;
@@ -40,6 +45,7 @@ public class WorkThread extends Thread {
 	String targetObjectSparqlID;
 	String rawSparqlQuery;
 	HeaderTable headerTable = null;
+	long queuedMsec = 0;
 	
 	public WorkThread(AsynchronousNodeGroupBasedQueryDispatcher dsp, JSONObject constraintJson, QueryFlags flags, DispatcherSupportedQueryTypes qt){
 		this.dsp = dsp;
@@ -47,6 +53,7 @@ public class WorkThread extends Thread {
 		this.externalConstraintsJson = constraintJson;
 		this.queryFlags = flags;
 		headerTable = ThreadAuthenticator.getThreadHeaderTable();
+		this.queuedMsec = System.currentTimeMillis();
 	}
 	
 	public void setTargetObjectSparqlID(String targetObjectSparqlID) throws Exception{
@@ -66,6 +73,11 @@ public class WorkThread extends Thread {
     public void run() {
     	ThreadAuthenticator.authenticateThisThread(this.headerTable);
 		try {
+			long waitMsec = System.currentTimeMillis() - this.queuedMsec;
+			if (waitMsec > REPORT_WAIT_MSEC) {
+				this.dsp.getJobTracker().setJobPercentComplete(this.dsp.getJobId(), 1, "Started after waiting " + waitMsec + " msec for the dispatcher");
+			}
+			
 			if(this.rawSparqlQuery != null){
 				// a query was passed. use it.
 				this.dsp.executePlainSparqlQuery(rawSparqlQuery, myQT);
@@ -77,6 +89,9 @@ public class WorkThread extends Thread {
 			}	
 		} catch (Exception e) {
 			LocalLogger.printStackTrace(e);		
+		} finally {
+			// running on a pooled thread
+			ThreadAuthenticator.unAuthenticateThisThread();
 		}
 	
     	this.dsp = null;
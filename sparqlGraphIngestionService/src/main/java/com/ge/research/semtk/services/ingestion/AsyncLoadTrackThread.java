@@ -1,5 +1,7 @@
 package com.ge.research.semtk.services.ingestion;
 
+import java.io.File;
+
 import com.ge.research.semtk.auth.HeaderTable;
 import com.ge.research.semtk.auth.ThreadAuthenticator;
 import com.ge.research.semtk.edc.JobTracker;
@@ -19,6 +21,7 @@ public class AsyncLoadTrackThread extends Thread {
 	private String jobId = null;
 	private String fileKey = null;
 	private byte[] content;
+	private File contentFile = null;     // alternative to content, deleted when done
 	private HeaderTable headerTable = null;
 	private LoadTracker loadTracker = null;
 	private FileSystemConnector trackBucket = null;
@@ -39,6 +42,14 @@ public class AsyncLoadTrackThread extends Thread {
 		this.headerTable = ThreadAuthenticator.getThreadHeaderTable();
 	}
 	
+	/**
+	 * Track a load whose content is in a local file.  The file is deleted when tracking is done or abandoned.
+	 */
+	public AsyncLoadTrackThread(JobTracker jobTracker, String jobId, LoadTracker loadTracker, FileSystemConnector trackBucket, String fileKey, String fileName, SparqlEndpointInterface sei, File contentFile) {
+		this(jobTracker, jobId, loadTracker, trackBucket, fileKey, fileName, sei, (byte[]) null);
+		this.contentFile = contentFile;
+	}
+	
 	public void run() {
 		ThreadAuthenticator.authenticateThisThread(this.headerTable);
 		
@@ -48,13 +59,21 @@ public class AsyncLoadTrackThread extends Thread {
 				throw new Exception("Waited two hours and job is not complete");
 			}
 			if (this.jobTracker.jobSucceeded(this.jobId)) {
-				this.trackBucket.putObject(this.fileKey, this.content);
+				if (this.contentFile != null) {
+					this.trackBucket.putObject(this.fileKey, this.contentFile);
+				} else {
+					this.trackBucket.putObject(this.fileKey, this.content);
+				}
 				this.loadTracker.trackLoad(this.fileKey, this.fileName, this.sei);
 			}
 			
 		} catch (Exception e) {
 			LocalLogger.logToStdErr("Trouble tracking load " + this.fileKey);
 			LocalLogger.printStackTrace(e);
+		} finally {
+			if (this.contentFile != null) {
+				this.contentFile.delete();
+			}
 		}
 	}
 }
@@ -32,6 +32,8 @@ public class IngestionProperties extends EasyLogEnabledConfigProperties{
 	private String sparqlUserName = "";
 	private String sparqlPassword = "";
 	private int maxThreads = 0;
+	private int uriCacheMaxInMemory = 0;
+	private boolean precheckSpill = false;
 	
 	private String loadTrackAwsRegion = "";
 	private String loadTrackS3Bucket = "";
@@ -76,6 +78,30 @@ public class IngestionProperties extends EasyLogEnabledConfigProperties{
 		return this.maxThreads;
 	}
 	
+	/**
+	 * Max URI lookup cache entries held on the heap per load.  0 means no limit.
+	 * @param uriCacheMaxInMemory
+	 */
+	public void setUriCacheMaxInMemory(int uriCacheMaxInMemory){
+		this.uriCacheMaxInMemory = uriCacheMaxInMemory;
+	}
+	
+	public int getUriCacheMaxInMemory(){
+		return this.uriCacheMaxInMemory;
+	}
+	
+	/**
+	 * Save prechecked loads' insert queries to a temp file and replay them, instead of converting the data twice
+	 * @param precheckSpill
+	 */
+	public void setPrecheckSpill(boolean precheckSpill){
+		this.precheckSpill = precheckSpill;
+	}
+	
+	public boolean getPrecheckSpill(){
+		return this.precheckSpill;
+	}
+	
 	public String getLoadTrackAwsRegion() {
 		return loadTrackAwsRegion;
 	}
@@ -108,5 +134,7 @@ public class IngestionProperties extends EasyLogEnabledConfigProperties{
 		checkNone("sparqlUserName", sparqlUserName);
 		checkNoneMaskValue("sparqlPassword", sparqlPassword);
 		checkNone("maxThreads", maxThreads);
+		checkNone("uriCacheMaxInMemory", uriCacheMaxInMemory);
+		checkNone("precheckSpill", precheckSpill);
 	}
 }
@@ -18,7 +18,11 @@
 
 package com.ge.research.semtk.services.ingestion;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -80,6 +84,7 @@ import com.ge.research.semtk.load.LoadTracker;
 import com.ge.research.semtk.load.dataset.CSVDataset;
 import com.ge.research.semtk.load.dataset.Dataset;
 import com.ge.research.semtk.load.dataset.ODBCDataset;
+import com.ge.research.semtk.load.dataset.ParallelCSVDataset;
 import com.ge.research.semtk.load.utility.ImportSpecHandler;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.logging.DetailsTuple;
@@ -617,6 +622,7 @@ public class IngestionRestController {
 		ArrayList<DetailsTuple> detailsToLog = null;	
 		
 		RecordProcessResults retval = new RecordProcessResults();
+		File dataSpool = null;
 		
 		try {
 			if (trackFlag != null && trackFlag) {
@@ -637,13 +643,19 @@ public class IngestionRestController {
 			
 			SparqlGraphJson sgJson = new SparqlGraphJson(Utility.getJsonObjectFromString(templateContent));			
 			
-			// get data file content
-			String dataFileContent = fromFiles ? new String(((MultipartFile)dataFile).getBytes()) : (String)dataFile; 
+			// get data file content:  uploads are spooled to disk instead of held in memory
+			String dataFileContent = null;
 			String dataFileName = fromFiles ? ((MultipartFile)dataFile).getName() : null;
-			if(dataFileContent != null){
-				LocalLogger.logToStdErr("data size: "  + dataFileContent.length());
-			}else{
-				LocalLogger.logToStdErr("data content was null");
+			if (fromFiles) {
+				dataSpool = this.spoolToFile((MultipartFile)dataFile);
+				LocalLogger.logToStdErr("data size: "  + dataSpool.length() + " bytes");
+			} else {
+				dataFileContent = (String)dataFile;
+				if(dataFileContent != null){
+					LocalLogger.logToStdErr("data size: "  + dataFileContent.length());
+				}else{
+					LocalLogger.logToStdErr("data content was null");
+				}
 			}
 					
 			// override the connection, if needed
@@ -657,7 +669,7 @@ public class IngestionRestController {
 			}
 					
 			// get a CSV data set to use in the load. 
-			Dataset ds = new CSVDataset(dataFileContent, true);
+			Dataset ds = (dataSpool != null) ? new ParallelCSVDataset(dataSpool.getPath()) : new CSVDataset(dataFileContent, true);
 
 			// how about some more logging
 			String startTime = dateFormat.format(Calendar.getInstance().getTime());
@@ -671,6 +683,8 @@ public class IngestionRestController {
 			// load
 			DataLoader dl = new DataLoader(sgJson, ds, prop.getSparqlUserName(), prop.getSparqlPassword());
 			dl.overrideMaxThreads(prop.getMaxThreads());
+			dl.setUriCacheMaxInMemory(prop.getUriCacheMaxInMemory());
+			dl.setPrecheckSpill(prop.getPrecheckSpill());
 
 			recordsProcessed = dl.importData(precheck, skipIngest);
 	
@@ -684,14 +698,22 @@ public class IngestionRestController {
 			// set success values
 			if(precheck && dl.getLoadingErrorReport().getRows().size() == 0){
 				if (trackFlag != null && trackFlag) {
-					this.trackLoad(trackKey, dataFileName, dataFileContent, sgJson.getSparqlConn().getInsertInterface());
+					if (dataSpool != null) {
+						this.trackLoad(trackKey, dataFileName, dataSpool, sgJson.getSparqlConn().getInsertInterface());
+					} else {
+						this.trackLoad(trackKey, dataFileName, dataFileContent, sgJson.getSparqlConn().getInsertInterface());
+					}
 				}
 				retval.setSuccess(true);
 			} else if(precheck && dl.getLoadingErrorReport().getRows().size() != 0){
 				retval.setSuccess(false);
 			} else if(!precheck && recordsProcessed > 0){
 				if (trackFlag != null && trackFlag) {
-					this.trackLoad(trackKey, dataFileName, dataFileContent, sgJson.getSparqlConn().getInsertInterface());
+					if (dataSpool != null) {
+						this.trackLoad(trackKey, dataFileName, dataSpool, sgJson.getSparqlConn().getInsertInterface());
+					} else {
+						this.trackLoad(trackKey, dataFileName, dataFileContent, sgJson.getSparqlConn().getInsertInterface());
+					}
 				}
 				retval.setSuccess(true);
 			} else {
@@ -706,7 +728,11 @@ public class IngestionRestController {
 			LocalLogger.printStackTrace(e);			
 			retval.setSuccess(false);
 			retval.addRationaleMessage("ingestion", "fromCsv*", e);
-		}  
+		} finally {
+			if (dataSpool != null) {
+				dataSpool.delete();
+			}
+		}
 		
 		if(logger != null){  
 			// what are we returning
@@ -738,9 +764,12 @@ public class IngestionRestController {
 	 * @throws Exception
 	 */
 	public void trackLoad(String key, MultipartFile dataFile, SparqlEndpointInterface sei) throws Exception {
-		String fileName = dataFile.getName();
-		IngestionRestController.trackBucket.putObject(key, dataFile.getBytes());
-		IngestionRestController.tracker.trackLoad(key, fileName, sei);
+		File spool = this.spoolToFile(dataFile);
+		try {
+			this.trackLoad(key, dataFile.getName(), spool, sei);
+		} finally {
+			spool.delete();
+		}
 	}
 	
 	public void trackLoad(String key, String fileName, String dataStr, SparqlEndpointInterface sei) throws Exception {
@@ -748,6 +777,28 @@ public class IngestionRestController {
 		IngestionRestController.tracker.trackLoad(key, fileName, sei);
 	}
 	
+	public void trackLoad(String key, String fileName, File dataFile, SparqlEndpointInterface sei) throws Exception {
+		IngestionRestController.trackBucket.putObject(key, dataFile);
+		IngestionRestController.tracker.trackLoad(key, fileName, sei);
+	}
+	
+	/**
+	 * Copy an upload to a local temp file, so it is never all in memory
+	 * @param upload
+	 * @return the file, which the caller must delete
+	 * @throws IOException
+	 */
+	private File spoolToFile(MultipartFile upload) throws IOException {
+		File spool = File.createTempFile("semtk-ingest-", ".csv");
+		try (InputStream in = upload.getInputStream()) {
+			Files.copy(in, spool.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			spool.delete();
+			throw e;
+		}
+		return spool;
+	}
+	
 	public void trackClear(SparqlEndpointInterface sei) throws Exception {
 		IngestionRestController.tracker.trackClear(sei);
 	}
@@ -791,7 +842,8 @@ public class IngestionRestController {
 		
 		// set up the logger
 		LoggerRestClient logger = LoggerRestClient.getInstance(prop, ThreadAuthenticator.getThreadUserName());
-				
+		File dataSpool = null;      // deleted by the load or the load tracker once handed off
+		
 		try {
 			
 			if (trackFlag != null && trackFlag) {
@@ -803,9 +855,15 @@ public class IngestionRestController {
 			String templateContent = fromFiles ? new String(((MultipartFile)templateFile).getBytes()) : (String)templateFile;	
 			SparqlGraphJson sgJson = new SparqlGraphJson(Utility.getJsonObjectFromString(templateContent));			
 			
-			// get data file content
-			String dataFileContent = fromFiles ? new String(((MultipartFile)dataFile).getBytes()) : (String)dataFile;
-			LoggerRestClient.easyLog(logger, SERVICE_NAME, "fromAnyCsvAsync", "chars", String.valueOf(dataFileContent != null ? dataFileContent.length() : 0));
+			// get data file content:  uploads are spooled to disk instead of held in memory
+			String dataFileContent = null;
+			if (fromFiles) {
+				dataSpool = this.spoolToFile((MultipartFile)dataFile);
+				LoggerRestClient.easyLog(logger, SERVICE_NAME, "fromAnyCsvAsync", "bytes", String.valueOf(dataSpool.length()));
+			} else {
+				dataFileContent = (String)dataFile;
+				LoggerRestClient.easyLog(logger, SERVICE_NAME, "fromAnyCsvAsync", "chars", String.valueOf(dataFileContent != null ? dataFileContent.length() : 0));
+			}
 		
 			// override the connection, if needed
 			if(sparqlConnectionOverride != null){
@@ -816,24 +874,48 @@ public class IngestionRestController {
 			String trackKey = UUID.randomUUID().toString();
 			String jobId = "job-" + UUID.randomUUID().toString();
 			this.overrideBaseURI(sgJson, trackFlag, overrideBaseURI, trackKey);
+			boolean track = (trackFlag != null && trackFlag);
+			
 			// get a CSV data set to use in the load. 
-			Dataset ds = new CSVDataset(dataFileContent, true);
+			Dataset ds;
+			if (dataSpool != null) {
+				ParallelCSVDataset spoolDs = new ParallelCSVDataset(dataSpool.getPath());
+				spoolDs.setDeleteOnClose(!track);       // else the load tracker needs it
+				ds = spoolDs;
+			} else {
+				ds = new CSVDataset(dataFileContent, true);
+			}
 			DataLoader dl = new DataLoader(sgJson, ds, prop.getSparqlUserName(), prop.getSparqlPassword());
 			dl.overrideMaxThreads(prop.getMaxThreads());
+			dl.setUriCacheMaxInMemory(prop.getUriCacheMaxInMemory());
+			dl.setPrecheckSpill(prop.getPrecheckSpill());
 			
 			
 			dl.runAsync(precheck, skipIngest, 
 					new StatusClient(new StatusClientConfig(status_prop.getProtocol(), status_prop.getServer(), status_prop.getPort(), jobId)), 
 					new ResultsClient(new ResultsClientConfig(results_prop.getProtocol(), results_prop.getServer(), results_prop.getPort()))
 					);
-			
-			if (trackFlag != null && trackFlag) {
-				AsyncLoadTrackThread thread = new AsyncLoadTrackThread(
-						new JobTracker(servicesgraph_prop.buildSei()),
-						jobId, tracker, trackBucket, trackKey, 
-						((MultipartFile)dataFile).getName(), 
-						sgJson.getSparqlConn().getInsertInterface(), 
-						dataFileContent.getBytes());
+			if (!track) {
+				dataSpool = null;      // the load deletes it when done
+				
+			} else {
+				AsyncLoadTrackThread thread;
+				if (dataSpool != null) {
+					thread = new AsyncLoadTrackThread(
+							new JobTracker(servicesgraph_prop.buildSei()),
+							jobId, tracker, trackBucket, trackKey, 
+							((MultipartFile)dataFile).getName(), 
+							sgJson.getSparqlConn().getInsertInterface(), 
+							dataSpool);
+				} else {
+					thread = new AsyncLoadTrackThread(
+							new JobTracker(servicesgraph_prop.buildSei()),
+							jobId, tracker, trackBucket, trackKey, 
+							"", 
+							sgJson.getSparqlConn().getInsertInterface(), 
+							dataFileContent.getBytes());
+				}
+				dataSpool = null;      // the load tracker deletes it when done
 				thread.start();
 			}
 			
@@ -847,7 +929,11 @@ public class IngestionRestController {
 			LocalLogger.printStackTrace(e);			
 			simpleResult.setSuccess(false);
 			simpleResult.addRationaleMessage("ingestion", "fromCsv*", e);
-		}  
+		} finally {
+			if (dataSpool != null) {
+				dataSpool.delete();
+			}
+		}
 		
 		return simpleResult;
 	}	
@@ -916,6 +1002,8 @@ public class IngestionRestController {
 			// perform actual load
 			DataLoader dl = new DataLoader(new SparqlGraphJson(json), ds, sparqlEndpointUser, sparqlEndpointPassword);
 			dl.overrideMaxThreads(prop.getMaxThreads());
+			dl.setUriCacheMaxInMemory(prop.getUriCacheMaxInMemory());
+			dl.setPrecheckSpill(prop.getPrecheckSpill());
 			dl.importData(true);	// defaulting to precheck
 	
 			retval.setSuccess(true);
@@ -21,6 +21,8 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -60,6 +62,11 @@ public class AuthorizationManager {
 	private static HashMap<String, ArrayList<String>> graphIDMReaders = new HashMap<String, ArrayList<String>>();
 	private static HashMap<String, ArrayList<String>> graphIDMWriters = new HashMap<String, ArrayList<String>>();
 
+	// granted authorizeQuery() decisions:  key of user, groups, op and graphs -> expiration time millis
+	private static final int DECISION_CACHE_MAX = 10000;
+	private static int decisionCacheSeconds = 10;
+	private static ConcurrentHashMap<String, Long> decisionCache = new ConcurrentHashMap<String, Long>();
+
 	public static void clear() {
 		lastUpdate = 0;
 		refreshFreqSeconds = 301;
@@ -70,6 +77,8 @@ public class AuthorizationManager {
 		graphWriters.clear();
 		nextQuerySuper = false;
 		modeSuper = false;
+		decisionCacheSeconds = 10;
+		decisionCache.clear();
 	}
 
 	/**
@@ -111,6 +120,7 @@ public class AuthorizationManager {
 			}
 
 			refreshFreqSeconds = authProps.getRefreshFreqSeconds();
+			decisionCacheSeconds = authProps.getDecisionCacheSeconds();
 			authFilePath = authProps.getSettingsFilePath();
 			ThreadAuthenticator.setUsernameKey(authProps.getUsernameKey());
 			ThreadAuthenticator.setGroupKey(authProps.getGroupKey());
@@ -177,6 +187,7 @@ public class AuthorizationManager {
 				JSONObject authJson = Utility.getJSONObjectFromFilePath(authFilePath);
 				updateUserGroups(authJson);
 				updateGraphAuthorization(authJson);
+				decisionCache.clear();
 
 			} catch (Exception e) {
 				String path = authFilePath;
@@ -362,7 +373,7 @@ public class AuthorizationManager {
 		String user = ThreadAuthenticator.getThreadUserName();
 
 		// log the first half
-		AuthorizationException.logAuthEvent("Query:    " + queryStr);
+		AuthorizationException.logAuthEvent("Query:    " + SparqlQueryInterrogator.abbreviate(queryStr));
 		AuthorizationException.logAuthEvent("User:     " + user);
 
 		SparqlQueryInterrogator sqi = new SparqlQueryInterrogator(queryStr);
@@ -378,6 +389,15 @@ public class AuthorizationManager {
 		AuthorizationException.logAuthEvent("Type:     " + (readOnlyFlag ? "read" : "write")               );
 		AuthorizationException.logAuthEvent("Time:     " + (System.nanoTime() - startTime) / 1000000 + " msec\n");
 
+		// same user, groups, graphs and operation were granted recently
+		String decisionKey = buildDecisionKey(user, readOnlyFlag, graphURIs);
+		if (decisionCacheSeconds > 0) {
+			Long expires = decisionCache.get(decisionKey);
+			if (expires != null && expires > System.currentTimeMillis()) {
+				return;
+			}
+		}
+
 		// do the actual authorization
 		for (String graphURI : graphURIs) {
 			if (readOnlyFlag) {
@@ -387,6 +407,32 @@ public class AuthorizationManager {
 			}
 		}
 
+		if (decisionCacheSeconds > 0) {
+			if (decisionCache.size() >= DECISION_CACHE_MAX) {
+				decisionCache.clear();
+			}
+			decisionCache.put(decisionKey, System.currentTimeMillis() + decisionCacheSeconds * 1000L);
+		}
+	}
+
+	/**
+	 * Key for caching a decision.  
+	 * Includes IDM groups since they grant access too.  Graph order doesn't matter.
+	 */
+	private static String buildDecisionKey(String user, boolean readOnlyFlag, ArrayList<String> graphURIs) {
+		StringBuilder key = new StringBuilder();
+		key.append(readOnlyFlag ? "read" : "write").append('\n').append(user).append('\n');
+		List<String> groups = ThreadAuthenticator.getThreadGroups();
+		if (groups != null) {
+			for (String g : new TreeSet<String>(groups)) {
+				key.append(g).append('\t');
+			}
+		}
+		key.append('\n');
+		for (String g : new TreeSet<String>(graphURIs)) {
+			key.append(g).append('\t');
+		}
+		return key.toString();
 	}
 
 	/**
@@ -22,6 +22,7 @@ import com.ge.research.semtk.properties.Properties;
 
 public class AuthorizationProperties extends Properties {
 	int refreshFreqSeconds = 300;
+	int decisionCacheSeconds = 10;		// how long to reuse a query authorization decision.  0 for never.
 	String settingsFilePath = "";
 	String logPath = "";
 	String usernameKey = "user_name";
@@ -56,6 +57,14 @@ public class AuthorizationProperties extends Properties {
 		this.refreshFreqSeconds = refreshFreqSeconds;
 	}
 	
+	public int getDecisionCacheSeconds() {
+		return decisionCacheSeconds;
+	}
+
+	public void setDecisionCacheSeconds(int decisionCacheSeconds) {
+		this.decisionCacheSeconds = decisionCacheSeconds;
+	}
+	
 	public String getUsernameKey() {
 		return usernameKey;
 	}
@@ -75,6 +84,7 @@ public class AuthorizationProperties extends Properties {
 	public void validate() throws Exception {
 		super.validate();
 		checkRangeInclusive("refreshFreqSeconds", refreshFreqSeconds, 1, 3600);
+		checkRangeInclusive("decisionCacheSeconds", decisionCacheSeconds, 0, 3600);
 		checkNone("settingsFilePath", settingsFilePath);
 		checkNone("logPath", logPath);
 		checkNone("usernameKey", usernameKey);
@@ -1,116 +1,230 @@
 package com.ge.research.semtk.auth;
 
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import com.ge.research.semtk.utility.Utility;
 
 /**
  * Very simple SPARQL "parser" used to figure out what kind of query is being executed
  * And to what graphs.
+ *
+ * Makes one pass over the query without copying it:  quoted strings are skipped,
+ * keywords are whole words matched case-insensitively anywhere else (including inside IRIs),
+ * and graphs are the IRIs following FROM, INTO or GRAPH.  IRIs are read as tokens, so quotes inside them
+ * don't start strings, and a graph IRI that can't be read fails authorization instead of being ignored.
  * @author 200001934
  *
  */
 public class SparqlQueryInterrogator {
-	private static Pattern PATTERN_INSERT = 	Pattern.compile("\\Winsert\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_DELETE = 	Pattern.compile("\\Wdelete\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_CLEAR = 		Pattern.compile("\\Wclear\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_DROP = 		Pattern.compile("\\Wdrop\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_CREATE = 	Pattern.compile("\\Wcreate\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_SELECT = 	Pattern.compile("\\Wselect\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_CONSTRUCT = 	Pattern.compile("\\Wconstruct\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_ASK = 		Pattern.compile("\\Wask\\W", Pattern.CASE_INSENSITIVE);
-	private static Pattern PATTERN_SERVICE = 	Pattern.compile("[^\\w:\\?]service\\W", Pattern.CASE_INSENSITIVE);
-	
-	// a keyword that's supposed to be followed by <graph> but has something else (like a variable) afterwards
-	private static Pattern PATTERN_ILLEGAL_GRAPH = Pattern.compile("\\W(from|into|graph)\\s*[^<]", Pattern.CASE_INSENSITIVE);
-
-	private static Pattern PATTERN_GRAPH_CAPTURE = Pattern.compile("\\W(?:from|into|graph)\\s*<([^>]+)>", Pattern.CASE_INSENSITIVE);
-	
-	private String query = null;
+
+	private static final int MAX_QUERY_IN_MESSAGE = 1000;
+
+	private boolean hasInsert = false;
+	private boolean hasDelete = false;
+	private boolean hasClear = false;
+	private boolean hasDrop = false;
+	private boolean hasCreate = false;
+	private boolean hasSelect = false;
+	private boolean hasConstruct = false;
+	private boolean hasAsk = false;
+
+	private ArrayList<String> graphNames = new ArrayList<String>();
+	private String unparsableGraph = null;
 	private String origQuery = null;
-	
+
 	public SparqlQueryInterrogator(String query) throws AuthorizationException {
-		
-		// initialize by removing all sub strings from the query
-		// and surrounding by spaces to make the word boundaries more efficient (not looking for ^ or $)
 		this.origQuery = query;
-		this.query = " " + Utility.removeQuotedSubstrings(query, "\"REPLACED\"") + " ";
-		
+
 		// check for non-starter keywords we can't authorize
-		if (this.containsService()) {
-			throw new AuthorizationException("Can not authorize query containing SERVICE keyword: \n" + this.origQuery);
+		if (this.scan(query)) {
+			throw new AuthorizationException("Can not authorize query containing SERVICE keyword: \n" + abbreviate(this.origQuery));
 		}
 	}
-	
+
 	/**
 	 * Does this query only read graphs
 	 * @return
 	 */
 	public boolean isReadOnly() throws AuthorizationException {
-		boolean hasWriteKeyword = 
-				this.containsClear() ||
-				this.containsCreate() ||
-				this.containsDrop() ||
-				this.containsInsert() ||
-				this.containsDelete()
+		boolean hasWriteKeyword =
+				this.hasClear ||
+				this.hasCreate ||
+				this.hasDrop ||
+				this.hasInsert ||
+				this.hasDelete
 				;
-		
+
 		boolean hasReadKeyword =
-				this.containsSelect() ||
-				this.containsConstruct() ||
-				this.containsAsk();
-		
+				this.hasSelect ||
+				this.hasConstruct ||
+				this.hasAsk;
+
 		if (!hasWriteKeyword && !hasReadKeyword) {
-			throw new AuthorizationException("Can not authorize query containing none of CLEAR, CREATE, DROP, DELETE, SELECT, CONSTRUCT, ASK: \n" + this.origQuery);
+			throw new AuthorizationException("Can not authorize query containing none of CLEAR, CREATE, DROP, DELETE, SELECT, CONSTRUCT, ASK: \n" + abbreviate(this.origQuery));
 		}
-		
+
 		return hasReadKeyword && !hasWriteKeyword;
 	}
-	
+
 	public ArrayList<String> getGraphNames() throws AuthorizationException {
-		ArrayList<String> ret = new ArrayList<String>();
-		
-		Matcher m = PATTERN_GRAPH_CAPTURE.matcher(this.query);
-		while (m.find()) {
-			String graph = m.group(1);
-			if (graph.contains("?")) {
-				throw new AuthorizationException("Can not authorize query with un-parsable graph: " + m.group(0));
-			}
-			ret.add(graph);
+		if (this.unparsableGraph != null) {
+			throw new AuthorizationException("Can not authorize query with un-parsable graph: " + this.unparsableGraph);
 		}
-		return ret;
-	}
-	
-	private boolean containsInsert() {
-		return PATTERN_INSERT.matcher(this.query).find();
+		return new ArrayList<String>(this.graphNames);
 	}
-	private boolean containsDelete() {
-		return PATTERN_DELETE.matcher(this.query).find();
+
+	/**
+	 * First part of a query, for messages and logs
+	 */
+	public static String abbreviate(String query) {
+		if (query == null || query.length() <= MAX_QUERY_IN_MESSAGE) {
+			return query;
+		}
+		return query.substring(0, MAX_QUERY_IN_MESSAGE) + "... (" + query.length() + " chars)";
 	}
-	private boolean containsClear() {
-		return PATTERN_CLEAR.matcher(this.query).find();
+
+	/**
+	 * Find keywords and graphs
+	 * @return true if the SERVICE keyword was found (and scanning stopped)
+	 */
+	private boolean scan(String q) {
+		int len = q.length();
+		int i = 0;
+		int iriEnd = 0;      // end of the current IRI:  quotes inside it are not strings, and keywords inside it don't capture graphs
+
+		while (i < len) {
+			char c = q.charAt(i);
+
+			if (c == '<' && i >= iriEnd) {
+				int close = iriClose(q, i);
+				iriEnd = (close < 0) ? iriEnd : close + 1;
+				i++;
+
+			} else if ((c == '"' || c == '\'') && i >= iriEnd) {
+				i = skipQuoted(q, i);
+
+			} else if (isWordChar(c)) {
+				int start = i;
+				while (i < len && isWordChar(q.charAt(i))) {
+					i++;
+				}
+				int wordLen = i - start;
+				char prev = (start == 0) ? ' ' : q.charAt(start - 1);
+				boolean capture = start >= iriEnd;
+
+				switch (wordLen) {
+				case 3:
+					this.hasAsk |= word(q, start, "ask");
+					break;
+				case 4:
+					this.hasDrop |= word(q, start, "drop");
+					if (capture && (word(q, start, "from") || word(q, start, "into"))) {
+						this.captureGraph(q, start, i);
+					}
+					break;
+				case 5:
+					this.hasClear |= word(q, start, "clear");
+					if (capture && word(q, start, "graph")) {
+						this.captureGraph(q, start, i);
+					}
+					break;
+				case 6:
+					this.hasInsert |= word(q, start, "insert");
+					this.hasDelete |= word(q, start, "delete");
+					this.hasCreate |= word(q, start, "create");
+					this.hasSelect |= word(q, start, "select");
+					break;
+				case 7:
+					if (prev != ':' && prev != '?' && word(q, start, "service")) {
+						return true;
+					}
+					break;
+				case 9:
+					this.hasConstruct |= word(q, start, "construct");
+					break;
+				default:
+				}
+			} else {
+				i++;
+			}
+		}
+		return false;
 	}
-	private boolean containsDrop() {
-		return PATTERN_DROP.matcher(this.query).find();
+
+	/**
+	 * If keyword at [start, end) is followed by optional whitespace and an <IRI>, record it.
+	 * An IRI that can't be parsed, or that contains '?', makes the graphs un-parsable rather than being skipped.
+	 */
+	private void captureGraph(String q, int start, int end) {
+		int len = q.length();
+		int j = end;
+		while (j < len && isWhitespace(q.charAt(j))) {
+			j++;
+		}
+		if (j >= len || q.charAt(j) != '<') {
+			return;
+		}
+		int close = iriClose(q, j);
+		if (close < 0 || close == j + 1 || q.substring(j + 1, close).indexOf('?') > -1) {
+			if (this.unparsableGraph == null) {
+				int stop = (close < 0) ? Math.min(len, j + 1 + MAX_QUERY_IN_MESSAGE) : close + 1;
+				this.unparsableGraph = q.substring(start, stop);
+			}
+		} else {
+			this.graphNames.add(q.substring(j + 1, close));
+		}
 	}
-	private boolean containsCreate() {
-		return PATTERN_CREATE.matcher(this.query).find();
+
+	/**
+	 * Find the end of an IRI token starting with '<' at i:  the next '>', with no whitespace or
+	 * characters that can't appear in an IRIREF before it.  Quotes are legal IRI characters.
+	 * @return index of the closing '>', or -1 if i doesn't start an IRI (e.g. it's a less-than)
+	 */
+	private static int iriClose(String q, int i) {
+		int len = q.length();
+		for (int j = i + 1; j < len; j++) {
+			char c = q.charAt(j);
+			if (c == '>') {
+				return j;
+			} else if (c <= ' ' || c == '<' || c == '"' || c == '{' || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\') {
+				return -1;
+			}
+		}
+		return -1;
 	}
-	private boolean containsSelect() {
-		return PATTERN_SELECT.matcher(this.query).find();
+
+	/**
+	 * Skip a quoted string starting at i, honoring backslash escapes and triple quotes.
+	 * An unterminated quote is not a string:  skip just the quote character.
+	 * @return index after the string
+	 */
+	private static int skipQuoted(String q, int i) {
+		char quote = q.charAt(i);
+		int len = q.length();
+		boolean triple = i + 2 < len && q.charAt(i + 1) == quote && q.charAt(i + 2) == quote;
+		int j = triple ? i + 3 : i + 1;
+		while (j < len) {
+			char c = q.charAt(j);
+			if (c == '\\') {
+				j += 2;
+			} else if (c == quote && (!triple || (j + 2 < len && q.charAt(j + 1) == quote && q.charAt(j + 2) == quote))) {
+				return triple ? j + 3 : j + 1;
+			} else if (!triple && (c == '\n' || c == '\r')) {
+				break;
+			} else {
+				j++;
+			}
+		}
+		return i + 1;
 	}
-	private boolean containsConstruct() {
-		return PATTERN_CONSTRUCT.matcher(this.query).find();
+
+	private static boolean word(String q, int start, String keyword) {
+		return q.regionMatches(true, start, keyword, 0, keyword.length());
 	}
-	private boolean containsAsk() {
-		return PATTERN_ASK.matcher(this.query).find();
+
+	private static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
 	}
-	private boolean containsService() {
-		return PATTERN_SERVICE.matcher(this.query).find();
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
 	}
-	
-	
-	
 }
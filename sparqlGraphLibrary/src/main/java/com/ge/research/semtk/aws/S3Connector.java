@@ -1,7 +1,9 @@
 package com.ge.research.semtk.aws;
 
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import com.arangodb.internal.util.IOUtils;
 import com.ge.research.semtk.load.FileSystemConnector;
@@ -10,6 +12,11 @@ import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
@@ -17,6 +24,7 @@ import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 /**
  * Connector to put/get files from AWS S3.
@@ -75,6 +83,58 @@ public class S3Connector extends FileSystemConnector {
 		}
 	}
 	
+	/**
+	 * Upload a local file without reading it into memory
+	 */
+	@Override
+	public void putObject(String fileName, File localFile) throws Exception {
+		
+		if (this.checkExists(fileName)) {
+			throw new Exception("Key already exists: " + fileName);
+		}
+		PutObjectResponse res = this.s3Client.putObject(PutObjectRequest.builder().bucket(this.name).key(fileName).build(),
+				RequestBody.fromFile(localFile));
+		
+		if (res.sdkHttpResponse().isSuccessful() == false) {
+			throw new Exception("Error putting object into s3: " + res.sdkHttpResponse().statusText());
+		}
+	}
+	
+	/**
+	 * S3 multipart upload.  Every part but the last must be at least 5MB.
+	 */
+	@Override
+	protected boolean supportsPartUpload() {
+		return true;
+	}
+	
+	@Override
+	protected String startPartUpload(String fileName) throws Exception {
+		return this.s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder().bucket(this.name).key(fileName).build()).uploadId();
+	}
+	
+	@Override
+	protected String putPart(String fileName, String uploadId, int partNumber, long offset, byte [] data) throws Exception {
+		return this.s3Client.uploadPart(
+				UploadPartRequest.builder().bucket(this.name).key(fileName).uploadId(uploadId).partNumber(partNumber).build(),
+				RequestBody.fromBytes(data)).eTag();
+	}
+	
+	@Override
+	protected void completePartUpload(String fileName, String uploadId, ArrayList<String> partTags) throws Exception {
+		ArrayList<CompletedPart> parts = new ArrayList<CompletedPart>();
+		for (int i = 0; i < partTags.size(); i++) {
+			parts.add(CompletedPart.builder().partNumber(i + 1).eTag(partTags.get(i)).build());
+		}
+		this.s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder().bucket(this.name).key(fileName).uploadId(uploadId)
+				.multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()).build());
+	}
+	
+	@Override
+	protected void abortPartUpload(String fileName, String uploadId) throws Exception {
+		this.s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(this.name).key(fileName).uploadId(uploadId).build());
+	}
+	
 	public boolean checkExists(String fileName) throws Exception {
 		try {
 			ResponseInputStream<GetObjectResponse> s3objectResponse = this.s3Client.getObject(GetObjectRequest.builder().bucket(this.name).key(fileName).build());
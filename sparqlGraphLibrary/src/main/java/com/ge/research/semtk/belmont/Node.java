@@ -49,6 +49,7 @@ public class Node extends Returnable {
 	private String instanceValue = null;
 	private boolean instanceLookedUp = false;
 	private NodeGroup nodeGroup = null;
+	private NodeIndex.Version indexVersion = null;		// of the NodeGroup this is in
 	
 	private NodeDeletionTypes deletionMode = NodeDeletionTypes.NO_DELETE;
 	
@@ -59,11 +60,42 @@ public class Node extends Returnable {
 		if(n != null){ this.nodes = n;}
 		if(p != null){ this.props = p;}
 		this.nodeGroup = ng;
+		this.indexVersion = (ng == null) ? null : ng.getIndexVersion();
 		
 		// add code to get the sparqlID
 		this.sparqlID = BelmontUtil.generateSparqlID(name, this.nodeGroup.getAllVariableNames());
 	}
 	
+	/**
+	 * Copy everything toJson() would save except the nodeItems, which need the copies of the nodes they point to.
+	 * @param other
+	 * @param ng
+	 */
+	Node(Node other, NodeGroup ng) {
+		this.nodeGroup = ng;
+		this.indexVersion = (ng == null) ? null : ng.getIndexVersion();
+		this.copyReturnable(other);
+		this.fullURIname = other.fullURIname;
+		this.instanceValue = other.instanceValue;
+		this.deletionMode = other.deletionMode;
+		for (PropertyItem p : other.props) {
+			this.props.add(new PropertyItem(p));
+		}
+	}
+	
+	/**
+	 * Copy other's nodeItems, pointing them at copies of their nodes
+	 * @param other
+	 * @param nodeCopies
+	 */
+	void copyNodeItems(Node other, HashMap<Node, Node> nodeCopies) {
+		for (NodeItem n : other.nodes) {
+			NodeItem copy = new NodeItem(n, nodeCopies);
+			copy.setIndexVersion(this.indexVersion);
+			this.nodes.add(copy);
+		}
+	}
+	
 	public Node(String jsonStr, NodeGroup ng) throws Exception{
 		// create the JSON Object we need and then call the other constructor. 
 		this((JSONObject)(new JSONParser()).parse(jsonStr), ng);
@@ -72,6 +104,7 @@ public class Node extends Returnable {
 	public Node(JSONObject nodeEncoded, NodeGroup ng) throws Exception{
 		// create a new node from JSON, assuming everything is sane. 
 		this.nodeGroup = ng;
+		this.indexVersion = (ng == null) ? null : ng.getIndexVersion();
 		
 		this.updateFromJson(nodeEncoded);
 	}
@@ -79,6 +112,7 @@ public class Node extends Returnable {
 	public Node(JSONObject nodeEncoded, NodeGroup ng, OntologyInfo inflateOInfo) throws Exception{
 		// create a new node from JSON, assuming everything is sane. 
 		this.nodeGroup = ng;
+		this.indexVersion = (ng == null) ? null : ng.getIndexVersion();
 		
 		this.updateFromJson(nodeEncoded);
 		this.inflateAndValidate(inflateOInfo);
@@ -87,6 +121,7 @@ public class Node extends Returnable {
 	
 	public void setFullURIname(String fullURIname) {
 		this.fullURIname = fullURIname;
+		this.changed();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -445,6 +480,7 @@ public class Node extends Returnable {
 		
 		this.props = inflatedPItems;
 		this.nodes = inflatedNItems;
+		this.changed();
 		
 	}
 	
@@ -555,6 +591,7 @@ public class Node extends Returnable {
 			this.constraints.changeSparqlID(this.sparqlID, ID);
 		}
 		this.sparqlID = ID;
+		this.changed();
 	}
 	
 	public void updateFromJson(JSONObject nodeEncoded) throws Exception{
@@ -605,6 +642,7 @@ public class Node extends Returnable {
 		while(pIt.hasNext()){
 			this.props.add(new PropertyItem(pIt.next()));
 		}
+		this.changed();
 	}
 	
 	public NodeItem setConnection(Node curr, String connectionURI) throws Exception {
@@ -918,12 +956,14 @@ public class Node extends Returnable {
 	public void setProperties(ArrayList<PropertyItem> p){
 		if(p != null){
 			this.props = p;
+			this.changed();
 		}
 	}
 	
 	public void setNodeItems(ArrayList<NodeItem> n){
 		if(n!= null){
 			this.nodes = n;
+			this.changed();
 		}
 	}
 	
@@ -1011,10 +1051,27 @@ public class Node extends Returnable {
 
 	public void rmPropItem(PropertyItem prop) {
 		this.props.remove(prop);
+		this.changed();
 	}
 
 	public void rmNodeItem(NodeItem nItem) {
 		this.nodes.remove(nItem);
+		this.changed();
+	}
+	
+	/**
+	 * Report changes to this node and its nodeItems to version
+	 */
+	void setIndexVersion(NodeIndex.Version version) {
+		this.indexVersion = version;
+		for (NodeItem nItem : this.nodes) {
+			nItem.setIndexVersion(version);
+		}
+	}
+	
+	private void changed() {
+		if (this.indexVersion != null) {
+			this.indexVersion.changed();
+		}
 	}
-
 }
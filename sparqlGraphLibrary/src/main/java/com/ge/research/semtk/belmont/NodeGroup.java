@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -63,6 +64,9 @@ public class NodeGroup {
 	// actually used to keep track of our nodes and the nomenclature in use. 
 	private ArrayList<Node> nodes = new ArrayList<Node>();
 	private HashMap<String, Node> idToNodeHash = new HashMap<String, Node>();
+	private NodeIndex nodeIndex = null;		// built on demand
+	private int nodeIndexBuildCount = 0;
+	private final NodeIndex.Version indexVersion = new NodeIndex.Version();		// changes to this nodegroup's nodes
 	private int limit = 0;
 	private int offset = 0;
 	private ArrayList<OrderElement> orderBy = new ArrayList<OrderElement>();
@@ -335,18 +339,55 @@ public class NodeGroup {
 		// also, add to the list of known nodes
 		this.nodes.add(node);
 		this.idToNodeHash.put(node.getSparqlID(), node);
+		node.setIndexVersion(this.indexVersion);
+		this.indexVersion.changed();
 	}
 	
 	/**
-	 * Use JSON fuctionality to implement deepCopy
+	 * Copy nodes, items and constraints directly rather than through json.
+	 * Result is the same as a toJson() round trip, including node order.
 	 * @param nodegroup
 	 * @return a deep copy
-	 * @throws Exception 
-	 * @
+	 * @throws Exception - invalid orderBy, as when loading json
 	 */
 	public static NodeGroup deepCopy(NodeGroup nodegroup) throws Exception  {
 		NodeGroup copy = new NodeGroup();
-		copy.addJsonEncodedNodeGroup(nodegroup.toJson());
+		copy.limit = nodegroup.limit;
+		copy.offset = nodegroup.offset;
+		
+		// toJson() writes nodes in reverse getOrderedNodeList() order
+		ArrayList<Node> ordered = nodegroup.getOrderedNodeList();
+		Collections.reverse(ordered);
+		HashMap<Node, Node> nodeCopies = new HashMap<Node, Node>();
+		for (Node n : ordered) {
+			Node c = new Node(n, copy);
+			nodeCopies.put(n, c);
+			copy.nodes.add(c);
+			copy.idToNodeHash.put(c.getSparqlID(), c);
+		}
+		for (Node n : ordered) {
+			for (NodeItem nItem : n.getNodeItemList()) {
+				for (Node target : nItem.getNodeList()) {
+					if (!nodeCopies.containsKey(target)) {
+						// link to a node outside the nodegroup: json would add an orphan
+						Node c = new Node(target, copy);
+						nodeCopies.put(target, c);
+						copy.nodes.add(c);
+						copy.idToNodeHash.put(c.getSparqlID(), c);
+					}
+				}
+			}
+			nodeCopies.get(n).copyNodeItems(n, nodeCopies);
+		}
+		
+		for (OrderElement e : nodegroup.orderBy) {
+			copy.orderBy.add(new OrderElement(e.getSparqlID(), e.getFunc()));
+		}
+		copy.validateOrderBy();
+		
+		for (Integer k : nodegroup.unionHash.keySet()) {
+			copy.unionHash.put(k, new ArrayList<String>(nodegroup.unionHash.get(k)));
+		}
 		
 		// connection
 		if (nodegroup.conn != null) {
@@ -1269,6 +1310,8 @@ public class NodeGroup {
 		}
 				
 		this.idToNodeHash.put(curr.getSparqlID(), curr);
+		curr.setIndexVersion(this.indexVersion);
+		this.indexVersion.changed();
 		// set up the connection info so this node participates in the graph
 		if(linkFromNewUri != null && linkFromNewUri != ""){
 			curr.setConnection(existingNode, linkFromNewUri);
@@ -1320,15 +1363,7 @@ public class NodeGroup {
 	 * @return ArrayList of Nodes which are of class uri
 	 */
 	public ArrayList<Node> getNodesByURI(String uri) {
-		// get all nodes with the given uri
-		ArrayList<Node> ret = new ArrayList<Node>();
-
-		for (int i = 0; i < this.nodes.size(); i++) {
-			if (this.nodes.get(i).getUri().equals(uri)) {
-				ret.add(this.nodes.get(i));
-			}
-		}
-		return ret;
+		return this.getNodeIndex().getNodesByURI(uri);
 	}
 	
 	/**
@@ -1339,7 +1374,7 @@ public class NodeGroup {
 	 */
 	public ArrayList<Node> getNodesBySuperclassURI(String uri, OntologyInfo oInfo) {
 		// get all nodes with the given uri
-		ArrayList<Node> ret = new ArrayList<Node>();
+		LinkedHashSet<Node> ret = new LinkedHashSet<Node>();
 
 		// get all subclasses
 		ArrayList<String> classes = new ArrayList<String>();
@@ -1348,17 +1383,11 @@ public class NodeGroup {
 		
 		// for each class / sub-class
 		for (int i=0; i < classes.size(); i++) {
-			// get all nodes
-			ArrayList<Node> c = this.getNodesByURI(classes.get(i));
-			// push node if it isn't already in ret
-			for (int j=0; j < c.size(); j++) {
-				if (ret.indexOf(c.get(j)) == -1) {
-					ret.add(c.get(j));
-				}
-			}
+			// get all nodes, skipping any already in ret
+			ret.addAll(this.getNodesByURI(classes.get(i)));
 		}
 		
-		return ret;
+		return new ArrayList<Node>(ret);
 	}
 	
 	/**
@@ -1368,16 +1397,7 @@ public class NodeGroup {
 	 */
 	public int getNodeIndexBySparqlID(String sparqlId) {
 		String lookupId = (sparqlId.charAt(0) == '?') ? sparqlId : "?" + sparqlId;
-		
-		// look up a node by ID and return it. 
-		int size = nodes.size();
-		for(int i = 0; i < size; i += 1){
-			// can we find it by name?
-			if(this.nodes.get(i).getSparqlID().equals(lookupId)){   // this was "==" but that failed in some cases...
-				return i;
-			}
-		}
-		return -1;
+		return this.getNodeIndex().getIndex(lookupId);
 	}
 	
 	public Node getNodeBySparqlID(String sparqlId) {
@@ -3012,6 +3032,7 @@ public class NodeGroup {
 		// remove the sNode from the nodeGroup
 		this.nodes.remove(node);
 		this.idToNodeHash.remove(node.getSparqlID());
+		this.indexVersion.changed();
 	}
 	
 	public void removeLink(NodeItem nItem, Node target) {
@@ -3656,21 +3677,36 @@ public class NodeGroup {
 	}
 	
 	public Node getNodeItemParentSNode(NodeItem nItem) {
-		for (Node n : this.nodes) {
-			if (n.getNodeItemList().contains(nItem)) {
-				return n;
-			}
-		}
-		return null;
+		return this.getNodeIndex().getParent(nItem);
 	}
 	
 	public Node getPropertyItemParentSNode(PropertyItem pItem) {
-		for (Node n : this.nodes) {
-			if (n.getPropertyItems().contains(pItem)) {
-				return n;
-			}
+		return this.getNodeIndex().getParent(pItem);
+	}
+	
+	/**
+	 * Count of changes to this nodegroup's nodes, shared with nodes and nodeItems as they are added
+	 */
+	NodeIndex.Version getIndexVersion() {
+		return this.indexVersion;
+	}
+	
+	/**
+	 * Index of the nodes, rebuilt if anything changed since it was last used
+	 */
+	private NodeIndex getNodeIndex() {
+		if (this.nodeIndex == null || !this.nodeIndex.isCurrent(this.nodes)) {
+			this.nodeIndex = new NodeIndex(this.nodes, this.indexVersion);
+			this.nodeIndexBuildCount++;
 		}
-		return null;
+		return this.nodeIndex;
+	}
+	
+	/**
+	 * Number of times the node index has been built: it should only be rebuilt after this nodegroup changes
+	 */
+	public int getNodeIndexBuildCount() {
+		return this.nodeIndexBuildCount;
 	}
 	
 	public int getHopsBetween(Node n1, Node n2) {
@@ -3744,13 +3780,7 @@ public class NodeGroup {
 	 * @return
 	 */
 	private ArrayList<Node> getConnectingNodes(Node sNode) {
-		ArrayList<Node> ret = new ArrayList<Node>();
-		for (Node n : this.nodes) {
-			if (n.getConnectingNodeItems(sNode).size() > 0 ) {
-				ret.add(n);
-			}
-		}
-		return ret;
+		return this.getNodeIndex().getIncomingNodes(sNode.getSparqlID());
 	}
 
 	/**
@@ -3760,13 +3790,7 @@ public class NodeGroup {
 	 */
 	public ArrayList<NodeItem> getConnectingNodeItems(Node sNode) {
 		// get any nodeItem in the nodeGroup that points to sNode
-		ArrayList<NodeItem> ret = new ArrayList<NodeItem>();
-		for (Node n : this.nodes) {
-			for (NodeItem nItem : n.getConnectingNodeItems(sNode) ) {
-				ret.add(nItem);
-			}
-		}
-		return ret;
+		return this.getNodeIndex().getIncomingNodeItems(sNode.getSparqlID());
 	}
 	
 	private ArrayList<Node> getSubNodes(Node topNode) {
@@ -3787,16 +3811,9 @@ public class NodeGroup {
 	private ArrayList<Node> getHeadNodes()  {
 		ArrayList<Node> ret = new ArrayList<Node>();
 		
+		NodeIndex index = this.getNodeIndex();
 		for (Node n : nodes) {
-			int connCount = 0;
-			for (Node o : nodes) {
-				if (o.checkConnectedTo(n)) {
-					++connCount;
-					break;
-				}
-			}
-			
-			if (connCount == 0) {
+			if (!index.hasIncoming(n.getSparqlID())) {
 				ret.add(n);
 			}
 		}
@@ -3845,10 +3862,11 @@ public class NodeGroup {
 		// so linkHash[snode.getSparqlID()] == count of incoming nodeItem links
 		
 		HashMap<String, Integer> linkHash = new HashMap<String, Integer>();
+		HashSet<Node> skipSet = new HashSet<Node>(skipNodes);
 		
 		// initialize hash
 		for (Node snode : this.nodes) {
-			if (! skipNodes.contains(snode)) {
+			if (! skipSet.contains(snode)) {
 				linkHash.put(snode.getSparqlID(), 0);
 			}
 		}
@@ -3856,7 +3874,7 @@ public class NodeGroup {
 		// loop through all snodes
 		for (Node fromSnode : this.nodes) {
 			
-			if (! skipNodes.contains(fromSnode)) {
+			if (! skipSet.contains(fromSnode)) {
 				
 				// loop through all nodeItems
 				for (NodeItem nodeItem : fromSnode.getNodeItemList()) {
@@ -3889,11 +3907,12 @@ public class NodeGroup {
 		// ---- set optHash ----
 		// so optHash[snode.getSparqlID()] == count of nodeItems indicating this node is optional
 		HashMap<String, Integer> optHash = new HashMap<String, Integer>();
+		HashSet<Node> skipSet = new HashSet<Node>(skipNodes);
 
 		// initialize optHash
 		for (Node snode : this.nodes) {
 
-			if (! skipNodes.contains(snode)) {
+			if (! skipSet.contains(snode)) {
 				optHash.put(snode.getSparqlID(), 0);
 			}
 		}
@@ -3901,7 +3920,7 @@ public class NodeGroup {
 		// loop through all snodes
 		for (Node snode : this.nodes) {
 			
-			if (! skipNodes.contains(snode)) {
+			if (! skipSet.contains(snode)) {
 				
 				// loop through all nodeItems
 				for (NodeItem nodeItem : snode.getNodeItemList()) {
@@ -4061,7 +4080,7 @@ public class NodeGroup {
 
 			// get all incoming references to this particular node (in the current NodeGroup scope)
 			// and schedule them for removal...
-			for(Node ndIncomingCandidate : this.nodes){
+			for(Node ndIncomingCandidate : this.getConnectingNodes(n)){
 				// get the node items and check the targets.
 				for(NodeItem ni : ndIncomingCandidate.getConnectingNodeItems(n)){
 					// set it so that the consequences of the decision are seen in the post-decision ND
@@ -0,0 +1,147 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.belmont;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Hash lookups over a NodeGroup's nodes: sparqlID to index, URI to nodes,
+ * incoming nodeItems and nodes by target sparqlID, and the node owning each item.
+ *
+ * Nodes and nodeItems are edited directly, not through the NodeGroup,
+ * so they bump their NodeGroup's Version and the NodeGroup rebuilds its index in one pass the next time it is used.
+ * Read-only work such as generating SPARQL therefore builds the index once.
+ */
+class NodeIndex {
+
+	/**
+	 * Count of changes to one NodeGroup, shared with its nodes and nodeItems
+	 */
+	static class Version {
+		private long count = 0;
+
+		/**
+		 * Note that a sparqlID, URI, nodeItem or propertyItem list, or connection has changed in some node
+		 */
+		void changed() {
+			this.count++;
+		}
+
+		long get() {
+			return this.count;
+		}
+	}
+
+	private final Version version;
+	private final long builtVersion;
+	private final int numNodes;
+
+	private final HashMap<String, Integer> idToIndex = new HashMap<String, Integer>();
+	private final HashMap<String, ArrayList<Node>> uriToNodes = new HashMap<String, ArrayList<Node>>();
+	private final HashMap<String, ArrayList<NodeItem>> incomingItems = new HashMap<String, ArrayList<NodeItem>>();
+	private final HashMap<String, ArrayList<Node>> incomingNodes = new HashMap<String, ArrayList<Node>>();
+	private final IdentityHashMap<NodeItem, Node> nodeItemParent = new IdentityHashMap<NodeItem, Node>();
+	private final IdentityHashMap<PropertyItem, Node> propItemParent = new IdentityHashMap<PropertyItem, Node>();
+
+	/**
+	 * Index nodes, and have them and their nodeItems report changes to version
+	 */
+	NodeIndex(ArrayList<Node> nodes, Version version) {
+		// read first: a change during the build makes this index stale
+		this.version = version;
+		this.builtVersion = version.get();
+		this.numNodes = nodes.size();
+
+		for (int i = 0; i < nodes.size(); i++) {
+			Node n = nodes.get(i);
+			n.setIndexVersion(version);
+			this.idToIndex.putIfAbsent(n.getSparqlID(), i);
+			this.uriToNodes.computeIfAbsent(n.getUri(), k -> new ArrayList<Node>()).add(n);
+
+			for (PropertyItem pItem : n.getPropertyItems()) {
+				this.propItemParent.putIfAbsent(pItem, n);
+			}
+			for (NodeItem nItem : n.getNodeItemList()) {
+				this.nodeItemParent.putIfAbsent(nItem, n);
+				if (nItem.getConnected()) {
+					for (Node target : nItem.getNodeList()) {
+						this.incomingItems.computeIfAbsent(target.getSparqlID(), k -> new ArrayList<NodeItem>()).add(nItem);
+						ArrayList<Node> sources = this.incomingNodes.computeIfAbsent(target.getSparqlID(), k -> new ArrayList<Node>());
+						if (sources.isEmpty() || sources.get(sources.size() - 1) != n) {
+							sources.add(n);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Is this still an index of nodes
+	 */
+	boolean isCurrent(ArrayList<Node> nodes) {
+		return this.builtVersion == this.version.get() && this.numNodes == nodes.size();
+	}
+
+	/**
+	 * @return index of first node with sparqlID, or -1
+	 */
+	int getIndex(String sparqlID) {
+		Integer ret = this.idToIndex.get(sparqlID);
+		return (ret == null) ? -1 : ret;
+	}
+
+	/**
+	 * @return new list of nodes with uri, in nodegroup order
+	 */
+	ArrayList<Node> getNodesByURI(String uri) {
+		ArrayList<Node> ret = this.uriToNodes.get(uri);
+		return (ret == null) ? new ArrayList<Node>() : new ArrayList<Node>(ret);
+	}
+
+	/**
+	 * @return new list of connected nodeItems pointing to a node with sparqlID
+	 */
+	ArrayList<NodeItem> getIncomingNodeItems(String sparqlID) {
+		ArrayList<NodeItem> ret = this.incomingItems.get(sparqlID);
+		return (ret == null) ? new ArrayList<NodeItem>() : new ArrayList<NodeItem>(ret);
+	}
+
+	/**
+	 * @return new list of nodes with connected nodeItems pointing to a node with sparqlID
+	 */
+	ArrayList<Node> getIncomingNodes(String sparqlID) {
+		ArrayList<Node> ret = this.incomingNodes.get(sparqlID);
+		return (ret == null) ? new ArrayList<Node>() : new ArrayList<Node>(ret);
+	}
+
+	boolean hasIncoming(String sparqlID) {
+		return this.incomingNodes.containsKey(sparqlID);
+	}
+
+	Node getParent(NodeItem nItem) {
+		return this.nodeItemParent.get(nItem);
+	}
+
+	Node getParent(PropertyItem pItem) {
+		return this.propItemParent.get(pItem);
+	}
+}
@@ -19,6 +19,7 @@
 package com.ge.research.semtk.belmont;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 
 import org.json.simple.JSONArray;
@@ -49,6 +50,7 @@ public class NodeItem {
 	private String connectedBy = "";
 	private String uriConnectBy = "";
 	private Boolean connected = false;
+	private NodeIndex.Version indexVersion = null;		// of the NodeGroup this is in
 	
 	/**
 	 * Constructor 
@@ -62,7 +64,28 @@ public class NodeItem {
 		this.valueTypeURI = UriValueType;
 	}
 	
+	/**
+	 * Copy constructor
+	 * @param other
+	 * @param nodeCopies copy of each node other points to
+	 */
+	NodeItem(NodeItem other, HashMap<Node, Node> nodeCopies) {
+		this.valueTypeURI = other.valueTypeURI;
+		this.valueType = other.valueType;
+		this.connectedBy = other.connectedBy;
+		this.uriConnectBy = other.uriConnectBy;
+		this.connected = other.connected;
+
+		for (Node n : other.nodes) {
+			this.nodes.add(nodeCopies.get(n));
+		}
+		this.optionalMinus.addAll(other.optionalMinus);
+		this.qualifiers.addAll(other.qualifiers);
+		this.deletionFlags.addAll(other.deletionFlags);
+	}
+
 	public NodeItem(JSONObject next, NodeGroup ng) throws Exception{
+		this.indexVersion = ng.getIndexVersion();
 		// get basic values:
 		this.valueTypeURI = next.get("UriValueType").toString();
 		this.valueType = next.get("ValueType").toString();
@@ -217,6 +240,7 @@ public class NodeItem {
 
 	public void setConnected(boolean b) {
 		this.connected = b;
+		this.changed();
 	}
 
 	public void setConnectBy(String connectionLocal) {
@@ -237,6 +261,7 @@ public class NodeItem {
 		this.optionalMinus.add(NodeItem.OPTIONAL_FALSE);
 		this.qualifiers.add("");
 		this.deletionFlags.add(false);
+		this.changed();
 	}
 	
 	public void pushNode(Node curr, int opt) {
@@ -244,6 +269,7 @@ public class NodeItem {
 		this.optionalMinus.add(opt);
 		this.qualifiers.add("");
 		this.deletionFlags.add(false);
+		this.changed();
 	}
 	
 	public void pushNode(Node curr, Boolean deletionMarker){
@@ -251,6 +277,7 @@ public class NodeItem {
 		this.optionalMinus.add(NodeItem.OPTIONAL_FALSE);
 		this.qualifiers.add("");
 		this.deletionFlags.add(deletionMarker);
+		this.changed();
 	}
 	
 	public void pushNode(Node curr, int opt, Boolean deletionMarker) {
@@ -258,6 +285,7 @@ public class NodeItem {
 		this.optionalMinus.add(opt);
 		this.qualifiers.add("");
 		this.deletionFlags.add(deletionMarker);
+		this.changed();
 	}
 		
 	public ArrayList<Node> getNodeList() {
@@ -305,6 +333,7 @@ public class NodeItem {
 		if (this.nodes.size() == 0) {
 			this.connected = false;
 		}
+		this.changed();
 	}
 	
 	public void setSnodeDeletionMarker(Node snode, Boolean toDelete) throws Exception{
@@ -447,6 +476,16 @@ public class NodeItem {
 		//connectedBy
 		//uriConnectBy 
 		this.connected = this.nodes.size() > 0;
+		this.changed();
+	}
+	
+	void setIndexVersion(NodeIndex.Version version) {
+		this.indexVersion = version;
 	}
 	
+	private void changed() {
+		if (this.indexVersion != null) {
+			this.indexVersion.changed();
+		}
+	}
 }
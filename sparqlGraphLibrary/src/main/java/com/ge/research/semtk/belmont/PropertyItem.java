@@ -69,6 +69,20 @@ public class PropertyItem extends Returnable {
 		this(XSDSupportedType.getMatchingValue(valueTypeStr), valueTypeURI, uriRelationship);
 	}
 	
+	/**
+	 * Copy constructor
+	 * @param other
+	 */
+	public PropertyItem(PropertyItem other) {
+		this.copyReturnable(other);
+		this.valueType = other.valueType;
+		this.valueTypeURI = other.valueTypeURI;
+		this.uriRelationship = other.uriRelationship;
+		this.optMinus = other.optMinus;
+		this.isMarkedForDeletion = other.isMarkedForDeletion;
+		this.instanceValues.addAll(other.instanceValues);
+	}
+	
 	public PropertyItem(JSONObject jObj) throws Exception {
 		// keeps track of the properties who are in the domain of a given node.
 		
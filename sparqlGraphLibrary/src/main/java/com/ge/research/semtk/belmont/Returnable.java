@@ -89,9 +89,25 @@ public abstract class Returnable {
 			this.constraints = new ValueConstraint(vc);
 		} else {  // change blank constraints to null
 			this.constraints = null;
-		} 
-		
-		
+		}
+
+
+	}
+
+	/**
+	 * Copy the same fields as a addReturnableJson() / fromReturnableJson() round trip
+	 * @param other
+	 */
+	protected void copyReturnable(Returnable other) {
+		this.sparqlID = other.sparqlID;
+		this.isReturned = other.isReturned;
+		this.isTypeReturned = other.isTypeReturned;
+		this.isRuntimeConstrained = other.isRuntimeConstrained;
+		this.binding = other.binding;
+		this.isBindingReturned = (other.binding != null) ? other.isBindingReturned : false;
+
+		String vc = (other.constraints != null) ? other.constraints.toString() : "";
+		this.constraints = vc.isEmpty() ? null : new ValueConstraint(vc);
 	}
 	/**
 	 * 
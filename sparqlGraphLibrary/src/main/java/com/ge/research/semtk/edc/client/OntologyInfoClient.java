@@ -97,6 +97,28 @@ public class OntologyInfoClient extends RestClient {
 		}
 	}
 	
+	/**
+	 * Re-check cached oInfo for conn's model graphs, after their ModelGraphVersion was recorded or cleared
+	 * @param conn
+	 * @throws ConnectException
+	 * @throws EndpointNotFoundException
+	 * @throws Exception
+	 */
+	public void revalidateChangedModel(SparqlConnection conn) throws ConnectException, EndpointNotFoundException, Exception {
+		this.parametersJSON.put("jsonRenderedSparqlConnection", conn.toJson().toJSONString());
+		conf.setServiceEndpoint("ontologyinfo/revalidateChangedModel");
+
+		try {
+			SimpleResultSet res = this.executeWithSimpleResultReturn();
+			res.throwExceptionIfUnsuccessful();
+
+		} finally {
+			// reset conf and parametersJSON
+			this.parametersJSON.remove("jsonRenderedSparqlConnection");
+			conf.setServiceEndpoint(null);
+		}
+	}
+
 	public void uncacheOntology(SparqlConnection conn) throws ConnectException, EndpointNotFoundException, Exception {
 		this.parametersJSON.put("jsonRenderedSparqlConnection", conn.toJson().toJSONString());
 		conf.setServiceEndpoint("ontologyinfo/uncacheOntology");
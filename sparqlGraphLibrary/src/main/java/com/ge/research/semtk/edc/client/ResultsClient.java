@@ -19,9 +19,12 @@
 package com.ge.research.semtk.edc.client;
 
 import java.io.File;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.net.ConnectException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 import com.ge.research.semtk.services.client.RestClientConfig;
 import org.json.simple.JSONObject;
@@ -264,6 +267,24 @@ public class ResultsClient extends RestClient implements Runnable {
 			this.cleanUp();
 		}
 	}	
+	
+	/**
+	 * Get a table stored as a json blob, parsed as it is read from the response without holding the json text or a JSONObject
+	 */
+	public Table execGetBlobResultTable(String jobId) throws ConnectException, EndpointNotFoundException, Exception {
+		this.parametersJSON.clear();
+				
+		this.conf.setServiceEndpoint("results/getJsonBlobResults");
+		this.conf.setMethod(RestClientConfig.Methods.POST);
+		this.parametersJSON.put("jobId", jobId);
+		this.parametersJSON.put("appendDownloadHeaders", false);
+
+		try (Reader reader = super.executeToReader()) {
+			return Table.fromJson(reader);
+		} finally {
+			this.cleanUp();
+		}
+	}
 		
 	// table support
 	
@@ -273,13 +294,27 @@ public class ResultsClient extends RestClient implements Runnable {
 	 * @param contents
 	 * @throws Exception
 	 */
-	@SuppressWarnings("unchecked")
 	public void execStoreTableResults(String jobId, Table table) throws ConnectException, EndpointNotFoundException, Exception {
-		// chunk up the table by size and then send all the chunks. 
+		this.storeTableRows(jobId, createNewHeaderMap(table), table.getRows().iterator());
+	}
+	
+	/**
+	 * Store table rows (as json) as they are produced, without ever holding the whole table.
+	 * Uses 3 endpoints to initialize, incrementally add data, and finalize the result.
+	 * @param headerJson table header with no rows, but with the row count that will be sent
+	 * @param rows rows in column order.  Elements are escaped as they are sent.
+	 * @throws Exception
+	 */
+	public void execStoreTableResults(String jobId, JSONObject headerJson, Iterator<ArrayList<String>> rows) throws ConnectException, EndpointNotFoundException, Exception {
+		this.storeTableRows(jobId, headerJson, rows);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void storeTableRows(String jobId, JSONObject headerJson, Iterator<ArrayList<String>> rows) throws Exception {
+		// chunk up the rows by size and then send all the chunks. 
 		// hopefully, this will avoid sending anything too large to the results service
 		
 		int tableRowsDone = 0;
-		int totalRows     = table.getNumRows();
 		
 		long startTime=0, endTime=0;
 		double prepSec = 0.0;
@@ -293,57 +328,27 @@ public class ResultsClient extends RestClient implements Runnable {
 		this.conf.setMethod(RestClientConfig.Methods.POST);
 		
 		this.parametersJSON.put("jobId", jobId);
-		this.parametersJSON.put("jsonRenderedHeader", createNewHeaderMap(table).toJSONString());
+		this.parametersJSON.put("jsonRenderedHeader", headerJson.toJSONString());
 		thread = new Thread(this, "execStoreTableResults_initialize");
 		thread.start();
 		
-		// do formatting tasks in parallel
-		formatTableElements(table);		// escapes double quotes
-		
 		// write the data rows to JSON, in batches
-		while(tableRowsDone < totalRows){
+		while(rows.hasNext()){
 			if (timerFlag) { startTime = System.nanoTime();}
-			int tableRowsAtStart = tableRowsDone;
 			// get the next few rows.
-			StringBuilder resultsSoFar = new StringBuilder();
+			StringWriter resultsSoFar = new StringWriter();
 
 			// get the next allocation of rows. 
-			for(int i = 0; i < this.BATCH_SIZE_SEND; i++){
+			for(int i = 0; i < this.BATCH_SIZE_SEND && rows.hasNext(); i++){
 				
-				if(!(tableRowsDone < table.getNumRows())){
-					break;	// processed all rows - we're done
-				}
-				try{
-
-					resultsSoFar.append("[");
-					ArrayList<String> row = table.getRow(tableRowsDone);
-					for(int j = 0; j < row.size(); j++){
-						resultsSoFar.append("\"").append(row.get(j)).append("\"");	// enclose in quotes (tried putting in thread, but resulted in worse performance)
-						if(j < row.size() - 1){
-							resultsSoFar.append(",");								// don't append comma to the last element of the row
-						}
-					}
-					resultsSoFar.append("]");
-					
-					// each row has: 1) internal double quotes escaped 2) elements surrounded by double quotes 3) enclosing brackets
-
-					tableRowsDone += 1;
-					
-					if(i < BATCH_SIZE_SEND - 1){
-						resultsSoFar.append("\n");
-					}
-				}
-				catch(IndexOutOfBoundsException eek){
-					// we have run out of rows. the remaining rows were fewer than the block size. just note this and move on.
-					i = this.BATCH_SIZE_SEND;
-				}
-
-			}
+				// each row has: 1) internal double quotes escaped 2) elements surrounded by double quotes 3) enclosing brackets
+				Table.writeJsonRow(resultsSoFar, rows.next());
 
-			// fail if tableRowsDone has not changed. this implies that even the first result was too large.
-			if((tableRowsDone == tableRowsAtStart) && (tableRowsDone < totalRows)){
-				this.cleanUp();
-				throw new Exception("unable to write results. there is a row size which is too large. row number was " + tableRowsDone + " of a total " + totalRows + ".");
+				tableRowsDone += 1;
+				
+				if(i < BATCH_SIZE_SEND - 1){
+					resultsSoFar.write("\n");
+				}
 			}
 
 			if (timerFlag) { 
@@ -543,39 +548,6 @@ public class ResultsClient extends RestClient implements Runnable {
 		}
 	}
 	
-	/**
-	 * Multi-threaded TableFormatter
-	 * @param table
-	 * @throws InterruptedException
-	 */
-	private void formatTableElements(Table table) throws InterruptedException{
-		
-		final int MIN_ROWS_PER_THREAD = 2000;
-		final int MAX_THREADS = 10;
-		
-		// make a thread for each 2000 rows, but max of 10 threads
-		int actualThreads = Math.min(MAX_THREADS, table.getNumRows() / MIN_ROWS_PER_THREAD + 1);
-		
-		// make sure last thread runs over a bit by adding (actualThreads)
-		int threadBatchSize = table.getNumRows() / actualThreads + actualThreads;
-		
-		ArrayList<TableFormatter> threads = new ArrayList<TableFormatter>();
-		
-		for(int i = 0; i < table.getNumRows(); i += threadBatchSize){
-			int startIndex = i;
-			int endIndex = Math.min(i + threadBatchSize, table.getNumRows());
-			
-			TableFormatter thread = new TableFormatter(table.getRows(), startIndex, endIndex);
-			threads.add(thread);
-			thread.start();
-		}
-		
-		// wait for all threads to finish
-		for(TableFormatter t : threads){
-			t.join();
-		}
-	}
-
 	/**
 	 * Waits for the thread to finish, and throws an exception if not successful
 	 */
@@ -614,31 +586,3 @@ public class ResultsClient extends RestClient implements Runnable {
 	}
 
 }
-
-
-/**
- * Thread to format a subset of a table
- * Note: tried enclosing each element in double quotes here as well, but resulted in overall worse performance
- */
-class TableFormatter extends Thread{  
-
-	private ArrayList<ArrayList<String>> rows;
-	private int startIndex, endIndex;
-
-	public TableFormatter(ArrayList<ArrayList<String>> rows, int startIndex, int endIndex){
-		this.rows = rows;
-		this.startIndex = startIndex;
-		this.endIndex = endIndex;
-	}
-
-	public void run(){  
-		// Make regular strings into legal json strings
-		for(int i = startIndex; i < endIndex; i++){
-			for(int j = 0; j < rows.get(i).size(); j++){	
-				String curr = rows.get(i).get(j);
-				rows.get(i).set(j, Utility.escapeJsonString(curr));
-			}
-		}
-	} 
-}
-
@@ -19,7 +19,14 @@ package com.ge.research.semtk.fdccache;
 
 import java.io.InputStream;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.json.simple.JSONObject;
 
@@ -33,6 +40,7 @@ import com.ge.research.semtk.edc.JobTracker;
 import com.ge.research.semtk.edc.client.OntologyInfoClient;
 import com.ge.research.semtk.fdc.FdcClient;
 import com.ge.research.semtk.fdc.FdcClientConfig;
+import com.ge.research.semtk.load.DataLoader;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.nodeGroupStore.client.NodeGroupStoreRestClient;
 import com.ge.research.semtk.resultSet.Table;
@@ -44,6 +52,12 @@ import com.ge.research.semtk.utility.LocalLogger;
 import com.ge.research.semtk.utility.Utility;
 
 public class FdcCacheSpecRunner extends Thread {
+	private static final String SUBJECT = "http://fdc/cache#info";
+	private static final String PRED_HASH = "http://fdc/cache#hash";
+	private static final String PRED_EPOCH = "http://fdc/cache#epoch";
+	private static final String PRED_STEP_HASH = "http://fdc/cache#stepHash";
+	private static final int MAX_SIMULTANEOUS_STEPS = 4;   // steps with the same sequence number that may run at once
+	
 	static boolean firstContruct = true;
 	
 	String specId = null;
@@ -55,9 +69,29 @@ public class FdcCacheSpecRunner extends Thread {
 	HeaderTable headerTable = null;
 	JobTracker tracker = null;
 	String jobId = null;
-	int curStep = 0;
 	Table bootstrapTable = null;
 	long maxEpochSeconds = 0;
+	HashSet<String> prevStepHashes = null;   // result hashes of an expired cache's steps
+	AtomicInteger percentComplete = new AtomicInteger(0);
+	
+	/**
+	 * A step's fdc results, not yet ingested
+	 */
+	private static class StepResult {
+		final int step;
+		final Table table;
+		final String hash;		// of the step's service, ingest nodegroup and results
+		
+		StepResult(int step, Table table, String hash) {
+			this.step = step;
+			this.table = table;
+			this.hash = hash;
+		}
+	}
+	
+	private interface Task<T, R> {
+		R run(T t) throws Exception;
+	}
 	
 	public FdcCacheSpecRunner(String specId, SparqlConnection conn, long maxEpochSec, SparqlEndpointInterface servicesSei, OntologyInfoClient oInfoClient, NodeGroupExecutionClient ngExecClient, NodeGroupStoreRestClient ngStoreClient) throws Exception {
 		this.specId = specId;
@@ -129,25 +163,48 @@ public class FdcCacheSpecRunner extends Thread {
 		return jobId;
 	}
 
-	private String getStepInputNg() throws Exception {
-		return this.specTable.getCell(this.curStep, "inputNodegroupId");
+	private String getStepInputNg(int step) throws Exception {
+		return this.specTable.getCell(step, "inputNodegroupId");
 	}
 	
-	private String getStepServiceUrl() throws Exception {
-		return this.specTable.getCell(this.curStep, "serviceURL");
+	private String getStepServiceUrl(int step) throws Exception {
+		return this.specTable.getCell(step, "serviceURL");
 	}
 	
-	private String getStepIngestNgId() throws Exception {
-		return this.specTable.getCell(this.curStep, "ingestNodeGroupId");
+	private String getStepIngestNgId(int step) throws Exception {
+		return this.specTable.getCell(step, "ingestNodeGroupId");
 	}
 	
-	private FdcClient getStepFdcClient(Table t) throws Exception {
-		String endpoint = this.getStepServiceUrl();
+	private FdcClient getStepFdcClient(int step, Table t) throws Exception {
+		String endpoint = this.getStepServiceUrl(step);
 		HashMap<String,Table> tableHashMap = new HashMap<String,Table>();
 		tableHashMap.put("1", t);
 		return new FdcClient(FdcClientConfig.fromFullEndpoint(endpoint, tableHashMap));
 	}
 	
+	/**
+	 * Group steps by sequence number, in order.
+	 * Steps with the same sequence number don't depend on each other.  A step with no sequence number is in a group by itself,
+	 * and so is the first step, which reads the bootstrap table.
+	 * @return lists of step numbers
+	 * @throws Exception
+	 */
+	private ArrayList<ArrayList<Integer>> getStepGroups() throws Exception {
+		ArrayList<ArrayList<Integer>> ret = new ArrayList<ArrayList<Integer>>();
+		ret.add(new ArrayList<Integer>());
+		ret.get(0).add(0);
+		String prevSequence = null;
+		for (int i=1; i < this.getNumSteps(); i++) {
+			String sequence = this.specTable.getCell(i, "sequence");
+			if (sequence.isEmpty() || !sequence.equals(prevSequence)) {
+				ret.add(new ArrayList<Integer>());
+			}
+			ret.get(ret.size() - 1).add(i);
+			prevSequence = sequence;
+		}
+		return ret;
+	}
+	
 	public void setBootstrapTable(Table bootstrapTable) throws Exception {
 		this.bootstrapTable = bootstrapTable;
 		
@@ -156,7 +213,8 @@ public class FdcCacheSpecRunner extends Thread {
 	/**
 	 * Check if data is already cached to this sei (connection's dataInterface 0)
 	 * If so and recent enough, return true
-	 * If so and too old, clear data graph and insert triples for hash defining cache and epoch
+	 * If so and too old, and step result hashes were stored, keep the data so run() can check if any step's results changed
+	 * If so and too old otherwise, clear data graph and insert triples for hash defining cache and epoch
 	 * If graph is empty then ................ insert triples for hash defining cache and epoch
 	 * 
 	 * Failures (dis-allowed use of cache)
@@ -167,11 +225,9 @@ public class FdcCacheSpecRunner extends Thread {
 	 * @throws Exception
 	 */
 	private boolean checkAlreadyCached() throws Exception {
-		final String SUBJECT = "http://fdc/cache#info";
-		final String PRED_HASH = "http://fdc/cache#hash";
-		final String PRED_EPOCH = "http://fdc/cache#epoch";
 		String storedHash = null;
 		long storedEpoch = 0;
+		HashSet<String> storedStepHashes = new HashSet<String>();
 		long nowEpoch = Instant.now().getEpochSecond();
 		SparqlEndpointInterface sei = this.conn.getDataInterface(0);
 		String bootstrapHash = this.specId + ":" + this.bootstrapTable.hashMD5();
@@ -186,6 +242,8 @@ public class FdcCacheSpecRunner extends Thread {
 				storedHash = infoTab.getCell(i, 1);
 			} else if (infoTab.getCell(i, 0).equals(PRED_EPOCH)) {
 				storedEpoch = infoTab.getCellAsLong(i, 1);
+			} else if (infoTab.getCell(i, 0).equals(PRED_STEP_HASH)) {
+				storedStepHashes.add(infoTab.getCell(i, 1));
 			}
 		}
 		
@@ -207,6 +265,12 @@ public class FdcCacheSpecRunner extends Thread {
 				return true;
 			}
 			
+			// keep old stuff until it's known whether any step's results changed
+			if (storedStepHashes.size() > 0) {
+				this.prevStepHashes = storedStepHashes;
+				return false;
+			}
+			
 			// clear old stuff
 			sei.clearGraph();
 		} else {
@@ -220,15 +284,38 @@ public class FdcCacheSpecRunner extends Thread {
 		
 		// ----  At this point graph is empty and we're about to fill it ----
 		
-		// add hash and epoch triples
+		this.insertCacheInfo(bootstrapHash, nowEpoch);
+		return false;
+
+	}
+	
+	/**
+	 * Add hash and epoch triples
+	 */
+	private void insertCacheInfo(String bootstrapHash, long epoch) throws Exception {
+		SparqlEndpointInterface sei = this.conn.getDataInterface(0);
 		String sparql1 = SparqlToXUtils.generateInsertTripleQuery(sei, "<" + SUBJECT + ">", "<" + PRED_HASH + ">", "\"" + bootstrapHash + "\"");
-		String sparql2 = SparqlToXUtils.generateInsertTripleQuery(sei, "<" + SUBJECT + ">", "<" + PRED_EPOCH + ">", String.valueOf(nowEpoch));
+		String sparql2 = SparqlToXUtils.generateInsertTripleQuery(sei, "<" + SUBJECT + ">", "<" + PRED_EPOCH + ">", String.valueOf(epoch));
 		// presume services sei credentials work sei insert
 		sei.executeQueryAndConfirm(sparql1);
 		sei.executeQueryAndConfirm(sparql2);
-		
-		return false;
-
+	}
+	
+	/**
+	 * Add the hash of a step that has been cached
+	 */
+	private void insertStepHash(String stepHash) throws Exception {
+		SparqlEndpointInterface sei = this.conn.getDataInterface(0);
+		sei.executeQueryAndConfirm(SparqlToXUtils.generateInsertTripleQuery(sei, "<" + SUBJECT + ">", "<" + PRED_STEP_HASH + ">", "\"" + stepHash + "\""));
+	}
+	
+	/**
+	 * Restart the age of cached data
+	 */
+	private void replaceEpoch(long epoch) throws Exception {
+		SparqlEndpointInterface sei = this.conn.getDataInterface(0);
+		sei.executeQueryAndConfirm(SparqlToXUtils.generateDeleteURISubjectQuery(sei, SUBJECT, PRED_EPOCH));
+		sei.executeQueryAndConfirm(SparqlToXUtils.generateInsertTripleQuery(sei, "<" + SUBJECT + ">", "<" + PRED_EPOCH + ">", String.valueOf(epoch)));
 	}
 	
 	/**
@@ -237,86 +324,64 @@ public class FdcCacheSpecRunner extends Thread {
 	 */
 	public void run() {
 		ThreadAuthenticator.authenticateThisThread(this.headerTable);
+		ExecutorService pool = null;
 		
 		try {
 			if (this.checkAlreadyCached()) {
 				return;
 			}
 			
-			FdcClient fdcClient = null;
+			if (bootstrapTable == null) {
+				throw new Exception("Runs without bootstrap table are"
+						+ " not yet implemented.");
+			}
+			
+			ArrayList<ArrayList<Integer>> groups = this.getStepGroups();
+			int maxGroupSize = 1;
+			for (ArrayList<Integer> group : groups) {
+				maxGroupSize = Math.max(maxGroupSize, group.size());
+			}
+			pool = Executors.newFixedThreadPool(Math.min(MAX_SIMULTANEOUS_STEPS, maxGroupSize));
 			int percentStep = 100 / this.getNumSteps();
-			int percentComplete = 0;
 			
-			for (this.curStep = 0; this.curStep < this.getNumSteps(); this.curStep++) {
+			// An expired cache is refreshed by running every step again.  While every step's results match the
+			// expired cache, the cache graph still holds exactly what the steps so far would ingest, so later steps can read it.
+			boolean refreshing = (this.prevStepHashes != null);
+			ArrayList<StepResult> unchanged = new ArrayList<StepResult>();		// matching results, not ingested
+			
+			for (ArrayList<Integer> group : groups) {
+				ArrayList<StepResult> results = this.runAll(group, pool, step -> this.runStep(step, percentStep));
 				
-				//----- get fdc inputs -----
-				if (curStep == 0) {
-					// bootstrap first step
-					if (bootstrapTable == null) {
-						throw new Exception("Runs without bootstrap table are"
-								+ " not yet implemented.");
-					} else { 
-						tracker.setJobPercentComplete(jobId, percentComplete, "loading bootstrap table");
-						fdcClient = getStepFdcClient(this.bootstrapTable);
+				if (refreshing) {
+					boolean changed = false;
+					for (StepResult r : results) {
+						changed = changed || !this.prevStepHashes.contains(r.hash);
 					}
-				} else {
-					// normal select 
-					tracker.setJobPercentComplete(jobId, percentComplete, "run select, nodegroup = " + this.getStepInputNg());
-					
-					// try retrieving nodegroup from fdcClient first, failures will be silent
-					String selectId = this.getStepInputNg();
-					
-					FdcClient fdcGetNgClient = new FdcClient(FdcClientConfig.buildGetNodegroup(this.getStepServiceUrl(), selectId));
-					SparqlGraphJson sgjson = fdcGetNgClient.executeGetNodegroup();
-					Table selectTab = null;
-					if (sgjson != null) {
-						// run nodegroup from fdcClient
-						sgjson.setSparqlConn(this.conn);
-						selectTab = this.ngExecClient.dispatchSelectFromNodeGroup(sgjson, null, null);
-					} else {
-						// run from nodegroup store instead
-						selectTab = this.ngExecClient.execDispatchSelectByIdToTable(
-								selectId, 
-								this.conn,
-								null,null);
+					if (!changed) {
+						unchanged.addAll(results);
+						continue;
 					}
-					fdcClient = getStepFdcClient(selectTab);
+					
+					// results of different steps can't be told apart in the cache graph:  rebuild it from the results so far
+					this.conn.getDataInterface(0).clearGraph();
+					this.insertCacheInfo(this.specId + ":" + this.bootstrapTable.hashMD5(), Instant.now().getEpochSecond());
+					results.addAll(0, unchanged);
+					unchanged.clear();
+					refreshing = false;
 				}
-				percentComplete += percentStep/3;
-				
 				
-				//----- run fdc client -----
-				tracker.setJobPercentComplete(jobId, percentComplete, "run client = " + this.getStepServiceUrl());
-				TableResultSet res = fdcClient.executeWithTableResultReturn();
-				res.throwExceptionIfUnsuccessful();
-				percentComplete += percentStep/3;
-
-				
-				//----- ingest results -----
-				if (res.getTable().getNumRows() > 0) {
-					String ingestId = this.getStepIngestNgId();
-					tracker.setJobPercentComplete(jobId, percentComplete, "ingest nodegroup = " + ingestId);
-					
-					// try retrieving nodegroup from fdcClient first, failures will be silent
-					FdcClient fdcGetNgClient = new FdcClient(FdcClientConfig.buildGetNodegroup(this.getStepServiceUrl(), ingestId));
-					SparqlGraphJson sgjson = fdcGetNgClient.executeGetNodegroup();
-					if (sgjson != null) {
-						// run nodegroup from fdcClient
-						sgjson.setSparqlConn(this.conn);
-						this.ngExecClient.dispatchIngestFromCsvStringsSync(sgjson, res.getTableCSVString());
-					} else {
-						// else run nodegroup from store by id
-						this.ngExecClient.dispatchIngestFromCsvStringsByIdSync(
-								this.getStepIngestNgId(), 
-								res.getTableCSVString(), 
-								this.conn);
-					}
+				this.runAll(results, pool, r -> this.ingestStep(r, percentStep));
+				for (StepResult r : results) {
+					this.insertStepHash(r.hash);
 				}
-				percentComplete += percentStep/3;
-
 			}
 			
-			this.tracker.setJobSuccess(jobId, "Successfully cached data");
+			if (refreshing) {
+				this.replaceEpoch(Instant.now().getEpochSecond());
+				this.tracker.setJobSuccess(jobId, "Successfully cached data: results of all " + this.getNumSteps() + " steps are unchanged");
+			} else {
+				this.tracker.setJobSuccess(jobId, "Successfully cached data");
+			}
 			
 		} catch (Exception e) {
 			// finish job on any exception
@@ -327,6 +392,111 @@ public class FdcCacheSpecRunner extends Thread {
 				LocalLogger.printStackTrace(ee);
 			}
 			
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * Run a task on each item at the same time
+	 * @return results in the same order as items
+	 * @throws Exception the first task's failure
+	 */
+	private <T, R> ArrayList<R> runAll(ArrayList<T> items, ExecutorService pool, Task<T, R> task) throws Exception {
+		ArrayList<Future<R>> futures = new ArrayList<Future<R>>();
+		for (T item : items) {
+			futures.add(pool.submit(() -> {
+				ThreadAuthenticator.authenticateThisThread(this.headerTable);
+				try {
+					return task.run(item);
+				} finally {
+					ThreadAuthenticator.unAuthenticateThisThread();
+				}
+			}));
+		}
+		
+		ArrayList<R> ret = new ArrayList<R>();
+		for (Future<R> f : futures) {
+			try {
+				ret.add(f.get());
+			} catch (ExecutionException e) {
+				throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Run one step: get its input table and run its FDC service.
+	 * The first step's input is the bootstrap table.  Others select from the cache.
+	 * @param step
+	 * @return the service's results
+	 * @throws Exception
+	 */
+	private StepResult runStep(int step, int percentStep) throws Exception {
+		
+		//----- get fdc inputs -----
+		Table inputTab = null;
+		if (step == 0) {
+			tracker.setJobPercentComplete(jobId, percentComplete.get(), "loading bootstrap table");
+			inputTab = this.bootstrapTable;
+		} else {
+			// normal select 
+			String selectId = this.getStepInputNg(step);
+			tracker.setJobPercentComplete(jobId, percentComplete.get(), "run select, nodegroup = " + selectId);
+			
+			// try retrieving nodegroup from fdcClient first, failures will be silent
+			FdcClient fdcGetNgClient = new FdcClient(FdcClientConfig.buildGetNodegroup(this.getStepServiceUrl(step), selectId));
+			SparqlGraphJson sgjson = fdcGetNgClient.executeGetNodegroup();
+			if (sgjson != null) {
+				// run nodegroup from fdcClient
+				sgjson.setSparqlConn(this.conn);
+				inputTab = this.ngExecClient.dispatchSelectFromNodeGroup(sgjson, null, null);
+			} else {
+				// run from nodegroup store instead
+				inputTab = this.ngExecClient.execDispatchSelectByIdToTable(
+						selectId, 
+						this.conn,
+						null,null);
+			}
+		}
+		percentComplete.addAndGet(percentStep/3);
+		
+		//----- run fdc client -----
+		tracker.setJobPercentComplete(jobId, percentComplete.get(), "run client = " + this.getStepServiceUrl(step));
+		TableResultSet res = this.getStepFdcClient(step, inputTab).executeWithTableResultReturn();
+		res.throwExceptionIfUnsuccessful();
+		percentComplete.addAndGet(percentStep/3);
+		
+		String hash = Utility.hashMD5(this.getStepServiceUrl(step) + "\n" + this.getStepIngestNgId(step) + "\n" + res.getTable().hashMD5());
+		return new StepResult(step, res.getTable(), hash);
+	}
+	
+	/**
+	 * Ingest a step's results into the cache
+	 * @return r
+	 * @throws Exception
+	 */
+	private StepResult ingestStep(StepResult r, int percentStep) throws Exception {
+		if (r.table.getNumRows() > 0) {
+			String ingestId = this.getStepIngestNgId(r.step);
+			tracker.setJobPercentComplete(jobId, percentComplete.get(), "ingest nodegroup = " + ingestId);
+			
+			// try retrieving nodegroup from fdcClient first, failures will be silent
+			FdcClient fdcGetNgClient = new FdcClient(FdcClientConfig.buildGetNodegroup(this.getStepServiceUrl(r.step), ingestId));
+			SparqlGraphJson sgjson = fdcGetNgClient.executeGetNodegroup();
+			if (sgjson == null) {
+				// else use nodegroup from store
+				sgjson = this.ngStoreClient.executeGetNodeGroupByIdToSGJson(ingestId);
+			}
+			
+			// ingest the table directly instead of round-tripping it through csv and the ingestion service
+			sgjson.setSparqlConn(this.conn);
+			DataLoader.loadFromTable(sgjson, r.table, this.servicesSei.getUserName(), this.servicesSei.getPassword(), true);
 		}
+		percentComplete.addAndGet(percentStep/3);
+		return r;
 	}
 }
@@ -30,7 +30,10 @@ import com.ge.research.semtk.edc.client.ResultsClient;
 import com.ge.research.semtk.edc.client.StatusClient;
 import com.ge.research.semtk.load.dataset.CSVDataset;
 import com.ge.research.semtk.load.dataset.Dataset;
+import com.ge.research.semtk.load.dataset.ParallelCSVDataset;
+import com.ge.research.semtk.load.dataset.TableDataset;
 import com.ge.research.semtk.load.utility.DataLoadBatchHandler;
+import com.ge.research.semtk.load.utility.InsertSpillFile;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.ontologyTools.OntologyInfo;
 import com.ge.research.semtk.resultSet.Table;
@@ -62,6 +65,7 @@ public class DataLoader implements Runnable {
 	
 	int maxThreads = 3; 
 	int insertQueryIdealSizeOverride = 0;
+	int uriCacheMaxInMemory = 0;
 	
 	int totalRecordsProcessed = 0;
 	
@@ -81,6 +85,9 @@ public class DataLoader implements Runnable {
 	boolean doNotCache = false;
 	InMemoryInterfaceUploadThread uploadThread = null;
 	
+	boolean precheckSpill = false;
+	InsertSpillFile insertSpill = null;      // insert queries saved by the precheck pass
+	
 	public DataLoader(){
 		// default and does nothing special 
 	}
@@ -164,6 +171,26 @@ public class DataLoader implements Runnable {
 		this.insertQueryIdealSizeOverride = override;
 	}
 	
+	/**
+	 * Hold at most this many URI lookup cache entries on the heap, spilling the rest to temp files.
+	 * For loads with very large numbers of distinct URI lookups.
+	 * @param maxInMemory - 0 (default) keeps the whole cache on the heap
+	 */
+	public void setUriCacheMaxInMemory(int maxInMemory) {
+		this.uriCacheMaxInMemory = maxInMemory;
+		this.batchHandler.setUriCacheMaxInMemory(maxInMemory);
+	}
+	
+	/**
+	 * When prechecking, save the insert queries to a temp file during the precheck pass
+	 * and replay them to ingest, instead of converting every record a second time.
+	 * Ignored for loads with URI lookups that create missing URIs, since those are only assigned after the precheck.
+	 * @param spill
+	 */
+	public void setPrecheckSpill(boolean spill) {
+		this.precheckSpill = spill;
+	}
+	
 	public String getDatasetGraphName(){
 		return this.endpoint.getGraph();
 	}
@@ -244,73 +271,92 @@ public class DataLoader implements Runnable {
 			this.cacheSei = new InMemoryInterface("http://cache");
 		}
 		
-		// check the nodegroup for consistency before continuing.			
-		this.master.validateAgainstModel(this.oInfo);
-		
 		Boolean precheckFailed = false;
-		this.totalRecordsProcessed = 0;	// reset the counter.
-		this.batchHandler.resetDataSet();
+		try {
+			// check the nodegroup for consistency before continuing.			
+			this.master.validateAgainstModel(this.oInfo);
+			
+			this.totalRecordsProcessed = 0;	// reset the counter.
+			this.batchHandler.resetDataSet();
+			
+			if (precheck && !skipIngest && this.precheckSpill && !this.batchHandler.containsLookupWithCreate()) {
+				this.insertSpill = new InsertSpillFile();
+			}
 		
-		// for percent complete, what portion of the total is this pass
-		if (skipIngest) {
-			this.percentStart = 0;
-			this.percentEnd = 100;
-		} else {
-			this.percentStart = 0;
-			this.percentEnd = 20;
-		}
+			// for percent complete, what portion of the total is this pass
+			if (skipIngest) {
+				this.percentStart = 0;
+				this.percentEnd = 100;
+			} else {
+				this.percentStart = 0;
+				this.percentEnd = 20;
+			}
 		
-		// PASS 1
-		if(precheck){
-			int validationErrorCount = this.batchHandler.validateData();
+			// PASS 1
+			if(precheck){
+				int validationErrorCount = this.batchHandler.validateData();
 			
-			if (validationErrorCount == 0) {
-				// perform "pre-check"
-				String exceptionHeader = "Error during ingest pre-check.  At least one thread threw exception.  e.g.: ";
-				this.totalRecordsProcessed = this.runIngestionThreads(true, false, exceptionHeader);  // skip ingest, don't skip check
-				this.batchHandler.generateNotFoundURIs();
-			}
+				if (validationErrorCount == 0) {
+					// perform "pre-check"
+					String exceptionHeader = "Error during ingest pre-check.  At least one thread threw exception.  e.g.: ";
+					this.totalRecordsProcessed = this.runIngestionThreads(true, false, exceptionHeader);  // skip ingest, don't skip check
+					this.batchHandler.generateNotFoundURIs();
+				}
 			
-			// inspect the transformer to determine if the checks succeeded
-			if(this.batchHandler.getErrorReport().getRows().size() != 0){
-				precheckFailed = true;
-			}
+				// inspect the transformer to determine if the checks succeeded
+				if(this.batchHandler.getErrorReport().getRows().size() != 0){
+					precheckFailed = true;
+				}
 			
-		} else if (this.batchHandler.containsLookupWithCreate()) {
+			} else if (this.batchHandler.containsLookupWithCreate()) {
 			
-			// perform invisible pass.  Only goal is to identify legally missing URI's and set them to NOT_FOUND.
-			String exceptionHeader = "Error during URILookup first pass.  At least one thread threw exception.  e.g.: ";
-			this.totalRecordsProcessed = this.runIngestionThreads(true, true, exceptionHeader); // skip ingest, skip check
-			this.batchHandler.generateNotFoundURIs();
-		}
+				// perform invisible pass.  Only goal is to identify legally missing URI's and set them to NOT_FOUND.
+				String exceptionHeader = "Error during URILookup first pass.  At least one thread threw exception.  e.g.: ";
+				this.totalRecordsProcessed = this.runIngestionThreads(true, true, exceptionHeader); // skip ingest, skip check
+				this.batchHandler.generateNotFoundURIs();
+			}
 		
 		
-		// next pass, if any, is all the remaining weight
-		this.percentStart = this.percentEnd;
-		this.percentEnd = 99;
+			// next pass, if any, is all the remaining weight
+			this.percentStart = this.percentEnd;
+			this.percentEnd = 99;
 		
 		
-		// NOTE: when create-URI-if-lookup-fails exists is implemented,
-		//       another pass will be needed here.   
-		//       Pass 1 would flag URI's that need to be created (possibly duplicated from different threads)
-		//       And right here, those flagged URI's would be given UUIDs.
+			// NOTE: when create-URI-if-lookup-fails exists is implemented,
+			//       another pass will be needed here.   
+			//       Pass 1 would flag URI's that need to be created (possibly duplicated from different threads)
+			//       And right here, those flagged URI's would be given UUIDs.
 		
-		// PASS 2
-		if (!skipIngest && !precheckFailed) {
-			String exceptionHeader = null;
-			if (precheck) 
-				exceptionHeader = "Error in ingestion after successful pre-check.\nPartial ingestion may have occurred.  At least one thread threw exception.  e.g.: ";
-			else
-				exceptionHeader = "Error during one-pass ingestion.\nParial ingestion may have occurred.  At least one thread threw exception.  e.g.:";
+			// PASS 2
+			if (!skipIngest && !precheckFailed) {
+				String exceptionHeader = null;
+				if (precheck) 
+					exceptionHeader = "Error in ingestion after successful pre-check.\nPartial ingestion may have occurred.  At least one thread threw exception.  e.g.: ";
+				else
+					exceptionHeader = "Error during one-pass ingestion.\nParial ingestion may have occurred.  At least one thread threw exception.  e.g.:";
 			
-			this.batchHandler.resetDataSet();
-			this.totalRecordsProcessed = this.runIngestionThreads(false, true, exceptionHeader); // ingest, skip precheck (already done)
+				if (this.insertSpill != null) {
+					this.insertSpill.rewind();   // replay the precheck's insert queries
+				} else {
+					this.batchHandler.resetDataSet();
+				}
+				this.totalRecordsProcessed = this.runIngestionThreads(false, true, exceptionHeader); // ingest, skip precheck (already done)
 			
-		} else {
-			this.totalRecordsProcessed = 0;
+			} else {
+				this.totalRecordsProcessed = 0;
+			}
+		
+		} finally {
+			if (this.insertSpill != null) {
+				this.insertSpill.close();
+				this.insertSpill = null;
+			}
+			this.batchHandler.closeDataSet();			// close all connections and clean up, even after a failure
+			if (this.uriCacheMaxInMemory > 0) {
+				this.batchHandler.closeUriCache();      // release spilled URI cache files
+			}
 		}
 		
-		this.batchHandler.closeDataSet();			// close all connections and clean up
 		return this.totalRecordsProcessed;          // report.
 	}
 	
@@ -337,9 +383,9 @@ public class DataLoader implements Runnable {
 		if (skipIngest && skipCheck) {
 			mode = "URILookup only";  
 		} else if (skipIngest && !skipCheck) {
-			mode = "precheck";
+			mode = (this.insertSpill != null) ? "precheck & spill" : "precheck";
 		} else if (!skipIngest && skipCheck) {
-			mode = "ingest";
+			mode = (this.insertSpill != null) ? "replay" : "ingest";
 		} else if (!skipIngest && !skipCheck) {
 			mode = "precheck & ingest";
 		} 
@@ -351,28 +397,48 @@ public class DataLoader implements Runnable {
 		
 		ArrayList<ArrayList<String>> nextRecords = null;
 		
+		boolean spill = skipIngest && !skipCheck && this.insertSpill != null;    // precheck, saving insert queries
+		boolean replay = !skipIngest && this.insertSpill != null;                // ingest the saved insert queries
+		
 		int numThreads = 2;    // first pass, run few threads to get recommendBatchSize
 		while (true) {
 			// get the next set of records from the data set.
-			
-			try{
-				nextRecords = this.batchHandler.getNextRecordsFromDataSet();
-			}catch(Exception e){ break; } // record set exhausted
-			
-			if(nextRecords == null || nextRecords.size() == 0 ){ break; }
+			InsertSpillFile.Batch replayBatch = null;
+			if (replay) {
+				replayBatch = this.insertSpill.readNext();
+				if (replayBatch == null) { break; }
+				
+			} else {
+				try{
+					nextRecords = this.batchHandler.getNextRecordsFromDataSet();
+				}catch(Exception e){ break; } // record set exhausted
+				
+				if(nextRecords == null || nextRecords.size() == 0 ){ break; }
+			}
 			
 			// spin up a thread to do the work.
 			if(wrkrs.size() < numThreads){
 				// spin up the thread and do the work. 
-				SparqlEndpointInterface ingestSei = (!skipIngest && this.cacheSei != null) ? this.cacheSei : this.endpoint;
-				IngestionWorkerThread worker = new IngestionWorkerThread(ingestSei, this.batchHandler, nextRecords, startingRow, this.oInfo, skipCheck, skipIngest);
-				if (this.insertQueryIdealSizeOverride > 0) {
-					worker.setOptimalQueryChars(this.insertQueryIdealSizeOverride);
+				SparqlEndpointInterface ingestSei = ((!skipIngest || spill) && this.cacheSei != null) ? this.cacheSei : this.endpoint;
+				IngestionWorkerThread worker;
+				int numRecords;
+				if (replay) {
+					worker = new IngestionWorkerThread(ingestSei, replayBatch.queries);
+					numRecords = replayBatch.numRecords;
+				} else {
+					worker = new IngestionWorkerThread(ingestSei, this.batchHandler, nextRecords, startingRow, this.oInfo, skipCheck, skipIngest);
+					if (this.insertQueryIdealSizeOverride > 0) {
+						worker.setOptimalQueryChars(this.insertQueryIdealSizeOverride);
+					}
+					if (spill) {
+						worker.setSpill(this.insertSpill);
+					}
+					numRecords = nextRecords.size();
 				}
-				startingRow += nextRecords.size();
+				startingRow += numRecords;
 				wrkrs.add(worker);
 				worker.start();
-				recordsProcessed += nextRecords.size();
+				recordsProcessed += numRecords;
 			}
 			
 			// thread pool is full.  Wait for all of them to complete.
@@ -386,7 +452,7 @@ public class DataLoader implements Runnable {
 					this.joinAndThrowIfException(thread, exceptionHeader);
 					
 					// check recommended batch size
-					if (thread.getRecommendedBatchSize() != this.batchHandler.getBatchSize()) {
+					if (!replay && thread.getRecommendedBatchSize() != this.batchHandler.getBatchSize()) {
 						//LocalLogger.logToStdOut("Changing batch size from " + this.batchHandler.getBatchSize() + " to " + thread.getRecommendedBatchSize()); 
 						this.batchHandler.setBatchSize(thread.getRecommendedBatchSize());
 					}
@@ -762,9 +828,10 @@ public class DataLoader implements Runnable {
 		// open the dataset, using only the needed column names
 		Dataset dataset = null;
 		try{
-			dataset = new CSVDataset(csvFilePath, colNamesToIngest);
+			dataset = new ParallelCSVDataset(csvFilePath, colNamesToIngest);
 			LocalLogger.logToStdOut("Ingest " + colNamesToIngest.length + " columns, " + dataset.getNumRows() + " rows");
 			if(dataset.getNumRows() == 0){
+				dataset.close();
 				return 0;
 			}
 		}catch(Exception e){
@@ -790,17 +857,34 @@ public class DataLoader implements Runnable {
 		}catch(Exception e){
 			LocalLogger.printStackTrace(e);
 			throw new Exception("Could not load data: " + e.getMessage());
+		}finally{
+			dataset.close();
 		}
 	}
 	
 	public static int loadFromCsvString(JSONObject sgjsonJson, String csvData, String sparqlEndpointUser, String sparqlEndpointPassword, boolean precheck) throws Exception{
-		
-		Dataset dataset = new CSVDataset(csvData, true);
-		
+		return loadFromCsvString(new SparqlGraphJson(sgjsonJson), csvData, sparqlEndpointUser, sparqlEndpointPassword, precheck);
+	}
+	
+	/**
+	 * Load csv using the connection object already in sgjson (e.g. one holding an InMemoryInterface)
+	 */
+	public static int loadFromCsvString(SparqlGraphJson sgjson, String csvData, String sparqlEndpointUser, String sparqlEndpointPassword, boolean precheck) throws Exception{
+		return loadFromDataset(sgjson, new CSVDataset(csvData, true), sparqlEndpointUser, sparqlEndpointPassword, precheck);
+	}
+	
+	/**
+	 * Load a table directly, without converting it to csv
+	 */
+	public static int loadFromTable(SparqlGraphJson sgjson, Table table, String sparqlEndpointUser, String sparqlEndpointPassword, boolean precheck) throws Exception{
+		return loadFromDataset(sgjson, new TableDataset(table), sparqlEndpointUser, sparqlEndpointPassword, precheck);
+	}
+	
+	private static int loadFromDataset(SparqlGraphJson sgjson, Dataset dataset, String sparqlEndpointUser, String sparqlEndpointPassword, boolean precheck) throws Exception{
 		
 		// load the data
 		try{
-			DataLoader loader = new DataLoader(sgjsonJson, dataset, sparqlEndpointUser, sparqlEndpointPassword);
+			DataLoader loader = new DataLoader(sgjson, dataset, sparqlEndpointUser, sparqlEndpointPassword);
 			
 			int recordsAdded = loader.importData(precheck);
 			LocalLogger.logToStdOut("Inserted " + recordsAdded + " records");
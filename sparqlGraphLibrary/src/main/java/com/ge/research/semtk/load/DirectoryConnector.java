@@ -6,7 +6,13 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.UUID;
 
 import org.apache.commons.io.IOUtils;
 
@@ -50,6 +56,51 @@ public class DirectoryConnector extends FileSystemConnector {
 		}
 	}
 
+	@Override
+	public void putObject(String fileName, File localFile) throws Exception {
+		if (this.checkExists(fileName)) {
+			throw new Exception("File already exists: " + fileName);
+		}
+		Files.copy(localFile.toPath(), Paths.get(this.folderStr, fileName));
+	}
+
+	/**
+	 * Parts are written in place to a hidden file, which is renamed when complete
+	 */
+	@Override
+	protected boolean supportsPartUpload() {
+		return true;
+	}
+	
+	@Override
+	protected String startPartUpload(String fileName) throws Exception {
+		String uploadId = "." + fileName + "." + UUID.randomUUID().toString() + ".part";
+		Files.createFile(Paths.get(this.folderStr, uploadId));
+		return uploadId;
+	}
+	
+	@Override
+	protected String putPart(String fileName, String uploadId, int partNumber, long offset, byte [] data) throws Exception {
+		try (FileChannel channel = FileChannel.open(Paths.get(this.folderStr, uploadId), StandardOpenOption.WRITE)) {
+			ByteBuffer buf = ByteBuffer.wrap(data);
+			long pos = offset;
+			while (buf.hasRemaining()) {
+				pos += channel.write(buf, pos);
+			}
+		}
+		return String.valueOf(partNumber);
+	}
+	
+	@Override
+	protected void completePartUpload(String fileName, String uploadId, ArrayList<String> partTags) throws Exception {
+		Files.move(Paths.get(this.folderStr, uploadId), Paths.get(this.folderStr, fileName));
+	}
+	
+	@Override
+	protected void abortPartUpload(String fileName, String uploadId) throws Exception {
+		Files.deleteIfExists(Paths.get(this.folderStr, uploadId));
+	}
+
 	public byte[] getObject(String fileName) throws IOException {
 		File f = Paths.get(this.folderStr, fileName).toFile();
 		FileInputStream is = null;
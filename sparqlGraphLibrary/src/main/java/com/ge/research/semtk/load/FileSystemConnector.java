@@ -1,5 +1,14 @@
 package com.ge.research.semtk.load;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import com.ge.research.semtk.utility.Utility;
 
 /**
@@ -10,6 +19,132 @@ public abstract class FileSystemConnector {
 	
 	public abstract void putObject(String fileName, byte [] data) throws Exception;
 	
+	/**
+	 * Store a local file.  Subclasses should override to avoid reading it all into memory.
+	 */
+	public void putObject(String fileName, File localFile) throws Exception {
+		this.putObject(fileName, Files.readAllBytes(localFile.toPath()));
+	}
+	
+	/**
+	 * Store a local file, uploading parts of it in parallel if it is larger than partSize
+	 * and the connector supports part uploads.
+	 * @param fileName
+	 * @param localFile
+	 * @param partSize bytes per part
+	 * @param maxThreads parts uploaded at once
+	 */
+	public void putObjectInParts(String fileName, File localFile, int partSize, int maxThreads) throws Exception {
+		long size = localFile.length();
+		if (!this.supportsPartUpload() || size <= partSize) {
+			this.putObject(fileName, localFile);
+			return;
+		}
+		this.putParts(fileName, size, partSize, maxThreads, (offset, len) -> {
+			byte [] part = new byte[len];
+			try (RandomAccessFile raf = new RandomAccessFile(localFile, "r")) {
+				raf.seek(offset);
+				raf.readFully(part);
+			}
+			return part;
+		});
+	}
+	
+	/**
+	 * Store data, uploading parts of it in parallel if it is larger than partSize
+	 * and the connector supports part uploads.
+	 */
+	public void putObjectInParts(String fileName, byte [] data, int partSize, int maxThreads) throws Exception {
+		if (!this.supportsPartUpload() || data.length <= partSize) {
+			this.putObject(fileName, data);
+			return;
+		}
+		this.putParts(fileName, data.length, partSize, maxThreads, (offset, len) -> {
+			byte [] part = new byte[len];
+			System.arraycopy(data, (int) offset, part, 0, len);
+			return part;
+		});
+	}
+	
+	@FunctionalInterface
+	private interface PartReader {
+		byte [] read(long offset, int len) throws Exception;
+	}
+	
+	private void putParts(String fileName, long size, int partSize, int maxThreads, PartReader reader) throws Exception {
+		if (this.checkExists(fileName)) {
+			throw new Exception("Key already exists: " + fileName);
+		}
+		int numParts = (int) ((size + partSize - 1) / partSize);
+		String uploadId = this.startPartUpload(fileName);
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxThreads, numParts)));
+		try {
+			ArrayList<Future<String>> futures = new ArrayList<Future<String>>();
+			for (int i = 0; i < numParts; i++) {
+				final int partNumber = i + 1;		// part numbers start at 1
+				final long offset = (long) i * partSize;
+				final int len = (int) Math.min(partSize, size - offset);
+				// each part is read by the thread that uploads it, so only maxThreads parts are in memory
+				futures.add(pool.submit(() -> this.putPart(fileName, uploadId, partNumber, offset, reader.read(offset, len))));
+			}
+			ArrayList<String> partTags = new ArrayList<String>();
+			for (Future<String> f : futures) {
+				try {
+					partTags.add(f.get());
+				} catch (ExecutionException ee) {
+					throw (ee.getCause() instanceof Exception) ? (Exception) ee.getCause() : ee;
+				}
+			}
+			this.completePartUpload(fileName, uploadId, partTags);
+			
+		} catch (Exception e) {
+			pool.shutdownNow();
+			try {
+				this.abortPartUpload(fileName, uploadId);
+			} catch (Exception ee) {
+				// report the original failure
+			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Can this connector upload an object in parts.
+	 * Subclasses that return true implement startPartUpload(), putPart(), completePartUpload() and abortPartUpload()
+	 */
+	protected boolean supportsPartUpload() {
+		return false;
+	}
+	
+	/**
+	 * @return upload id
+	 */
+	protected String startPartUpload(String fileName) throws Exception {
+		throw new Exception(this.getClass().getSimpleName() + " does not support part uploads");
+	}
+	
+	/**
+	 * Upload one part.  Called from several threads at once.
+	 * @param partNumber starting at 1
+	 * @param offset position of the part in the object
+	 * @return tag identifying the part to completePartUpload()
+	 */
+	protected String putPart(String fileName, String uploadId, int partNumber, long offset, byte [] data) throws Exception {
+		throw new Exception(this.getClass().getSimpleName() + " does not support part uploads");
+	}
+	
+	/**
+	 * @param partTags tags returned by putPart(), in part number order
+	 */
+	protected void completePartUpload(String fileName, String uploadId, ArrayList<String> partTags) throws Exception {
+		throw new Exception(this.getClass().getSimpleName() + " does not support part uploads");
+	}
+	
+	protected void abortPartUpload(String fileName, String uploadId) throws Exception {
+	}
+	
 	public abstract byte[] getObject(String fileName) throws Exception;
 	
 	public abstract void deleteObject(String fileName);
@@ -24,6 +24,7 @@ import com.ge.research.semtk.auth.HeaderTable;
 import com.ge.research.semtk.auth.ThreadAuthenticator;
 import com.ge.research.semtk.belmont.NodeGroup;
 import com.ge.research.semtk.load.utility.DataLoadBatchHandler;
+import com.ge.research.semtk.load.utility.InsertSpillFile;
 import com.ge.research.semtk.ontologyTools.OntologyInfo;
 import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 import com.ge.research.semtk.sparqlX.SparqlResultTypes;
@@ -44,6 +45,9 @@ public class IngestionWorkerThread extends Thread {
 	int recommendedBatchSize = -1;
 	HeaderTable headerTable = null;
 	
+	InsertSpillFile spill = null;             // if set, a skipIngest pass saves its insert queries here
+	ArrayList<String> replayQueries = null;   // if set, just run these saved insert queries
+	
 	int maxQueryChars = 100000;    // Arbitrarily limit query size.  Virtuoso seems to lock up in the millions.  Only 10's of thousands are needed ususally.
 	int optimalQueryChars =  3500;   // Virtuoso is far more efficient around this size during large loads
     
@@ -64,10 +68,30 @@ public class IngestionWorkerThread extends Thread {
 		this.headerTable = ThreadAuthenticator.getThreadHeaderTable();
 	}
 	
+	/**
+	 * Thread that runs insert queries saved by an earlier skipIngest pass
+	 * @param endpoint
+	 * @param replayQueries
+	 * @throws Exception
+	 */
+	public IngestionWorkerThread(SparqlEndpointInterface endpoint, ArrayList<String> replayQueries) throws Exception {
+		this.endpoint = endpoint.copy();
+		this.replayQueries = replayQueries;
+		this.headerTable = ThreadAuthenticator.getThreadHeaderTable();
+	}
+	
 	public void setOptimalQueryChars(int val) {
 		this.optimalQueryChars = val;
 	}
 	
+	/**
+	 * During a skipIngest pass, generate the insert queries for endpoint anyway and save them to spill
+	 * @param spill
+	 */
+	public void setSpill(InsertSpillFile spill) {
+		this.spill = spill;
+	}
+	
 	/**
 	 * Runs a thread.
 	 * If dataSetRecords is so big it needs splitting,
@@ -85,33 +109,53 @@ public class IngestionWorkerThread extends Thread {
 
 		
 		try {
+			if (this.replayQueries != null) {
+				for (String q : this.replayQueries) {
+					start = System.currentTimeMillis();
+					this.endpoint.executeQuery(q, SparqlResultTypes.CONFIRM);
+					executeTime += (System.currentTimeMillis() - start);
+				}
+				return;
+			}
+			
 			start = System.currentTimeMillis();
 			ArrayList<NodeGroup> nodeGroupList = this.batchHandler.convertToNodeGroups(this.dataSetRecords, this.startingRowNum, this.skipChecks);
 			convertTime += (System.currentTimeMillis() - start);
 			
-			if (nodeGroupList.size() > 0 && ! this.skipIngest) {
+			if (nodeGroupList.size() == 0 && this.spill != null) {
+				// replay still needs to count the records
+				this.spill.write(this.startingRowNum, this.dataSetRecords.size(), new ArrayList<String>());
+				
+			} else if (nodeGroupList.size() > 0 && (! this.skipIngest || this.spill != null)) {
 				
 				// try to run one efficient query
 				start = System.currentTimeMillis();
-				String query = NodeGroup.generateCombinedSparqlInsert(nodeGroupList, oInfo, this.endpoint);
+				ArrayList<String> queryList = null;
+				try {
+					String query = NodeGroup.generateCombinedSparqlInsert(nodeGroupList, oInfo, this.endpoint);
+					int queryLen = query.length();
+					int targetMin = (int) (this.optimalQueryChars * 0.75);
+					int targetMax = (int) (this.optimalQueryChars * 1.25);
+					
+					if (queryLen >= targetMin && queryLen <= targetMax) {
+						queryList = new ArrayList<String>();
+						queryList.add(query);
+					}
+				} catch (NothingToInsertException e) {
+					queryList = new ArrayList<String>();
+				}
 				generateTime += (System.currentTimeMillis() - start);
-
-				int queryLen = query.length();
-				int targetMin = (int) (this.optimalQueryChars * 0.75);
-				int targetMax = (int) (this.optimalQueryChars * 1.25);
 				
-				if (queryLen >= targetMin && queryLen <= targetMax) {
-					if (DEBUG_QUERIES) System.err.println("query: " + query);
-					
+				if (queryList == null) {
 					start = System.currentTimeMillis();
-					this.endpoint.executeQuery(query, SparqlResultTypes.CONFIRM);
-					executeTime += (System.currentTimeMillis() - start);
-					
-				} else {
-					start = System.currentTimeMillis();
-					ArrayList<String> queryList = this.splitIntoQueries(nodeGroupList);
+					queryList = this.splitIntoQueries(nodeGroupList);
 					splitTime += (System.currentTimeMillis() - start);
+				}
+				
+				if (this.skipIngest) {
+					this.spill.write(this.startingRowNum, this.dataSetRecords.size(), queryList);
 					
+				} else {
 					// run queryList
 					for (String q : queryList) {
 						if (DEBUG_QUERIES) System.err.println("q: " + q);
@@ -0,0 +1,386 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.load.dataset;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.simple.JSONObject;
+
+import com.ge.research.semtk.query.rdb.JdbcConnector;
+import com.ge.research.semtk.query.rdb.JdbcCursor;
+import com.ge.research.semtk.utility.LocalLogger;
+
+
+/**
+ * Read data by streaming a select query through a JdbcConnector.
+ *
+ * Rows are fetched fetchSize at a time on a forward-only cursor, so memory use does not depend on result size.
+ * Optionally, the query is split into ranges of a numeric or timestamp partition column,
+ * each read on its own connection in parallel.  Row order is not preserved across partitions.
+ *
+ * Must call close() when done.
+ */
+public class JdbcDataset extends Dataset {
+
+	private static final int QUEUE_BATCHES_PER_PARTITION = 4;
+	private static final ArrayList<ArrayList<String>> END_OF_PARTITION = new ArrayList<ArrayList<String>>();
+
+	private JdbcConnector conn;
+	private String query;
+	private String partitionColumn = null;
+	private int numPartitions = 1;
+	private int batchSize;
+	private ArrayList<String> columnNamesInOrder;
+
+	// single-partition state
+	private JdbcCursor cursor = null;
+
+	// multi-partition state
+	private Object[][] ranges = null;
+	private Thread[] workers = null;
+	private ArrayList<JdbcCursor> workerCursors = null;
+	private BlockingQueue<ArrayList<ArrayList<String>>> queue = null;
+	private AtomicReference<Exception> workerException = null;
+	private int partitionsRemaining = 0;
+	private ArrayList<ArrayList<String>> pending = null;	// leftover of a batch larger than the last request
+	private int pendingPos = 0;
+
+	/**
+	 * Stream a query on a single connection
+	 * @param conn the connector
+	 * @param query a select query
+	 */
+	public JdbcDataset(JdbcConnector conn, String query) throws Exception {
+		this(conn, query, null, 1);
+	}
+
+	/**
+	 * Stream a query split into numPartitions ranges of partitionColumn, read in parallel
+	 * @param conn the connector
+	 * @param query a select query
+	 * @param partitionColumn a numeric or timestamp column returned by the query, or null
+	 * @param numPartitions number of parallel ranges
+	 */
+	public JdbcDataset(JdbcConnector conn, String query, String partitionColumn, int numPartitions) throws Exception {
+		if (conn == null) {
+			throw new Exception("Must specify a connector");
+		}
+		if (query == null || query.trim().isEmpty()) {
+			throw new Exception("Must specify a query");
+		}
+		query = query.trim();
+		if (query.endsWith(";")) {
+			query = query.substring(0, query.length() - 1).trim();
+		}
+		if (!query.toLowerCase().startsWith("select")) {
+			throw new Exception("Must use a SELECT query");
+		}
+		this.conn = conn;
+		this.query = query;
+		this.batchSize = Math.max(1, conn.getFetchSize());
+
+		// column names, without reading any data
+		try (JdbcCursor c = conn.openCursor("SELECT * FROM (" + query + ") semtk_cols WHERE 1=0")) {
+			this.columnNamesInOrder = new ArrayList<String>(Arrays.asList(c.getColumnNames()));
+		}
+
+		if (partitionColumn != null && numPartitions > 1) {
+			if (!this.columnNamesInOrder.contains(partitionColumn.toLowerCase())) {
+				throw new Exception("Partition column '" + partitionColumn + "' is not returned by the query");
+			}
+			this.partitionColumn = partitionColumn;
+			this.numPartitions = numPartitions;
+		}
+	}
+
+	@Override
+	protected void fromJSON(JSONObject jobj) throws Exception {
+		throw new Exception("Method not implemented yet");
+	}
+
+	@Override
+	public ArrayList<String> getColumnNamesinOrder() throws Exception {
+		return this.columnNamesInOrder;
+	}
+
+	/**
+	 * Count with a query instead of reading every row
+	 */
+	@Override
+	public int getNumRows() throws Exception {
+		try (JdbcCursor c = this.conn.openCursor("SELECT COUNT(*) FROM (" + this.query + ") semtk_count")) {
+			return Integer.parseInt(c.next(1).get(0).get(0));
+		}
+	}
+
+	@Override
+	public ArrayList<ArrayList<String>> getNextRecords(int numRecords) throws Exception {
+		if (this.numPartitions <= 1) {
+			if (this.cursor == null) {
+				this.cursor = this.conn.openCursor(this.query);
+			}
+			return this.cursor.next(numRecords);
+		} else {
+			if (this.workers == null) {
+				this.startWorkers();
+			}
+			return this.takeFromWorkers(numRecords);
+		}
+	}
+
+	@Override
+	public void reset() throws Exception {
+		this.close();
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (this.cursor != null) {
+			this.cursor.close();
+			this.cursor = null;
+		}
+		if (this.workers != null) {
+			// stop running queries, unblock producers, and wait
+			synchronized (this.workerCursors) {
+				for (JdbcCursor c : this.workerCursors) {
+					c.cancel();
+				}
+			}
+			for (Thread t : this.workers) {
+				t.interrupt();
+			}
+			for (Thread t : this.workers) {
+				t.join(10000);
+			}
+			this.workers = null;
+			this.workerCursors = null;
+			this.queue = null;
+			this.pending = null;
+		}
+	}
+
+	/**
+	 * Split [min, max] into n half-open ranges; the last one is closed.
+	 * Integer and date/time ranges do not split below one unit (millisecond for dates and times), so fewer than n may be returned.
+	 * @param min lowest value, from SELECT MIN()
+	 * @param max highest value, from SELECT MAX()
+	 * @return array of {low, high} pairs, of the same type as min
+	 */
+	public static Object[][] computeRanges(Object min, Object max, int n) throws Exception {
+		if (min == null || max == null) {
+			return new Object[0][];
+		}
+
+		if (min instanceof Timestamp || min instanceof java.sql.Date || min instanceof Time) {
+			long lo = ((java.util.Date) min).getTime();
+			long hi = ((java.util.Date) max).getTime();
+			Object[][] longs = computeRanges(lo, hi, n);
+			Object[][] ret = new Object[longs.length][2];
+			for (int i = 0; i < longs.length; i++) {
+				ret[i][0] = sameDateType(min, (Long) longs[i][0]);
+				ret[i][1] = sameDateType(min, (Long) longs[i][1]);
+			}
+			ret[0][0] = min;
+			ret[ret.length - 1][1] = max;   // keep nanos
+			return ret;
+
+		} else if (min instanceof Long || min instanceof Integer || min instanceof Short || min instanceof Byte || min instanceof BigInteger
+				|| (min instanceof BigDecimal && ((BigDecimal) min).scale() <= 0 && ((BigDecimal) max).scale() <= 0)) {
+			long lo = ((Number) min).longValue();
+			long hi = ((Number) max).longValue();
+			// BigInteger.subtract avoids overflow on wide ranges
+			BigInteger span = BigInteger.valueOf(hi).subtract(BigInteger.valueOf(lo)).add(BigInteger.ONE);
+			int count = (int) Math.max(1, Math.min(n, span.min(BigInteger.valueOf(Integer.MAX_VALUE)).longValue()));
+			Object[][] ret = new Object[count][2];
+			for (int i = 0; i < count; i++) {
+				ret[i][0] = span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)).add(BigInteger.valueOf(lo)).longValue();
+				ret[i][1] = (i == count - 1) ? hi : span.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(count)).add(BigInteger.valueOf(lo)).longValue();
+			}
+			return ret;
+
+		} else if (min instanceof Number) {
+			double lo = ((Number) min).doubleValue();
+			double hi = ((Number) max).doubleValue();
+			int count = (hi > lo) ? n : 1;
+			Object[][] ret = new Object[count][2];
+			for (int i = 0; i < count; i++) {
+				ret[i][0] = (i == 0) ? lo : lo + (hi - lo) * i / count;
+				ret[i][1] = (i == count - 1) ? hi : lo + (hi - lo) * (i + 1) / count;
+			}
+			return ret;
+
+		} else {
+			throw new Exception("Partition column must be numeric or timestamp: " + min.getClass().getSimpleName());
+		}
+	}
+
+	private static Object sameDateType(Object like, long millis) {
+		if (like instanceof Timestamp) {
+			return new Timestamp(millis);
+		} else if (like instanceof Time) {
+			return new Time(millis);
+		} else {
+			return new java.sql.Date(millis);
+		}
+	}
+
+	/**
+	 * Query the partition column bounds and start one reader thread per range
+	 */
+	private void startWorkers() throws Exception {
+		String col = this.partitionColumn;
+		String boundsQuery = "SELECT MIN(" + col + "), MAX(" + col + ") FROM (" + this.query + ") semtk_bounds";
+		try (JdbcCursor c = this.conn.openCursor(boundsQuery)) {
+			Object[] row = c.nextObjects();
+			this.ranges = (row == null) ? new Object[0][] : this.typedRanges(c.getColumnSqlTypes()[0], c.getColumnTypes()[0], row[0], row[1]);
+		}
+
+		this.queue = new ArrayBlockingQueue<ArrayList<ArrayList<String>>>(QUEUE_BATCHES_PER_PARTITION * Math.max(1, this.ranges.length));
+		this.workerException = new AtomicReference<Exception>(null);
+		this.workerCursors = new ArrayList<JdbcCursor>();
+		this.pending = null;
+		this.pendingPos = 0;
+
+		// nothing in the column range: only nulls, if anything
+		if (this.ranges.length == 0) {
+			this.workers = new Thread[] { this.newWorker("SELECT * FROM (" + this.query + ") semtk_part WHERE " + col + " IS NULL") };
+		} else {
+			this.workers = new Thread[this.ranges.length];
+			for (int i = 0; i < this.ranges.length; i++) {
+				String where = (i == this.ranges.length - 1) ? col + " >= ? AND " + col + " <= ?" : col + " >= ? AND " + col + " < ?";
+				if (i == 0) {
+					where = "(" + where + ") OR " + col + " IS NULL";
+				}
+				this.workers[i] = this.newWorker("SELECT * FROM (" + this.query + ") semtk_part WHERE " + where, this.ranges[i]);
+			}
+		}
+		this.partitionsRemaining = this.workers.length;
+		for (Thread t : this.workers) {
+			t.start();
+		}
+	}
+
+	/**
+	 * Compute ranges from MIN/MAX of the partition column, by their java.sql.Types
+	 * @param sqlType - type of MIN/MAX
+	 * @param typeName - database's name for the type, for errors
+	 * @param min - as read by JdbcCursor.nextObjects()
+	 * @param max
+	 */
+	private Object[][] typedRanges(int sqlType, String typeName, Object min, Object max) throws Exception {
+		if (min == null || max == null) {
+			return new Object[0][];
+		}
+		switch (sqlType) {
+		case Types.DATE:
+		case Types.TIME:
+		case Types.TIME_WITH_TIMEZONE:
+		case Types.TIMESTAMP:
+		case Types.TIMESTAMP_WITH_TIMEZONE:
+			return computeRanges(min, max, this.numPartitions);
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+			return computeRanges(((Number) min).longValue(), ((Number) max).longValue(), this.numPartitions);
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			BigDecimal lo = new BigDecimal(min.toString());
+			BigDecimal hi = new BigDecimal(max.toString());
+			if (lo.stripTrailingZeros().scale() <= 0 && hi.stripTrailingZeros().scale() <= 0) {
+				return computeRanges(lo.longValueExact(), hi.longValueExact(), this.numPartitions);
+			}
+			return computeRanges(lo.doubleValue(), hi.doubleValue(), this.numPartitions);
+		case Types.FLOAT:
+		case Types.REAL:
+		case Types.DOUBLE:
+			return computeRanges(((Number) min).doubleValue(), ((Number) max).doubleValue(), this.numPartitions);
+		default:
+			throw new Exception("Partition column must be numeric, date, time or timestamp: " + this.partitionColumn + " is " + typeName);
+		}
+	}
+
+	private Thread newWorker(String partitionQuery, Object... params) {
+		Thread t = new Thread(() -> {
+			try (JdbcCursor c = this.conn.openCursor(partitionQuery, params)) {
+				synchronized (this.workerCursors) {
+					this.workerCursors.add(c);
+				}
+				ArrayList<ArrayList<String>> batch;
+				while ((batch = c.next(this.batchSize)).size() > 0) {
+					this.queue.put(batch);
+				}
+			} catch (InterruptedException e) {
+				return;    // closed
+			} catch (Exception e) {
+				if (!Thread.currentThread().isInterrupted()) {
+					LocalLogger.printStackTrace(e);
+					this.workerException.compareAndSet(null, e);
+				}
+			}
+			try {
+				this.queue.put(END_OF_PARTITION);
+			} catch (InterruptedException e) {
+				// closed
+			}
+		});
+		t.setName("JdbcDataset-partition");
+		t.setDaemon(true);
+		return t;
+	}
+
+	private ArrayList<ArrayList<String>> takeFromWorkers(int numRecords) throws Exception {
+		ArrayList<ArrayList<String>> ret = new ArrayList<ArrayList<String>>(numRecords);
+		while (ret.size() < numRecords) {
+			if (this.pending != null) {
+				int n = Math.min(numRecords - ret.size(), this.pending.size() - this.pendingPos);
+				ret.addAll(this.pending.subList(this.pendingPos, this.pendingPos + n));
+				this.pendingPos += n;
+				if (this.pendingPos == this.pending.size()) {
+					this.pending = null;
+				}
+				continue;
+			}
+			if (this.partitionsRemaining == 0) {
+				break;
+			}
+			ArrayList<ArrayList<String>> batch = this.queue.poll(1, TimeUnit.SECONDS);
+			if (this.workerException.get() != null) {
+				throw new Exception("Error reading partition", this.workerException.get());
+			}
+			if (batch == END_OF_PARTITION) {
+				this.partitionsRemaining -= 1;
+			} else if (batch != null) {
+				this.pending = batch;
+				this.pendingPos = 0;
+			}
+		}
+		return ret;
+	}
+}
@@ -41,6 +41,9 @@ public class ODBCDataset extends Dataset{
 	private Statement stmt;		// the database statement
 	private ResultSet rs;		// the result set
 	private ArrayList<String> columnNamesInOrder; // column names returned by query, in order
+	private int numCols;		// column count of rs
+	
+	private static final int FETCH_SIZE = 1000;	// rows per round trip
 
 
 	/**
@@ -109,8 +112,10 @@ public class ODBCDataset extends Dataset{
 			DriverManager.setLoginTimeout(30);
 			conn = DriverManager.getConnection(url, username, password);							
 			stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);  // enable beforeFirst()
+			stmt.setFetchSize(FETCH_SIZE);
 			// execute the query
 			rs = stmt.executeQuery(query);
+			numCols = rs.getMetaData().getColumnCount();
 		}catch(Exception e){
 			throw e;
 		}
@@ -132,14 +137,14 @@ public class ODBCDataset extends Dataset{
 			return null;
 		}
 
-		ArrayList<ArrayList<String>> recs = new ArrayList<ArrayList<String>>();
+		ArrayList<ArrayList<String>> recs = new ArrayList<ArrayList<String>>(numRecords);
 		ArrayList<String> tmp;
 
 		for(int i = 0; i < numRecords; i++){
 			if(rs.next()){
 				//LocalLogger.logToStdOut(rs.getString(1) + "..." + rs.getString(2)+ "..." + rs.getString(3)+ "..." + rs.getString(4));
-				tmp = new ArrayList<String>();
-				for(int j = 1; j <= rs.getMetaData().getColumnCount(); j++){ 
+				tmp = new ArrayList<String>(numCols);
+				for(int j = 1; j <= numCols; j++){ 
 					tmp.add(rs.getString(j));
 				}
 				recs.add(tmp);
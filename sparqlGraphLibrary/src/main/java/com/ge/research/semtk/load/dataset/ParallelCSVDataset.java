@@ -0,0 +1,656 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.load.dataset;
+
+import java.io.IOException;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.simple.JSONObject;
+
+import com.ge.research.semtk.utility.LocalLogger;
+
+/*
+ * Load and read a large CSV data file.
+ *
+ * Same CSV dialect as CSVDataset (EXCEL, " quote, \ escape, ignore empty lines and surrounding spaces)
+ * and the same rule for skipping blank records:  a single field that is empty after String.trim()
+ * but the file is memory-mapped and:
+ *    - one quote-aware scan at construction finds record-aligned chunk boundaries and counts rows,
+ *      so getNumRows() and reset() do not re-read the file
+ *    - chunks are parsed in parallel, a bounded number ahead of the reader
+ *    - each record is decoded straight into its returned row:  only the requested columns become Strings
+ *
+ * Charset must be ASCII-compatible (e.g. UTF-8, ISO-8859-1).  Default is UTF-8.
+ */
+public class ParallelCSVDataset extends Dataset {
+
+	private static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+	private static final int SCAN_WINDOW_BYTES = 64 * 1024 * 1024;
+
+	private static final byte QUOTE = '"';
+	private static final byte ESCAPE = '\\';
+	private static final byte DELIM = ',';
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+
+	private String csvPath;
+	private Charset charset = StandardCharsets.UTF_8;
+	private int chunkBytes = DEFAULT_CHUNK_BYTES;
+	private int numThreads;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private boolean deleteOnClose = false;
+
+	private String[] fileHeaders;      // every header in the file, in order
+	private String[] headers;          // ordered list of headers to return
+	private int[] colIndex;            // file column of each returned header
+	private boolean[] colNeeded;       // is file column returned
+
+	private long[] chunkStarts;        // chunk i is [chunkStarts[i], chunkStarts[i+1])
+	private int numRows;
+
+	private ExecutorService pool;
+	private ArrayDeque<Future<ArrayList<ArrayList<String>>>> pending = new ArrayDeque<Future<ArrayList<ArrayList<String>>>>();
+	private int nextChunk = 0;         // next chunk to submit for parsing
+	private ArrayList<ArrayList<String>> currRows = new ArrayList<ArrayList<String>>();
+	private int currPos = 0;
+
+	/**
+	 * Constructor returning all columns
+	 * @param path the CSV file path
+	 */
+	public ParallelCSVDataset(String path) throws Exception {
+		this(path, null);
+	}
+
+	/**
+	 * Constructor returning only the given columns
+	 * @param path the CSV file path
+	 * @param headers the headers needed for this dataset (case-insensitive), or null for all
+	 */
+	public ParallelCSVDataset(String path, String[] headers) throws Exception {
+		this(path, headers, StandardCharsets.UTF_8, DEFAULT_CHUNK_BYTES, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor with full control
+	 * @param path the CSV file path
+	 * @param headers the headers needed for this dataset (case-insensitive), or null for all
+	 * @param charset an ASCII-compatible charset
+	 * @param chunkBytes target size of each parallel chunk
+	 * @param numThreads number of parser threads
+	 */
+	public ParallelCSVDataset(String path, String[] headers, Charset charset, int chunkBytes, int numThreads) throws Exception {
+		this.charset = charset;
+		this.chunkBytes = Math.max(1024, chunkBytes);
+		this.numThreads = Math.max(1, numThreads);
+		initialize(path, headers);
+	}
+
+	/**
+	 * Constructor that takes a JSON object describing a CSV location
+	 */
+	protected void fromJSON(JSONObject config) throws Exception{
+		String path = config.get("File").toString();
+		String[] headers = (String[]) config.get("Headers");
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+		initialize(path, headers);
+	}
+
+	/**
+	 * Map the file, read the header, and scan for chunk boundaries
+	 * @param path
+	 * @param headers
+	 * @throws Exception
+	 */
+	private void initialize(String path, String[] headers) throws Exception {
+		this.csvPath = path;
+		this.file = new RandomAccessFile(path, "r");
+		this.channel = this.file.getChannel();
+		try {
+			this.readHeaders(path, headers);
+		} catch (Exception e) {
+			// closing the file closes the channel
+			this.file.close();
+			throw e;
+		}
+
+		this.pool = Executors.newFixedThreadPool(this.numThreads, r -> {
+			Thread t = new Thread(r, "ParallelCSVDataset");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Scan the open file and choose returned columns
+	 */
+	private void readHeaders(String path, String[] headers) throws Exception {
+		long size = this.channel.size();
+		long start = 0;
+
+		// skip a UTF-8 Byte Order Marker
+		if (size >= 3) {
+			MappedByteBuffer bom = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, 3);
+			if ((bom.get(0) & 0xFF) == 0xEF && (bom.get(1) & 0xFF) == 0xBB && (bom.get(2) & 0xFF) == 0xBF) {
+				LocalLogger.logToStdErr("first header is led by a Byte Order Marker. it has been removed to prevent issues in parsing.");
+				start = 3;
+			}
+		}
+
+		this.scan(start, size);
+
+		// header is the first record
+		if (this.chunkStarts.length < 2) {
+			throw new Exception("No CSV headers found in " + path);
+		}
+		RecordParser headerParser = new RecordParser(this.map(this.chunkStarts[0], this.chunkStarts[1]));
+		ArrayList<String> headerRecord = headerParser.nextNonEmptyRecord(null, null);
+		if (headerRecord == null) {
+			throw new Exception("No CSV headers found in " + path);
+		}
+		this.fileHeaders = headerRecord.toArray(new String[headerRecord.size()]);
+		for (String h : this.fileHeaders) {
+			if (h.isEmpty()) {
+				throw new Exception("Empty CSV column header.");
+			}
+		}
+		this.chunkStarts[0] = this.chunkStarts[0] + headerParser.getPosition();
+
+		// choose returned columns
+		this.headers = (headers == null) ? this.fileHeaders : headers;
+		this.colIndex = new int[this.headers.length];
+		this.colNeeded = new boolean[this.fileHeaders.length];
+		for (int i=0; i < this.headers.length; i++) {
+			this.colIndex[i] = -1;
+			for (int j=0; j < this.fileHeaders.length; j++) {
+				if (this.fileHeaders[j].equalsIgnoreCase(this.headers[i])) {
+					this.colIndex[i] = j;
+					this.colNeeded[j] = true;
+					break;
+				}
+			}
+			if (this.colIndex[i] == -1) {
+				throw new Exception("Header '" + this.headers[i] + "' not found in CSV file");
+			}
+		}
+	}
+
+	private MappedByteBuffer map(long start, long end) throws IOException {
+		return this.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+	}
+
+	// scanner states
+	private static final int FIELD_START = 0;
+	private static final int UNQUOTED = 1;
+	private static final int QUOTED = 2;
+	private static final int QUOTE_IN_QUOTED = 3;
+	private static final int ESCAPE_UNQUOTED = 4;
+	private static final int ESCAPE_QUOTED = 5;
+
+	/**
+	 * One sequential, quote-aware pass over the bytes.
+	 * Sets this.chunkStarts (first chunk begins with the header) and this.numRows (excluding header).
+	 * Counts a record unless it is a single blank field, the same as RecordParser.readRecord()
+	 */
+	private void scan(long start, long size) throws IOException {
+		ArrayList<Long> starts = new ArrayList<Long>();
+		starts.add(start);
+
+		int state = FIELD_START;
+		boolean hasContent = false;
+		long records = 0;
+		long chunkStart = start;
+
+		for (long winStart = start; winStart < size; winStart += SCAN_WINDOW_BYTES) {
+			long winEnd = Math.min(size, winStart + SCAN_WINDOW_BYTES);
+			MappedByteBuffer buf = this.map(winStart, winEnd);
+			int len = (int) (winEnd - winStart);
+
+			for (int i=0; i < len; i++) {
+				byte b = buf.get(i);
+				switch (state) {
+				case QUOTED:
+					if (b == QUOTE) state = QUOTE_IN_QUOTED;
+					else if (b == ESCAPE) state = ESCAPE_QUOTED;
+					else if (!isBlank(b)) hasContent = true;
+					continue;
+				case QUOTE_IN_QUOTED:
+					if (b == QUOTE) { hasContent = true; state = QUOTED; continue; }    // escaped ""
+					state = UNQUOTED;                                   // closed: handle b below
+					break;
+				case ESCAPE_QUOTED:
+					if (!escapesToBlank(b)) hasContent = true;
+					state = QUOTED;
+					continue;
+				case ESCAPE_UNQUOTED:
+					if (!escapesToBlank(b)) hasContent = true;
+					state = UNQUOTED;
+					continue;
+				default:
+					break;
+				}
+
+				// FIELD_START or UNQUOTED
+				if (b == LF || b == CR) {
+					if (hasContent) {
+						records += 1;
+					}
+					hasContent = false;
+					state = FIELD_START;
+
+					// chunk boundary on a record boundary
+					long next = winStart + i + 1;
+					if (next - chunkStart >= this.chunkBytes) {
+						starts.add(next);
+						chunkStart = next;
+					}
+				} else if (b == DELIM) {
+					hasContent = true;
+					state = FIELD_START;
+				} else if (b == QUOTE && state == FIELD_START) {
+					// content only if something is inside:  "" alone is an empty record
+					state = QUOTED;
+				} else if (b == ESCAPE) {
+					state = ESCAPE_UNQUOTED;
+				} else if (!isSpace(b)) {
+					if (!isBlank(b)) hasContent = true;
+					state = UNQUOTED;
+				}
+			}
+		}
+		if (hasContent) {
+			records += 1;
+		}
+		if (starts.get(starts.size() - 1) < size || starts.size() == 1) {
+			starts.add(size);
+		}
+
+		this.chunkStarts = new long[starts.size()];
+		for (int i=0; i < starts.size(); i++) {
+			this.chunkStarts[i] = starts.get(i);
+		}
+		this.numRows = (int) Math.max(0, Math.min(Integer.MAX_VALUE, records - 1));
+	}
+
+	/**
+	 * Parse one chunk into returned rows
+	 */
+	private ArrayList<ArrayList<String>> parseChunk(int chunk) throws Exception {
+		long start = this.chunkStarts[chunk];
+		long end = this.chunkStarts[chunk + 1];
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		if (end <= start) {
+			return rows;
+		}
+		RecordParser parser = new RecordParser(this.map(start, end));
+		ArrayList<String> row;
+		while ((row = parser.nextNonEmptyRecord(this.colNeeded, this.colIndex)) != null) {
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Keep up to 2 * numThreads chunks parsing ahead of the reader
+	 */
+	private void fillPending() {
+		while (this.nextChunk < this.chunkStarts.length - 1 && this.pending.size() < 2 * this.numThreads) {
+			final int chunk = this.nextChunk++;
+			this.pending.add(this.pool.submit(() -> this.parseChunk(chunk)));
+		}
+	}
+
+	@Override
+	/**
+	 * Read the next set of rows from the CSV file
+	 */
+	public ArrayList<ArrayList<String>> getNextRecords(int numRecords) throws Exception {
+		if(headers == null){
+			throw new Exception("Dataset headers are not available");
+		}
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>(numRecords);
+
+		while (rows.size() < numRecords) {
+			if (this.currPos >= this.currRows.size()) {
+				this.fillPending();
+				if (this.pending.isEmpty()) {
+					break;   // got to the end of the file
+				}
+				try {
+					this.currRows = this.pending.poll().get();
+				} catch (ExecutionException e) {
+					throw new Exception("Error parsing " + this.csvPath + ": " + e.getCause().getMessage(), e.getCause());
+				}
+				this.currPos = 0;
+				continue;
+			}
+			int n = Math.min(numRecords - rows.size(), this.currRows.size() - this.currPos);
+			rows.addAll(this.currRows.subList(this.currPos, this.currPos + n));
+			this.currPos += n;
+		}
+
+		// let go of consumed rows
+		if (this.currPos >= this.currRows.size()) {
+			this.currRows = new ArrayList<ArrayList<String>>();
+			this.currPos = 0;
+		}
+		return rows;
+	}
+
+	/**
+	 * Row count from the construction scan.  Does not re-read the file.
+	 */
+	@Override
+	public int getNumRows() throws Exception {
+		return this.numRows;
+	}
+
+	/**
+	 * Get the index of a column
+	 * @return the index, or -1 if the column does not exist
+	 */
+	@Override
+	public int getColumnIndex(String columnName) throws Exception {
+		String colNameLower = columnName.toLowerCase().trim();
+		return getColumnNamesinOrder().indexOf(colNameLower);
+	}
+
+	/**
+	 * Get the column names in order.
+	 * This class' column names are trimmed lower case
+	 * @return an arraylist of column names
+	 */
+	@Override
+	public ArrayList<String> getColumnNamesinOrder() throws Exception {
+		ArrayList<String> retval = new ArrayList<String>();
+		for(String curr : this.headers){
+			retval.add(curr.toLowerCase().trim());
+		}
+		return retval;
+	}
+
+	/**
+	 * Reset the dataset to the first record.  Chunk boundaries are kept.
+	 */
+	@Override
+	public void reset() throws Exception {
+		for (Future<ArrayList<ArrayList<String>>> f : this.pending) {
+			f.cancel(false);
+		}
+		this.pending.clear();
+		this.nextChunk = 0;
+		this.currRows = new ArrayList<ArrayList<String>>();
+		this.currPos = 0;
+	}
+
+	/**
+	 * Delete the CSV file when the dataset is closed, e.g. for a temporary copy of an upload
+	 */
+	public void setDeleteOnClose(boolean deleteOnClose) {
+		this.deleteOnClose = deleteOnClose;
+	}
+
+	/**
+	 * Close the dataset
+	 */
+	public void close() throws Exception{
+		this.reset();
+		if (this.pool != null) {
+			this.pool.shutdownNow();
+		}
+		if (this.file != null) {
+			this.file.close();
+		}
+		if (this.deleteOnClose) {
+			new File(this.csvPath).delete();
+		}
+	}
+
+	/**
+	 * Parses records from a buffer holding whole records.
+	 * Not thread-safe: one per chunk.
+	 */
+	private class RecordParser {
+		private final MappedByteBuffer buf;
+		private final int limit;
+		private int pos = 0;
+		private byte[] val = new byte[256];
+		private int valLen = 0;
+		private ArrayList<String> fields = new ArrayList<String>();
+
+		RecordParser(MappedByteBuffer buf) {
+			this.buf = buf;
+			this.limit = buf.limit();
+		}
+
+		int getPosition() {
+			return this.pos;
+		}
+
+		/**
+		 * Get next record, skipping empty ones
+		 * @param needed - which file columns to decode, or null for all
+		 * @param project - file column of each returned column, or null to return all in file order
+		 * @return row or null if buffer is exhausted
+		 */
+		ArrayList<String> nextNonEmptyRecord(boolean[] needed, int[] project) throws Exception {
+			while (this.pos < this.limit) {
+				this.fields.clear();
+				boolean empty = this.readRecord(needed);
+				if (empty) {
+					continue;
+				}
+				if (project == null) {
+					return new ArrayList<String>(this.fields);
+				}
+				// same as CSVDataset: columns missing from a short record are left out
+				ArrayList<String> row = new ArrayList<String>(project.length);
+				for (int c : project) {
+					if (c < this.fields.size()) {
+						row.add(this.fields.get(c));
+					}
+				}
+				return row;
+			}
+			return null;
+		}
+
+		/**
+		 * Read one record into this.fields (null for un-needed columns)
+		 * @return true if the record is empty:  a single field that is blank, as CSVDataset checks with trim()
+		 */
+		private boolean readRecord(boolean[] needed) throws Exception {
+			int col = 0;
+			while (true) {
+				int delim = this.readField();
+				boolean keep = (needed == null) || (col < needed.length && needed[col]);
+				this.fields.add(keep ? new String(this.val, 0, this.valLen, charset) : null);
+				col += 1;
+
+				if (delim != DELIM) {
+					return col == 1 && this.isBlankVal();
+				}
+			}
+		}
+
+		private boolean isBlankVal() {
+			for (int i=0; i < this.valLen; i++) {
+				if (!isBlank(this.val[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Read a field into this.val
+		 * @return the byte that ended it: DELIM, LF, or -1 for end of buffer
+		 */
+		private int readField() throws Exception {
+			this.valLen = 0;
+
+			// leading spaces
+			while (this.pos < this.limit && isSpace(this.buf.get(this.pos))) {
+				this.pos++;
+			}
+
+			if (this.pos < this.limit && this.buf.get(this.pos) == QUOTE) {
+				// quoted
+				this.pos++;
+				while (true) {
+					if (this.pos >= this.limit) {
+						throw new IOException("EOF reached before encapsulated token finished");
+					}
+					byte b = this.buf.get(this.pos++);
+					if (b == QUOTE) {
+						if (this.pos < this.limit && this.buf.get(this.pos) == QUOTE) {
+							this.append(QUOTE);
+							this.pos++;
+						} else {
+							break;
+						}
+					} else if (b == ESCAPE) {
+						this.readEscape();
+					} else {
+						this.append(b);
+					}
+				}
+				// only spaces allowed before the delimiter
+				while (this.pos < this.limit) {
+					byte b = this.buf.get(this.pos);
+					if (b == DELIM || b == LF || b == CR) {
+						break;
+					} else if (!isSpace(b)) {
+						throw new IOException("invalid char between encapsulated token and delimiter");
+					}
+					this.pos++;
+				}
+			} else {
+				// unquoted
+				int lastNonSpace = 0;
+				while (this.pos < this.limit) {
+					byte b = this.buf.get(this.pos);
+					if (b == DELIM || b == LF || b == CR) {
+						break;
+					}
+					this.pos++;
+					if (b == ESCAPE) {
+						this.readEscape();
+						lastNonSpace = this.valLen;
+					} else {
+						this.append(b);
+						if (!isSpace(b)) {
+							lastNonSpace = this.valLen;
+						}
+					}
+				}
+				this.valLen = lastNonSpace;    // trailing spaces
+			}
+
+			return this.readDelimiter();
+		}
+
+		/**
+		 * Consume the delimiter or end-of-line after a field
+		 */
+		private int readDelimiter() {
+			if (this.pos >= this.limit) {
+				return -1;
+			}
+			byte b = this.buf.get(this.pos++);
+			if (b == CR) {
+				if (this.pos < this.limit && this.buf.get(this.pos) == LF) {
+					this.pos++;
+				}
+				return LF;
+			}
+			return b;
+		}
+
+		/**
+		 * Same escapes as commons-csv: \r \n \t \b \f or an escaped control / meta character.
+		 * Anything else keeps the backslash.
+		 */
+		private void readEscape() throws IOException {
+			if (this.pos >= this.limit) {
+				throw new IOException("EOF whilst processing escape sequence");
+			}
+			byte b = this.buf.get(this.pos++);
+			switch (b) {
+			case 'r':  this.append(CR); break;
+			case 'n':  this.append(LF); break;
+			case 't':  this.append((byte) '\t'); break;
+			case 'b':  this.append((byte) '\b'); break;
+			case 'f':  this.append((byte) '\f'); break;
+			case CR: case LF: case '\t': case '\b': case '\f':
+			case QUOTE: case ESCAPE: case DELIM:
+				this.append(b);
+				break;
+			default:
+				this.append(ESCAPE);
+				this.append(b);
+			}
+		}
+
+		private void append(byte b) {
+			if (this.valLen == this.val.length) {
+				this.val = Arrays.copyOf(this.val, this.val.length * 2);
+			}
+			this.val[this.valLen++] = b;
+		}
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	/**
+	 * Removed by String.trim().  Bytes of multi-byte characters are all above ' '.
+	 */
+	private static boolean isBlank(byte b) {
+		return (b & 0xFF) <= ' ';
+	}
+
+	/**
+	 * Does RecordParser.readEscape() turn a backslash followed by b into a blank character
+	 */
+	private static boolean escapesToBlank(byte b) {
+		switch (b) {
+		case 'r': case 'n': case 't': case 'b': case 'f':
+		case CR: case LF: case '\t': case '\b': case '\f':
+			return true;
+		default:
+			return false;
+		}
+	}
+}
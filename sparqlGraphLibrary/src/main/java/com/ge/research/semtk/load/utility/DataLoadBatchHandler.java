@@ -237,6 +237,14 @@ public class DataLoadBatchHandler {
 		this.importSpec.generateNotFoundURIs();
 	}
 	
+	public void setUriCacheMaxInMemory(int maxInMemory) {
+		this.importSpec.setUriCacheMaxInMemory(maxInMemory);
+	}
+	
+	public void closeUriCache() {
+		this.importSpec.closeUriCache();
+	}
+	
 	/**
 	 * Does LOOKUP_MODE_CREATE appear anywhere in the ImportSpec
 	 * @return
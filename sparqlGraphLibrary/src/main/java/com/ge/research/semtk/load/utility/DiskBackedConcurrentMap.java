@@ -0,0 +1,643 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.load.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ge.research.semtk.utility.LocalLogger;
+
+/**
+ * ConcurrentMap that keeps a bounded LRU of entries on the heap
+ * and everything else in temporary files:
+ *    - an append-only data file of key/value records
+ *    - a memory-mapped open-addressing hash index into the data file
+ *
+ * Entries are written through to disk, so the heap holds at most maxInMemory entries
+ * regardless of how many keys are put.  Iteration reads one entry at a time from disk.
+ *
+ * Removed and replaced records are garbage in the data file.  Once garbage outweighs live records
+ * the data file is compacted, so it stays within about twice the size of the live entries.
+ *
+ * Keys are spread over SEGMENTS independently locked segments (lock striping).
+ * Files are created lazily in a private temp directory, and deleted by close().
+ * After close() the map is empty and may be used again.
+ *
+ * Null keys and values are not supported.
+ */
+public class DiskBackedConcurrentMap<K,V> extends AbstractMap<K,V> implements ConcurrentMap<K,V> {
+
+	/** Converts keys and values to and from bytes */
+	public interface Codec<T> {
+		byte[] encode(T t);
+		T decode(byte[] b);
+	}
+
+	public static final Codec<String> STRING_CODEC = new Codec<String>() {
+		public byte[] encode(String s)  { return s.getBytes(StandardCharsets.UTF_8); }
+		public String decode(byte[] b)  { return new String(b, StandardCharsets.UTF_8); }
+	};
+
+	public static final Codec<Boolean> BOOLEAN_CODEC = new Codec<Boolean>() {
+		public byte[] encode(Boolean v) { return new byte[] { (byte) (v ? 1 : 0) }; }
+		public Boolean decode(byte[] b) { return b[0] != 0; }
+	};
+
+	private static final int SEGMENTS = 64;
+	private static final int INITIAL_SLOTS = 1024;    // per segment.  Must be power of 2.
+	private static final double MAX_LOAD = 0.6;
+
+	// index slot:  int hash, int state, long offset of record in data file
+	private static final int SLOT_BYTES = 16;
+	private static final int EMPTY = 0;
+	private static final int LIVE = 1;
+	private static final int DELETED = 2;
+
+	private static final long MIN_COMPACT_BYTES = 64 * 1024;    // per segment
+
+	private final String name;
+	private final Codec<K> keyCodec;
+	private final Codec<V> valCodec;
+	private final Segment [] segments;
+	private Path dir = null;
+
+	/**
+	 * @param name - used in temp file names
+	 * @param keyCodec
+	 * @param valCodec
+	 * @param maxInMemory - max number of entries cached on the heap (across all segments)
+	 */
+	@SuppressWarnings("unchecked")
+	public DiskBackedConcurrentMap(String name, Codec<K> keyCodec, Codec<V> valCodec, int maxInMemory) {
+		this.name = name;
+		this.keyCodec = keyCodec;
+		this.valCodec = valCodec;
+		this.segments = (Segment []) new DiskBackedConcurrentMap.Segment[SEGMENTS];
+		int perSegment = Math.max(1, maxInMemory / SEGMENTS);
+		for (int i=0; i < SEGMENTS; i++) {
+			this.segments[i] = new Segment(i, perSegment);
+		}
+	}
+
+	/**
+	 * Spread the hash so both segment selection and slot probing use good bits
+	 */
+	private static int spread(byte [] b) {
+		int h = Arrays.hashCode(b);
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private Segment segmentFor(int hash) {
+		return this.segments[(hash >>> 26) & (SEGMENTS - 1)];
+	}
+
+	private synchronized Path getDir() throws IOException {
+		if (this.dir == null) {
+			this.dir = Files.createTempDirectory("semtk-" + this.name + "-");
+		}
+		return this.dir;
+	}
+
+	// ---------- Map ----------
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		if (key == null) return null;
+		byte [] k = this.keyCodec.encode((K) key);
+		int hash = spread(k);
+		return this.segmentFor(hash).get((K) key, k, hash);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.get(key) != null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		byte [] k = this.keyCodec.encode(key);
+		int hash = spread(k);
+		return this.segmentFor(hash).put(key, k, hash, value, null, false);
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		byte [] k = this.keyCodec.encode(key);
+		int hash = spread(k);
+		return this.segmentFor(hash).put(key, k, hash, value, null, true);
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		byte [] k = this.keyCodec.encode(key);
+		int hash = spread(k);
+		return this.segmentFor(hash).replace(key, k, hash, oldValue, newValue);
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		byte [] k = this.keyCodec.encode(key);
+		int hash = spread(k);
+		Segment seg = this.segmentFor(hash);
+		synchronized (seg) {
+			V prev = seg.get(key, k, hash);
+			if (prev != null) {
+				seg.put(key, k, hash, value, null, false);
+			}
+			return prev;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		if (key == null) return null;
+		byte [] k = this.keyCodec.encode((K) key);
+		int hash = spread(k);
+		return this.segmentFor(hash).remove((K) key, k, hash, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean remove(Object key, Object value) {
+		if (key == null || value == null) return false;
+		byte [] k = this.keyCodec.encode((K) key);
+		int hash = spread(k);
+		return this.segmentFor(hash).remove((K) key, k, hash, (V) value) != null;
+	}
+
+	@Override
+	public int size() {
+		long total = 0;
+		for (Segment seg : this.segments) {
+			synchronized (seg) {
+				total += seg.live;
+			}
+		}
+		return (int) Math.min(Integer.MAX_VALUE, total);
+	}
+
+	/**
+	 * @return bytes in data files, including garbage not yet compacted
+	 */
+	public long getDataFileBytes() {
+		long total = 0;
+		for (Segment seg : this.segments) {
+			synchronized (seg) {
+				total += seg.dataEnd;
+			}
+		}
+		return total;
+	}
+
+	@Override
+	public void clear() {
+		this.close();
+	}
+
+	/**
+	 * Delete all temp files.  The map is left empty and usable.
+	 */
+	public void close() {
+		for (Segment seg : this.segments) {
+			seg.close();
+		}
+		synchronized (this) {
+			if (this.dir != null) {
+				this.dir.toFile().delete();
+				this.dir = null;
+			}
+		}
+	}
+
+	/**
+	 * Weakly consistent: entries are read from disk one at a time, so changes during iteration may or may not be seen.
+	 * Removing entries, including through the iterator, never moves others.
+	 * If a concurrent put grows a segment's index, entries of that segment may be missed or returned twice.
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K,V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+			@Override
+			public int size() {
+				return DiskBackedConcurrentMap.this.size();
+			}
+		};
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<K,V>> {
+		private int segIndex = 0;
+		private final int [] slot = new int [] { 0 };
+		private Map.Entry<K,V> pending = null;
+		private Map.Entry<K,V> last = null;
+
+		@Override
+		public boolean hasNext() {
+			while (this.pending == null) {
+				if (this.segIndex >= SEGMENTS) return false;
+				this.pending = segments[this.segIndex].nextEntry(this.slot);
+				if (this.pending == null) {
+					this.segIndex += 1;
+					this.slot[0] = 0;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			this.last = this.pending;
+			this.pending = null;
+			return this.last;
+		}
+
+		@Override
+		public void remove() {
+			if (this.last == null) throw new IllegalStateException();
+			DiskBackedConcurrentMap.this.remove(this.last.getKey(), this.last.getValue());
+			this.last = null;
+		}
+	}
+
+	// ---------- Segment ----------
+
+	private class Segment {
+		private final int id;
+		private final LinkedHashMap<K,V> front;
+
+		private File dataPath = null;
+		private RandomAccessFile dataFile = null;
+		private FileChannel data = null;
+		private long dataEnd = 0;
+		private long liveBytes = 0;
+
+		private File indexFile = null;
+		private MappedByteBuffer index = null;
+		private int slots = 0;
+		private int used = 0;      // LIVE + DELETED
+		private int live = 0;
+		private int generation = 0;
+
+		Segment(int id, final int maxInMemory) {
+			this.id = id;
+			this.front = new LinkedHashMap<K,V>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
+					return this.size() > maxInMemory;
+				}
+			};
+		}
+
+		synchronized V get(K key, byte [] k, int hash) {
+			V v = this.front.get(key);
+			if (v != null || this.index == null) return v;
+
+			try {
+				int slot = this.find(k, hash);
+				if (slot < 0) return null;
+				v = valCodec.decode(this.readRecord(this.index.getLong(slot * SLOT_BYTES + 8))[1]);
+				this.front.put(key, v);
+				return v;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Put value
+		 * @param expected - if non-null, only put if current value equals this
+		 * @param ifAbsent - only put if there is no current value
+		 * @return previous value or null
+		 */
+		synchronized V put(K key, byte [] k, int hash, V value, V expected, boolean ifAbsent) {
+			try {
+				this.open();
+				int slot = this.find(k, hash);
+				V prev = null;
+				if (slot >= 0) {
+					long oldOffset = this.index.getLong(slot * SLOT_BYTES + 8);
+					prev = this.front.get(key);
+					if (prev == null) {
+						prev = valCodec.decode(this.readRecord(oldOffset)[1]);
+					}
+					if (ifAbsent || (expected != null && !expected.equals(prev))) {
+						this.front.put(key, prev);
+						return prev;
+					}
+					this.liveBytes -= this.recordSize(oldOffset);
+				} else if (expected != null) {
+					return null;
+				} else {
+					slot = -(slot + 1);
+					if (this.index.getInt(slot * SLOT_BYTES + 4) == EMPTY) {
+						this.used += 1;
+					}
+					this.live += 1;
+				}
+
+				long offset = this.append(k, valCodec.encode(value));
+				this.liveBytes += this.dataEnd - offset;
+				this.index.putInt(slot * SLOT_BYTES, hash);
+				this.index.putInt(slot * SLOT_BYTES + 4, LIVE);
+				this.index.putLong(slot * SLOT_BYTES + 8, offset);
+				this.front.put(key, value);
+
+				if (this.used > this.slots * MAX_LOAD) {
+					this.grow();
+				}
+				if (this.dataEnd > MIN_COMPACT_BYTES && this.dataEnd > 2 * this.liveBytes) {
+					this.compact();
+				}
+				return prev;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		synchronized boolean replace(K key, byte [] k, int hash, V oldValue, V newValue) {
+			V cur = this.get(key, k, hash);
+			if (cur == null || !cur.equals(oldValue)) {
+				return false;
+			}
+			this.put(key, k, hash, newValue, oldValue, false);
+			return true;
+		}
+
+		/**
+		 * Remove key
+		 * @param expected - if non-null, only remove if current value equals this
+		 * @return removed value or null
+		 */
+		synchronized V remove(K key, byte [] k, int hash, V expected) {
+			V cur = this.get(key, k, hash);
+			if (cur == null || (expected != null && !expected.equals(cur))) {
+				return null;
+			}
+			try {
+				int slot = this.find(k, hash);
+				this.liveBytes -= this.recordSize(this.index.getLong(slot * SLOT_BYTES + 8));
+				this.index.putInt(slot * SLOT_BYTES + 4, DELETED);
+				this.live -= 1;
+				this.front.remove(key);
+				return cur;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Read the first live entry at or after slot[0]
+		 * @param slot - iteration position, advanced past the returned entry
+		 * @return entry or null if there are no more
+		 */
+		synchronized Map.Entry<K,V> nextEntry(int [] slot) {
+			if (this.index == null) return null;
+			try {
+				for (int s=slot[0]; s < this.slots; s++) {
+					if (this.index.getInt(s * SLOT_BYTES + 4) == LIVE) {
+						byte [][] rec = this.readRecord(this.index.getLong(s * SLOT_BYTES + 8));
+						slot[0] = s + 1;
+						return new AbstractMap.SimpleImmutableEntry<K,V>(keyCodec.decode(rec[0]), valCodec.decode(rec[1]));
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			slot[0] = this.slots;
+			return null;
+		}
+
+		/**
+		 * Find slot of key
+		 * @return slot if found, else -(insertionSlot + 1)
+		 */
+		private int find(byte [] k, int hash) throws IOException {
+			int mask = this.slots - 1;
+			int firstDeleted = -1;
+			for (int s = hash & mask; ; s = (s + 1) & mask) {
+				int state = this.index.getInt(s * SLOT_BYTES + 4);
+				if (state == EMPTY) {
+					return -((firstDeleted >= 0 ? firstDeleted : s) + 1);
+				} else if (state == DELETED) {
+					if (firstDeleted < 0) firstDeleted = s;
+				} else if (this.index.getInt(s * SLOT_BYTES) == hash) {
+					if (Arrays.equals(k, this.readKey(this.index.getLong(s * SLOT_BYTES + 8)))) {
+						return s;
+					}
+				}
+			}
+		}
+
+		private byte [] readKey(long offset) throws IOException {
+			ByteBuffer len = ByteBuffer.allocate(4);
+			this.readFully(len, offset);
+			ByteBuffer key = ByteBuffer.allocate(len.getInt(0));
+			this.readFully(key, offset + 4);
+			return key.array();
+		}
+
+		private byte [][] readRecord(long offset) throws IOException {
+			byte [] key = this.readKey(offset);
+			long valOffset = offset + 4 + key.length;
+			ByteBuffer len = ByteBuffer.allocate(4);
+			this.readFully(len, valOffset);
+			ByteBuffer val = ByteBuffer.allocate(len.getInt(0));
+			this.readFully(val, valOffset + 4);
+			return new byte [][] { key, val.array() };
+		}
+
+		private long recordSize(long offset) throws IOException {
+			ByteBuffer len = ByteBuffer.allocate(4);
+			this.readFully(len, offset);
+			int keyLen = len.getInt(0);
+			len.clear();
+			this.readFully(len, offset + 4 + keyLen);
+			return 8 + keyLen + len.getInt(0);
+		}
+
+		private void readFully(ByteBuffer buf, long pos) throws IOException {
+			while (buf.hasRemaining()) {
+				int n = this.data.read(buf, pos + buf.position());
+				if (n < 0) throw new IOException("Unexpected end of " + name + " data file");
+			}
+		}
+
+		private long append(byte [] k, byte [] v) throws IOException {
+			ByteBuffer buf = ByteBuffer.allocate(8 + k.length + v.length);
+			buf.putInt(k.length).put(k).putInt(v.length).put(v);
+			buf.flip();
+			long offset = this.dataEnd;
+			while (buf.hasRemaining()) {
+				this.data.write(buf, offset + buf.position());
+			}
+			this.dataEnd += 8 + k.length + v.length;
+			return offset;
+		}
+
+		private void open() throws IOException {
+			if (this.data == null) {
+				this.dataPath = this.newDataPath();
+				this.dataFile = new RandomAccessFile(this.dataPath, "rw");
+				this.data = this.dataFile.getChannel();
+				this.dataEnd = 0;
+				this.liveBytes = 0;
+				this.index = this.mapIndex(INITIAL_SLOTS);
+				this.slots = INITIAL_SLOTS;
+				this.used = 0;
+				this.live = 0;
+			}
+		}
+
+		private File newDataPath() throws IOException {
+			return new File(getDir().toFile(), "seg" + this.id + "-" + (this.generation++) + ".dat");
+		}
+
+		/**
+		 * Copy live records to a new data file, in slot order.
+		 * Only offsets in the index change, so slots and iteration positions stay put.
+		 */
+		private void compact() throws IOException {
+			File newPath = this.newDataPath();
+			RandomAccessFile newFile = new RandomAccessFile(newPath, "rw");
+			FileChannel newData = newFile.getChannel();
+			long newEnd = 0;
+			try {
+				for (int s=0; s < this.slots; s++) {
+					if (this.index.getInt(s * SLOT_BYTES + 4) == LIVE) {
+						long offset = this.index.getLong(s * SLOT_BYTES + 8);
+						long size = this.recordSize(offset);
+						for (long done = 0; done < size; ) {
+							done += this.data.transferTo(offset + done, size - done, newData.position(newEnd + done));
+						}
+						this.index.putLong(s * SLOT_BYTES + 8, newEnd);
+						newEnd += size;
+					}
+				}
+			} catch (IOException e) {
+				newFile.close();
+				newPath.delete();
+				throw e;
+			}
+			this.dataFile.close();
+			this.dataPath.delete();
+			this.dataPath = newPath;
+			this.dataFile = newFile;
+			this.data = newData;
+			this.dataEnd = newEnd;
+			this.liveBytes = newEnd;
+		}
+
+		private MappedByteBuffer mapIndex(int numSlots) throws IOException {
+			File oldFile = this.indexFile;
+			this.indexFile = new File(getDir().toFile(), "seg" + this.id + "-" + (this.generation++) + ".idx");
+			MappedByteBuffer ret;
+			try (RandomAccessFile raf = new RandomAccessFile(this.indexFile, "rw")) {
+				// new file is zero-filled:  all slots EMPTY
+				ret = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) numSlots * SLOT_BYTES);
+			}
+			if (oldFile != null) {
+				oldFile.delete();
+			}
+			return ret;
+		}
+
+		/**
+		 * Double the index, dropping DELETED slots.  Only hashes are needed to rehash.
+		 */
+		private void grow() throws IOException {
+			MappedByteBuffer oldIndex = this.index;
+			int oldSlots = this.slots;
+			int newSlots = oldSlots * 2;
+			if ((long) newSlots * SLOT_BYTES > Integer.MAX_VALUE) {
+				throw new IOException(name + " segment index is full");
+			}
+			MappedByteBuffer newIndex = this.mapIndex(newSlots);
+			int mask = newSlots - 1;
+			for (int s=0; s < oldSlots; s++) {
+				if (oldIndex.getInt(s * SLOT_BYTES + 4) == LIVE) {
+					int hash = oldIndex.getInt(s * SLOT_BYTES);
+					int t = hash & mask;
+					while (newIndex.getInt(t * SLOT_BYTES + 4) != EMPTY) {
+						t = (t + 1) & mask;
+					}
+					newIndex.putInt(t * SLOT_BYTES, hash);
+					newIndex.putInt(t * SLOT_BYTES + 4, LIVE);
+					newIndex.putLong(t * SLOT_BYTES + 8, oldIndex.getLong(s * SLOT_BYTES + 8));
+				}
+			}
+			this.index = newIndex;
+			this.slots = newSlots;
+			this.used = this.live;
+		}
+
+		synchronized void close() {
+			this.front.clear();
+			try {
+				if (this.dataFile != null) {
+					this.dataFile.close();
+				}
+			} catch (IOException e) {
+				LocalLogger.printStackTrace(e);
+			}
+			// mapped index is released by garbage collection
+			this.index = null;
+			if (this.indexFile != null) {
+				this.indexFile.delete();
+				this.indexFile = null;
+			}
+			if (this.dataPath != null) {
+				this.dataPath.delete();
+			}
+			this.dataPath = null;
+			this.dataFile = null;
+			this.data = null;
+			this.dataEnd = 0;
+			this.liveBytes = 0;
+			this.slots = 0;
+			this.used = 0;
+			this.live = 0;
+		}
+	}
+}
@@ -66,10 +66,10 @@ public class ImportSpecHandler {
 	
 	ImportSpec importspec = null;
 	
-	JSONObject nodegroupJson = null;    
+	NodeGroup importNgTemplate = null;    // reset nodegroup, copied for each use
 	NodeGroup ng = null;
 	SparqlConnection lookupConn = null;
-	HashMap<String, JSONObject> lookupNodegroupsJson = new HashMap<String, JSONObject>();       // cache of pruned nodegroups ready for lookup
+	HashMap<String, NodeGroup>  lookupNodegroups = new HashMap<String, NodeGroup>();            // cache of pruned nodegroups ready for lookup.  Copied for each use.
 	HashMap<String, String>     lookupNodegroupMD5 = new HashMap<String, String>();             // MD5 hash for standardized lookup nodegroup.
 	HashMap<String, String>     lookupMode = new HashMap<String, String>();
 	HashMap<String, Long>    	lookupResultCount = new HashMap<String, Long>();                // number of URI's in the triple-store to choose from.  zero or non-zero.
@@ -95,11 +95,11 @@ public class ImportSpecHandler {
 	public ImportSpecHandler(JSONObject importSpecJson, JSONObject ngJson, SparqlConnection lookupConn, OntologyInfo oInfo) throws Exception {
 		this.importspec = new ImportSpec(importSpecJson); 
 		
-		// reset the nodegroup and store as json (for efficient duplication)
+		// reset the nodegroup and keep a template copy (for efficient duplication)
 		this.ng = NodeGroup.getInstanceFromJson(ngJson);
 		this.ng.validateAgainstModel(oInfo);
 		this.ng.reset();
-		this.nodegroupJson = ng.toJson();
+		this.importNgTemplate = NodeGroup.getInstanceFromJson(ng.toJson());
 		
 		this.oInfo = oInfo;
 		
@@ -123,6 +123,23 @@ public class ImportSpecHandler {
 		return this.importspec;
 	}
 	
+	/**
+	 * Run URI lookups in a fixed memory budget, spilling the URI cache to temp files.
+	 * Must be called before any records are processed.
+	 * @param maxInMemory - max cache entries on the heap, or 0 for an unbounded in-memory cache
+	 */
+	public void setUriCacheMaxInMemory(int maxInMemory) {
+		this.uriCache.close();
+		this.uriCache = new UriCache(this.ng, maxInMemory);
+	}
+	
+	/**
+	 * Empty the URI cache, releasing any temp files
+	 */
+	public void closeUriCache() {
+		this.uriCache.close();
+	}
+	
 	/**
 	 * Override baseURI in a JSON object.
 	 * @param importSpecJson
@@ -274,7 +291,7 @@ public class ImportSpecHandler {
 	 * @throws Exception
 	 */
 	private void nodesFromJson() throws Exception {
-		NodeGroup tmpImportNg = NodeGroup.getInstanceFromJson(this.nodegroupJson);
+		NodeGroup tmpImportNg = NodeGroup.deepCopy(this.importNgTemplate);
 		tmpImportNg.clearOrderBy();
 		ArrayList<ImportMapping> mappingsList = new ArrayList<ImportMapping>();
 		// clear cols used
@@ -385,12 +402,12 @@ public class ImportSpecHandler {
 		ArrayList<String> sample = new ArrayList<String>();
 		sample.add("sample");
 		
-		NodeGroup importNg = NodeGroup.getInstanceFromJson(this.nodegroupJson);
+		NodeGroup importNg = NodeGroup.deepCopy(this.importNgTemplate);
 		
 		// for each node with lookupMapping(s)
 		for (String importNodeId : this.lookupMappings.keySet()) {
 			// initialize to "normal"			
-			NodeGroup lookupNg = NodeGroup.getInstanceFromJson(this.nodegroupJson);
+			NodeGroup lookupNg = NodeGroup.deepCopy(this.importNgTemplate);
 			
 			// add a sample value for each
 			for (ImportMapping map : this.lookupMappings.get(importNodeId)) {
@@ -419,7 +436,7 @@ public class ImportSpecHandler {
 			lookupNg.pruneAllUnused();
 			lookupNg.removeUnusedBindings();   // for fuseki.  Perhaps generic sparql gen solution would be better.
 			
-			this.lookupNodegroupsJson.put(importNodeId, lookupNg.toJson());
+			this.lookupNodegroups.put(importNodeId, NodeGroup.deepCopy(lookupNg));
 			
 			// standardize sparqlids, then generate sparql, then hash it
 			// so we can tell if two lookup nodegroups are identical
@@ -442,7 +459,7 @@ public class ImportSpecHandler {
 	 * @throws Exception
 	 */
 	private NodeGroup getLookupNodegroup(String nodeID) throws Exception {
-		NodeGroup lookupNodegroup = NodeGroup.getInstanceFromJson(this.lookupNodegroupsJson.get(nodeID)); 
+		NodeGroup lookupNodegroup = NodeGroup.deepCopy(this.lookupNodegroups.get(nodeID)); 
 		lookupNodegroup.setSparqlConnection(this.lookupConn);
 		lookupNodegroup.noInflateNorValidate(this.oInfo);
 		return lookupNodegroup;
@@ -578,7 +595,7 @@ public class ImportSpecHandler {
 	public NodeGroup buildImportNodegroup(ArrayList<String> record, boolean skipValidation) throws Exception{
 
 		// create a new nodegroup copy. 
-		NodeGroup retNodegroup = NodeGroup.getInstanceFromJson(this.nodegroupJson);
+		NodeGroup retNodegroup = NodeGroup.deepCopy(this.importNgTemplate);
 		retNodegroup.clearOrderBy();
 		
 		if(record  == null){ throw new Exception("incoming record cannot be null for ImportSpecHandler.getValues"); }
@@ -0,0 +1,158 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.load.utility;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Temp file of generated insert queries, so that a precheck pass can save its work
+ * and the ingest pass can replay it instead of converting every record again.
+ *
+ * Batches are appended by any number of threads, then read back in the order they were written.
+ * The file is deleted by close().
+ */
+public class InsertSpillFile {
+
+	/**
+	 * Insert queries for one batch of records
+	 */
+	public static class Batch {
+		public final int startingRow;
+		public final int numRecords;
+		public final ArrayList<String> queries;
+
+		public Batch(int startingRow, int numRecords, ArrayList<String> queries) {
+			this.startingRow = startingRow;
+			this.numRecords = numRecords;
+			this.queries = queries;
+		}
+	}
+
+	private File file = null;
+	private DataOutputStream out = null;
+	private DataInputStream in = null;
+	private int numBatches = 0;
+	private int numRead = 0;
+
+	public InsertSpillFile() throws IOException {
+		this.file = File.createTempFile("semtk-insert-", ".spill");
+		this.out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)), 65536));
+	}
+
+	/**
+	 * Append a batch.  Thread-safe.
+	 */
+	public synchronized void write(int startingRow, int numRecords, ArrayList<String> queries) throws IOException {
+		if (this.out == null) {
+			throw new IOException("Insert spill file is not open for writing");
+		}
+		this.out.writeInt(startingRow);
+		this.out.writeInt(numRecords);
+		this.out.writeInt(queries.size());
+		for (String q : queries) {
+			byte [] b = q.getBytes(StandardCharsets.UTF_8);
+			this.out.writeInt(b.length);
+			this.out.write(b);
+		}
+		this.numBatches++;
+	}
+
+	/**
+	 * Finish writing and start reading from the beginning
+	 */
+	public synchronized void rewind() throws IOException {
+		if (this.out != null) {
+			this.out.close();
+			this.out = null;
+		}
+		if (this.in != null) {
+			this.in.close();
+		}
+		this.in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(this.file)), 65536));
+		this.numRead = 0;
+	}
+
+	/**
+	 * Next batch, or null if all have been read
+	 */
+	public synchronized Batch readNext() throws IOException {
+		if (this.in == null) {
+			throw new IOException("Insert spill file has not been rewound for reading");
+		}
+		if (this.numRead == this.numBatches) {
+			return null;
+		}
+		try {
+			int startingRow = this.in.readInt();
+			int numRecords = this.in.readInt();
+			int numQueries = this.in.readInt();
+			ArrayList<String> queries = new ArrayList<String>(numQueries);
+			for (int i = 0; i < numQueries; i++) {
+				byte [] b = new byte[this.in.readInt()];
+				this.in.readFully(b);
+				queries.add(new String(b, StandardCharsets.UTF_8));
+			}
+			this.numRead++;
+			return new Batch(startingRow, numRecords, queries);
+		} catch (EOFException e) {
+			throw new IOException("Insert spill file is truncated after " + this.numRead + " of " + this.numBatches + " batches", e);
+		}
+	}
+
+	public synchronized int getNumBatches() {
+		return this.numBatches;
+	}
+
+	public long getFileSize() {
+		return this.file == null ? 0 : this.file.length();
+	}
+
+	/**
+	 * Close and delete the file
+	 */
+	public synchronized void close() {
+		try {
+			if (this.out != null) {
+				this.out.close();
+			}
+			if (this.in != null) {
+				this.in.close();
+			}
+		} catch (IOException e) {
+			// deleting anyway
+		}
+		this.out = null;
+		this.in = null;
+		if (this.file != null) {
+			this.file.delete();
+			this.file = null;
+		}
+	}
+}
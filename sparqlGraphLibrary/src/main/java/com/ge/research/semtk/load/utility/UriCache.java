@@ -17,22 +17,99 @@
 
 package com.ge.research.semtk.load.utility;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.ge.research.semtk.belmont.NodeGroup;
-import com.ge.research.semtk.ontologyTools.OntologyInfo;
-import com.ge.research.semtk.utility.LocalLogger;
 
+/**
+ * This object holds URI's during the lookup process.
+ * 
+ * THREAD SAFE without a cache-wide lock:  every update is a single atomic 
+ * ConcurrentHashMap operation on one key, so ingestion threads only contend
+ * when they are resolving the very same lookup.
+ */
 public class UriCache {
 	static final String NOT_FOUND = "0-NOT-FOUND";
 	static final String EMPTY_LOOKUP = "1-EMPTY-LOOKUP";
 	
 	private NodeGroup nodeGroup;
 	
-	ConcurrentHashMap<String, String> uriCache = new ConcurrentHashMap<String, String>();   // uriCache(key)=uri
-	ConcurrentHashMap<String, Boolean> notFound = new ConcurrentHashMap<String, Boolean>(); // any == NOT_FOUND
-	ConcurrentHashMap<String, Boolean> isGenerated = new ConcurrentHashMap<String, Boolean>();  // any URI that was generated
+	ConcurrentMap<Key, String> uriCache;   // uriCache(key)=uri
+	Set<Key> notFound;                     // keys set NOT_FOUND or generated by a mapping, until generateNotFoundURIs()
+	Set<String> isGenerated;               // any URI that was generated
+	Set<String> isFound;                   // any URI that was put after a successful lookup
+	
+	/**
+	 * Cache key: lookup nodegroup hash plus the builtStrings.
+	 * Hash is computed once.  Lookups wrap the caller's list without copying;
+	 * only keys that are actually stored take a copy of the builtStrings.
+	 */
+	static final class Key {
+		private final String lookupNgMD5;
+		private final List<String> builtStrings;
+		private final int hash;
+		
+		private Key(String lookupNgMD5, List<String> builtStrings) {
+			this.lookupNgMD5 = lookupNgMD5;
+			this.builtStrings = builtStrings;
+			this.hash = 31 * lookupNgMD5.hashCode() + builtStrings.hashCode();
+		}
+		
+		/** key for a get(): no copying */
+		static Key forLookup(String lookupNgMD5, List<String> builtStrings) {
+			return new Key(lookupNgMD5, builtStrings);
+		}
+		
+		/** key to be stored: immune to caller changing builtStrings later */
+		static Key forStore(String lookupNgMD5, List<String> builtStrings) {
+			return new Key(lookupNgMD5, Arrays.asList(builtStrings.toArray(new String[builtStrings.size()])));
+		}
+		
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return this.hash == other.hash && 
+					this.lookupNgMD5.equals(other.lookupNgMD5) && 
+					this.builtStrings.equals(other.builtStrings);
+		}
+		
+		@Override
+		public String toString() {
+			return this.lookupNgMD5 + "-" + String.join("-", this.builtStrings);
+		}
+	}
+	
+	/**
+	 * Key to bytes for a disk-backed cache:  lookupNgMD5 followed by \0 before each builtString
+	 */
+	static final DiskBackedConcurrentMap.Codec<Key> KEY_CODEC = new DiskBackedConcurrentMap.Codec<Key>() {
+		public byte[] encode(Key key) {
+			StringBuilder sb = new StringBuilder(key.lookupNgMD5);
+			for (String s : key.builtStrings) {
+				sb.append('\0').append(s);
+			}
+			return sb.toString().getBytes(StandardCharsets.UTF_8);
+		}
+		public Key decode(byte[] b) {
+			String [] parts = new String(b, StandardCharsets.UTF_8).split("\0", -1);
+			return new Key(parts[0], Arrays.asList(Arrays.copyOfRange(parts, 1, parts.length)));
+		}
+	};
 	
 	/**
 	 * This object holds URI's during the lookup process.
@@ -44,17 +121,41 @@ public class UriCache {
 	 * @param nodeGroup
 	 */
 	public UriCache(NodeGroup nodeGroup) {
-		this.nodeGroup = nodeGroup;
+		this(nodeGroup, 0);
 	}
 	
 	/**
+	 * Cache with a fixed memory budget for very large numbers of distinct lookups.
+	 * At most maxInMemory entries of each internal table are held on the heap. 
+	 * The rest are spilled to memory-mapped temp files until close().
+	 * Every key still resolves to exactly one URI for the life of the cache.
 	 * 
-	 * @param lookupNgMD5 - unique hash of the lookup nodegroup
-	 * @param builtStrings
-	 * @return
+	 * @param nodeGroup
+	 * @param maxInMemory - max entries on heap, or 0 to keep everything on the heap
+	 */
+	public UriCache(NodeGroup nodeGroup, int maxInMemory) {
+		this.nodeGroup = nodeGroup;
+		if (maxInMemory > 0) {
+			this.uriCache = new DiskBackedConcurrentMap<Key, String>("uriCache", KEY_CODEC, DiskBackedConcurrentMap.STRING_CODEC, maxInMemory);
+			this.notFound = Collections.newSetFromMap(new DiskBackedConcurrentMap<Key, Boolean>("uriNotFound", KEY_CODEC, DiskBackedConcurrentMap.BOOLEAN_CODEC, maxInMemory));
+			this.isGenerated = Collections.newSetFromMap(new DiskBackedConcurrentMap<String, Boolean>("uriGenerated", DiskBackedConcurrentMap.STRING_CODEC, DiskBackedConcurrentMap.BOOLEAN_CODEC, maxInMemory));
+			this.isFound = Collections.newSetFromMap(new DiskBackedConcurrentMap<String, Boolean>("uriFound", DiskBackedConcurrentMap.STRING_CODEC, DiskBackedConcurrentMap.BOOLEAN_CODEC, maxInMemory));
+		} else {
+			this.uriCache = new ConcurrentHashMap<Key, String>();
+			this.notFound = ConcurrentHashMap.newKeySet();
+			this.isGenerated = ConcurrentHashMap.newKeySet();
+			this.isFound = ConcurrentHashMap.newKeySet();
+		}
+	}
+	
+	/**
+	 * Empty the cache, releasing any temp files
 	 */
-	private String getKey(String lookupNgMD5, ArrayList<String> builtStrings) {
-		return lookupNgMD5 + "-" + String.join("-", builtStrings);
+	public void close() {
+		this.uriCache.clear();
+		this.notFound.clear();
+		this.isGenerated.clear();
+		this.isFound.clear();
 	}
 	
 	/**
@@ -64,45 +165,31 @@ public class UriCache {
 	 * @param uri
 	 */
 	public void putUri(String lookupNgMD5, ArrayList<String> builtStrings, String uri) {
-		this.uriCache.putIfAbsent(this.getKey(lookupNgMD5, builtStrings), uri);
-		//LocalLogger.logToStdErr("PUT   : " + this.getKey(lookupNgMD5, builtStrings) + "," + uri);
+		this.isFound.add(uri);
+		this.uriCache.putIfAbsent(Key.forStore(lookupNgMD5, builtStrings), uri);
 	}
 	
 	/** 
-	 * Add if URI isn't already there.  If it is already there, delete it instead.
-	 * Intended to 
+	 * Add if URI isn't already there.  If it is already there with a different value, delete it instead.
+	 * Atomic on the single key.
 	 * @param lookupNgMD5
 	 * @param builtStrings
 	 * @param uri
 	 */
 	public void putIfNewElseDelete(String lookupNgMD5, ArrayList<String> builtStrings, String uri) {
-		synchronized(this) {
-			String key = this.getKey(lookupNgMD5, builtStrings);
-		
-			String prev = this.uriCache.putIfAbsent(key, uri);
-			if (prev != null && !prev.equals(uri)) {
-				this.uriCache.remove(key);
-				//LocalLogger.logToStdErr("REMOVE: " + key + "," + uri);
-				
-			} else {
-				//LocalLogger.logToStdErr("PUT-2 : " + key + "," + uri);
-			}
-		}
+		this.isFound.add(uri);
+		this.uriCache.compute(Key.forStore(lookupNgMD5, builtStrings), 
+				(k, prev) -> (prev == null || prev.equals(uri)) ? uri : null);
 	}
+	
 	/**
 	 * Get a URI given a unique lookup nodegroup and set of builtStrings
 	 * @param lookupNgMD5 - unique hash of the lookup nodegroup
 	 * @param builtStrings
-	 * @return
+	 * @return uri or null
 	 */
 	public String getUri(String lookupNgMD5, ArrayList<String> builtStrings) {
-		try {
-			//LocalLogger.logToStdErr("GET  : " + this.getKey(lookupNgMD5, builtStrings));
-			return this.uriCache.get(this.getKey(lookupNgMD5, builtStrings));
-		} catch (Exception e) {
-			//LocalLogger.logToStdErr("...not found");
-			return null;
-		}
+		return this.uriCache.get(Key.forLookup(lookupNgMD5, builtStrings));
 	}
 	
 	/**
@@ -112,17 +199,16 @@ public class UriCache {
 	 * @return
 	 */
 	public boolean isNotFound(String lookupNgMD5, ArrayList<String> builtStrings) {
-		String key = this.getKey(lookupNgMD5, builtStrings);
-		return this.notFound.containsKey(key);
+		return this.notFound.contains(Key.forLookup(lookupNgMD5, builtStrings));
 	}
 	
 	/**
-	 * Is the given URI in the cache and not generated, then it must have been looked up
+	 * Was the given URI put in the cache after a lookup, and not generated
 	 * @param uri
 	 * @return
 	 */
 	public boolean wasFound(String uri) {
-		return this.uriCache.contains(uri) && ! this.isGenerated(uri);
+		return uri != null && this.isFound.contains(uri) && ! this.isGenerated(uri);
 	}
 	
 	/**
@@ -131,29 +217,23 @@ public class UriCache {
 	 * @param builtStrings
 	 * @param generatedValue - value for URI ... or null or ""
 	 */
-	public synchronized void setUriNotFound(String lookupNgMD5, ArrayList<String> builtStrings, String generatedValue) throws Exception {
-		String key = this.getKey(lookupNgMD5, builtStrings);
+	public void setUriNotFound(String lookupNgMD5, ArrayList<String> builtStrings, String generatedValue) throws Exception {
+		Key key = Key.forStore(lookupNgMD5, builtStrings);
 		String newVal;
 		
 		if (generatedValue != null && generatedValue.length() > 0) {
 			newVal = generatedValue;
-			this.isGenerated.put(newVal, true);
+			this.isGenerated.add(newVal);
 		} else {
 			newVal = UriCache.NOT_FOUND;
 		}
 		
-		// If already NOT_FOUND
-		if (this.uriCache.containsKey(key)) {
-			// already there: do nothing as along as this value is the same
-			String curVal = this.uriCache.get(key);
-			if (!newVal.equals(curVal)) {
-				throw new Exception("Can't create a URI with two different values: " + curVal + " and " + newVal);
-			}
-		} else {
-			// new: just put it in the cache
-			this.uriCache.put(key, newVal);
+		// put if new, else it must match what's already there
+		String curVal = this.uriCache.putIfAbsent(key, newVal);
+		if (curVal != null && !newVal.equals(curVal)) {
+			throw new Exception("Can't create a URI with two different values: " + curVal + " and " + newVal);
 		}
-		this.notFound.putIfAbsent(key, true);
+		this.notFound.add(key);
 	}
 	
 	/**
@@ -164,17 +244,17 @@ public class UriCache {
 	 * @throws Exception
 	 */
 	public void generateNotFoundURIs(UriResolver uriResolver) throws Exception {
-		for (String key : this.notFound.keySet()) {
+		for (Iterator<Key> it = this.notFound.iterator(); it.hasNext(); ) {
+			Key key = it.next();
 			
-			if (this.uriCache.get(key).equals(UriCache.NOT_FOUND)) {
+			if (UriCache.NOT_FOUND.equals(this.uriCache.get(key))) {
 				String guid = uriResolver.generateRandomUri();
-				this.uriCache.put(key, guid);
-				this.isGenerated.put(guid, true);
+				this.isGenerated.add(guid);
+				this.uriCache.replace(key, UriCache.NOT_FOUND, guid);
 			}
-			
+			// clear out of notFound
+			it.remove();
 		}
-		// clear out notFound hash
-		this.notFound = new ConcurrentHashMap<String, Boolean>();
 	}
 	
 	/**
@@ -186,7 +266,7 @@ public class UriCache {
 		if (uri == null || uri.isEmpty()) {
 			return false;
 		} else {
-			return this.isGenerated.containsKey(uri);
+			return this.isGenerated.contains(uri);
 		}
 	}
 	
@@ -0,0 +1,263 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.logging.easyLogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import com.ge.research.semtk.utility.LocalLogger;
+
+/**
+ * Sends log events to the logging service from a background thread.
+ *
+ * Callers only enqueue.  A daemon flusher drains the queue in batches and posts each event
+ * over one shared keep-alive http client.  If the queue is full, events are dropped or the caller
+ * blocks, per the overflow policy.  While the logging service is failing, events are appended
+ * to a local fallback file (one JSON event per line) and the service is retried periodically.
+ *
+ * One sender is shared by all LoggerRestClients posting to the same URL.
+ */
+public class AsyncLogSender {
+
+	public enum OverflowPolicy { DROP, BLOCK }
+
+	public static final int DEFAULT_QUEUE_SIZE = 10000;
+	private static final int BATCH_SIZE = 100;
+	private static final long RETRY_AFTER_FAILURE_MSEC = 30000;
+	private static final long BLOCK_MAX_MSEC = 5000;
+
+	private static final ConcurrentHashMap<String, AsyncLogSender> senders = new ConcurrentHashMap<String, AsyncLogSender>();
+
+	private final String serviceURL;
+	private final ArrayBlockingQueue<String> queue;
+	private final OverflowPolicy overflowPolicy;
+	private final File fallbackFile;
+	private final CloseableHttpClient httpClient;
+	private final Thread flusher;
+
+	private volatile long downUntil = 0;     // don't try the service again until then
+	private final AtomicInteger outstanding = new AtomicInteger(0);    // queued or being sent
+
+	private final AtomicLong sent = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final AtomicLong writtenToFallback = new AtomicLong(0);
+
+	/**
+	 * Get the shared sender for a logging service URL, creating it if needed.
+	 * Settings are taken from the first call for each URL.
+	 * @param serviceURL full URL of the logging endpoint
+	 * @param queueSize max events waiting to be sent
+	 * @param overflowPolicy what to do when the queue is full
+	 * @param fallbackPath file to append events to while the service is failing, or null for the default in java.io.tmpdir
+	 */
+	public static AsyncLogSender getInstance(String serviceURL, int queueSize, OverflowPolicy overflowPolicy, String fallbackPath) {
+		return senders.computeIfAbsent(serviceURL, url -> new AsyncLogSender(url, queueSize, overflowPolicy, fallbackPath));
+	}
+
+	public static AsyncLogSender getInstance(String serviceURL) {
+		return getInstance(serviceURL, DEFAULT_QUEUE_SIZE, OverflowPolicy.DROP, null);
+	}
+
+	/**
+	 * Default fallback file for an application, in java.io.tmpdir.
+	 * Named after the application so services on the same host don't write the same file.
+	 */
+	public static String getDefaultFallbackPath(String applicationName) {
+		String name = (applicationName == null) ? "" : applicationName.replaceAll("[^A-Za-z0-9_.-]", "_");
+		return new File(System.getProperty("java.io.tmpdir"), "semtk_log_fallback_" + name + ".jsonl").getPath();
+	}
+
+	/**
+	 * Wait for all senders to empty their queues
+	 */
+	public static void flushAll(long timeoutMsec) {
+		for (AsyncLogSender sender : senders.values()) {
+			sender.flush(timeoutMsec);
+		}
+	}
+
+	public AsyncLogSender(String serviceURL, int queueSize, OverflowPolicy overflowPolicy, String fallbackPath) {
+		this.serviceURL = serviceURL;
+		this.queue = new ArrayBlockingQueue<String>(Math.max(1, queueSize));
+		this.overflowPolicy = (overflowPolicy == null) ? OverflowPolicy.DROP : overflowPolicy;
+		this.fallbackFile = (fallbackPath != null && !fallbackPath.isEmpty()) ? new File(fallbackPath) : new File(System.getProperty("java.io.tmpdir"), "semtk_log_fallback.jsonl");
+
+		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(5000).setSocketTimeout(10000).build();
+		this.httpClient = HttpClients.custom().setDefaultRequestConfig(requestConfig).setMaxConnPerRoute(2).build();
+
+		this.flusher = new Thread(this::run, "AsyncLogSender-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+
+		// don't lose queued events on a normal shutdown
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> this.flush(2000)));
+	}
+
+	/**
+	 * Queue one JSON event for sending.  Never throws.
+	 * @return false if the event was dropped
+	 */
+	public boolean send(String jsonEvent) {
+		boolean queued;
+		this.outstanding.incrementAndGet();
+		if (this.overflowPolicy == OverflowPolicy.BLOCK) {
+			try {
+				queued = this.queue.offer(jsonEvent, BLOCK_MAX_MSEC, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				queued = false;
+			}
+		} else {
+			queued = this.queue.offer(jsonEvent);
+		}
+		if (!queued) {
+			this.outstanding.decrementAndGet();
+			// report first drop and then every thousandth, not each one
+			if (this.dropped.incrementAndGet() % 1000 == 1) {
+				LocalLogger.logToStdErr("Log queue full for " + this.serviceURL + ": dropped " + this.dropped.get() + " events");
+			}
+		}
+		return queued;
+	}
+
+	/**
+	 * Wait until queued events have been sent or written to the fallback file
+	 * @return true if the queue emptied in time
+	 */
+	public boolean flush(long timeoutMsec) {
+		long deadline = System.currentTimeMillis() + timeoutMsec;
+		while (this.outstanding.get() > 0) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getSentCount() {
+		return this.sent.get();
+	}
+
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	public long getFallbackCount() {
+		return this.writtenToFallback.get();
+	}
+
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	public File getFallbackFile() {
+		return this.fallbackFile;
+	}
+
+	private void run() {
+		ArrayList<String> batch = new ArrayList<String>(BATCH_SIZE);
+		while (true) {
+			try {
+				batch.add(this.queue.take());
+				this.queue.drainTo(batch, BATCH_SIZE - 1);
+
+				int i = 0;
+				if (System.currentTimeMillis() >= this.downUntil) {
+					try {
+						for (; i < batch.size(); i++) {
+							this.post(batch.get(i));
+							this.sent.incrementAndGet();
+						}
+						this.downUntil = 0;
+					} catch (Exception e) {
+						LocalLogger.logToStdErr("Logging to " + this.serviceURL + " failed, writing to " + this.fallbackFile + " for " + RETRY_AFTER_FAILURE_MSEC / 1000 + " sec: " + e.getMessage());
+						this.downUntil = System.currentTimeMillis() + RETRY_AFTER_FAILURE_MSEC;
+					}
+				}
+				if (i < batch.size()) {
+					this.writeFallback(batch.subList(i, batch.size()));
+				}
+				this.outstanding.addAndGet(-batch.size());
+				batch.clear();
+
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				// keep the flusher alive no matter what
+				LocalLogger.printStackTrace(e);
+				this.outstanding.addAndGet(-batch.size());
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Post one event
+	 * @throws Exception on connection failure or non-2xx status
+	 */
+	protected void post(String jsonEvent) throws Exception {
+		HttpPost httppost = new HttpPost(this.serviceURL);
+		httppost.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+		httppost.setEntity(new ByteArrayEntity(jsonEvent.getBytes(StandardCharsets.UTF_8)));
+		try (CloseableHttpResponse response = this.httpClient.execute(httppost)) {
+			int status = response.getStatusLine().getStatusCode();
+			EntityUtils.consumeQuietly(response.getEntity());   // lets the connection be reused
+			if (status < 200 || status >= 300) {
+				throw new Exception("HTTP status " + status);
+			}
+		}
+	}
+
+	private void writeFallback(List<String> events) {
+		try (Writer w = new OutputStreamWriter(new FileOutputStream(this.fallbackFile, true), StandardCharsets.UTF_8)) {
+			for (String e : events) {
+				w.write(e);
+				w.write('\n');
+			}
+			this.writtenToFallback.addAndGet(events.size());
+		} catch (Exception e) {
+			LocalLogger.logToStdErr("Lost " + events.size() + " log events: can't write " + this.fallbackFile + ": " + e.getMessage());
+		}
+	}
+}
@@ -28,6 +28,9 @@ public class EasyLogEnabledConfigProperties extends Properties {
 	private String loggingPort = "";
 	private String loggingServiceLocation = "/Logging/usageLog";
 	private String applicationLogName = "";
+	private int loggingQueueSize = AsyncLogSender.DEFAULT_QUEUE_SIZE;	// events waiting to be sent
+	private String loggingOverflowPolicy = "DROP";			// DROP or BLOCK when the queue is full
+	private String loggingFallbackFile = "";				// events go here while logging service fails.  Empty for default in tmp dir, named after applicationLogName.
 	
 	public void setLoggingEnabled(Boolean loggingEnabled){ this.loggingEnabled = loggingEnabled;}
 	public void setLoggingProtocol(String loggingProtocol){ this.loggingProtocol = loggingProtocol;}
@@ -35,6 +38,9 @@ public class EasyLogEnabledConfigProperties extends Properties {
 	public void setLoggingPort(String loggingPort){ this.loggingPort = loggingPort;}
 	public void setLoggingServiceLocation(String loggingServiceLocation){ this.loggingServiceLocation = loggingServiceLocation;}
 	public void setApplicationLogName(String applicationLogName){ this.applicationLogName = applicationLogName;}
+	public void setLoggingQueueSize(int loggingQueueSize){ this.loggingQueueSize = loggingQueueSize;}
+	public void setLoggingOverflowPolicy(String loggingOverflowPolicy){ this.loggingOverflowPolicy = loggingOverflowPolicy;}
+	public void setLoggingFallbackFile(String loggingFallbackFile){ this.loggingFallbackFile = loggingFallbackFile;}
 	
 	public Boolean getLoggingEnabled(){ return this.loggingEnabled; }
 	public String getLoggingProtocol(){ return this.loggingProtocol; }
@@ -42,6 +48,9 @@ public class EasyLogEnabledConfigProperties extends Properties {
 	public String getLoggingPort(){ return this.loggingPort; }
 	public String getLoggingServiceLocation(){ return this.loggingServiceLocation; }
 	public String getApplicationLogName(){ return this.applicationLogName; }
+	public int getLoggingQueueSize(){ return this.loggingQueueSize; }
+	public String getLoggingOverflowPolicy(){ return this.loggingOverflowPolicy; }
+	public String getLoggingFallbackFile(){ return this.loggingFallbackFile; }
 	
 	public void validate() throws Exception {
 		super.validate();
@@ -51,5 +60,11 @@ public class EasyLogEnabledConfigProperties extends Properties {
 		checkNone("loggingPort", loggingPort);
 		checkNone("loggingServiceLocation", loggingServiceLocation);
 		checkNone("applicationLogName", applicationLogName);
+		checkRangeInclusive("loggingQueueSize", loggingQueueSize, 1, 10000000);
+		checkNone("loggingOverflowPolicy", loggingOverflowPolicy);
+		checkNone("loggingFallbackFile", loggingFallbackFile);
+		if (!loggingOverflowPolicy.trim().equalsIgnoreCase("DROP") && !loggingOverflowPolicy.trim().equalsIgnoreCase("BLOCK")) {
+			throw new Exception(getPrefix() + ".loggingOverflowPolicy must be DROP or BLOCK: " + loggingOverflowPolicy);
+		}
 	}
 }
@@ -24,13 +24,6 @@ import java.util.Stack;
 import java.util.UUID;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHeaders;
-import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.json.simple.JSONObject;
 
 import com.ge.research.semtk.logging.Details;
@@ -55,10 +48,26 @@ public class LoggerRestClient extends RestClient {
 	private String sessionID = UUID.randomUUID().toString();		// the ID that is used for the logging session.
 	private long sequenceNumber = -1;				// starts at -1 because the first call will result in it being set to zero
 	private String user;
+	private AsyncLogSender sender = null;			// events are queued here and sent in the background
 	
 	public LoggerRestClient(LoggerClientConfig config) throws Exception {
 		this.conf = config;
 	}
+	
+	/**
+	 * Use a sender with non-default queue settings
+	 */
+	public void setSender(AsyncLogSender sender) {
+		this.sender = sender;
+	}
+	
+	public AsyncLogSender getSender() {
+		if (this.sender == null) {
+			this.sender = AsyncLogSender.getInstance(this.conf.getServiceURL(), AsyncLogSender.DEFAULT_QUEUE_SIZE, AsyncLogSender.OverflowPolicy.DROP,
+					AsyncLogSender.getDefaultFallbackPath(((LoggerClientConfig) this.conf).getApplicationName()));
+		}
+		return this.sender;
+	}
 
 	public long getLastSequenceNumber(){
 		// what is the current count
@@ -140,7 +149,9 @@ public class LoggerRestClient extends RestClient {
 		this.logEvent(action, details, tenants, highLevelTask, eventID, useParent ? this.parentEventStack.peek().toString() : null);
 	}
 	
-	// TODO now that this class extends RestClient, use RestClient execute method to simplify the code below
+	/**
+	 * Build the event and queue it.  Sending happens on the AsyncLogSender thread.
+	 */
 	@SuppressWarnings("unchecked")
 	private void logEvent(String action,  ArrayList<DetailsTuple> details, ArrayList<String> tenants, String highLevelTask, UUID eventID, String parent) throws Exception{
 
@@ -164,9 +175,6 @@ public class LoggerRestClient extends RestClient {
 		 *	@RequestHeader(SSO_ID_HEADER) String sso
 		 */
 		
-		DefaultHttpClient httpclient = new DefaultHttpClient();
-		HttpPost httppost = new HttpPost(((LoggerClientConfig)this.conf).getServiceURL());
-
 		// create a JSON params object. 
 		JSONObject paramsJson = new JSONObject();
 		paramsJson.put("AppID", ((LoggerClientConfig)this.conf).getApplicationName());
@@ -191,15 +199,7 @@ public class LoggerRestClient extends RestClient {
 			paramsJson.put("UserID", this.user);
 		}
 		
-		HttpEntity entity = new ByteArrayEntity(paramsJson.toJSONString().getBytes("UTF-8"));
-		//httppost.setEntity(new UrlEncodedFormEntity(params, "UTF-8"));
-	    httppost.setEntity(entity);
-		HttpHost targetHost = new HttpHost(conf.getServiceServer(), conf.getServicePort(), conf.getServiceProtocol());
-
-		// attempt the logging
-		httppost.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
-		HttpResponse httpresponse = httpclient.execute(targetHost, httppost);
-	
+		this.getSender().send(paramsJson.toJSONString());
 	}
 
 	/**
@@ -371,6 +371,11 @@ public class LoggerRestClient extends RestClient {
 												port, 
 												logProps.getLoggingServiceLocation());
 				logger = new LoggerRestClient(lcc);
+				String fallbackFile = logProps.getLoggingFallbackFile().trim();
+				logger.setSender(AsyncLogSender.getInstance(lcc.getServiceURL(), 
+												logProps.getLoggingQueueSize(), 
+												AsyncLogSender.OverflowPolicy.valueOf(logProps.getLoggingOverflowPolicy().trim().toUpperCase()), 
+												fallbackFile.isEmpty() ? AsyncLogSender.getDefaultFallbackPath(lcc.getApplicationName()) : fallbackFile));
 			}
 		}
 		catch(Exception e){
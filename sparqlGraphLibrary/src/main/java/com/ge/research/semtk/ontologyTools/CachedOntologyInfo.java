@@ -1,38 +1,171 @@
 package com.ge.research.semtk.ontologyTools;
 
 import java.util.Calendar;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import com.ge.research.semtk.sparqlX.SparqlConnection;
+import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 
+/**
+ * An oInfo along with the ModelGraphVersion of each model graph it was built from.
+ *
+ * When graphs are marked changed, their versions are checked.  If none differ the oInfo is kept as is.
+ * Otherwise it is rebuilt, querying only graphs whose version differs (or is unknown).
+ *
+ * Rebuilding from unchanged graphs needs their load query results, which take about as much memory as the oInfo.
+ * So results are kept for at most maxKeptRows rows in all.  Graphs past that keep only their version,
+ * and are queried again whenever the oInfo is rebuilt.
+ */
 public class CachedOntologyInfo {
+	public static final int DEFAULT_MAX_KEPT_ROWS = 50000;
+
+	private static class GraphEntry {
+		final SparqlEndpointInterface sei;
+		final String version;		// null if unknown
+		final OntologyLoadTables tables;	// null if not kept
+
+		GraphEntry(SparqlEndpointInterface sei, String version, OntologyLoadTables tables) {
+			this.sei = sei;
+			this.version = version;
+			this.tables = tables;
+		}
+	}
+
 	private OntologyInfo oInfo = null;
 
 	private Long retrievedMillis = null;
 	private SparqlConnection conn = null;
-	
+	private int maxKeptRows;
+	private HashMap<String, GraphEntry> graphs = new HashMap<String, GraphEntry>();
+	private HashSet<String> changedGraphs = new HashSet<String>();
+	private long graphLoadCount = 0;
+	private long buildCount = 0;
+
 	public CachedOntologyInfo(SparqlConnection conn) throws Exception {
-		this.oInfo = new OntologyInfo(conn);
-		this.retrievedMillis = Calendar.getInstance().getTimeInMillis();
+		this(conn, DEFAULT_MAX_KEPT_ROWS);
+	}
+
+	/**
+	 * @param conn
+	 * @param maxKeptRows most load query result rows to keep for rebuilding
+	 * @throws Exception
+	 */
+	public CachedOntologyInfo(SparqlConnection conn, int maxKeptRows) throws Exception {
 		this.conn = conn;
+		this.maxKeptRows = maxKeptRows;
+		this.reload(new HashSet<String>());
+		this.retrievedMillis = Calendar.getInstance().getTimeInMillis();
 	}
 
 	/**
 	 * Get oInfo, retrieving it again if it's too old
+	 * or rebuilding it if any of its graphs changed
 	 * @param maxAgeMillis
 	 * @return
 	 * @throws Exception
 	 */
-	public OntologyInfo getOInfo(long maxAgeMillis) throws Exception {
+	public synchronized OntologyInfo getOInfo(long maxAgeMillis) throws Exception {
 		if (this.isExpired(maxAgeMillis)) {
-			this.oInfo = new OntologyInfo(this.conn);
+			this.graphs.clear();
+			this.reload(new HashSet<String>());
+			this.retrievedMillis = Calendar.getInstance().getTimeInMillis();
+		} else if (! this.changedGraphs.isEmpty()) {
+			HashSet<String> staleKeys = this.findStaleKeys();
+			if (! staleKeys.isEmpty()) {
+				this.reload(staleKeys);
+			}
+			this.changedGraphs.clear();
 		}
 		return oInfo;
 	}
-	
+
 	public boolean isExpired(long maxAgeMillis) {
 		Long ageMillis = Calendar.getInstance().getTimeInMillis() - this.retrievedMillis;
 		return (ageMillis > maxAgeMillis);
 	}
 
+	/**
+	 * Note that a graph may have changed, so its version is checked the next time oInfo is used
+	 * @param graph
+	 * @return false if graph isn't part of this oInfo
+	 */
+	public synchronized boolean markChanged(String graph) {
+		for (GraphEntry e : this.graphs.values()) {
+			if (e.sei.getGraph().equals(graph)) {
+				this.changedGraphs.add(graph);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Number of graphs whose load queries have been run
+	 */
+	public synchronized long getGraphLoadCount() {
+		return this.graphLoadCount;
+	}
+
+	/**
+	 * Number of times the oInfo has been built
+	 */
+	public synchronized long getBuildCount() {
+		return this.buildCount;
+	}
+
+	/**
+	 * Keys of changed graphs whose version differs or is unknown
+	 */
+	private HashSet<String> findStaleKeys() throws Exception {
+		HashSet<String> ret = new HashSet<String>();
+		for (String key : this.graphs.keySet()) {
+			GraphEntry e = this.graphs.get(key);
+			if (this.changedGraphs.contains(e.sei.getGraph())) {
+				String version = ModelGraphVersion.get(e.sei);
+				if (version == null || ! version.equals(e.version)) {
+					ret.add(key);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Build a new oInfo, querying graphs that are new, stale, or whose tables weren't kept
+	 */
+	private void reload(HashSet<String> staleKeys) throws Exception {
+		HashMap<String, GraphEntry> used = new HashMap<String, GraphEntry>();
+		int [] keptRows = { 0 };
+		this.oInfo = new OntologyInfo(this.conn, (sei, domain, owlImportFlag) -> this.getTables(sei, domain, owlImportFlag, staleKeys, used, keptRows));
+		this.graphs = used;
+		this.buildCount++;
+	}
+
+	private OntologyLoadTables getTables(SparqlEndpointInterface sei, String domain, boolean owlImportFlag,
+			HashSet<String> staleKeys, HashMap<String, GraphEntry> used, int [] keptRows) throws Exception {
+		String key = sei.getServerAndPort() + ";" + sei.getGraph() + ";" + domain + ";" + owlImportFlag;
+		GraphEntry e = this.graphs.get(key);
+
+		OntologyLoadTables tables;
+		if (e == null || e.tables == null || staleKeys.contains(key)) {
+			// read version first: a change during the queries makes the version stale, not the tables
+			String version = ModelGraphVersion.get(sei);
+			tables = OntologyLoadTables.query(sei, domain, owlImportFlag);
+			this.graphLoadCount++;
+			e = new GraphEntry(sei, version, tables);
+		} else {
+			tables = e.tables;
+		}
+
+		// keep tables while they fit
+		int rows = tables.getNumRows();
+		if (keptRows[0] + rows <= this.maxKeptRows) {
+			keptRows[0] += rows;
+		} else {
+			e = new GraphEntry(e.sei, e.version, null);
+		}
+		used.put(key, e);
+		return tables;
+	}
 }
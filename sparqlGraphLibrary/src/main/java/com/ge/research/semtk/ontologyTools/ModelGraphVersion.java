@@ -0,0 +1,73 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.ontologyTools;
+
+import java.util.UUID;
+
+import com.ge.research.semtk.resultSet.Table;
+import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
+
+/**
+ * Version of a graph, replaced by each upload.
+ *
+ * Versions are kept in their own graph on the same server, so uploads of instance data don't add triples to user graphs.
+ * Every upload is a new version, even of the same file, since blank nodes such as owl:oneOf lists are added again.
+ * Any other change to the graph should clear() the version, making it unknown until the next upload.
+ */
+public class ModelGraphVersion {
+	public static final String VERSION_GRAPH = "http://research.ge.com/semtk/modelGraphVersions";
+	public static final String VERSION_PROP = "http://research.ge.com/semtk/modelGraph#version";
+
+	/**
+	 * @param sei - graph
+	 * @return version, or null if unknown
+	 * @throws Exception
+	 */
+	public static String get(SparqlEndpointInterface sei) throws Exception {
+		Table tab = sei.executeQueryToTable(
+				"SELECT ?version FROM <" + VERSION_GRAPH + "> WHERE { <" + sei.getGraph() + "> <" + VERSION_PROP + "> ?version . }");
+
+		// a graph with more than one version was written by something else
+		return (tab.getNumRows() == 1) ? tab.getCell(0, 0) : null;
+	}
+
+	/**
+	 * Give sei's graph a new version after a successful upload
+	 * @param sei - graph, with write permission on its server
+	 * @return the new version
+	 * @throws Exception
+	 */
+	public static String recordUpload(SparqlEndpointInterface sei) throws Exception {
+		String version = UUID.randomUUID().toString();
+		clear(sei);
+		sei.executeQueryAndConfirm(
+				"INSERT DATA { GRAPH <" + VERSION_GRAPH + "> { <" + sei.getGraph() + "> <" + VERSION_PROP + "> \"" + version + "\" . } }");
+		return version;
+	}
+
+	/**
+	 * Forget the version of a graph that changed other than by an upload
+	 * @param sei - graph, with write permission on its server
+	 * @throws Exception
+	 */
+	public static void clear(SparqlEndpointInterface sei) throws Exception {
+		sei.executeQueryAndConfirm(
+				"DELETE WHERE { GRAPH <" + VERSION_GRAPH + "> { <" + sei.getGraph() + "> <" + VERSION_PROP + "> ?version . } }");
+	}
+}
@@ -1,13 +1,17 @@
 package com.ge.research.semtk.ontologyTools;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import org.json.simple.JSONObject;
 
 import com.ge.research.semtk.belmont.NodeGroup;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
-import com.ge.research.semtk.resultSet.Table;
 import com.ge.research.semtk.services.nodegroupStore.NgStore;
 import com.ge.research.semtk.sparqlX.SparqlConnection;
 import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
@@ -15,81 +19,210 @@ import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 /**
  * Manage a triplestore cache located at sei
  * that contains nodegroups related to oInfo.
- * 
+ *
  * Caller manages unique set of keys
- * 
+ *
+ * Nodegroups are read from the triplestore the first time they are asked for.
+ * A remembered nodegroup is checked against the store's cheap version query when it is older than revalidateMsec,
+ * and only read again if it changed.  Concurrent requests for the same key share one read.
+ * Least recently used nodegroups are dropped to stay under maxBytes.
+ *
  * @author 200001934
  *
  */
 public class NodeGroupCache {
-	private HashMap <String, JSONObject> cache = new HashMap <String, JSONObject>();
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	public static final long DEFAULT_REVALIDATE_MSEC = 5000;
+
+	private static class Entry {
+		final JSONObject json;		// null if there is no such nodegroup
+		final String version;
+		final long bytes;
+		volatile long checkedMsec;
+
+		Entry(JSONObject json, String version, long bytes, long checkedMsec) {
+			this.json = json;
+			this.version = version;
+			this.bytes = bytes;
+			this.checkedMsec = checkedMsec;
+		}
+	}
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);	// least recently used first
+	private final ConcurrentHashMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<String, CompletableFuture<Entry>>();
+	private long bytes = 0;
+	private long loadCount = 0;
+
 	private NgStore store = null;
 	private OntologyInfo oInfo;
-	
+	private final long maxBytes;
+	private final long revalidateMsec;
+
 	public NodeGroupCache(SparqlEndpointInterface sei, OntologyInfo oInfo) throws Exception {
-		super();
-		this.oInfo = oInfo;
-		this.store = new NgStore(sei);
-		this.readFromTriplestore();
-		
+		this(new NgStore(sei), oInfo, DEFAULT_MAX_BYTES, DEFAULT_REVALIDATE_MSEC);
+
 		if (! sei.isAuth()) {
 			throw new Exception("NodeGroupCache requires an auth connection in order to insert new nodegroups");
 		}
 	}
-	
+
 	/**
-	 * Initialize the cache from sei
-	 * @throws Exception
+	 * @param store
+	 * @param oInfo
+	 * @param maxBytes approximate memory limit
+	 * @param revalidateMsec how long a nodegroup is used before checking the store for changes
 	 */
-	private void readFromTriplestore() throws Exception {
-
-		Table idTable = store.getNodeGroupIdList();
-		
-		for (int i=0; i < idTable.getNumRows(); i++) {
-			String id = idTable.getCell(i, 0);
-			SparqlGraphJson sgjson = store.getNodegroup(id);
-			if (sgjson == null) {
-				throw new Exception ("Internal error: nodegroup was not found : " + id);
-			}
-			this.cache.put(id, sgjson.getJson());
-			
-		}
+	public NodeGroupCache(NgStore store, OntologyInfo oInfo, long maxBytes, long revalidateMsec) {
+		super();
+		this.oInfo = oInfo;
+		this.store = store;
+		this.maxBytes = maxBytes;
+		this.revalidateMsec = revalidateMsec;
 	}
-	
+
 	/**
-	 * 
+	 *
 	 * @param key
 	 * @return ng or null
 	 * @throws Exception - copy exception
 	 */
 	public NodeGroup get(String key) throws ValidationException, Exception {
-		JSONObject jObj = this.cache.get(key);
-		if (jObj != null) {			
+		JSONObject jObj = this.getEntry(key).json;
+		if (jObj != null) {
 			return (new SparqlGraphJson(jObj).getNodeGroup(this.oInfo));
 		} else {
 			return null;
 		}
 	}
-	
+
 	/**
 	 * Puts - all the way through to triplestore, deleting any current ng at this key
 	 * @param key
 	 * @param ng
 	 */
 	public void put(String key, NodeGroup ng, SparqlConnection conn, String comments) throws Exception {
-		
+
 		// store in ngStore
 		store.deleteNodeGroup(key);
-		
+
 		SparqlGraphJson sgJson = new SparqlGraphJson(ng, conn);
-		
+
 		store.insertNodeGroup(sgJson.toJson(), conn.toJson(), key, comments, "NodeGroupCache", true);
-		
+
 		// store locally
-		this.cache.put(key, sgJson.getJson());
+		JSONObject json = sgJson.getJson();
+		this.putEntry(key, new Entry(json, store.getNodeGroupVersion(key, true), estimateBytes(json), System.currentTimeMillis()));
 	}
-	
+
 	public void delete(String key) throws Exception {
 		store.deleteNodeGroup(key);
+		synchronized (this) {
+			this.removeEntry(key);
+		}
+	}
+
+	/**
+	 * Number of nodegroups read from the store
+	 */
+	public synchronized long getLoadCount() {
+		return this.loadCount;
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Get a current entry, reading or revalidating it if needed
+	 */
+	private Entry getEntry(String key) throws Exception {
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			Entry e = this.entries.get(key);
+			if (e != null && now - e.checkedMsec < this.revalidateMsec) {
+				return e;
+			}
+		}
+
+		// one thread loads each key; the rest wait for it
+		CompletableFuture<Entry> mine = new CompletableFuture<Entry>();
+		CompletableFuture<Entry> theirs = this.loading.putIfAbsent(key, mine);
+		if (theirs != null) {
+			try {
+				return theirs.get();
+			} catch (ExecutionException ee) {
+				throw (ee.getCause() instanceof Exception) ? (Exception) ee.getCause() : ee;
+			}
+		}
+
+		try {
+			Entry e = this.loadEntry(key, now);
+			mine.complete(e);
+			return e;
+		} catch (Exception e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.loading.remove(key, mine);
+		}
+	}
+
+	private Entry loadEntry(String key, long now) throws Exception {
+		Entry cur;
+		synchronized (this) {
+			cur = this.entries.get(key);
+		}
+
+		String version = this.store.getNodeGroupVersion(key);
+		if (cur != null && Objects.equals(cur.version, version)) {
+			cur.checkedMsec = now;
+			return cur;
+		}
+
+		Entry e;
+		if (version == null) {
+			e = new Entry(null, null, estimateBytes(null), now);
+		} else {
+			SparqlGraphJson sgjson = this.store.getNodegroup(key);
+			JSONObject json = (sgjson == null) ? null : sgjson.getJson();
+			e = new Entry(json, version, estimateBytes(json), now);
+			synchronized (this) {
+				this.loadCount++;
+			}
+		}
+		this.putEntry(key, e);
+		return e;
+	}
+
+	private synchronized void putEntry(String key, Entry e) {
+		this.removeEntry(key);
+		this.entries.put(key, e);
+		this.bytes += e.bytes;
+
+		Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			Entry old = it.next().getValue();
+			if (old == e) {
+				// keep the one just added even if it's too big by itself
+				continue;
+			}
+			this.bytes -= old.bytes;
+			it.remove();
+		}
+	}
+
+	private void removeEntry(String key) {
+		Entry old = this.entries.remove(key);
+		if (old != null) {
+			this.bytes -= old.bytes;
+		}
+	}
+
+	private static long estimateBytes(JSONObject json) {
+		return (json == null) ? 64 : 2L * json.toJSONString().length() + 64;
 	}
 }
@@ -109,6 +109,14 @@ public class OntologyInfo {
 		this.modelConnection = conn;
 	}
 	
+	/**
+	 * Load a connection, getting each graph's load query results from source
+	 */
+	OntologyInfo(SparqlConnection conn, OntologyLoadTables.Source source) throws Exception {
+		this.loadSparqlConnection(conn, source);
+		this.modelConnection = conn;
+	}
+	
 	/**
 	 * Load via the SparqlQueryClient 
 	 * Deprecated because of performance.  Not clear what the QueryClient adds except overhead.
@@ -141,11 +149,15 @@ public class OntologyInfo {
 	 * @throws Exception
 	 */
 	public void loadSparqlConnection(SparqlConnection conn) throws Exception {
-    	
+		this.loadSparqlConnection(conn, OntologyLoadTables::query);
+    }
+
+	void loadSparqlConnection(SparqlConnection conn, OntologyLoadTables.Source source) throws Exception {
+
 		ArrayList<SparqlEndpointInterface> modelInterfaces = conn.getModelInterfaces();
-		
+
 		for (int i = 0; i < modelInterfaces.size(); i++) {
-    		this.load(modelInterfaces.get(i), conn.getDomain(), conn.isOwlImportsEnabled());
+    		this.load(modelInterfaces.get(i), conn.getDomain(), conn.isOwlImportsEnabled(), source);
     	}
     }
 	
@@ -732,7 +744,7 @@ public class OntologyInfo {
 	/**
 	 * returns the sparql for getting the sub and super-class relationships for known classes.
 	 **/
-	private static String getOwlImportsQuery(String graphName){
+	static String getOwlImportsQuery(String graphName){
 		
 		
 		String retval = "select distinct ?importee from <" + graphName + "> where { " +
@@ -746,9 +758,10 @@ public class OntologyInfo {
 	 * and add loadWarning if the graph is empty
 	 * @param sei
 	 * @param imports
+	 * @param source - load query results for each imported graph
 	 * @throws Exception
 	 */
-	private void loadOwlImports(SparqlEndpointInterface sei, String [] imports) throws Exception {
+	private void loadOwlImports(SparqlEndpointInterface sei, String [] imports, OntologyLoadTables.Source source) throws Exception {
 		// for each import
 		if (imports != null) {
 			for (int i=0; i < imports.length; i++) {
@@ -769,7 +782,7 @@ public class OntologyInfo {
 					int numProperties = this.getNumberOfProperties();
 					
 					// load
-					this.load(importSei, true);
+					this.load(importSei, "", true, source);
 					this.importedGraphs.add(imports[i]);
 					
 					// check for changes
@@ -824,7 +837,7 @@ public class OntologyInfo {
 	/**
 	 * returns the sparql for getting the sub and super-class relationships for known classes.
 	 **/
-	private static String getSuperSubClassQuery(String graphName, String domain){
+	static String getSuperSubClassQuery(String graphName, String domain){
 		// returns a very basic query 
 		// domain : something like "caterham.ge.com"
 		
@@ -870,7 +883,7 @@ public class OntologyInfo {
 	/**
 	 * returns the sparql for getting the sub and super-property relationships for known classes.
 	 **/
-	private static String getSuperSubPropertyQuery(String graphName, String domain){
+	static String getSuperSubPropertyQuery(String graphName, String domain){
 		
 		String retval = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
 				       	"PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
@@ -958,7 +971,7 @@ public class OntologyInfo {
 	 * returns the sparql query used to get all top-level classes of interest. these classes do not
 	 * have meaningful super-classes.
 	 **/
-	private static String getTopLevelClassQuery(String graphName, String domain){
+	static String getTopLevelClassQuery(String graphName, String domain){
 		// domain : something like "caterham.ge.com"
 		String retval = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
 		       			"PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
@@ -991,7 +1004,7 @@ public class OntologyInfo {
 	/**
 	 * returns the sparql query to get all of the enumerated values found in the model.
 	 **/
-	private static String getEnumQuery(String graphName, String domain){
+	static String getEnumQuery(String graphName, String domain){
 		String retval = "select ?Class ?EnumVal from <" + graphName + "> where { " +
 				"  ?Class <http://www.w3.org/2002/07/owl#equivalentClass> ?ec " + getDomainFilterStatement("Class", domain) +". " + 
 				"  ?ec <http://www.w3.org/2002/07/owl#oneOf> ?c . " +
@@ -1024,7 +1037,7 @@ public class OntologyInfo {
 		
 	}
 	
-	private static String getAnnotationLabelsQuery(String graphName, String domain) {
+	static String getAnnotationLabelsQuery(String graphName, String domain) {
 		// This query will be sub-optimal if there are multiple labels and comments for many elements
 		// because every combination will be returned
 		//
@@ -1056,7 +1069,7 @@ public class OntologyInfo {
 			}
 		}
 	}
-	private static String getAnnotationCommentsQuery(String graphName, String domain) {
+	static String getAnnotationCommentsQuery(String graphName, String domain) {
 		// This query will be sub-optimal if there are multiple labels and comments for many elements
 		// because every combination will be returned
 		//
@@ -1102,7 +1115,7 @@ public class OntologyInfo {
 	 *     
 	 * TODO:  extend the OPTIONAL to other clauses in the UNION
 	 */
-	private static String getLoadPropertiesQuery(String graphName, String domain){
+	static String getLoadPropertiesQuery(String graphName, String domain){
 		
 		String retval = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
 						"PREFIX owl: <http://www.w3.org/2002/07/owl#> " +
@@ -1570,35 +1583,39 @@ public class OntologyInfo {
 	 * @throws Exception
 	 */
 	public void load(SparqlEndpointInterface endpoint, String domain, boolean owlImportFlag) throws Exception {
-		Table tab;
-		// find, then recursively load owl imports
+		this.load(endpoint, domain, owlImportFlag, OntologyLoadTables::query);
+	}
+
+	private void load(SparqlEndpointInterface endpoint, String domain, boolean owlImportFlag, OntologyLoadTables.Source source) throws Exception {
+		OntologyLoadTables tables = source.get(endpoint, domain, owlImportFlag);
+
+		// recursively load owl imports
 		if (owlImportFlag) {
-			tab = endpoint.executeQueryToTable(OntologyInfo.getOwlImportsQuery(endpoint.getGraph()));
-			this.loadOwlImports(endpoint, tab.getColumn("importee"));
+			this.loadOwlImports(endpoint, tables.imports, source);
 		}
-		
-		// execute each sub-query in order
-		tab = endpoint.executeQueryToTable(OntologyInfo.getSuperSubClassQuery(endpoint.getGraph(), domain));
+
+		// load each sub-query in order
+		Table tab = tables.superSubClasses;
 		this.loadSuperSubClasses(tab.getColumn("x"), tab.getColumn("y"));
-		
-		tab = endpoint.executeQueryToTable(OntologyInfo.getTopLevelClassQuery(endpoint.getGraph(), domain));
+
+		tab = tables.topLevelClasses;
 		this.loadTopLevelClasses(tab.getColumn("Class"));
-		
-		tab = endpoint.executeQueryToTable(OntologyInfo.getLoadPropertiesQuery(endpoint.getGraph(), domain));
+
+		tab = tables.properties;
 		this.loadProperties(tab.getColumn("Class"),tab.getColumn("Property"),tab.getColumn("Range"));
-		
-		tab = endpoint.executeQueryToTable(OntologyInfo.getSuperSubPropertyQuery(endpoint.getGraph(), domain));
+
+		tab = tables.superSubProperties;
 		this.loadSuperSubProperties(tab.getColumn("subProp"), tab.getColumn("superProp"));
-		
-		tab = endpoint.executeQueryToTable(OntologyInfo.getEnumQuery(endpoint.getGraph(), domain));
+
+		tab = tables.enums;
 		this.loadEnums(tab.getColumn("Class"),tab.getColumn("EnumVal"));
-		
-		tab = endpoint.executeQueryToTable(OntologyInfo.getAnnotationLabelsQuery(endpoint.getGraph(), domain));
+
+		tab = tables.labels;
 		this.loadAnnotationLabels(tab.getColumn("Elem"), tab.getColumn("Label"));
-		
-		tab = endpoint.executeQueryToTable(OntologyInfo.getAnnotationCommentsQuery(endpoint.getGraph(), domain));
+
+		tab = tables.comments;
 		this.loadAnnotationComments(tab.getColumn("Elem"), tab.getColumn("Comment"));
-		
+
 		this.validate();
 	}
 	
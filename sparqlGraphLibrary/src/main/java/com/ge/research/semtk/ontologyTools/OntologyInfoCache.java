@@ -67,6 +67,33 @@ public class OntologyInfoCache {
 		}
 	}
 	
+	/**
+	 * Like removeSimilar(), but for model datasets whose ModelGraphVersion has been recorded or cleared:
+	 * if the dataset is one of a cached connection's graphs, only that graph is re-checked the next time the connection is used.
+	 * Otherwise the connection is cleared.
+	 * @param conn
+	 */
+	public synchronized void revalidateSimilar(SparqlConnection conn) {
+		ArrayList<String> toDelete = new ArrayList<String>();
+		
+		// search through conn's models
+		for (int i=0; i < conn.getModelInterfaceCount(); i++) {
+			String dataset = conn.getModelInterface(i).getDataset();
+			for (String key : this.hash.keySet()) {
+				// if datasets match, it's too close for comfort: re-check or delete
+				if (key.contains(dataset) && ! this.hash.get(key).markChanged(dataset)) {
+					if (! toDelete.contains(key)) {
+						toDelete.add(key);
+					}
+				}
+			}
+		}
+		
+		for (String d : toDelete) {
+			this.hash.remove(d);
+		}
+	}
+	
 	private void clearExpired() {
 		ArrayList<String> keysToRemove = new ArrayList<String>();
 		
@@ -0,0 +1,88 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.ontologyTools;
+
+import com.ge.research.semtk.resultSet.Table;
+import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
+
+/**
+ * Results of the OntologyInfo load queries for one model graph.
+ * Loading the same tables in the same order always builds the same OntologyInfo,
+ * so a cache can keep them per graph and only re-query the graphs that changed.
+ */
+class OntologyLoadTables {
+
+	/**
+	 * Where OntologyInfo gets the tables for each graph it loads, including owl imports
+	 */
+	interface Source {
+		OntologyLoadTables get(SparqlEndpointInterface sei, String domain, boolean owlImportFlag) throws Exception;
+	}
+
+	final String [] imports;		// null if owl imports weren't queried
+	final Table superSubClasses;
+	final Table topLevelClasses;
+	final Table properties;
+	final Table superSubProperties;
+	final Table enums;
+	final Table labels;
+	final Table comments;
+
+	private OntologyLoadTables(String [] imports, Table superSubClasses, Table topLevelClasses, Table properties,
+			Table superSubProperties, Table enums, Table labels, Table comments) {
+		this.imports = imports;
+		this.superSubClasses = superSubClasses;
+		this.topLevelClasses = topLevelClasses;
+		this.properties = properties;
+		this.superSubProperties = superSubProperties;
+		this.enums = enums;
+		this.labels = labels;
+		this.comments = comments;
+	}
+
+	/**
+	 * Total rows in all the tables, as a measure of memory held
+	 */
+	int getNumRows() {
+		return this.superSubClasses.getNumRows() + this.topLevelClasses.getNumRows() + this.properties.getNumRows() +
+				this.superSubProperties.getNumRows() + this.enums.getNumRows() + this.labels.getNumRows() + this.comments.getNumRows() +
+				(this.imports == null ? 0 : this.imports.length);
+	}
+
+	/**
+	 * Run the load queries against sei's graph
+	 */
+	static OntologyLoadTables query(SparqlEndpointInterface sei, String domain, boolean owlImportFlag) throws Exception {
+		String graph = sei.getGraph();
+		String [] imports = null;
+		if (owlImportFlag) {
+			imports = sei.executeQueryToTable(OntologyInfo.getOwlImportsQuery(graph)).getColumn("importee");
+		}
+
+		return new OntologyLoadTables(
+				imports,
+				sei.executeQueryToTable(OntologyInfo.getSuperSubClassQuery(graph, domain)),
+				sei.executeQueryToTable(OntologyInfo.getTopLevelClassQuery(graph, domain)),
+				sei.executeQueryToTable(OntologyInfo.getLoadPropertiesQuery(graph, domain)),
+				sei.executeQueryToTable(OntologyInfo.getSuperSubPropertyQuery(graph, domain)),
+				sei.executeQueryToTable(OntologyInfo.getEnumQuery(graph, domain)),
+				sei.executeQueryToTable(OntologyInfo.getAnnotationLabelsQuery(graph, domain)),
+				sei.executeQueryToTable(OntologyInfo.getAnnotationCommentsQuery(graph, domain)));
+	}
+}
@@ -18,6 +18,7 @@ package com.ge.research.semtk.plotting;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.math.NumberUtils;
@@ -159,10 +160,10 @@ public class PlotlyPlotSpec extends PlotSpec {
 		
 		String jsonTemplateStr = json.toJSONString();
 
-		String [] uniqueVals = table.getColumnUniqueValues(colName);
-		for (String uVal : uniqueVals) {
+		LinkedHashMap<String, Table> subTables = table.getSubsetsByColumn(colName);
+		for (String uVal : subTables.keySet()) {
 		
-			Table subTable = table.getSubsetWhereMatches(colName, uVal);
+			Table subTable = subTables.get(uVal);
 			JSONObject copyObj = (JSONObject) (new JSONParser()).parse(jsonTemplateStr);
 			newArr.add(copyObj);
 			
@@ -35,8 +35,18 @@ public class HiveConnector extends JdbcConnector {
 	 * @throws Exception 
 	 */
 	public HiveConnector(String host, int port, String database, String username, String password, int loginTimeoutSec) throws Exception{
+		this(host, port, database, username, password, loginTimeoutSec, new String[0]);
+	}
+	
+	/**
+	 * Instantiate the connector.
+	 * @param initStatements "set" statements run once on each new connection, instead of in front of every query
+	 * @throws Exception 
+	 */
+	public HiveConnector(String host, int port, String database, String username, String password, int loginTimeoutSec, String[] initStatements) throws Exception{
 		setDriver(HIVE_DRIVER);
 		setLoginTimeout(loginTimeoutSec);
+		setInitStatements(initStatements);
 		setDatabaseUrl(getDatabaseURL(host, port, database));
 		setConnectionProperty(PROPERTY_KEY_USERNAME, username);
 		setConnectionProperty(PROPERTY_KEY_PASSWORD, password);
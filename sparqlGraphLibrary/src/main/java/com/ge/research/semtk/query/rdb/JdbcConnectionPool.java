@@ -0,0 +1,572 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.query.rdb;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.ge.research.semtk.resultSet.Table;
+import com.ge.research.semtk.utility.LocalLogger;
+
+/**
+ * A small pool of JDBC connections for one (driver, url, user).
+ *
+ * Connections handed out are proxies:  close() returns them to the pool.
+ * Idle connections are evicted after idleTimeoutSec, and validated before reuse
+ * if they have been idle longer than validateAfterSec.
+ *
+ * Pools are shared process-wide through getPool(), so every JdbcConnector to the same database reuses connections.
+ * Pooling is off until a service opts in with setDefaults().
+ *
+ * Only autocommit and warnings are reset when a connection is returned:
+ * a lease that changes other session state must be marked with discardOnClose().
+ * Session settings every user needs (e.g. Hive "set" statements) belong in the pool's init statements instead,
+ * which run once on each new physical connection.
+ */
+public class JdbcConnectionPool implements DataSource {
+
+	// process-wide defaults, applied to pools as they are created
+	private static boolean poolingOn = false;		// used by JdbcConnector:  opt in with setDefaults()
+	private static int defaultMaxSize = 10;
+	private static int defaultIdleTimeoutSec = 300;
+	private static int defaultValidateAfterSec = 5;
+	private static int defaultMaxWaitSec = 60;
+
+	private static final ConcurrentHashMap<String, JdbcConnectionPool> pools = new ConcurrentHashMap<String, JdbcConnectionPool>();
+	private static ScheduledExecutorService evictor = null;
+
+	private final String key;
+	private final String driver;
+	private final String dbUrl;
+	private final Properties connectionProperties;
+	private final String validationQuery;
+	private final String[] initStatements;
+	private int loginTimeoutSec = 30;
+	private int maxSize;
+	private long idleTimeoutMs;
+	private long validateAfterMs;
+	private long maxWaitMs;
+
+	private final ArrayDeque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+	private int total = 0;
+	private boolean closed = false;
+
+	// metrics
+	private long created = 0;
+	private long borrowed = 0;
+	private long waited = 0;
+	private long timeouts = 0;
+	private long evicted = 0;
+	private long validationFailures = 0;
+
+	/**
+	 * Create a pool.  Usually use getPool() instead.
+	 * @param validationQuery cheap query to check an idle connection, or null to use Connection.isValid()
+	 */
+	public JdbcConnectionPool(String driver, String dbUrl, Properties connectionProperties, String validationQuery) {
+		this(driver, dbUrl, connectionProperties, validationQuery, new String[0]);
+	}
+
+	/**
+	 * Create a pool.  Usually use getPool() instead.
+	 * @param validationQuery cheap query to check an idle connection, or null to use Connection.isValid()
+	 * @param initStatements statements run on each new physical connection, e.g. "set x=y"
+	 */
+	public JdbcConnectionPool(String driver, String dbUrl, Properties connectionProperties, String validationQuery, String[] initStatements) {
+		this.driver = driver;
+		this.dbUrl = dbUrl;
+		this.connectionProperties = (Properties) connectionProperties.clone();
+		this.validationQuery = validationQuery;
+		this.initStatements = initStatements.clone();
+		this.key = buildKey(driver, dbUrl, connectionProperties, initStatements);
+		this.maxSize = defaultMaxSize;
+		this.idleTimeoutMs = defaultIdleTimeoutSec * 1000L;
+		this.validateAfterMs = defaultValidateAfterSec * 1000L;
+		this.maxWaitMs = defaultMaxWaitSec * 1000L;
+	}
+
+	/**
+	 * Get the shared pool for a (driver, url, user), creating it if needed
+	 * @param validationQuery cheap query to check an idle connection, or null to use Connection.isValid()
+	 */
+	public static JdbcConnectionPool getPool(String driver, String dbUrl, Properties connectionProperties, String validationQuery) {
+		return getPool(driver, dbUrl, connectionProperties, validationQuery, new String[0]);
+	}
+
+	/**
+	 * Get the shared pool for a (driver, url, user, init statements), creating it if needed
+	 * @param validationQuery cheap query to check an idle connection, or null to use Connection.isValid()
+	 * @param initStatements statements run on each new physical connection, e.g. "set x=y"
+	 */
+	public static JdbcConnectionPool getPool(String driver, String dbUrl, Properties connectionProperties, String validationQuery, String[] initStatements) {
+		// password is part of the lookup, so a wrong password never gets someone else's connection
+		String mapKey = buildKey(driver, dbUrl, connectionProperties, initStatements) + "\0" + connectionProperties.getProperty(JdbcConnector.PROPERTY_KEY_PASSWORD, "");
+		JdbcConnectionPool pool = pools.computeIfAbsent(mapKey,
+				k -> new JdbcConnectionPool(driver, dbUrl, connectionProperties, validationQuery, initStatements));
+		startEvictor();
+		return pool;
+	}
+
+	/**
+	 * Set defaults for pools created after this call.  Pooling in JdbcConnector is off until this is called.
+	 * @param maxSize max connections per pool.  0 turns pooling off in JdbcConnector.
+	 * @param idleTimeoutSec close connections idle this long
+	 */
+	public static void setDefaults(int maxSize, int idleTimeoutSec) {
+		poolingOn = maxSize > 0;
+		defaultMaxSize = maxSize;
+		defaultIdleTimeoutSec = idleTimeoutSec;
+	}
+
+	public static int getDefaultMaxSize() {
+		return defaultMaxSize;
+	}
+
+	/**
+	 * Should JdbcConnector get connections from pools
+	 */
+	public static boolean isPoolingOn() {
+		return poolingOn;
+	}
+
+	/**
+	 * Close the physical connection instead of returning it to the pool when conn is closed,
+	 * e.g. because a "set" statement changed its session.
+	 * Does nothing if conn isn't leased from a pool.
+	 */
+	public static void discardOnClose(Connection conn) {
+		if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof Lease) {
+			((Lease) Proxy.getInvocationHandler(conn)).discard();
+		}
+	}
+
+	/**
+	 * Close every pool
+	 */
+	public static void closeAll() {
+		for (JdbcConnectionPool pool : pools.values()) {
+			pool.close();
+		}
+		pools.clear();
+	}
+
+	/**
+	 * Metrics of every pool, one row per pool.  Passwords are never included.
+	 */
+	public static Table getAllMetrics() throws Exception {
+		Table ret = new Table(new String[] {"pool", "maxSize", "active", "idle", "created", "borrowed", "waited", "timeouts", "evicted", "validationFailures"},
+				new String[] {"string", "int", "int", "int", "long", "long", "long", "long", "long", "long"});
+		for (JdbcConnectionPool pool : pools.values()) {
+			ret.addRow(pool.getMetrics());
+		}
+		return ret;
+	}
+
+	private static String buildKey(String driver, String dbUrl, Properties connectionProperties, String[] initStatements) {
+		String key = driver + " " + dbUrl + " " + connectionProperties.getProperty(JdbcConnector.PROPERTY_KEY_USERNAME, "");
+		for (String stmt : initStatements) {
+			key += "; " + stmt;
+		}
+		return key;
+	}
+
+	/**
+	 * Run session set-up statements on a new connection
+	 */
+	static void runInitStatements(Connection conn, String[] initStatements) throws SQLException {
+		for (String init : initStatements) {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute(init);
+			}
+		}
+	}
+
+	private static synchronized void startEvictor() {
+		if (evictor == null) {
+			evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "JdbcConnectionPool-evictor");
+				t.setDaemon(true);
+				return t;
+			});
+			evictor.scheduleWithFixedDelay(() -> {
+				for (JdbcConnectionPool pool : pools.values()) {
+					pool.evictIdle();
+				}
+			}, 30, 30, TimeUnit.SECONDS);
+		}
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		this.notifyAll();
+	}
+
+	public synchronized void setIdleTimeoutSec(int sec) {
+		this.idleTimeoutMs = sec * 1000L;
+	}
+
+	public synchronized void setValidateAfterSec(int sec) {
+		this.validateAfterMs = sec * 1000L;
+	}
+
+	public synchronized void setMaxWaitSec(int sec) {
+		this.maxWaitMs = sec * 1000L;
+	}
+
+	public synchronized void setLoginTimeoutSec(int sec) {
+		this.loginTimeoutSec = sec;
+	}
+
+	/**
+	 * @return pool, maxSize, active, idle, created, borrowed, waited, timeouts, evicted, validationFailures
+	 */
+	public synchronized ArrayList<String> getMetrics() {
+		ArrayList<String> ret = new ArrayList<String>();
+		ret.add(this.key);
+		ret.add(String.valueOf(this.maxSize));
+		ret.add(String.valueOf(this.total - this.idle.size()));
+		ret.add(String.valueOf(this.idle.size()));
+		ret.add(String.valueOf(this.created));
+		ret.add(String.valueOf(this.borrowed));
+		ret.add(String.valueOf(this.waited));
+		ret.add(String.valueOf(this.timeouts));
+		ret.add(String.valueOf(this.evicted));
+		ret.add(String.valueOf(this.validationFailures));
+		return ret;
+	}
+
+	/**
+	 * Borrow a connection.  Closing it returns it to the pool.
+	 * @throws Exception if none becomes available within maxWaitSec
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		long deadline = System.currentTimeMillis() + this.maxWaitMs;
+		boolean countedWait = false;
+		while (true) {
+			PooledConnection pc = null;
+			boolean create = false;
+
+			synchronized (this) {
+				if (this.closed) {
+					throw new SQLException("Connection pool is closed: " + this.key);
+				}
+				if (!this.idle.isEmpty()) {
+					pc = this.idle.pop();
+				} else if (this.total < this.maxSize) {
+					this.total += 1;
+					create = true;
+				} else {
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0) {
+						this.timeouts += 1;
+						throw new SQLException("Timed out waiting for a connection from pool: " + this.key);
+					}
+					if (!countedWait) {
+						this.waited += 1;
+						countedWait = true;
+					}
+					try {
+						this.wait(wait);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted waiting for a connection from pool: " + this.key);
+					}
+					continue;
+				}
+			}
+
+			if (create) {
+				Connection conn = null;
+				try {
+					conn = this.connect();
+					runInitStatements(conn, this.initStatements);
+					pc = new PooledConnection(conn);
+				} catch (Exception e) {
+					if (conn != null) {
+						closeQuietly(conn);
+					}
+					this.discarded();
+					throw (e instanceof SQLException) ? (SQLException) e : new SQLException(e);
+				}
+				synchronized (this) {
+					this.created += 1;
+				}
+			} else if (System.currentTimeMillis() - pc.lastUsed > this.validateAfterMs && !this.isValid(pc.conn)) {
+				synchronized (this) {
+					this.validationFailures += 1;
+				}
+				closeQuietly(pc.conn);
+				this.discarded();
+				continue;
+			}
+
+			synchronized (this) {
+				this.borrowed += 1;
+			}
+			return pc.lease();
+		}
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Pool credentials are fixed");
+	}
+
+	/**
+	 * Close idle connections and refuse further borrowing.  Leased connections are closed when returned.
+	 */
+	public void close() {
+		ArrayList<PooledConnection> toClose;
+		synchronized (this) {
+			this.closed = true;
+			toClose = new ArrayList<PooledConnection>(this.idle);
+			this.total -= this.idle.size();
+			this.idle.clear();
+			this.notifyAll();
+		}
+		for (PooledConnection pc : toClose) {
+			closeQuietly(pc.conn);
+		}
+	}
+
+	/**
+	 * Close connections idle longer than idleTimeoutSec
+	 */
+	public void evictIdle() {
+		ArrayList<PooledConnection> toClose = new ArrayList<PooledConnection>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			Iterator<PooledConnection> it = this.idle.iterator();
+			while (it.hasNext()) {
+				PooledConnection pc = it.next();
+				if (now - pc.lastUsed > this.idleTimeoutMs) {
+					it.remove();
+					toClose.add(pc);
+				}
+			}
+			this.total -= toClose.size();
+			this.evicted += toClose.size();
+			if (toClose.size() > 0) {
+				this.notifyAll();
+			}
+		}
+		for (PooledConnection pc : toClose) {
+			closeQuietly(pc.conn);
+		}
+	}
+
+	/**
+	 * Open a physical connection
+	 */
+	protected Connection connect() throws Exception {
+		Class.forName(this.driver);
+		DriverManager.setLoginTimeout(this.loginTimeoutSec);
+		return DriverManager.getConnection(this.dbUrl, this.connectionProperties);
+	}
+
+	private boolean isValid(Connection conn) {
+		try {
+			if (this.validationQuery == null) {
+				return conn.isValid(this.loginTimeoutSec);
+			}
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute(this.validationQuery);
+			}
+			return true;
+		} catch (Exception e) {
+			LocalLogger.logToStdErr("Discarding pooled connection that failed validation: " + this.key + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * A connection leaves the pool for good
+	 */
+	private synchronized void discarded() {
+		this.total -= 1;
+		this.notifyAll();
+	}
+
+	/**
+	 * A leased connection was closed by its user
+	 */
+	private void release(PooledConnection pc, boolean broken) {
+		if (!broken) {
+			try {
+				// undo anything a cursor may have changed
+				if (!pc.conn.getAutoCommit()) {
+					pc.conn.rollback();
+					pc.conn.setAutoCommit(true);
+				}
+				pc.conn.clearWarnings();
+			} catch (Exception e) {
+				broken = true;
+			}
+		}
+		synchronized (this) {
+			if (!broken && !this.closed && this.total <= this.maxSize) {
+				pc.lastUsed = System.currentTimeMillis();
+				this.idle.push(pc);
+				this.notifyAll();
+				return;
+			}
+		}
+		closeQuietly(pc.conn);
+		this.discarded();
+	}
+
+	private static void closeQuietly(Connection conn) {
+		try {
+			conn.close();
+		} catch (Exception e) {
+			// already gone
+		}
+	}
+
+	/**
+	 * A physical connection, plus the proxy currently leased out
+	 */
+	private class PooledConnection {
+		final Connection conn;
+		long lastUsed = System.currentTimeMillis();
+
+		PooledConnection(Connection conn) {
+			this.conn = conn;
+		}
+
+		Connection lease() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Lease(this));
+		}
+	}
+
+	/**
+	 * Passes calls through to the physical connection until closed.
+	 * close() returns the physical connection to the pool, once.
+	 */
+	private class Lease implements InvocationHandler {
+		private PooledConnection pc;
+		private boolean broken = false;
+
+		Lease(PooledConnection pc) {
+			this.pc = pc;
+		}
+
+		synchronized void discard() {
+			this.broken = true;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			synchronized (this) {
+				if (name.equals("close")) {
+					if (this.pc != null) {
+						PooledConnection released = this.pc;
+						this.pc = null;
+						release(released, this.broken);
+					}
+					return null;
+				} else if (name.equals("isClosed")) {
+					return this.pc == null || this.pc.conn.isClosed();
+				} else if (name.equals("equals")) {
+					return proxy == args[0];
+				} else if (name.equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else if (name.equals("toString")) {
+					return "Pooled connection " + JdbcConnectionPool.this.key;
+				} else if (this.pc == null) {
+					throw new SQLException("Connection is closed");
+				}
+			}
+			try {
+				return method.invoke(this.pc.conn, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				// SQLState class 08 is a connection exception:  don't hand this one out again
+				if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null && ((SQLException) cause).getSQLState().startsWith("08")) {
+					this.broken = true;
+				}
+				throw cause;
+			}
+		}
+	}
+
+	// rest of DataSource
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return null;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		this.setLoginTimeoutSec(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return this.loginTimeoutSec;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+}
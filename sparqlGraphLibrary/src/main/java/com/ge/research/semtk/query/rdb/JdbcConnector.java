@@ -20,6 +20,7 @@ package com.ge.research.semtk.query.rdb;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.Statement;
@@ -44,6 +45,9 @@ public abstract class JdbcConnector extends Connector {
 	private int loginTimeoutSec = 30;								// the login timeout, defaulting to 30 sec
 	private String dbUrl;											// the database url, e.g. prefix@//host:port/sid
 	private Properties connectionProperties = new Properties();  	// connection properties (e.g. username, password)
+	private int fetchSize = 1000;									// rows per round trip (driver hint)
+	private String validationQuery = null;							// cheap query for checking pooled connections
+	private String[] initStatements = new String[0];				// session set-up run on each new connection
 	
 	/**
 	 * Set the driver for this connection
@@ -63,6 +67,26 @@ public abstract class JdbcConnector extends Connector {
 		this.dbUrl = dbUrl;
 	}
 	
+	/**
+	 * Set the number of rows the driver should fetch per round trip.
+	 * Some drivers otherwise read the entire result set into memory.
+	 */
+	public void setFetchSize(int fetchSize){
+		this.fetchSize = fetchSize;
+	}
+	
+	public int getFetchSize(){
+		return this.fetchSize;
+	}
+	
+	/**
+	 * Set statements to run once on each new connection, e.g. "set x=y" session settings.
+	 * Unlike "set" statements in a query, these don't keep a pooled connection from being reused.
+	 */
+	protected void setInitStatements(String... initStatements){
+		this.initStatements = initStatements.clone();
+	}
+	
 	/**
 	 * Set a property for this connection.  
 	 * Common properties are username and password, but different connectors may require other properties.
@@ -104,13 +128,34 @@ public abstract class JdbcConnector extends Connector {
 	}
 	
 	/**
-	 * Get a java.sql.Connection object
+	 * Get a java.sql.Connection object.
+	 * Comes from the shared JdbcConnectionPool for this driver, url and user unless pooling is turned off.
+	 * Closing it returns it to the pool.
 	 */
-	private Connection getConnection() throws Exception{
+	protected Connection getConnection() throws Exception{
+		if (JdbcConnectionPool.isPoolingOn()) {
+			JdbcConnectionPool pool = JdbcConnectionPool.getPool(driver, dbUrl, connectionProperties, validationQuery, initStatements);
+			pool.setLoginTimeoutSec(loginTimeoutSec);
+			return pool.getConnection();
+		}
 		Class.forName(driver);
 		DriverManager.setLoginTimeout(loginTimeoutSec);
-		LocalLogger.logToStdOut("JdbcConnector.getConnection() login timeout = " + DriverManager.getLoginTimeout() + " sec"); // TODO REMOVE
-		return DriverManager.getConnection(dbUrl, connectionProperties);
+		Connection conn = DriverManager.getConnection(dbUrl, connectionProperties);
+		try {
+			JdbcConnectionPool.runInitStatements(conn, initStatements);
+		} catch (Exception e) {
+			conn.close();
+			throw e;
+		}
+		return conn;
+	}
+	
+	/**
+	 * Prepare a connection for streaming a large result set with a cursor.
+	 * Override where the driver needs more than a fetch size (e.g. Postgres needs autocommit off)
+	 */
+	protected void prepareStreamingConnection(Connection conn) throws Exception {
+		// nothing by default
 	}
 	
 	/**
@@ -123,6 +168,7 @@ public abstract class JdbcConnector extends Connector {
 		if(testQuery == null || testQuery.trim().isEmpty()){
 			throw new Exception("Connection requires a test query");
 		}
+		this.validationQuery = testQuery;
 	
 		Connection conn = null;
 		Statement stmt = null;
@@ -194,6 +240,7 @@ public abstract class JdbcConnector extends Connector {
 			ResultSetMetaData rsmeta = null;
 			for (int i = 0; i < queries.length; i++) {
 				if (queries[i].trim().toLowerCase().startsWith("set")) {
+					JdbcConnectionPool.discardOnClose(conn);    // session changed:  don't hand it to anyone else
 					stmt.execute(queries[i].trim());
 				} else {
 					rs = stmt.executeQuery(queries[i].trim());
@@ -238,4 +285,55 @@ public abstract class JdbcConnector extends Connector {
 
 	}		
 	
+	/**
+	 * Runs a query and returns a forward-only cursor over the results, 
+	 * instead of reading them all into a Table.
+	 * Leading "set" statements are run first, as in query().
+	 * @param query the query, whose last statement is a select
+	 * @param params optional values for ? parameters in the select
+	 * @return a cursor which the caller must close
+	 */
+	public JdbcCursor openCursor(String query, Object... params) throws Exception {
+		
+		query = query.trim();
+		if(query.isEmpty()){
+			throw new Exception("Must specify a query");
+		}
+		String[] queries = query.split(";");
+		String select = queries[queries.length - 1].trim();
+		if(!select.toLowerCase().startsWith("select")){
+			throw new Exception("Query is not supported");
+		}
+		
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try{
+			conn = getConnection();
+			prepareStreamingConnection(conn);
+			
+			for (int i = 0; i < queries.length - 1; i++) {
+				if (queries[i].trim().toLowerCase().startsWith("set")) {
+					JdbcConnectionPool.discardOnClose(conn);    // session changed:  don't hand it to anyone else
+					try (Statement setStmt = conn.createStatement()) {
+						setStmt.execute(queries[i].trim());
+					}
+				} else if (!queries[i].trim().isEmpty()) {
+					throw new Exception("Query is not supported");
+				}
+			}
+			
+			stmt = conn.prepareStatement(select, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(this.fetchSize);
+			for (int i = 0; i < params.length; i++) {
+				stmt.setObject(i + 1, params[i]);
+			}
+			return new JdbcCursor(conn, stmt, stmt.executeQuery());
+			
+		}catch(Exception e){
+			if(stmt!=null){	stmt.close(); }
+			if(conn!=null){ conn.close(); }
+			throw e;
+		}
+	}
+	
 }
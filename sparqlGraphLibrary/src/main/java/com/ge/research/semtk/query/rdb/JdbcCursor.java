@@ -0,0 +1,164 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.query.rdb;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+
+import com.ge.research.semtk.resultSet.Table;
+import com.ge.research.semtk.utility.LocalLogger;
+
+/**
+ * A forward-only, streaming query result from a JdbcConnector.
+ * Rows are pulled from the database fetchSize at a time, so memory use does not depend on result size.
+ * Owns its connection:  must be closed.
+ */
+public class JdbcCursor implements AutoCloseable {
+
+	private Connection conn;
+	private Statement stmt;
+	private ResultSet rs;
+	private String[] cols;
+	private String[] colTypes;
+	private int[] sqlTypes;
+	private boolean exhausted = false;
+
+	JdbcCursor(Connection conn, Statement stmt, ResultSet rs) throws Exception {
+		this.conn = conn;
+		this.stmt = stmt;
+		this.rs = rs;
+
+		ResultSetMetaData rsmeta = rs.getMetaData();
+		this.cols = new String[rsmeta.getColumnCount()];
+		this.colTypes = new String[rsmeta.getColumnCount()];
+		this.sqlTypes = new int[rsmeta.getColumnCount()];
+		for(int i = 0; i < rsmeta.getColumnCount(); i++){
+			this.cols[i] = rsmeta.getColumnLabel(i+1).toLowerCase();  // use lower case for column headers
+			this.colTypes[i] = rsmeta.getColumnTypeName(i+1);
+			this.sqlTypes[i] = rsmeta.getColumnType(i+1);
+		}
+	}
+
+	/**
+	 * Column names, lower case
+	 */
+	public String[] getColumnNames() {
+		return this.cols;
+	}
+
+	public String[] getColumnTypes() {
+		return this.colTypes;
+	}
+
+	/**
+	 * Column types from java.sql.Types
+	 */
+	public int[] getColumnSqlTypes() {
+		return this.sqlTypes;
+	}
+
+	/**
+	 * Read the next row as objects instead of strings.
+	 * Dates and times are java.sql.Date, Time or Timestamp; everything else is as the driver's getObject() returns it.
+	 * @return row, or null when the cursor is exhausted
+	 */
+	public Object[] nextObjects() throws Exception {
+		if (this.exhausted || !this.rs.next()) {
+			this.exhausted = true;
+			return null;
+		}
+		Object[] ret = new Object[this.cols.length];
+		for(int i = 0; i < this.cols.length; i++){
+			switch (this.sqlTypes[i]) {
+			case Types.DATE:
+				ret[i] = this.rs.getDate(i+1);
+				break;
+			case Types.TIME:
+			case Types.TIME_WITH_TIMEZONE:
+				ret[i] = this.rs.getTime(i+1);
+				break;
+			case Types.TIMESTAMP:
+			case Types.TIMESTAMP_WITH_TIMEZONE:
+				ret[i] = this.rs.getTimestamp(i+1);
+				break;
+			default:
+				ret[i] = this.rs.getObject(i+1);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Read up to numRows more rows
+	 * @return rows, empty when the cursor is exhausted
+	 */
+	public ArrayList<ArrayList<String>> next(int numRows) throws Exception {
+		ArrayList<ArrayList<String>> recs = new ArrayList<ArrayList<String>>(this.exhausted ? 0 : numRows);
+		while (!this.exhausted && recs.size() < numRows) {
+			if (this.rs.next()) {
+				ArrayList<String> tmp = new ArrayList<String>(this.cols.length);
+				for(int i = 0; i < this.cols.length; i++){
+					tmp.add(this.rs.getString(i+1));
+				}
+				recs.add(tmp);
+			} else {
+				this.exhausted = true;
+			}
+		}
+		return recs;
+	}
+
+	/**
+	 * Read up to numRows more rows into a Table
+	 */
+	public Table nextTable(int numRows) throws Exception {
+		return new Table(this.cols, this.colTypes, this.next(numRows));
+	}
+
+	/**
+	 * Ask the database to stop a running query.  May be called from another thread.
+	 */
+	public void cancel() {
+		try {
+			Statement s = this.stmt;
+			if (s != null) {
+				s.cancel();
+			}
+		} catch (Exception e) {
+			LocalLogger.logToStdErr("JdbcCursor cancel failed: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			if (this.rs != null) { this.rs.close(); }
+			if (this.stmt != null) { this.stmt.close(); }
+		} finally {
+			if (this.conn != null) { this.conn.close(); }
+			this.rs = null;
+			this.stmt = null;
+			this.conn = null;
+		}
+	}
+}
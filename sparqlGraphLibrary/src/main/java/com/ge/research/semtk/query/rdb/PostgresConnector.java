@@ -18,6 +18,8 @@
 
 package com.ge.research.semtk.query.rdb;
 
+import java.sql.Connection;
+
 import com.ge.research.semtk.query.rdb.JdbcConnector;
 
 
@@ -66,4 +68,12 @@ public class PostgresConnector extends JdbcConnector {
 		validateProperty(PROPERTY_KEY_PASSWORD);
 	}
 	
+	/**
+	 * Postgres ignores the fetch size unless autocommit is off
+	 */
+	@Override
+	protected void prepareStreamingConnection(Connection conn) throws Exception {
+		conn.setAutoCommit(false);
+	}
+	
 }
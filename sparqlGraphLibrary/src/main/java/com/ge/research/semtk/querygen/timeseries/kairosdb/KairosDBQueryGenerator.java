@@ -18,6 +18,7 @@ package com.ge.research.semtk.querygen.timeseries.kairosdb;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
 import java.util.UUID;
 
@@ -86,19 +87,22 @@ public class KairosDBQueryGenerator extends TimeSeriesQueryGenerator {
 
 		HashMap<UUID, Object> queryListMap = new HashMap<UUID,Object>();  // UUID to QueryList   
 
+		// split data and config by UUID
+		LinkedHashMap<String, Table> dataByUUID;
+		if(!prefixesProvided){
+			dataByUUID = locationAndValueInfo.getSubsetsByColumn(Utility.COL_NAME_UUID, REQUIRED_COLS);
+		}else{
+			dataByUUID = locationAndValueInfo.getSubsetsByColumn(Utility.COL_NAME_UUID, (String[])ArrayUtils.addAll(REQUIRED_COLS, OPTIONAL_COLS));
+		}
+		LinkedHashMap<String, Table> configByUUID = locationAndValueInfo.getSubsetsByColumn(Utility.COL_NAME_UUID, CONFIG_COLS);
+		
 		// for each unique UUID
-		String[] uuidsUnique = locationAndValueInfo.getColumnUniqueValues(Utility.COL_NAME_UUID);
-		for(String uuid : uuidsUnique){
+		for(String uuid : dataByUUID.keySet()){
 
 			queryListMap.put(UUID.fromString(uuid), new QueryList());	// instantiate an empty QueryList for this UUID
 
-			Table dataForOneUUID;
-			if(!prefixesProvided){
-				dataForOneUUID = locationAndValueInfo.getSubsetWhereMatches(Utility.COL_NAME_UUID, uuid, REQUIRED_COLS);
-			}else{
-				dataForOneUUID = locationAndValueInfo.getSubsetWhereMatches(Utility.COL_NAME_UUID, uuid, (String[])ArrayUtils.addAll(REQUIRED_COLS, OPTIONAL_COLS));
-			}
-			Table configForOneUUID = locationAndValueInfo.getSubsetWhereMatches(Utility.COL_NAME_UUID, uuid, CONFIG_COLS);
+			Table dataForOneUUID = dataByUUID.get(uuid);
+			Table configForOneUUID = configByUUID.get(uuid);
 
 			// get KairosDB database for this UUID (and confirm there is only 1)
 			if(dataForOneUUID.getColumnUniqueValues(Utility.COL_NAME_DATABASE_SERVER).length > 1){
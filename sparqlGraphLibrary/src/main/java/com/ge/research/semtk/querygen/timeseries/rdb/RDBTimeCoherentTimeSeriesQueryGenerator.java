@@ -3,6 +3,7 @@ package com.ge.research.semtk.querygen.timeseries.rdb;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.UUID;
 
 import org.json.simple.JSONObject;
@@ -91,14 +92,14 @@ public class RDBTimeCoherentTimeSeriesQueryGenerator extends TimeSeriesQueryGene
 		ArrayList<QueryBuilder> retval = new ArrayList<QueryBuilder>();
 		try{
 
-			// get list of unique UUIDs
-			String[] uuidsUnique = locationAndValueInfo.getColumnUniqueValues(Utility.COL_NAME_UUID);
+			// get config for each unique UUID
+			LinkedHashMap<String, Table> configByUUID = locationAndValueInfo.getSubsetsByColumn(Utility.COL_NAME_UUID, CONFIG_COLS);
 			
 			// for each UUID, gather info and create QueryBuilder
-			for(String uuid : uuidsUnique){
+			for(String uuid : configByUUID.keySet()){
 
 				Table dataForOneUUID = getDataForOneUUID(uuid);				
-				Table configForOneUUID = locationAndValueInfo.getSubsetWhereMatches(Utility.COL_NAME_UUID, uuid, CONFIG_COLS);
+				Table configForOneUUID = configByUUID.get(uuid);
 				
 				int tagNameIndex = dataForOneUUID.getColumnIndex(Utility.COL_NAME_TAG_NAME); 
 				int varNameIndex = dataForOneUUID.getColumnIndex(Utility.COL_NAME_VARIABLE_NAME); 				
@@ -18,11 +18,14 @@
 
 package com.ge.research.semtk.resultSet;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.regex.Pattern;
 
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 import com.ge.research.semtk.auth.AuthorizationException;
 import com.ge.research.semtk.edc.client.EndpointNotFoundException;
@@ -227,6 +230,63 @@ public abstract class GeneralResultSet {
 	 */
 	@SuppressWarnings("unchecked")
 	public JSONObject toJson(){
+		JSONObject retval = this.getStatusJson();
+		
+		// in any case, if the results are not null, let's include them. 
+		// partial results may be meaningful to some entities.
+		JSONObject results = this.getResultsJSON();
+		if(results != null && getResultsBlockName() != null && getResultsBlockName().length() > 0){
+			retval.put(getResultsBlockName(), results);
+		}
+		
+		return retval;	// return the JSONObject
+	}
+	
+	/**
+	 * Write the same json as toJson(), streaming the results block
+	 * @param writer - flushed but not closed
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		JSONObject status = this.getStatusJson();
+		
+		writer.write("{");
+		boolean first = true;
+		for (Object k : status.keySet()) {
+			if (!first) {
+				writer.write(",");
+			}
+			writer.write(JSONValue.toJSONString(k));
+			writer.write(":");
+			JSONValue.writeJSONString(status.get(k), writer);
+			first = false;
+		}
+		if(this.hasResults() && getResultsBlockName() != null && getResultsBlockName().length() > 0){
+			writer.write("," + JSONValue.toJSONString(getResultsBlockName()) + ":");
+			this.writeResultsJson(writer);
+		}
+		writer.write("}");
+		writer.flush();
+	}
+	
+	/**
+	 * Are there any results to send
+	 */
+	protected boolean hasResults() {
+		return this.resultsContents != null;
+	}
+	
+	/**
+	 * Write the results block.  Subclasses holding large results may stream them.
+	 */
+	protected void writeResultsJson(Writer writer) throws IOException {
+		JSONValue.writeJSONString(this.getResultsJSON(), writer);
+	}
+	
+	/**
+	 * Status, message and rationale
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject getStatusJson(){
 		JSONObject retval = new JSONObject();
 		
 		if(this.success == null){  // the status is unknown. return of results called before values set.
@@ -249,13 +309,7 @@ public abstract class GeneralResultSet {
 			retval.put("rationale", rationaleString);
 		}
 		
-		// in any case, if the results are not null, let's include them. 
-		// partial results may be meaningful to some entities.
-		if(this.resultsContents != null && getResultsBlockName() != null && getResultsBlockName().length() > 0){
-			retval.put(getResultsBlockName(), this.resultsContents);
-		}
-		
-		return retval;	// return the JSONObject
+		return retval;
 	}	
 	
 }
@@ -21,20 +21,31 @@ package com.ge.research.semtk.resultSet;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang.ArrayUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 import com.ge.research.semtk.belmont.XSDSupportedType;
 import com.ge.research.semtk.utility.Utility;
@@ -51,6 +62,9 @@ public class Table {
 	public final static String JSON_KEY_ROW_COUNT = "row_count";
 	public final static String JSON_KEY_COL_COUNT = "col_count";
 	public final static String JSON_TYPE = "type";
+	
+	// tables with at least this many rows are sorted in parallel
+	public final static int PARALLEL_SORT_MIN_ROWS = 100000;
 
 	private String[] columnNames;
 	private String[] columnTypes;
@@ -511,11 +525,9 @@ public class Table {
 	 * @return
 	 */
 	public String[] getColumnUniqueValues(int index){
-		ArrayList<String> column = new ArrayList<String>();
+		LinkedHashSet<String> column = new LinkedHashSet<String>();		// unique, in order of first appearance
 		for(ArrayList<String> row : rows){
-			if(!column.contains(row.get(index))){  // enforce uniqueness
-				column.add(row.get(index));
-			}
+			column.add(row.get(index));
 		}
 		return column.toArray(new String[column.size()]);
 	}
@@ -754,15 +766,10 @@ public class Table {
 		
 		// use rowHash to add only unique rows to newRows
 		ArrayList<ArrayList<String>> newRows = new ArrayList<ArrayList<String>>();   
-		HashSet<String> rowHash = new HashSet<String>();
+		HashSet<List<String>> rowHash = new HashSet<List<String>>(this.rows.size() * 2);
 		for (ArrayList<String> row : this.rows) {
-			String hashVal = "";
-			for (int i=0; i < keyCols.length; i++) {
-				hashVal += row.get(keyCols[i]) + "|";
-			}
-			if (! rowHash.contains(hashVal)) {
+			if (rowHash.add(getKey(row, keyCols))) {
 				newRows.add(row);
-				rowHash.add(hashVal);
 			}
 		}
 		
@@ -771,6 +778,17 @@ public class Table {
 	}
 		
 	
+	/**
+	 * Values of some columns of a row, usable as a hash key
+	 */
+	private static List<String> getKey(ArrayList<String> row, int [] keyCols) {
+		String [] key = new String[keyCols.length];
+		for (int i=0; i < keyCols.length; i++) {
+			key[i] = row.get(keyCols[i]);
+		}
+		return Arrays.asList(key);
+	}
+	
 	/**
 	 * Get a table instance from a JSON object
 	 * Json object looks like this: {"col_names":["colA","colB","colC"],"col_type":["String","String","String"],"rows":[["apple","banana","coconut"],["adam","barbara","chester"]],"col_count":3\"row_count":2}
@@ -829,25 +847,35 @@ public class Table {
 	 * Create a CSV string containing the table rows and columns.
 	 */
 	public String toCSVString(int maxRows) throws IOException{
+		StringWriter writer = new StringWriter();
+		this.writeCsv(writer, maxRows);
+		return writer.toString();
+	}
+	
+	/**
+	 * Write the table as CSV, the same as toCSVString(), one row at a time
+	 * @param writer - flushed but not closed
+	 */
+	public void writeCsv(Writer writer) throws IOException {
+		this.writeCsv(writer, -1);
+	}
+	
+	/**
+	 * Write the table as CSV, the same as toCSVString(maxRows), one row at a time
+	 * @param writer - flushed but not closed
+	 */
+	public void writeCsv(Writer writer, int maxRows) throws IOException {
 		
 		if(this.getColumnNames().length == 0){
-			return "";
+			return;
 		}
 		
-		StringBuffer buf = new StringBuffer();
-		
-		// get CSV for column names	
-		ArrayList<String> headers = new ArrayList<String>( Arrays.asList( this.getColumnNames() ) ); // gets col names in order
-		buf.append(Utility.getCSVString(headers));
-		buf.append("\n");
-
-		// get CSV for data rows
+		CSVPrinter printer = new CSVPrinter(writer, CSVFormat.EXCEL.withRecordSeparator("\n"));
+		printer.printRecord((Object[]) this.getColumnNames());
 		for(int i = 0; i < this.getNumRows() && i != maxRows; i++){	
-			buf.append(getRowAsCSVString(i));			
-			buf.append("\n");
-		}		
-		
-		return buf.toString();
+			printer.printRecord(this.getRow(i));
+		}
+		printer.flush();
 	}
 	
 	/**
@@ -959,6 +987,154 @@ public class Table {
 		
 	}
 
+	/**
+	 * Write the table as json, the same as toJson().toJSONString(), 
+	 * escaping each row as it goes instead of building a second copy of the table.
+	 * @param writer - flushed but not closed
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		int rowCount = 0;
+		for (ArrayList<String> row : this.rows) {
+			if (row != null) {
+				rowCount += 1;
+			}
+		}
+		
+		writer.write("{\"" + JSON_TYPE + "\":\"TABLE\",\"" + JSON_KEY_COL_NAMES + "\":");
+		writeJsonRow(writer, Arrays.asList(this.columnNames));
+		writer.write(",\"" + JSON_KEY_COL_TYPES + "\":");
+		writeJsonRow(writer, Arrays.asList(this.columnTypes));
+		writer.write(",\"" + JSON_KEY_COL_COUNT + "\":" + this.columnNames.length);
+		writer.write(",\"" + JSON_KEY_ROW_COUNT + "\":" + rowCount);
+		writer.write(",\"" + JSON_KEY_ROWS + "\":[");
+		boolean first = true;
+		for (ArrayList<String> row : this.rows) {
+			if (row != null) {   // do not include null rows...
+				if (!first) {
+					writer.write(",");
+				}
+				writeJsonRow(writer, row);
+				first = false;
+			}
+		}
+		writer.write("]}");
+		writer.flush();
+	}
+	
+	/**
+	 * Write one row as a json array of strings: ["a","b","c"]
+	 */
+	public static void writeJsonRow(Writer writer, List<String> row) throws IOException {
+		writer.write("[");
+		for (int i = 0; i < row.size(); i++) {
+			if (i > 0) {
+				writer.write(",");
+			}
+			String val = row.get(i);
+			if (val == null) {
+				writer.write("null");
+			} else {
+				writer.write("\"");
+				writer.write(Utility.escapeJsonString(val));
+				writer.write("\"");
+			}
+		}
+		writer.write("]");
+	}
+	
+	/**
+	 * Read a table from json, as written by writeJson() or toJson(),
+	 * building rows directly instead of parsing into a JSONObject first.
+	 * @param reader
+	 * @throws Exception
+	 */
+	public static Table fromJson(Reader reader) throws Exception {
+		JsonTableHandler handler = new JsonTableHandler();
+		try {
+			new JSONParser().parse(reader, handler);
+		} catch (ParseException e) {
+			throw new Exception("Cannot create Table from json: " + e.toString());
+		}
+		
+		if (handler.cols == null) throw new Exception("Cannot create Table from json: no column names specified");
+		if (handler.colTypes == null) throw new Exception("Cannot create Table from json: no column types specified");
+		if (handler.colTypes.contains(null)) throw new Exception("Cannot create Table with null column type");
+		
+		return new Table(handler.cols, handler.colTypes, handler.rows);
+	}
+	
+	/**
+	 * Collects the columns and rows of a table while it is parsed
+	 */
+	private static class JsonTableHandler implements ContentHandler {
+		ArrayList<String> cols = null;
+		ArrayList<String> colTypes = null;
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		
+		private int depth = 0;			// open objects and arrays
+		private String key = null;		// current key of the table object
+		private ArrayList<String> row = null;
+		
+		public void startJSON() { }
+		public void endJSON() { }
+		
+		public boolean startObject() {
+			this.depth++;
+			return true;
+		}
+		
+		public boolean endObject() {
+			this.depth--;
+			return true;
+		}
+		
+		public boolean startObjectEntry(String key) {
+			if (this.depth == 1) {
+				this.key = key;
+			}
+			return true;
+		}
+		
+		public boolean endObjectEntry() {
+			return true;
+		}
+		
+		public boolean startArray() {
+			this.depth++;
+			if (this.depth == 2) {
+				if (JSON_KEY_COL_NAMES.equals(this.key)) {
+					this.cols = new ArrayList<String>();
+				} else if (JSON_KEY_COL_TYPES.equals(this.key)) {
+					this.colTypes = new ArrayList<String>();
+				}
+			} else if (this.depth == 3 && JSON_KEY_ROWS.equals(this.key)) {
+				this.row = new ArrayList<String>();
+			}
+			return true;
+		}
+		
+		public boolean endArray() {
+			if (this.depth == 3 && this.row != null) {
+				this.rows.add(this.row);
+				this.row = null;
+			}
+			this.depth--;
+			return true;
+		}
+		
+		public boolean primitive(Object value) {
+			String s = (value == null) ? null : value.toString();
+			if (this.depth == 2 && JSON_KEY_COL_NAMES.equals(this.key)) {
+				this.cols.add(s);
+			} else if (this.depth == 2 && JSON_KEY_COL_TYPES.equals(this.key)) {
+				this.colTypes.add(s);
+			} else if (this.depth == 3 && this.row != null) {
+				this.row.add(s != null ? s : "null");
+			}
+			return true;
+		}
+	}
+
 	/**
 	 * Clear all data
 	 */
@@ -982,17 +1158,21 @@ public class Table {
 			return tables.get(0);  	// if only one table given, then pass it back
 		}
 		
+		int totalRows = 0;
+		for(Table t : tables){
+			totalRows += t.getNumRows();
+		}
+		
 		String[] mergedTableCols = null;
 		String[] mergedTableColTypes = null;
-		ArrayList<ArrayList<String>> mergedTableRows = new ArrayList<ArrayList<String>>();
-		ArrayList<String> rowReordered;
+		ArrayList<ArrayList<String>> mergedTableRows = new ArrayList<ArrayList<String>>(totalRows);
 		
 		for(Table t : tables){
 		
 			if(mergedTableCols == null){  	// for the first table...				
 				mergedTableCols = t.getColumnNames();
 				mergedTableColTypes = t.getColumnTypes();
-				mergedTableRows = t.getRows();
+				mergedTableRows.addAll(t.getRows());
 			}else{							// for subsequent tables...											
 				if(!Utility.arraysSameMinusOrder(mergedTableCols, t.getColumnNames())){
 					throw new Exception("Cannot merge tables: column set is not the same");
@@ -1002,20 +1182,23 @@ public class Table {
 				}
 				// TODO should also check that the column-type PAIRS are the same
 				
-				// reorder and collect the table's rows
-				for(ArrayList<String> row : t.getRows()){
-					rowReordered = new ArrayList<String>();
-					if(Arrays.equals(mergedTableCols, t.getColumnNames())){						
-						rowReordered = row; // columns are in the same order, faster to just add the row as is
-					}else{
-						// columns are not in the same order - reorder the row 
-						for(String col : mergedTableCols){
-							int i = Arrays.asList(t.getColumnNames()).indexOf(col);
+				if(Arrays.equals(mergedTableCols, t.getColumnNames())){
+					// columns are in the same order, faster to just add the rows as is
+					mergedTableRows.addAll(t.getRows());
+				}else{
+					// columns are not in the same order - reorder each row 
+					int [] map = new int[mergedTableCols.length];
+					for(int i = 0; i < mergedTableCols.length; i++){
+						map[i] = t.getColumnIndex(mergedTableCols[i]);
+					}
+					for(ArrayList<String> row : t.getRows()){
+						ArrayList<String> rowReordered = new ArrayList<String>(map.length);
+						for(int i : map){
 							rowReordered.add(row.get(i));
-						}						
+						}
+						mergedTableRows.add(rowReordered);
 					}
-					mergedTableRows.add(rowReordered);  // collect the (reordered) row
-				}			
+				}
 			}			
 		}
 		
@@ -1066,18 +1249,67 @@ public class Table {
 		if (matchColIndex < 0) {
 			throw new Exception("Can't find column in table: " + matchColName);
 		}
+		int [] returnCols = this.getColumnIndices(returnColNames);
 		for(ArrayList<String> row : getRows()){
-			if(row.get(matchColIndex).equals(matchColValue)){  // met the match condition
-				ArrayList<String> newRow = new ArrayList<String>();  // assemble only the columns requested
-				for(String retCol : returnColNames){
-					newRow.add(row.get(getColumnIndex(retCol)));
-				}
-				ret.addRow(newRow);
+			if(matchColValue.equals(row.get(matchColIndex))){  // met the match condition
+				ret.rows.add(getSubRow(row, returnCols));		// only the columns requested
 			}
 		}
 		return ret;
 	}	
 	
+	/**
+	 * Split the table into subsets by the values of a column, in one pass.
+	 * Same as calling getSubsetWhereMatches() for each of getColumnUniqueValues(matchColName)
+	 * @param matchColName the name of the column to match
+	 * @param returnColNames the names of the columns to return
+	 * @return map of column value to the subset with that value, in order of first appearance
+	 * @throws Exception
+	 */
+	public LinkedHashMap<String, Table> getSubsetsByColumn(String matchColName, String[] returnColNames) throws Exception {
+		int matchColIndex = this.getColumnIndexOrError(matchColName);
+		int [] returnCols = this.getColumnIndices(returnColNames);
+		String [] returnColTypes = new String[returnCols.length];
+		for(int i = 0; i < returnCols.length; i++){
+			returnColTypes[i] = this.columnTypes[returnCols[i]];
+		}
+		
+		LinkedHashMap<String, Table> ret = new LinkedHashMap<String, Table>();
+		for(ArrayList<String> row : this.rows){
+			String val = row.get(matchColIndex);
+			Table subset = ret.get(val);
+			if(subset == null){
+				subset = new Table(returnColNames, returnColTypes, null);
+				ret.put(val, subset);
+			}
+			subset.rows.add(getSubRow(row, returnCols));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Split the table into subsets by the values of a column, in one pass.
+	 */
+	public LinkedHashMap<String, Table> getSubsetsByColumn(String matchColName) throws Exception {
+		return this.getSubsetsByColumn(matchColName, this.getColumnNames());
+	}
+	
+	private int [] getColumnIndices(String [] colNames) throws Exception {
+		int [] ret = new int[colNames.length];
+		for(int i = 0; i < colNames.length; i++){
+			ret[i] = this.getColumnIndexOrError(colNames[i]);
+		}
+		return ret;
+	}
+	
+	private static ArrayList<String> getSubRow(ArrayList<String> row, int [] cols) {
+		ArrayList<String> ret = new ArrayList<String>(cols.length);
+		for(int c : cols){
+			ret.add(row.get(c));
+		}
+		return ret;
+	}
+	
 	/**
 	 * Retrieve a table containing the subset of rows by matching on multiple columns.  
 	 * Matching is determined by case-insensitive substring.
@@ -1149,10 +1381,7 @@ public class Table {
 	 * @param colName
 	 */
 	public void sortByColumnStr(String colName) {
-		int col = this.getColumnIndex(colName);
-		this.rows.sort	(	(ArrayList<String> rowA, ArrayList<String> rowB) -> 
-								rowA.get(col).compareTo(rowB.get(col))
-						);
+		this.sortByKey(this.getColumnIndex(colName), (String s) -> s, false);
 	}
 	
 	/** 
@@ -1160,10 +1389,7 @@ public class Table {
 	 * @param colName
 	 */
 	public void sortByColumnInt(String colName) {
-		int col = this.getColumnIndex(colName);
-		this.rows.sort	(	(ArrayList<String> rowA, ArrayList<String> rowB) -> 
-								Integer.parseInt(rowA.get(col)) - Integer.parseInt(rowB.get(col))
-						);	
+		this.sortByKey(this.getColumnIndex(colName), Integer::valueOf, false);
 	}
 	
 	/**
@@ -1171,10 +1397,7 @@ public class Table {
 	 * @param colName
 	 */
 	public void sortByColumnDouble(String colName) {
-		int col = this.getColumnIndex(colName);
-		this.rows.sort	(	(ArrayList<String> rowA, ArrayList<String> rowB) -> 
-								Double.compare(Double.parseDouble(rowA.get(col)), Double.parseDouble(rowB.get(col)))
-						);	
+		this.sortByKey(this.getColumnIndex(colName), Double::valueOf, false);
 	}
 	
 	/**
@@ -1182,10 +1405,55 @@ public class Table {
 	 * @param colName
 	 */
 	public void sortByColumnDoubleRev(String colName) {
-		int col = this.getColumnIndex(colName);
-		this.rows.sort	(	(ArrayList<String> rowA, ArrayList<String> rowB) -> 
-								Double.compare(Double.parseDouble(rowB.get(col)), Double.parseDouble(rowA.get(col)))
-						);	
+		this.sortByKey(this.getColumnIndex(colName), Double::valueOf, true);
+	}
+	
+	/**
+	 * A row and its parsed sort key
+	 */
+	private static class KeyedRow<K extends Comparable<K>> implements Comparable<KeyedRow<K>> {
+		final K key;
+		final ArrayList<String> row;
+		
+		KeyedRow(K key, ArrayList<String> row) {
+			this.key = key;
+			this.row = row;
+		}
+		
+		public int compareTo(KeyedRow<K> other) {
+			return this.key.compareTo(other.key);
+		}
+	}
+	
+	/**
+	 * Stable sort on one column, parsing each cell once instead of on every comparison.
+	 * Large tables are parsed and sorted in parallel.
+	 * @param col column index
+	 * @param parse cell to sort key
+	 * @param reverse descending
+	 */
+	@SuppressWarnings("unchecked")
+	private <K extends Comparable<K>> void sortByKey(int col, Function<String, K> parse, boolean reverse) {
+		int n = this.rows.size();
+		boolean parallel = n >= PARALLEL_SORT_MIN_ROWS;
+		
+		KeyedRow<K> [] keyed = new KeyedRow[n];
+		IntStream indices = parallel ? IntStream.range(0, n).parallel() : IntStream.range(0, n);
+		indices.forEach(i -> {
+			ArrayList<String> row = this.rows.get(i);
+			keyed[i] = new KeyedRow<K>(parse.apply(row.get(col)), row);
+		});
+		
+		Comparator<KeyedRow<K>> cmp = reverse ? Collections.reverseOrder() : Comparator.naturalOrder();
+		if (parallel) {
+			Arrays.parallelSort(keyed, cmp);
+		} else {
+			Arrays.sort(keyed, cmp);
+		}
+		
+		for (int i = 0; i < n; i++) {
+			this.rows.set(i, keyed[i].row);
+		}
 	}
 	
 	/**
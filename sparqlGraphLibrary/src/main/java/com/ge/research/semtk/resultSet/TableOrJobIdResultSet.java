@@ -28,7 +28,7 @@ public class TableOrJobIdResultSet extends TableResultSet {
 	}
 	
 	public void addResults(String jobId) throws Exception {
-		if (this.resultsContents != null) {
+		if (this.hasResults()) {
 			throw new Exception("Can't addResults a second time to same TableOrJobIdResultSet");
 		}
 		
@@ -38,7 +38,7 @@ public class TableOrJobIdResultSet extends TableResultSet {
 	}
 	
 	public void addResults(Table table) throws Exception {
-		if (this.resultsContents != null) {
+		if (this.hasResults()) {
 			throw new Exception("Can't addResults a second time to same TableOrJobIdResultSet");
 		}
 		
@@ -46,10 +46,10 @@ public class TableOrJobIdResultSet extends TableResultSet {
 	}
 	
 	public boolean isJobId() {
-		return this.resultsContents != null && this.resultsContents.containsKey(JOB_ID_KEY);
+		return !this.hasTable() && this.resultsContents != null && this.resultsContents.containsKey(JOB_ID_KEY);
 	}
 	public boolean isTable() {
-		return this.resultsContents != null && this.resultsContents.containsKey(TableResultSet.TABLE_JSONKEY);
+		return this.hasTable();
 	}
 	
 	/**
@@ -57,7 +57,7 @@ public class TableOrJobIdResultSet extends TableResultSet {
 	 * @return
 	 */
 	public String getJobId() {
-		return (String) (this.resultsContents.get(JOB_ID_KEY));
+		return this.isJobId() ? (String) (this.resultsContents.get(JOB_ID_KEY)) : null;
 	}
 
 	@Override
@@ -92,7 +92,7 @@ public class TableOrJobIdResultSet extends TableResultSet {
 			if (tracker.jobSucceeded(jobId)) {
 				// TODO: this allows a string overflow to happen and generate an error
 				//t = this.resultsClient.getTableResultsJson(jobId, Integer.MAX_VALUE);
-				return Table.fromJson(resultsClient.execGetBlobResult(jobId));
+				return resultsClient.execGetBlobResultTable(jobId);
 			} else {
 				String msg = tracker.getJobStatusMessage(jobId);
 				throw new Exception(msg);
@@ -19,6 +19,8 @@
 package com.ge.research.semtk.resultSet;
 
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 
 import org.json.simple.JSONObject;
@@ -33,6 +35,8 @@ public class TableResultSet extends GeneralResultSet{
 	
 	public static final String RESULTS_BLOCK_NAME = "table";
 	public final static String TABLE_JSONKEY = "@table";
+	
+	private Table table = null;		// added with addResults(Table) and not converted to json unless asked
 
 	public TableResultSet(JSONObject encoded) throws EndpointNotFoundException {
 		super();
@@ -77,6 +81,9 @@ public class TableResultSet extends GeneralResultSet{
 	
 	@Override
 	public Table getResults() throws Exception {
+		if (this.table != null) {
+			return this.table.copy();
+		}
 		Table table = Table.fromJson((JSONObject)this.resultsContents.get(TABLE_JSONKEY));
 		return table;
 	}
@@ -96,16 +103,71 @@ public class TableResultSet extends GeneralResultSet{
 	}
 	
 	/**
-	 * Add results as a Table object
+	 * Add results as a Table object.
+	 * Keeps a copy of the table's rows, so later changes to table don't change the results.
+	 * The json isn't built unless asked for:  writeJson() writes straight from the rows.
 	 */
 	public void addResults(Table table) throws Exception {
-		JSONObject jsonObj = new JSONObject();
-		jsonObj.put(TABLE_JSONKEY,table.toJson()); 
-		addResultsJSON(jsonObj);
+		this.resultsContents = null;
+		this.table = table.copy();
+	}
+	
+	@Override
+	public void addResultsJSON(JSONObject results) {
+		this.table = null;
+		super.addResultsJSON(results);
+	}
+	
+	/**
+	 * Get result contents as JSON.
+	 * A table added with addResults(Table) is converted once and the json replaces it,
+	 * so, as with results added as json, changes callers make to the returned json are part of the results.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public JSONObject getResultsJSON() {
+		if (this.table != null) {
+			JSONObject jsonObj = new JSONObject();
+			try {
+				jsonObj.put(TABLE_JSONKEY, this.table.toJson());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			this.resultsContents = jsonObj;
+			this.table = null;
+		}
+		return this.resultsContents;
+	}
+	
+	/**
+	 * Is there a table, as json or not
+	 */
+	protected boolean hasTable() {
+		return this.table != null || (this.resultsContents != null && this.resultsContents.containsKey(TABLE_JSONKEY));
+	}
+	
+	@Override
+	protected boolean hasResults() {
+		return this.table != null || super.hasResults();
+	}
+	
+	/**
+	 * Write a table added with addResults(Table) straight from its rows
+	 */
+	@Override
+	protected void writeResultsJson(Writer writer) throws IOException {
+		if (this.table != null) {
+			writer.write("{\"" + TABLE_JSONKEY + "\":");
+			this.table.writeJson(writer);
+			writer.write("}");
+		} else {
+			super.writeResultsJson(writer);
+		}
 	}
 
 	protected void processConstructJson(JSONObject encoded) {	
 		if(encoded.get(getResultsBlockName()) != null){
+			this.table = null;
 			this.resultsContents = (JSONObject) encoded.get(getResultsBlockName());
 		}
 	}
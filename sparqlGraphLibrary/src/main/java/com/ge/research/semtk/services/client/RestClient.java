@@ -17,11 +17,16 @@
 
 package com.ge.research.semtk.services.client;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.ConnectException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -221,12 +226,9 @@ public  class RestClient extends Client implements Runnable {
 	}
 	
 	/**
-	 * Make the service call.  
-	 * Subclasses may override and return a more useful Object.
-	 * @param returnRawResponse True to return raw response.  False to return response parsed into JSON.
-	 * @return the raw response string (if returnRawResponse is true), or an Object that can be cast to a JSONObject (if returnRawResponse is false).     
+	 * Send the request, leaving the response in this.httpResponse with its entity unread
 	 */
-	public Object execute(boolean returnRawResponse) throws ConnectException, Exception {
+	private void executeToResponse() throws ConnectException, Exception {
 		
 		// set all parameters available upon instantiation
 		buildParametersJSON();  
@@ -312,6 +314,17 @@ public  class RestClient extends Client implements Runnable {
 		} catch (Exception e) {
 			throw new Exception(String.format("Error connecting to %s", this.conf.getServiceURL()), e);
 		}
+	}
+	
+	/**
+	 * Make the service call.  
+	 * Subclasses may override and return a more useful Object.
+	 * @param returnRawResponse True to return raw response.  False to return response parsed into JSON.
+	 * @return the raw response string (if returnRawResponse is true), or an Object that can be cast to a JSONObject (if returnRawResponse is false).     
+	 */
+	public Object execute(boolean returnRawResponse) throws ConnectException, Exception {
+		
+		this.executeToResponse();
 		
 		// handle the output			
 		String responseTxt = null;
@@ -358,6 +371,43 @@ public  class RestClient extends Client implements Runnable {
 		}
 	}
 	
+	/**
+	 * Make the service call and return a reader on the response body, which is read from the connection
+	 * as the caller goes instead of being held in memory.
+	 * Caller must close the reader.
+	 * @throws Exception if the service returns an HTTP error or an empty response
+	 */
+	public Reader executeToReader() throws ConnectException, Exception {
+		
+		this.executeToResponse();
+		
+		HttpEntity responseEntity = this.httpResponse.getEntity();
+		if (responseEntity == null) {
+			throw new Exception("Received null response text");
+		}
+		if (this.httpResponse.getStatusLine().getStatusCode() != 200) {
+			throw new Exception(EntityUtils.toString(responseEntity, "UTF-8"));
+		}
+		
+		PushbackReader reader = new PushbackReader(new BufferedReader(new InputStreamReader(responseEntity.getContent(), StandardCharsets.UTF_8)));
+		try {
+			// skip leading whitespace to check for an empty response
+			int c = reader.read();
+			while (c != -1 && Character.isWhitespace(c)) {
+				c = reader.read();
+			}
+			if (c == -1) {
+				handleEmptyResponse();
+			} else {
+				reader.unread(c);
+			}
+		} catch (Exception e) {
+			reader.close();
+			throw e;
+		}
+		return reader;
+	}
+	
 	/**
 	 * Get the last run result as a SimpleResultSet.
 	 */
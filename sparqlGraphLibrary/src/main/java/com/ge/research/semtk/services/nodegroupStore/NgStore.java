@@ -17,13 +17,22 @@
 
 package com.ge.research.semtk.services.nodegroupStore;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
 import com.ge.research.semtk.auth.AuthorizationManager;
+import com.ge.research.semtk.load.FileSystemConnector;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.resultSet.Table;
 import com.ge.research.semtk.sparqlX.SparqlConnection;
@@ -33,19 +42,41 @@ import com.ge.research.semtk.utility.Utility;
 
 /**
  * Store nodegroups in triplestore graph "sei"
+ * 
+ * Optionally, the nodegroup json is kept as one gzipped blob per nodegroup in a FileSystemConnector,
+ * and only the metadata and a reference to the blob are in the triplestore.
+ * Nodegroups stored either way can be read either way.
+ * 
+ * Optionally, an NgStoreCache holds nodegroups already read.
  * @author 200001934
  *
  */
 public class NgStore {
 	
+	// prefabNodeGroup:NodeGroup value of a nodegroup stored as a blob
+	private static final String BLOB_PREFIX = "semtk-blob:";
+	
 	private String dataGraph = null;
 	private SparqlEndpointInterface sei = null;
+	private FileSystemConnector blobStore = null;
+	private NgStoreCache cache = null;
 	
 	public NgStore(SparqlEndpointInterface sei) {
 		this.dataGraph = sei.getGraph();
 		this.sei = sei;
 	}
 	
+	/**
+	 * @param sei
+	 * @param blobStore where to put new nodegroups' json, or null to put it in the triplestore
+	 * @param cache cache shared by NgStores on this sei, or null
+	 */
+	public NgStore(SparqlEndpointInterface sei, FileSystemConnector blobStore, NgStoreCache cache) {
+		this(sei);
+		this.blobStore = blobStore;
+		this.cache = cache;
+	}
+	
 	/**
 	 * Get sgJson or null
 	 * @param id
@@ -53,7 +84,34 @@ public class NgStore {
 	 * @throws Exception
 	 */
 	public SparqlGraphJson getNodegroup(String id) throws Exception {
-		Table tbl = this.getNodegroupTable(id);
+		return this.getNodegroup(id, false);
+	}
+	
+	/**
+	 * Get sgJson or null
+	 * @param id
+	 * @param suFlag
+	 * @return
+	 * @throws Exception
+	 */
+	public SparqlGraphJson getNodegroup(String id, boolean suFlag) throws Exception {
+		if (this.cache != null) {
+			JSONObject json = this.cache.getJson(this.cacheKey(id));
+			if (json != null) {
+				this.authorizeCacheHit(id, suFlag);
+				return new SparqlGraphJson(json);
+			}
+		}
+		
+		Table tbl = this.getNodegroupTable(id, suFlag);
+		if (this.cache != null && tbl.getNumRows() > 0) {
+			// parse into the cache entry just made
+			JSONObject json = this.cache.getJson(this.cacheKey(id));
+			if (json != null) {
+				return new SparqlGraphJson(json);
+			}
+		}
+		
 		if(tbl.getNumRows() > 0){
 			// we have a result. for now, let's assume that only the first result is valid.
 			ArrayList<String> tmpRow = tbl.getRows().get(0);
@@ -82,6 +140,14 @@ public class NgStore {
 	 * @throws Exception
 	 */
 	public Table getNodegroupTable(String id, boolean suFlag)  throws Exception {
+		if (this.cache != null) {
+			Table cached = this.cache.getTable(this.cacheKey(id));
+			if (cached != null) {
+				this.authorizeCacheHit(id, suFlag);
+				return cached;
+			}
+		}
+		
 		StringBuilder ngStr = new StringBuilder();
 		ArrayList<String> queries = this.genSparqlGetNodegroupById(id);
 		
@@ -90,21 +156,53 @@ public class NgStore {
 		if (retTable.getNumRows() > 0) {
 			ngStr = new StringBuilder(retTable.getCellAsString(0,  "NodeGroup"));
 
-			// look for additional text, using second query
-			Table catTable =  this.executeQuery(queries.get(1), suFlag);
-		
-			for (int i=0; i < catTable.getNumRows(); i++) {
-				ngStr.append(catTable.getCellAsString(i, "NodeGroup"));
+			if (ngStr.toString().startsWith(BLOB_PREFIX)) {
+				ngStr = new StringBuilder(this.readBlob(ngStr.toString()));
+				
+			} else {
+				// look for additional text, using second query
+				Table catTable =  this.executeQuery(queries.get(1), suFlag);
+			
+				for (int i=0; i < catTable.getNumRows(); i++) {
+					ngStr.append(catTable.getCellAsString(i, "NodeGroup"));
+				}
 			}
 			
 			int col = retTable.getColumnIndex("NodeGroup");
 			retTable.setCell(0, col, ngStr.toString());
+			
+			if (this.cache != null) {
+				this.cache.put(this.cacheKey(id), retTable);
+			}
 		}
 
 		
 		return retTable;
 	}
 	
+	/**
+	 * Cheap check for changes to a nodegroup:  every insert creates a new PrefabNodeGroup uri
+	 * @param id
+	 * @return a string that changes whenever the nodegroup is stored again, or null if it isn't stored
+	 * @throws Exception
+	 */
+	public String getNodeGroupVersion(String id) throws Exception {
+		return this.getNodeGroupVersion(id, false);
+	}
+	
+	public String getNodeGroupVersion(String id, boolean suFlag) throws Exception {
+		Table tab = this.executeQuery(this.genSparqlGetNodeGroupVersion(id), suFlag);
+		if (tab.getNumRows() == 0) {
+			return null;
+		}
+		ArrayList<String> uris = new ArrayList<String>();
+		for (int i=0; i < tab.getNumRows(); i++) {
+			uris.add(tab.getCell(i, 0));
+		}
+		Collections.sort(uris);
+		return String.join(" ", uris);
+	}
+	
 	public Table getNodeGroupIdList() throws Exception {
 		return this.getNodeGroupIdList(false);
 	}
@@ -118,7 +216,15 @@ public class NgStore {
 	}
 	
 	public Table getFullNodeGroupList(boolean suFlag) throws Exception {
-		return this.executeQuery(this.genSparqlGetFullNodeGroupList(), suFlag);
+		Table tab = this.executeQuery(this.genSparqlGetFullNodeGroupList(), suFlag);
+		int col = tab.getColumnIndex("NodeGroup");
+		for (int i=0; i < tab.getNumRows(); i++) {
+			String ngStr = tab.getCell(i, col);
+			if (ngStr.startsWith(BLOB_PREFIX)) {
+				tab.setCell(i, col, this.readBlob(ngStr));
+			}
+		}
+		return tab;
 	}
 	
 	public Table getNodeGroupMetadata() throws Exception {
@@ -134,7 +240,29 @@ public class NgStore {
 	}
 	
 	public void deleteNodeGroup(String id, boolean suFlag) throws Exception {
-		this.executeConfirmQuery(this.genSparqlDeleteNodeGroup(id), suFlag);
+		this.uncache(id);
+		try {
+			// find any blobs before their references are gone
+			ArrayList<String> blobRefs = new ArrayList<String>();
+			if (this.blobStore != null) {
+				Table tab = this.executeQuery(this.genSparqlGetNodegroupById(id).get(0), suFlag);
+				for (int i=0; i < tab.getNumRows(); i++) {
+					String ngStr = tab.getCellAsString(i, "NodeGroup");
+					if (ngStr.startsWith(BLOB_PREFIX)) {
+						blobRefs.add(ngStr);
+					}
+				}
+			}
+			
+			this.executeConfirmQuery(this.genSparqlDeleteNodeGroup(id), suFlag);
+			
+			for (String ref : blobRefs) {
+				this.blobStore.deleteObject(ref.substring(BLOB_PREFIX.length()));
+			}
+		} finally {
+			// a read during the write may have cached the old nodegroup
+			this.uncache(id);
+		}
 	}
 	
 	public void insertNodeGroup(JSONObject sgJsonJson, JSONObject connJson, String id, String comments, String creator ) throws Exception {
@@ -142,15 +270,75 @@ public class NgStore {
 	}
 	
 	public void insertNodeGroup(JSONObject sgJsonJson, JSONObject connJson, String id, String comments, String creator, boolean suFlag ) throws Exception {
-		ArrayList<String> insertQueries = this.genSparqlInsertNodeGroup(sgJsonJson, connJson, id, comments, creator);
-	
-		for (String insertQuery : insertQueries) {
-			this.executeConfirmQuery(insertQuery, suFlag);
+		this.uncache(id);
+		try {
+			if (this.blobStore != null) {
+				String ref = this.writeBlob(sgJsonJson.toJSONString());
+				try {
+					this.executeConfirmQuery(this.genSparqlInsertNodeGroup(ref, connJson, id, comments, creator).get(0), suFlag);
+				} catch (Exception e) {
+					this.blobStore.deleteObject(ref.substring(BLOB_PREFIX.length()));
+					throw e;
+				}
+				
+			} else {
+				ArrayList<String> insertQueries = this.genSparqlInsertNodeGroup(legalizeSparqlInputString(sgJsonJson.toJSONString()), connJson, id, comments, creator);
+			
+				for (String insertQuery : insertQueries) {
+					this.executeConfirmQuery(insertQuery, suFlag);
+				}
+			}
+		} finally {
+			// a read during the write may have cached the old nodegroup, or part of the new one
+			this.uncache(id);
 		}
 	}
 	
 	//-------------------- private -------------------
 	
+	private void uncache(String id) {
+		if (this.cache != null) {
+			this.cache.remove(this.cacheKey(id));
+		}
+	}
+	
+	private String cacheKey(String id) {
+		return this.sei.getServerAndPort() + "\n" + this.dataGraph + "\n" + id;
+	}
+	
+	/**
+	 * Cached results skip the triplestore, so check that the query would have been allowed
+	 */
+	private void authorizeCacheHit(String id, boolean suFlag) throws Exception {
+		if (!suFlag) {
+			AuthorizationManager.authorizeQuery(this.sei, this.genSparqlGetNodegroupById(id).get(0));
+		}
+	}
+	
+	/**
+	 * Store json as a new gzipped blob
+	 * @return the reference to put in the triplestore
+	 */
+	private String writeBlob(String json) throws Exception {
+		String key = "ng_" + UUID.randomUUID().toString() + ".json.gz";
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+			gz.write(json.getBytes(StandardCharsets.UTF_8));
+		}
+		this.blobStore.putObject(key, bytes.toByteArray());
+		return BLOB_PREFIX + key;
+	}
+	
+	private String readBlob(String ref) throws Exception {
+		if (this.blobStore == null) {
+			throw new Exception("Nodegroup is stored as a blob but this store has no blob store: " + ref);
+		}
+		byte [] data = this.blobStore.getObject(ref.substring(BLOB_PREFIX.length()));
+		try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			return new String(IOUtils.toByteArray(gz), StandardCharsets.UTF_8);
+		}
+	}
+	
 	private Table executeQuery(String sparql, boolean suFlag) throws Exception {
 		if (suFlag) {
 			AuthorizationManager.nextQuerySemtkSuper();
@@ -199,6 +387,18 @@ public class NgStore {
 		return ret;
 	}
 	
+	private String genSparqlGetNodeGroupVersion(String id) {
+		String rdf10ValuesClause = "VALUES ?ID { \"" + id + "\" \"" + id + "\"^^<http://www.w3.org/2001/XMLSchema#string>} . ";
+		
+		return "PREFIX prefabNodeGroup:<http://research.ge.com/semtk/prefabNodeGroup#> " +
+				"SELECT distinct ?PrefabNodeGroup " +
+				"FROM <" + this.dataGraph + "> WHERE { " +
+				"?PrefabNodeGroup a prefabNodeGroup:PrefabNodeGroup. " +
+				"?PrefabNodeGroup prefabNodeGroup:ID ?ID . " +
+				rdf10ValuesClause +
+				"}";
+	}
+	
 	private String genSparqlGetNodeGroupByConnAlias(String connectionAlias){
 		String rdf10ValuesClause = "VALUES ?connectionAlias { \"" + connectionAlias + "\" \"" + connectionAlias + "\"^^<http://www.w3.org/2001/XMLSchema#string>} . ";
 
@@ -304,7 +504,10 @@ public class NgStore {
 		return ret;
 	}
 	
-	private ArrayList<String> genSparqlInsertNodeGroup(JSONObject sgJsonJson, JSONObject connJson, String id, String comments, String creator) throws Exception {
+	/**
+	 * @param ngStr nodegroup json already legalized for sparql, or a blob reference
+	 */
+	private ArrayList<String> genSparqlInsertNodeGroup(String ngStr, JSONObject connJson, String id, String comments, String creator) throws Exception {
 		final int SPLIT = 20000;
 		
 		// extract the connJson
@@ -312,7 +515,6 @@ public class NgStore {
 		conn.fromJson(connJson);
 		SparqlEndpointInterface connSei = conn.getDefaultQueryInterface();
 
-		String ngStr = legalizeSparqlInputString(sgJsonJson.toJSONString());
 		String [] chunks = getNextChunk(ngStr, SPLIT);
 		
 		ArrayList<String> ret = new ArrayList<String>();
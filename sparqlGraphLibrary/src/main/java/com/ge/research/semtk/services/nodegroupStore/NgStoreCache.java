@@ -0,0 +1,185 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.services.nodegroupStore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.ge.research.semtk.resultSet.Table;
+
+/**
+ * Least recently used cache of nodegroups read from an NgStore:
+ * the getNodegroupTable() row and the parsed json, so that hot lookups need no query or parsing.
+ *
+ * NgStore removes entries when it inserts or deletes a nodegroup.
+ * Changes made by other processes are seen once an entry outlives the time-to-live.
+ * Thread-safe, so one cache may be shared by any number of NgStores.
+ */
+public class NgStoreCache {
+
+	private final int maxEntries;
+	private final long ttlMsec;		// 0 for no limit
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);	// least recently used first
+	private long hits = 0;
+	private long misses = 0;
+
+	private static class Entry {
+		String[] cols;
+		String[] colTypes;
+		ArrayList<String> row;
+		int ngCol;
+		JSONObject json = null;		// parsed on first use
+		long expiresMsec;
+	}
+
+	/**
+	 * @param maxEntries nodegroups to keep
+	 * @param ttlSeconds maximum age of an entry.  0 for no limit.
+	 */
+	public NgStoreCache(int maxEntries, int ttlSeconds) {
+		this.maxEntries = Math.max(1, maxEntries);
+		this.ttlMsec = (ttlSeconds > 0) ? ttlSeconds * 1000L : 0;
+	}
+
+	/**
+	 * @return copy of the cached nodegroup table, or null
+	 */
+	public synchronized Table getTable(String key) throws Exception {
+		Entry e = this.getEntry(key);
+		if (e == null) {
+			return null;
+		}
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		rows.add(new ArrayList<String>(e.row));
+		return new Table(e.cols, e.colTypes, rows);
+	}
+
+	/**
+	 * @return copy of the cached nodegroup json, or null
+	 */
+	public JSONObject getJson(String key) throws Exception {
+		JSONObject json;
+		String jsonStr;
+		synchronized (this) {
+			Entry e = this.getEntry(key);
+			if (e == null) {
+				return null;
+			}
+			json = e.json;
+			jsonStr = e.row.get(e.ngCol);
+		}
+
+		if (json == null) {
+			// parse outside the lock; a race just parses twice
+			json = (JSONObject) new JSONParser().parse(jsonStr);
+			synchronized (this) {
+				Entry e = this.entries.get(key);
+				if (e != null && e.row.get(e.ngCol) == jsonStr) {
+					e.json = json;
+				}
+			}
+		}
+		return (JSONObject) copyJson(json);
+	}
+
+	/**
+	 * Cache a one-row nodegroup table
+	 * @param key
+	 * @param table table with a NodeGroup column
+	 */
+	public synchronized void put(String key, Table table) throws Exception {
+		if (table.getNumRows() != 1) {
+			return;
+		}
+		Entry e = new Entry();
+		e.cols = table.getColumnNames();
+		e.colTypes = table.getColumnTypes();
+		e.row = new ArrayList<String>(table.getRow(0));
+		e.ngCol = table.getColumnIndex("NodeGroup");
+		e.expiresMsec = (this.ttlMsec > 0) ? System.currentTimeMillis() + this.ttlMsec : Long.MAX_VALUE;
+		this.entries.put(key, e);
+
+		Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+		while (this.entries.size() > this.maxEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	public synchronized void remove(String key) {
+		this.entries.remove(key);
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return this.hits;
+	}
+
+	public synchronized long getMissCount() {
+		return this.misses;
+	}
+
+	private Entry getEntry(String key) {
+		Entry e = this.entries.get(key);
+		if (e != null && System.currentTimeMillis() >= e.expiresMsec) {
+			this.entries.remove(key);
+			e = null;
+		}
+		if (e == null) {
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+		return e;
+	}
+
+	/**
+	 * Copy json objects and arrays so callers can't change the cached json.  Other values are immutable.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object copyJson(Object o) {
+		if (o instanceof JSONObject) {
+			JSONObject ret = new JSONObject();
+			for (Object k : ((JSONObject) o).keySet()) {
+				ret.put(k, copyJson(((JSONObject) o).get(k)));
+			}
+			return ret;
+		} else if (o instanceof JSONArray) {
+			JSONArray ret = new JSONArray();
+			for (Object v : (JSONArray) o) {
+				ret.add(copyJson(v));
+			}
+			return ret;
+		} else {
+			return o;
+		}
+	}
+}
@@ -247,6 +247,15 @@ public class BlazegraphSparqlEndpointInterface extends SparqlEndpointInterface {
 		return BLAZEGRAPH_SERVER;
 	}
 	
+	/**
+	 * CLEAR GRAPH handles graphs of any size
+	 */
+	@Override
+	protected boolean clearGraphNatively() throws Exception {
+		this.clearGraph();
+		return true;
+	}
+	
 	@Override
 	public SparqlEndpointInterface copy() throws Exception {
 		BlazegraphSparqlEndpointInterface retval = null;
@@ -246,6 +246,15 @@ public class FusekiSparqlEndpointInterface extends SparqlEndpointInterface {
 		return "fuseki";
 	}
 	
+	/**
+	 * CLEAR GRAPH handles graphs of any size
+	 */
+	@Override
+	protected boolean clearGraphNatively() throws Exception {
+		this.clearGraph();
+		return true;
+	}
+	
 	@Override
 	public SparqlEndpointInterface copy() throws Exception {
 		FusekiSparqlEndpointInterface retval = null;
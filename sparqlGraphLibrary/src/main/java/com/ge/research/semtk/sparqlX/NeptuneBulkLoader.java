@@ -0,0 +1,370 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.ge.research.semtk.load.FileSystemConnector;
+import com.ge.research.semtk.utility.LocalLogger;
+
+/**
+ * Loads a series of payloads with the Neptune bulk loader.
+ *
+ * Payloads are staged in S3 (or any FileSystemConnector) in parallel parts, one payload ahead of the loader:
+ * the next payload isn't staged until the one before it is.
+ * Each load job is queued (queueRequest) with a dependency on the one before it, so loads run in order
+ * and a failure cancels the rest.  Up to the loader's queue limit of jobs are in flight at once.
+ * Staged objects are deleted once no job needs them.
+ */
+public class NeptuneBulkLoader {
+
+	public static final String STATUS_COMPLETE = "LOAD_COMPLETED";
+	public static final String STATUS_IN_PROGRESS = "LOAD_IN_PROGRESS";
+	public static final String STATUS_NOT_STARTED = "LOAD_NOT_STARTED";
+	public static final String STATUS_IN_QUEUE = "LOAD_IN_QUEUE";		// queued behind its dependencies
+
+	public static final int LOADER_QUEUE_LIMIT = 64;				// Neptune's limit on queued load jobs
+	public static final int DEFAULT_PART_SIZE = 16 * 1024 * 1024;	// S3 requires at least 5MB
+	public static final int DEFAULT_UPLOAD_THREADS = 4;
+
+	private static final int START_RETRIES = 20;
+
+	/**
+	 * @return is a job with this status still waiting or running
+	 */
+	public static boolean isPending(String status) {
+		return status.equals(STATUS_NOT_STARTED) || status.equals(STATUS_IN_QUEUE) || status.equals(STATUS_IN_PROGRESS);
+	}
+
+	/**
+	 * The loader endpoint
+	 */
+	public interface LoaderClient {
+		/**
+		 * Queue a load job
+		 * @param keyName staged object
+		 * @param format loader format
+		 * @param dependencies load ids that must complete first
+		 * @return load id
+		 */
+		String startLoad(String keyName, String format, List<String> dependencies) throws Exception;
+
+		/**
+		 * @return overall status of the job, e.g. LOAD_IN_PROGRESS
+		 */
+		String getLoadStatus(String loadId) throws Exception;
+
+		/**
+		 * @return the loader's description of why a job failed, e.g. its error log
+		 */
+		String getLoadErrors(String loadId) throws Exception;
+	}
+
+	/**
+	 * Status of each job in a bulk load
+	 */
+	public static class Status {
+		private final int numPayloads;
+		private final LinkedHashMap<String, String> jobStatus = new LinkedHashMap<String, String>();	// by load id, in load order
+		private String firstErrors = null;
+
+		public Status(int numPayloads) {
+			this.numPayloads = numPayloads;
+		}
+
+		public synchronized void setJobStatus(String loadId, String status) {
+			this.jobStatus.put(loadId, status);
+		}
+
+		public synchronized String getJobStatus(String loadId) {
+			return this.jobStatus.get(loadId);
+		}
+
+		/**
+		 * Record the loader's errors for a failed job.  Only the first failure is kept:  later jobs fail on their dependencies.
+		 */
+		public synchronized void setJobErrors(String loadId, String errors) {
+			if (this.firstErrors == null) {
+				this.firstErrors = loadId + ": " + errors;
+			}
+		}
+
+		/**
+		 * @return the loader's errors for the first job that failed, or null
+		 */
+		public synchronized String getFirstErrors() {
+			return this.firstErrors;
+		}
+
+		public synchronized ArrayList<String> getLoadIds() {
+			return new ArrayList<String>(this.jobStatus.keySet());
+		}
+
+		public int getNumPayloads() {
+			return this.numPayloads;
+		}
+
+		/**
+		 * Number of jobs in each status
+		 */
+		public synchronized TreeMap<String, Integer> getStatusCounts() {
+			TreeMap<String, Integer> ret = new TreeMap<String, Integer>();
+			for (String s : this.jobStatus.values()) {
+				ret.merge(s, 1, Integer::sum);
+			}
+			return ret;
+		}
+
+		public synchronized int getNumCompleted() {
+			return this.getStatusCounts().getOrDefault(STATUS_COMPLETE, 0);
+		}
+
+		/**
+		 * Was every payload loaded
+		 */
+		public synchronized boolean isSuccess() {
+			return this.getNumCompleted() == this.numPayloads;
+		}
+
+		@Override
+		public synchronized String toString() {
+			StringBuilder ret = new StringBuilder();
+			ret.append(this.getNumCompleted()).append(" of ").append(this.numPayloads).append(" loads completed");
+			for (Map.Entry<String, Integer> e : this.getStatusCounts().entrySet()) {
+				ret.append(", ").append(e.getKey()).append("=").append(e.getValue());
+			}
+			int notStarted = this.numPayloads - this.jobStatus.size();
+			if (notStarted > 0) {
+				ret.append(", not queued=").append(notStarted);
+			}
+			return ret.toString();
+		}
+	}
+
+	/**
+	 * Something that can be staged under a key
+	 */
+	@FunctionalInterface
+	private interface Payload {
+		void put(String keyName) throws Exception;
+	}
+
+	private final FileSystemConnector store;
+	private final LoaderClient loader;
+	private int maxJobs = LOADER_QUEUE_LIMIT;
+	private int partSize = DEFAULT_PART_SIZE;
+	private int uploadThreads = DEFAULT_UPLOAD_THREADS;
+	private long pollMinMsec = 100;
+	private long pollMaxMsec = 2000;
+
+	public NeptuneBulkLoader(FileSystemConnector store, LoaderClient loader) {
+		this.store = store;
+		this.loader = loader;
+	}
+
+	/**
+	 * @param maxJobs load jobs queued or running at once
+	 */
+	public void setMaxJobs(int maxJobs) {
+		this.maxJobs = Math.max(1, Math.min(maxJobs, LOADER_QUEUE_LIMIT));
+	}
+
+	/**
+	 * @param partSize bytes per part of a staged object
+	 * @param uploadThreads parts of one object uploaded at once
+	 */
+	public void setUploadParts(int partSize, int uploadThreads) {
+		this.partSize = partSize;
+		this.uploadThreads = Math.max(1, uploadThreads);
+	}
+
+	/**
+	 * Status polling interval starts at min and backs off to max
+	 */
+	public void setPollMsec(long minMsec, long maxMsec) {
+		this.pollMinMsec = minMsec;
+		this.pollMaxMsec = Math.max(minMsec, maxMsec);
+	}
+
+	public Status load(byte [] data, String format) throws Exception {
+		ArrayList<Payload> payloads = new ArrayList<Payload>();
+		payloads.add(key -> this.store.putObjectInParts(key, data, this.partSize, this.uploadThreads));
+		return this.loadPayloads(payloads, format);
+	}
+
+	public Status load(List<File> files, String format) throws Exception {
+		ArrayList<Payload> payloads = new ArrayList<Payload>();
+		for (File f : files) {
+			payloads.add(key -> this.store.putObjectInParts(key, f, this.partSize, this.uploadThreads));
+		}
+		return this.loadPayloads(payloads, format);
+	}
+
+	/**
+	 * Stage and load payloads in order.
+	 * Load failures are reported in the returned status.
+	 * @throws Exception if a payload can't be staged or a job can't be started or checked
+	 */
+	private Status loadPayloads(ArrayList<Payload> payloads, String format) throws Exception {
+		Status status = new Status(payloads.size());
+		ArrayList<String> keys = new ArrayList<String>();
+		for (int i = 0; i < payloads.size(); i++) {
+			keys.add(UUID.randomUUID().toString() + "." + format);
+		}
+
+		// stage payloads on another thread, one ahead, so the next is uploading while this one is queued
+		ExecutorService stager = Executors.newSingleThreadExecutor();
+		ArrayDeque<String> inFlight = new ArrayDeque<String>();
+		Exception failure = null;
+
+		try {
+			Future<?> staged = this.stage(stager, payloads, keys, 0);
+			String prevLoadId = null;
+			for (int i = 0; i < payloads.size(); i++) {
+				try {
+					staged.get();
+				} catch (ExecutionException ee) {
+					throw (ee.getCause() instanceof Exception) ? (Exception) ee.getCause() : ee;
+				}
+				if (i + 1 < payloads.size()) {
+					staged = this.stage(stager, payloads, keys, i + 1);
+				}
+
+				boolean loadFailed = false;
+				while (inFlight.size() >= this.maxJobs && !loadFailed) {
+					loadFailed = !this.waitForJob(inFlight.poll(), status);
+				}
+				if (loadFailed) {
+					// the rest would fail on their dependencies
+					break;
+				}
+
+				List<String> dependencies = (prevLoadId == null) ? Collections.emptyList() : Collections.singletonList(prevLoadId);
+				String loadId = this.startLoad(keys.get(i), format, dependencies);
+				status.setJobStatus(loadId, STATUS_NOT_STARTED);
+				inFlight.add(loadId);
+				prevLoadId = loadId;
+			}
+		} catch (Exception e) {
+			failure = e;
+		} finally {
+			stager.shutdownNow();
+		}
+
+		// jobs already queued still read their objects
+		try {
+			while (!inFlight.isEmpty()) {
+				this.waitForJob(inFlight.poll(), status);
+			}
+		} catch (Exception e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+
+		try {
+			// stop any staging still running before deleting what it wrote
+			stager.awaitTermination(60, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+		}
+		for (String key : keys) {
+			try {
+				if (this.store.checkExists(key)) {
+					this.store.deleteObject(key);
+				}
+			} catch (Exception e) {
+				// log it but don't mess up the return
+				LocalLogger.logToStdErr("Failed to delete staged bulk load file " + key);
+				LocalLogger.printStackTrace(e);
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+		return status;
+	}
+
+	private Future<?> stage(ExecutorService stager, ArrayList<Payload> payloads, ArrayList<String> keys, int n) {
+		return stager.submit(() -> { payloads.get(n).put(keys.get(n)); return null; });
+	}
+
+	/**
+	 * Start a load job, retrying a while when the loader is at its limits
+	 */
+	private String startLoad(String keyName, String format, List<String> dependencies) throws Exception {
+		int tries = 0;
+		while (true) {
+			try {
+				return this.loader.startLoad(keyName, format, dependencies);
+			} catch (Exception e) {
+				String msg = String.valueOf(e.getMessage());
+				if (tries < START_RETRIES && (
+						msg.contains("concurrent load limit") ||
+						msg.contains("queue") && msg.contains("limit") ||
+						msg.contains("LOAD_COMMITTED_W_WRITE_CONFLICTS")
+						)) {
+					LocalLogger.logToStdOut("Retrying: " + msg);
+					tries += 1;
+					Thread.sleep((long)(this.pollMaxMsec * Math.random()) * tries);
+				} else {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Poll a job with backoff until it finishes, and record its final status
+	 * @return did it complete
+	 */
+	private boolean waitForJob(String loadId, Status status) throws Exception {
+		long sleepMsec = this.pollMinMsec;
+		while (true) {
+			String s = this.loader.getLoadStatus(loadId);
+			status.setJobStatus(loadId, s);
+			if (!isPending(s)) {
+				if (!s.equals(STATUS_COMPLETE) && status.getFirstErrors() == null) {
+					String errors;
+					try {
+						errors = this.loader.getLoadErrors(loadId);
+					} catch (Exception e) {
+						errors = "(errors unavailable: " + e.getMessage() + ")";
+					}
+					status.setJobErrors(loadId, errors);
+				}
+				return s.equals(STATUS_COMPLETE);
+			}
+			Thread.sleep(sleepMsec);
+			sleepMsec = Math.min(sleepMsec * 2, this.pollMaxMsec);
+		}
+	}
+}
@@ -18,10 +18,10 @@
 
 package com.ge.research.semtk.sparqlX;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.UUID;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
@@ -72,10 +72,6 @@ public class NeptuneSparqlEndpointInterface extends SparqlEndpointInterface {
 	protected static final String CONTENTTYPE_LD_JSON = "application/ld+json";
 
 
-	private static String STATUS_COMPLETE = "LOAD_COMPLETED";
-	private static String STATUS_IN_PROGRESS = "LOAD_IN_PROGRESS";
-	private static String STATUS_NOT_STARTED = "LOAD_NOT_STARTED";
-	
 	private S3Connector s3Conn = null;
 	private String iamRoleArn = null;
 	
@@ -229,90 +225,84 @@ public class NeptuneSparqlEndpointInterface extends SparqlEndpointInterface {
 	
 	
 	/**
-	 * S3 examples are from https://docs.aws.amazon.com/sdk-for-java/v2/developer-guide/examples-s3-objects.html
-	 * NOTE: need to do the "Multiple Parts" example if the data is > 5meg or so
+	 * Upload data through S3 with the Neptune bulk loader.
+	 * Large payloads are put to S3 in parallel parts.
 	 * @param data
 	 * @param format
-	 * @return
+	 * @return SimpleResultSet json
 	 * @throws Exception
 	 */
 	public JSONObject executeUploadAPI(byte[] data, String format) throws Exception {
 		
-		this.authorizeUpload();		
+		this.authorizeUpload();
 		
-		String keyName = UUID.randomUUID().toString() + "." + format;
 		SimpleResultSet ret = new SimpleResultSet();
-
 		try {
+			NeptuneBulkLoader.Status status = this.buildBulkLoader().load(data, format);
+			if (! status.isSuccess()) {
+				throw new Exception("Neptune load from S3 failed to reach STATUS_COMPLETE: " + status.getStatusCounts().keySet() + "\n" + status.getFirstErrors());
+			}
+			ret.setSuccess(true);
 			
-			// put the file
-			this.s3Conn.putObject(keyName, data);
-			
-	        // try loading from S3, while being a little careful about concurrent load limit
-	        String loadId = null;
-	        int tries = 0;
-	        while (loadId == null) {
-		        try {
-		        	loadId = this.uploadFromS3(keyName, format);
-		        	
-		        } catch (Exception e) {
-		        	// take 20 shots at concurrent load limit, sleeping between
-		        	if (tries < 20 && (
-		        			e.getMessage().contains("concurrent load limit") ||
-		        			e.getMessage().contains("LOAD_COMMITTED_W_WRITE_CONFLICTS")
-		        			)) {
-		        		LocalLogger.logToStdOut("Retrying: " + e.getMessage());
-		        		tries += 1;
-		        		Thread.sleep((long)(2000.0 * Math.random()) * tries);
-		        	} else {
-		        		// give up retrying
-		        		throw e;
-		        	}
-		        }
-	        }
-        	
-        	// wait for load to start.
-        	tries = 0;
-        	while (this.getLoadStatus(loadId).equals(STATUS_NOT_STARTED)) {
-        		Thread.sleep(500);
-        	}
-        	
-        	// wait if IN_PROGRESS 
-        	tries = 0;
-        	while (this.getLoadStatus(loadId).equals(STATUS_IN_PROGRESS)) {
-        		Thread.sleep(250);
-        	}
-        	
-        	// check for COMPLETE (docs state this means no errors)
-        	String finalStatus = this.getLoadStatus(loadId);
-        	if (! finalStatus.equals(STATUS_COMPLETE)) {
-        		throw new Exception("Neptune load from S3 failed to reach STATUS_COMPLETE: " + finalStatus);
-        	}
-        	
-        	ret.setSuccess(true);
-        	
 		} catch (Exception e) {
 			// this error should make it to the return value
 			ret.setSuccess(false);
 			ret.addRationaleMessage("NeptuneSparqlEndpointInterface.executeUpload()", e);
 			LocalLogger.logToStdErr("Exception during executeUploadAPI()");
 			LocalLogger.printStackTrace(e);
+		}
+		
+		// return something
+		return ret.toJson();
+	}
+	
+	/**
+	 * Load a series of files with the Neptune bulk loader, in order.
+	 * Each file is put to S3 in parallel parts while the previous one loads, and up to the loader's
+	 * queue limit of load jobs are queued at once, each depending on the one before.
+	 * @param files
+	 * @param format loader format, e.g. "turtle"
+	 * @return SimpleResultSet json with the aggregated status as its message, and results "loadIds" and "numCompleted"
+	 * @throws Exception
+	 */
+	public JSONObject executeUploadBulk(List<File> files, String format) throws Exception {
+		
+		this.authorizeUpload();
+		
+		SimpleResultSet ret = new SimpleResultSet();
+		try {
+			NeptuneBulkLoader.Status status = this.buildBulkLoader().load(files, format);
+			ret.setSuccess(status.isSuccess());
+			ret.setMessage(status.toString());
+			ret.addResult("loadIds", status.getLoadIds().toArray(new String[0]));
+			ret.addResult("numCompleted", status.getNumCompleted());
+			if (! status.isSuccess()) {
+				ret.addRationaleMessage("NeptuneSparqlEndpointInterface.executeUploadBulk()", "Neptune bulk load failed: " + status.toString() + "\n" + status.getFirstErrors());
+			}
 			
-        } finally {
-        	// try to delete file from s3
-        	LocalLogger.logToStdErr("Attempting to delete file " + keyName + " from bucket " + this.s3Conn.getName());
-        	try {
-        		this.s3Conn.deleteObject(keyName);
-        	} catch (Exception ee) {
-        		// if it fails, log it but don't mess up the return
-        		LocalLogger.printStackTrace(ee);
-        	}
-        }
-        
-        // return something
+		} catch (Exception e) {
+			ret.setSuccess(false);
+			ret.addRationaleMessage("NeptuneSparqlEndpointInterface.executeUploadBulk()", e);
+			LocalLogger.logToStdErr("Exception during executeUploadBulk()");
+			LocalLogger.printStackTrace(e);
+		}
 		return ret.toJson();
 	}
 	
+	private NeptuneBulkLoader buildBulkLoader() {
+		return new NeptuneBulkLoader(this.s3Conn, new NeptuneBulkLoader.LoaderClient() {
+			public String startLoad(String keyName, String format, List<String> dependencies) throws Exception {
+				return uploadFromS3(keyName, format, dependencies);
+			}
+			public String getLoadStatus(String loadId) throws Exception {
+				return fetchLoadStatus(loadId);
+			}
+			public String getLoadErrors(String loadId) throws Exception {
+				return fetchLoadResponse(loadId);
+			}
+		});
+	}
+	
 	
 	/**
 	 * I can't find docs for using a Java API to do this.
@@ -321,11 +311,12 @@ public class NeptuneSparqlEndpointInterface extends SparqlEndpointInterface {
 	 *    
 	 * @param keyName
 	 * @param format - https://docs.aws.amazon.com/neptune/latest/userguide/bulk-load-tutorial-format.html
+	 * @param dependencies - load ids that must complete before this one starts
 	 * @return
 	 * @throws Exception
 	 */
 	@SuppressWarnings({ "unchecked" })
-	private String uploadFromS3(String keyName, String format) throws Exception {
+	private String uploadFromS3(String keyName, String format, List<String> dependencies) throws Exception {
 		// start the upload
         //curl blast-cluster.cluster-ceg7ggop9fho.us-east-1.neptune.amazonaws.com:8182/loader
         //-X POST 
@@ -353,6 +344,11 @@ public class NeptuneSparqlEndpointInterface extends SparqlEndpointInterface {
 		parametersJSON.put("queueRequest", "TRUE");
 		parametersJSON.put("region", this.s3Conn.getRegion());
 		parametersJSON.put("failOnError", "TRUE");
+		if (! dependencies.isEmpty()) {
+			JSONArray deps = new JSONArray();
+			deps.addAll(dependencies);
+			parametersJSON.put("dependencies", deps);
+		}
 		
 		JSONObject parserConfig = new JSONObject();
 		parserConfig.put("namedGraphUri", this.getGraph());
@@ -382,23 +378,14 @@ public class NeptuneSparqlEndpointInterface extends SparqlEndpointInterface {
 	}
 	
 	/**
-	 * Get status or throw exception if any kind of failure
+	 * Get the overall status of a load job
 	 * @param loadId
-	 * @return STATUS_IN_PROGRESS or STATUS_COMPLETE
-	 * @throws Exception
+	 * @return a status such as LOAD_IN_PROGRESS, LOAD_COMPLETED or LOAD_FAILED
+	 * @throws Exception if the status can't be found
 	 */
-	private String getLoadStatus(String loadId) throws Exception {
-		
-		
-		HttpHost targetHost = this.buildHttpHost();
-        CloseableHttpClient httpclient = this.buildHttpClient(targetHost.getSchemeName());
-		BasicHttpContext localcontext = this.buildHttpContext(targetHost);
-		HttpGet httpget = new HttpGet(this.getUploadURL() + "/" + loadId + "?details=TRUE&errors=TRUE" );
+	private String fetchLoadStatus(String loadId) throws Exception {
 		
-		HttpResponse response_http = httpclient.execute(targetHost, httpget, localcontext);
-		
-		HttpEntity resp_entity = response_http.getEntity();
-		String responseTxt = EntityUtils.toString(resp_entity, "UTF-8");
+		String responseTxt = this.fetchLoadResponse(loadId);
 		JSONObject response = (JSONObject) new JSONParser().parse(responseTxt);
 
 		String status = null;
@@ -409,14 +396,35 @@ public class NeptuneSparqlEndpointInterface extends SparqlEndpointInterface {
 		} catch (Exception e) {
 			throw new Exception(responseTxt);
 		}
-
-		if (!status.equals(STATUS_IN_PROGRESS) && !status.equals(STATUS_NOT_STARTED) && !status.equals(STATUS_COMPLETE)) {
+		if (status == null) {
 			throw new Exception(responseTxt);
 		}
+		if (!NeptuneBulkLoader.isPending(status) && !status.equals(NeptuneBulkLoader.STATUS_COMPLETE)) {
+			LocalLogger.logToStdErr("Neptune load " + loadId + " failed: " + responseTxt);
+		}
 		
 		return status;
 	}
 	
+	/**
+	 * Get the loader's full response for a load job, including details and errors
+	 * @param loadId
+	 * @return response text
+	 * @throws Exception
+	 */
+	private String fetchLoadResponse(String loadId) throws Exception {
+		
+		HttpHost targetHost = this.buildHttpHost();
+        CloseableHttpClient httpclient = this.buildHttpClient(targetHost.getSchemeName());
+		BasicHttpContext localcontext = this.buildHttpContext(targetHost);
+		HttpGet httpget = new HttpGet(this.getUploadURL() + "/" + loadId + "?details=TRUE&errors=TRUE" );
+		
+		HttpResponse response_http = httpclient.execute(targetHost, httpget, localcontext);
+		
+		HttpEntity resp_entity = response_http.getEntity();
+		return EntityUtils.toString(resp_entity, "UTF-8");
+	}
+	
 	@Override
 	public boolean isExceptionRetryAble(Exception e) {
 		String msg = e.getMessage();
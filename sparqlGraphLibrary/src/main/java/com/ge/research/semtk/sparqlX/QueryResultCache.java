@@ -0,0 +1,323 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONObject;
+
+import com.ge.research.semtk.auth.AuthorizationException;
+import com.ge.research.semtk.auth.AuthorizationManager;
+import com.ge.research.semtk.auth.SparqlQueryInterrogator;
+import com.ge.research.semtk.resultSet.GeneralResultSet;
+
+/**
+ * Cache of read query results, keyed by connection, result type and query text with whitespace normalized.
+ *
+ * Every write made through a SparqlEndpointInterface in this process increments a version counter
+ * for each graph it names.  A cached result is used only while the versions of the graphs it read are unchanged
+ * and it is younger than the time-to-live, which covers graphs written by other processes.
+ * Least recently used results are evicted to stay under a memory limit.
+ *
+ * Cache hits are still authorized.
+ */
+public class QueryResultCache {
+
+	private static final String ANY_GRAPH = "*";		// incremented by every write:  for reads that don't name their graphs
+	private static final String UNKNOWN_GRAPH = "?";	// incremented by writes whose graphs can't be found:  every read depends on it
+	private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+	// write counters by server and graph
+	private static final ConcurrentHashMap<String, AtomicLong> graphVersions = new ConcurrentHashMap<String, AtomicLong>();
+
+	private final long maxBytes;
+	private final long ttlMsec;			// 0 for no limit
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);	// least recently used first
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	private static class Entry {
+		JSONObject result;
+		String[] versionKeys;
+		long[] versions;
+		long expiresMsec;
+		long bytes;
+
+		Entry(JSONObject result, String[] versionKeys, long[] versions, long expiresMsec, long bytes) {
+			this.result = result;
+			this.versionKeys = versionKeys;
+			this.versions = versions;
+			this.expiresMsec = expiresMsec;
+			this.bytes = bytes;
+		}
+
+		boolean isCurrent(long nowMsec) {
+			if (nowMsec >= this.expiresMsec) {
+				return false;
+			}
+			for (int i = 0; i < this.versionKeys.length; i++) {
+				if (getVersion(this.versionKeys[i]) != this.versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param maxBytes approximate memory limit
+	 * @param ttlSeconds maximum age of a result.  0 for no limit.
+	 */
+	public QueryResultCache(long maxBytes, int ttlSeconds) {
+		this.maxBytes = maxBytes;
+		this.ttlMsec = (ttlSeconds > 0) ? ttlSeconds * 1000L : 0;
+	}
+
+	/**
+	 * Note that a query or upload may have written to graphs
+	 * @param sei
+	 * @param query the update query, or null if it was an upload to sei's graph
+	 */
+	public static void graphsWritten(SparqlEndpointInterface sei, String query) {
+		String server = sei.getServerAndPort();
+		bumpVersion(versionKey(server, sei.getGraph()));
+		bumpVersion(versionKey(server, ANY_GRAPH));
+		if (query != null) {
+			try {
+				for (String graph : new SparqlQueryInterrogator(query).getGraphNames()) {
+					bumpVersion(versionKey(server, graph));
+				}
+			} catch (AuthorizationException e) {
+				bumpVersion(versionKey(server, UNKNOWN_GRAPH));
+			}
+		}
+	}
+
+	/**
+	 * Execute a query, or return the cached results of an identical one.
+	 * Only successful read queries are cached.
+	 * @return the result set json
+	 */
+	public JSONObject executeQueryToJson(SparqlEndpointInterface sei, String query, SparqlResultTypes resultType) throws Exception {
+		String key = sei.getServerType() + "\n" + sei.getServerAndPort() + "\n" + sei.getGraph() + "\n" + resultType + "\n" + normalizeQuery(query);
+		long nowMsec = System.currentTimeMillis();
+
+		JSONObject cached = null;
+		synchronized (this) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && entry.isCurrent(nowMsec)) {
+				cached = entry.result;
+				this.hits++;
+			} else {
+				this.remove(key);
+				this.misses++;
+			}
+		}
+		if (cached != null) {
+			AuthorizationManager.authorizeQuery(sei, query);
+			return cached;
+		}
+
+		// read the versions before running the query, so a write during the query leaves the result out of date
+		String[] versionKeys = getReadVersionKeys(sei, query);
+		long[] versions = null;
+		if (versionKeys != null) {
+			versions = new long[versionKeys.length];
+			for (int i = 0; i < versionKeys.length; i++) {
+				versions[i] = getVersion(versionKeys[i]);
+			}
+		}
+
+		GeneralResultSet resultSet = sei.executeQueryAndBuildResultSet(query, resultType);
+		JSONObject result = resultSet.toJson();
+
+		if (versionKeys != null && resultSet.getSuccess()) {
+			long entryBytes = 2L * result.toJSONString().length() + ENTRY_OVERHEAD_BYTES;
+			if (entryBytes <= this.maxBytes) {
+				synchronized (this) {
+					this.remove(key);
+					this.entries.put(key, new Entry(result, versionKeys, versions, (this.ttlMsec > 0) ? nowMsec + this.ttlMsec : Long.MAX_VALUE, entryBytes));
+					this.bytes += entryBytes;
+					this.evict();
+				}
+			}
+		}
+		return result;
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+		this.bytes = 0;
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	public synchronized long getHitCount() {
+		return this.hits;
+	}
+
+	public synchronized long getMissCount() {
+		return this.misses;
+	}
+
+	/**
+	 * Collapse whitespace and drop # comments outside of quoted strings and IRIs
+	 */
+	public static String normalizeQuery(String query) {
+		int len = query.length();
+		StringBuilder ret = new StringBuilder(len);
+		boolean pendingSpace = false;
+		int i = 0;
+		while (i < len) {
+			char c = query.charAt(i);
+			if (Character.isWhitespace(c)) {
+				pendingSpace = true;
+				i++;
+			} else if (c == '#') {
+				// comment runs to the end of the line, and separates tokens like whitespace
+				while (i < len && query.charAt(i) != '\n' && query.charAt(i) != '\r') {
+					i++;
+				}
+				pendingSpace = true;
+			} else {
+				int end;
+				if (c == '"' || c == '\'') {
+					end = stringEnd(query, i);
+				} else if (c == '<') {
+					end = iriEnd(query, i);
+				} else {
+					end = i + 1;
+				}
+				if (pendingSpace && ret.length() > 0) {
+					ret.append(' ');
+				}
+				pendingSpace = false;
+				ret.append(query, i, end);
+				i = end;
+			}
+		}
+		return ret.toString();
+	}
+
+	/**
+	 * End of the quoted string starting at i, honoring backslash escapes and triple quotes.
+	 * An unterminated string runs to the end of the query.
+	 */
+	private static int stringEnd(String query, int i) {
+		int len = query.length();
+		char quote = query.charAt(i);
+		boolean triple = i + 2 < len && query.charAt(i + 1) == quote && query.charAt(i + 2) == quote;
+		int j = triple ? i + 3 : i + 1;
+		while (j < len) {
+			char c = query.charAt(j);
+			if (c == '\\') {
+				j += 2;
+			} else if (c == quote && (!triple || (j + 2 < len && query.charAt(j + 1) == quote && query.charAt(j + 2) == quote))) {
+				return triple ? j + 3 : j + 1;
+			} else {
+				j++;
+			}
+		}
+		return len;
+	}
+
+	/**
+	 * End of the IRI starting with '<' at i, or i + 1 if it's not an IRI (e.g. a less-than)
+	 */
+	private static int iriEnd(String query, int i) {
+		for (int j = i + 1; j < query.length(); j++) {
+			char c = query.charAt(j);
+			if (c == '>') {
+				return j + 1;
+			} else if (c <= ' ' || c == '<' || c == '"' || c == '{' || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\') {
+				break;
+			}
+		}
+		return i + 1;
+	}
+
+	/**
+	 * Version keys a read query depends on
+	 * @return keys, or null if the query isn't a cacheable read
+	 */
+	private static String[] getReadVersionKeys(SparqlEndpointInterface sei, String query) {
+		ArrayList<String> graphs;
+		try {
+			SparqlQueryInterrogator sqi = new SparqlQueryInterrogator(query);
+			if (!sqi.isReadOnly()) {
+				return null;
+			}
+			graphs = sqi.getGraphNames();
+		} catch (AuthorizationException e) {
+			return null;
+		}
+
+		String server = sei.getServerAndPort();
+		ArrayList<String> keys = new ArrayList<String>();
+		keys.add(versionKey(server, UNKNOWN_GRAPH));
+		keys.add(versionKey(server, sei.getGraph()));
+		if (graphs.isEmpty()) {
+			// the default graph may be any or all of them
+			keys.add(versionKey(server, ANY_GRAPH));
+		}
+		for (String graph : graphs) {
+			keys.add(versionKey(server, graph));
+		}
+		return keys.toArray(new String[keys.size()]);
+	}
+
+	private static String versionKey(String server, String graph) {
+		return server + "\n" + graph;
+	}
+
+	private static long getVersion(String versionKey) {
+		AtomicLong v = graphVersions.get(versionKey);
+		return (v == null) ? 0 : v.get();
+	}
+
+	private static void bumpVersion(String versionKey) {
+		graphVersions.computeIfAbsent(versionKey, k -> new AtomicLong(0)).incrementAndGet();
+	}
+
+	private void remove(String key) {
+		Entry old = this.entries.remove(key);
+		if (old != null) {
+			this.bytes -= old.bytes;
+		}
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			this.bytes -= it.next().getValue().bytes;
+			it.remove();
+		}
+	}
+}
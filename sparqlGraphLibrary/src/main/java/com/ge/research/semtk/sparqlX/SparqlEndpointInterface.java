@@ -31,7 +31,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
@@ -69,6 +74,9 @@ import org.json.simple.parser.JSONParser;
 
 import com.ge.research.semtk.auth.AuthorizationException;
 import com.ge.research.semtk.auth.AuthorizationManager;
+import com.ge.research.semtk.auth.HeaderTable;
+import com.ge.research.semtk.auth.ThreadAuthenticator;
+import com.ge.research.semtk.edc.JobTracker;
 import com.ge.research.semtk.ontologyTools.OntologyInfo;
 import com.ge.research.semtk.resultSet.GeneralResultSet;
 import com.ge.research.semtk.resultSet.NodeGroupResultSet;
@@ -108,6 +116,7 @@ public abstract class SparqlEndpointInterface {
 	protected static final String CONTENTTYPE_HTML = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
 	
 	private static final int MAX_QUERY_TRIES = 4;
+	private static final long CLEAR_CHUNK_TARGET_MSEC = 10000;		// clearGraphInChunks aims for deletes this long
 
 	// Column types used for mixed and missing types on cells
 	public static String COL_TYPE_UNKNOWN = "";                                         // no cell has a type
@@ -550,6 +559,17 @@ public abstract class SparqlEndpointInterface {
 	 * @return a JSONObject wrapping the results
 	 */
 	public JSONObject executeQuery(String query, SparqlResultTypes resultType) throws Exception {
+		try {
+			return this.executeQueryWithRetries(query, resultType);
+		} finally {
+			if (resultType == SparqlResultTypes.CONFIRM) {
+				// whether or not it succeeded, the query may have changed its graphs
+				QueryResultCache.graphsWritten(this, query);
+			}
+		}
+	}
+	
+	private JSONObject executeQueryWithRetries(String query, SparqlResultTypes resultType) throws Exception {
 
 		int tryCount = 0;
 		// Keep trying the query until it succeeds or reaches a 
@@ -684,6 +704,118 @@ public abstract class SparqlEndpointInterface {
 		}
 	}
 	
+	/**
+	 * Clear the graph using the triplestore's own bulk operation, if it has one
+	 * that works on graphs of any size.
+	 * @return false if there isn't one, and the graph was left alone
+	 * @throws Exception
+	 */
+	protected boolean clearGraphNatively() throws Exception {
+		return false;
+	}
+	
+	/**
+	 * Clear a large graph, with deletes running on several threads.
+	 * 
+	 * Uses the native bulk clear if the triplestore has one.
+	 * Otherwise subjects are partitioned by rdf:type, biggest type first, and each partition is deleted in chunks.
+	 * Every select and delete starts from { ?x a <type> }, so the triplestore finds a partition from its index
+	 * instead of scanning the graph.  A subject with several types is deleted by whichever partition gets to it first.
+	 * Chunks start at chunkSize, and grow or shrink to keep each delete near CLEAR_CHUNK_TARGET_MSEC.
+	 * Whatever is left (untyped and blank node subjects) is deleted last, the same way.
+	 * 
+	 * @param chunkSize initial triples per delete
+	 * @param maxThreads simultaneous deletes
+	 * @param tracker if not null, progress is reported to jobId.  The job is not completed.
+	 * @param jobId
+	 * @throws Exception
+	 */
+	public void clearGraphInChunks(int chunkSize, int maxThreads, JobTracker tracker, String jobId) throws Exception {
+		if (this.clearGraphNatively()) {
+			return;
+		}
+		
+		ArrayList<String> types = new ArrayList<String>();
+		Table typeCounts = this.executeToTable(SparqlToXUtils.generateCountSubjectsByTypeQuery(this));
+		for (int i = 0; i < typeCounts.getNumRows(); i++) {
+			types.add(typeCounts.getCell(i, "type"));
+		}
+		int numPartitions = types.size() + 1;		// and the rest
+		int minChunk = Math.max(1, chunkSize / 16);
+		int maxChunk = chunkSize * 16;
+		AtomicInteger chunk = new AtomicInteger(chunkSize);
+		AtomicInteger partitionsDone = new AtomicInteger(0);
+		HeaderTable headerTable = ThreadAuthenticator.getThreadHeaderTable();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, maxThreads));
+		try {
+			ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+			for (String type : types) {
+				SparqlEndpointInterface sei = this.copy();
+				futures.add(pool.submit(() -> {
+					ThreadAuthenticator.authenticateThisThread(headerTable);
+					try {
+						sei.deleteUntilEmpty(
+								SparqlToXUtils.generateSelectSubjectByTypeQuery(sei, type),
+								size -> SparqlToXUtils.generateDeleteBySubjectTypeQuery(sei, type, size),
+								chunk, minChunk, maxChunk);
+						int done = partitionsDone.incrementAndGet();
+						if (tracker != null) {
+							tracker.setJobPercentComplete(jobId, 99 * done / numPartitions, "Cleared " + done + " of " + numPartitions + " partitions");
+						}
+					} finally {
+						ThreadAuthenticator.unAuthenticateThisThread();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		// untyped and blank node subjects
+		this.deleteUntilEmpty(
+				SparqlToXUtils.generateSelectTriplesSparql(this, 1),
+				size -> SparqlToXUtils.generateDeleteAllQuery(this, size),
+				chunk, minChunk, maxChunk);
+		if (tracker != null) {
+			tracker.setJobPercentComplete(jobId, 99, "Cleared " + numPartitions + " of " + numPartitions + " partitions");
+		}
+	}
+	
+	/**
+	 * Run deletes until selectOneSparql finds nothing, adjusting the shared chunk size from how long each delete takes
+	 * @param selectOneSparql query returning a row if there is more to delete
+	 * @param deleteSparql delete query for a chunk size
+	 */
+	private void deleteUntilEmpty(String selectOneSparql, IntFunction<String> deleteSparql, AtomicInteger chunk, int minChunk, int maxChunk) throws Exception {
+		while (this.executeToTable(selectOneSparql).getNumRows() > 0) {
+			int size = chunk.get();
+			long startMsec = System.currentTimeMillis();
+			try {
+				this.executeQueryAndConfirm(deleteSparql.apply(size));
+			} catch (Exception e) {
+				// likely a timeout:  try again smaller
+				if (size <= minChunk) {
+					throw e;
+				}
+				LocalLogger.logToStdErr("Delete of " + size + " triples failed, retrying with fewer: " + e.getMessage());
+				chunk.compareAndSet(size, Math.max(minChunk, size / 2));
+				continue;
+			}
+			long elapsed = System.currentTimeMillis() - startMsec;
+			
+			if (elapsed > CLEAR_CHUNK_TARGET_MSEC && size > minChunk) {
+				chunk.compareAndSet(size, Math.max(minChunk, size / 2));
+			} else if (elapsed < CLEAR_CHUNK_TARGET_MSEC / 2 && size < maxChunk) {
+				chunk.compareAndSet(size, Math.min(maxChunk, size * 2));
+			}
+		}
+	}
+	
 	/**
 	 * how many times has this interface encountered a retry-able error and retried
 	 * @return
@@ -998,29 +1130,49 @@ public abstract class SparqlEndpointInterface {
 	}
 	
 	public void uploadOwl(byte [] owl) throws Exception {
-		SimpleResultSet res = new SimpleResultSet(
-				this.executeUpload(owl)
-				);
+		SimpleResultSet res = null;
+		try {
+			res = new SimpleResultSet(
+					this.executeUpload(owl)
+					);
+		} finally {
+			QueryResultCache.graphsWritten(this, null);
+		}
 		res.throwExceptionIfUnsuccessful("Error uploading owl");
 	}
 	
 	public void authUploadOwl(byte [] owl) throws Exception {
-		SimpleResultSet res = new SimpleResultSet(
-				this.executeAuthUploadOwl(owl)
-				);
+		SimpleResultSet res = null;
+		try {
+			res = new SimpleResultSet(
+					this.executeAuthUploadOwl(owl)
+					);
+		} finally {
+			QueryResultCache.graphsWritten(this, null);
+		}
 		res.throwExceptionIfUnsuccessful("Error uploading owl");
 	}
 	public void uploadTurtle(byte [] turtle) throws Exception {
-		SimpleResultSet res = new SimpleResultSet(
-				this.executeUploadTurtle(turtle)
-				);
+		SimpleResultSet res = null;
+		try {
+			res = new SimpleResultSet(
+					this.executeUploadTurtle(turtle)
+					);
+		} finally {
+			QueryResultCache.graphsWritten(this, null);
+		}
 		res.throwExceptionIfUnsuccessful("Error uploading turtle");
 	}
 	
 	public void authUploadTurtle(byte [] turtle) throws Exception {
-		SimpleResultSet res = new SimpleResultSet(
-				this.executeAuthUploadTurtle(turtle)
-				);
+		SimpleResultSet res = null;
+		try {
+			res = new SimpleResultSet(
+					this.executeAuthUploadTurtle(turtle)
+					);
+		} finally {
+			QueryResultCache.graphsWritten(this, null);
+		}
 		res.throwExceptionIfUnsuccessful("Error uploading turtle");
 	}
 	
@@ -213,6 +213,14 @@ public class SparqlToXUtils {
 	  
 	  return sparql;
   }
+  /**
+   * Delete up to limit triples
+   */
+  public static String generateDeleteAllQuery(SparqlEndpointInterface sei, int limit) {
+	  return generateWithDeleteWhereClause(sei, "{ ?x ?y ?z. }") +
+			  " { SELECT ?x ?y ?z WHERE { ?x ?y ?z } LIMIT " + limit + " } " +
+			  "}";
+  }
   public static String generateClearGraphSparql(SparqlEndpointInterface sei) {
 	  return "CLEAR GRAPH <" + sei.getGraph() + ">";
   }
@@ -229,6 +237,30 @@ public class SparqlToXUtils {
 			  subjectRegex);
   }
   
+  /**
+   * Count subjects of each IRI rdf:type, biggest first.
+   * Only touches rdf:type triples, which triplestores index by predicate and object.
+   */
+  public static String generateCountSubjectsByTypeQuery(SparqlEndpointInterface sei) {
+	  return "SELECT ?type (COUNT(?x) AS ?count) from <" + sei.getGraph() + "> WHERE { ?x a ?type . FILTER isIRI(?type) } GROUP BY ?type ORDER BY DESC(?count)";
+  }
+  
+  /**
+   * Select one subject of type typeUri
+   */
+  public static String generateSelectSubjectByTypeQuery(SparqlEndpointInterface sei, String typeUri) {
+	  return "SELECT ?x from <" + sei.getGraph() + "> WHERE { ?x a <" + typeUri + "> . } LIMIT 1";
+  }
+  
+  /**
+   * Delete up to limit triples whose subject has type typeUri
+   */
+  public static String generateDeleteBySubjectTypeQuery(SparqlEndpointInterface sei, String typeUri, int limit) {
+	  return generateWithDeleteWhereClause(sei, "{ ?x ?y ?z. }") +
+			  " { SELECT ?x ?y ?z WHERE { ?x a <" + typeUri + "> . ?x ?y ?z . } LIMIT " + limit + " } " +
+			  "}";
+  }
+  
   public static String generateDropGraphSparql(SparqlEndpointInterface sei) {
 	  return "DROP GRAPH <" + sei.getGraph() + ">";
   }
@@ -92,6 +92,17 @@ public class VirtuosoSparqlEndpointInterface extends SparqlEndpointInterface {
 		return "virtuoso";
 	}
 	
+	/**
+	 * Clear with transaction logging turned off, which keeps virtuoso from running out of log space on large graphs
+	 */
+	@Override
+	protected boolean clearGraphNatively() throws Exception {
+		SimpleResultSet res = (SimpleResultSet) this.executeQueryAndBuildResultSet("DEFINE sql:log-enable 3 " + SparqlToXUtils.generateClearGraphSparql(this), SparqlResultTypes.CONFIRM);
+		res.throwExceptionIfUnsuccessful();
+		this.throwExceptionIfClearGraphFailed(res);
+		return true;
+	}
+	
 	@Override
 	protected void throwExceptionIfClearGraphFailed(SimpleResultSet res) throws Exception {
 		String s = res.getMessage();
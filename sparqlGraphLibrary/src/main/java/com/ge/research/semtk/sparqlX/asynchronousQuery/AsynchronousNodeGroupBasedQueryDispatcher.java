@@ -18,7 +18,9 @@
 package com.ge.research.semtk.sparqlX.asynchronousQuery;
 
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 
 import org.json.simple.JSONObject;
 
@@ -98,35 +100,9 @@ public abstract class AsynchronousNodeGroupBasedQueryDispatcher {
 	 */
 	protected void sendResultsToService(TableResultSet currResults) throws ConnectException, EndpointNotFoundException, Exception{
 				
-		HashMap<String, Integer> colInstCounter = new HashMap<String, Integer>();
-			
 		try{
-			
-			// repair column headers in the event that a duplicate header is encountered. by convention (established and existing only here), the first instance of a column name 
-			// will remain unchanged, all future instances will be postfixed with "[X]" where X is the count encountered so far. this count will start at 1. 
 			Table resTable = currResults.getTable();
-			String[] unModColnames = resTable.getColumnNames(); 	// pre-modification column names
-			String[] modColnames = new String[unModColnames.length];
-			
-			int posCount = 0;
-			for(String uCol : unModColnames){
-				if(colInstCounter.containsKey( uCol.toLowerCase() )){
-					// seen this one already. update the counter and add it to the new header list.
-					int update = colInstCounter.get( uCol.toLowerCase() ) + 1;
-					colInstCounter.put( uCol.toLowerCase() , update);
-					
-					modColnames[posCount] = uCol + "[" + update + "]";
-				}
-				else{
-					// never seen this column.
-					modColnames[posCount] = uCol;
-					// add to the hash
-					colInstCounter.put( uCol.toLowerCase(), 0 );
-				}
-				
-				posCount+=1;
-			}
-			resTable.replaceColumnNames(modColnames);
+			resTable.replaceColumnNames(uniquifyColumnNames(resTable.getColumnNames()));
 			
 			(new ResultsClient(this.resConfig)).execStoreTableResults(this.jobID, resTable);
 		}
@@ -137,7 +113,60 @@ public abstract class AsynchronousNodeGroupBasedQueryDispatcher {
 		}
 	}
 	
+	/**
+	 * Send rows to the results service as they are produced, without building a table
+	 * @param colNames
+	 * @param colTypes
+	 * @param numRows number of rows that rows will produce
+	 * @param rows
+	 */
+	@SuppressWarnings("unchecked")
+	protected void sendResultsToService(String[] colNames, String[] colTypes, int numRows, Iterator<ArrayList<String>> rows) throws ConnectException, EndpointNotFoundException, Exception{
+		
+		try{
+			JSONObject header = new Table(uniquifyColumnNames(colNames), colTypes).getHeaderJson();
+			header.put(Table.JSON_KEY_ROW_COUNT, numRows);
+			
+			(new ResultsClient(this.resConfig)).execStoreTableResults(this.jobID, header, rows);
+		}
+		catch(Exception e){
+			this.jobTracker.setJobFailure(this.jobID, "Failed to write results: " + e.getMessage());
+			LocalLogger.printStackTrace(e);
+			throw new Exception("Unable to write results", e);
+		}
+	}
 	
+	/**
+	 * repair column headers in the event that a duplicate header is encountered. by convention (established and existing only here), the first instance of a column name 
+	 * will remain unchanged, all future instances will be postfixed with "[X]" where X is the count encountered so far. this count will start at 1. 
+	 * @param unModColnames pre-modification column names
+	 * @return
+	 */
+	private static String[] uniquifyColumnNames(String[] unModColnames) {
+		HashMap<String, Integer> colInstCounter = new HashMap<String, Integer>();
+		String[] modColnames = new String[unModColnames.length];
+		
+		int posCount = 0;
+		for(String uCol : unModColnames){
+			if(colInstCounter.containsKey( uCol.toLowerCase() )){
+				// seen this one already. update the counter and add it to the new header list.
+				int update = colInstCounter.get( uCol.toLowerCase() ) + 1;
+				colInstCounter.put( uCol.toLowerCase() , update);
+				
+				modColnames[posCount] = uCol + "[" + update + "]";
+			}
+			else{
+				// never seen this column.
+				modColnames[posCount] = uCol;
+				// add to the hash
+				colInstCounter.put( uCol.toLowerCase(), 0 );
+			}
+			
+			posCount+=1;
+		}
+		return modColnames;
+	}
+
 	private void sendResultsToService(NodeGroupResultSet preRet)  throws ConnectException, EndpointNotFoundException, Exception{
 		try{
 			JSONObject resJSON = preRet.getResultsJSON();
@@ -0,0 +1,219 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ge.research.semtk.utility.LocalLogger;
+
+/**
+ * Runs dispatch jobs on a bounded number of threads.
+ *
+ * Waiting jobs are queued per user, and free threads take from the users in turn,
+ * so a burst of queries from one user doesn't hold up everyone else.
+ * Once maxQueued jobs are waiting, new jobs are rejected rather than piling up.
+ */
+public class DispatchExecutor {
+
+	public static final String BUSY_MESSAGE = "Dispatcher is busy";
+
+	private final int maxThreads;
+	private final int maxQueued;
+
+	private final LinkedHashMap<String, ArrayDeque<QueuedJob>> userQueues = new LinkedHashMap<String, ArrayDeque<QueuedJob>>();	// users with waiting jobs, in turn order
+	private int queued = 0;
+	private int running = 0;
+	private int threads = 0;
+
+	private long startedCount = 0;
+	private long totalWaitMsec = 0;
+	private long maxWaitMsec = 0;
+	private long rejectedCount = 0;
+
+	private static class QueuedJob {
+		Runnable work;
+		long queuedMsec;
+
+		QueuedJob(Runnable work) {
+			this.work = work;
+			this.queuedMsec = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @param maxThreads jobs that may run at once
+	 * @param maxQueued jobs that may wait for a thread
+	 */
+	public DispatchExecutor(int maxThreads, int maxQueued) {
+		this.maxThreads = Math.max(1, maxThreads);
+		this.maxQueued = Math.max(0, maxQueued);
+	}
+
+	/**
+	 * Throw the busy exception if a job submitted now would be rejected.
+	 * Lets callers skip expensive setup for a job that can't run.
+	 * @throws Exception
+	 */
+	public synchronized void checkNotBusy() throws Exception {
+		if (this.countWaiting(this.queued + 1) > this.maxQueued) {
+			this.rejectedCount++;
+			throw new Exception(this.getBusyMessage());
+		}
+	}
+
+	/**
+	 * Queue a job for a user
+	 * @param userName
+	 * @param work
+	 * @return number of jobs (including this one) waiting for a running job to finish
+	 * @throws Exception if the queue is full
+	 */
+	public synchronized int submit(String userName, Runnable work) throws Exception {
+		this.checkNotBusy();
+
+		String user = (userName == null) ? "" : userName;
+		ArrayDeque<QueuedJob> userQueue = this.userQueues.get(user);
+		if (userQueue == null) {
+			userQueue = new ArrayDeque<QueuedJob>();
+			this.userQueues.put(user, userQueue);
+		}
+		userQueue.add(new QueuedJob(work));
+		this.queued++;
+
+		if (this.threads - this.running < this.queued && this.threads < this.maxThreads) {
+			this.startThread();
+		}
+		this.notify();
+
+		return this.countWaiting(this.queued);
+	}
+
+	/**
+	 * How many of this many unstarted jobs will have to wait for a running job to finish
+	 */
+	private int countWaiting(int unstarted) {
+		return Math.max(0, unstarted - (this.maxThreads - this.running));
+	}
+
+	/**
+	 * Jobs that are waiting for a running job to finish
+	 */
+	public synchronized int getWaitingCount() {
+		return this.countWaiting(this.queued);
+	}
+
+	public synchronized int getQueueDepth() {
+		return this.queued;
+	}
+
+	public synchronized int getRunningCount() {
+		return this.running;
+	}
+
+	public int getMaxThreads() {
+		return this.maxThreads;
+	}
+
+	public int getMaxQueued() {
+		return this.maxQueued;
+	}
+
+	public synchronized long getAverageWaitMsec() {
+		return (this.startedCount == 0) ? 0 : this.totalWaitMsec / this.startedCount;
+	}
+
+	public synchronized long getMaxWaitMsec() {
+		return this.maxWaitMsec;
+	}
+
+	public synchronized long getRejectedCount() {
+		return this.rejectedCount;
+	}
+
+	private String getBusyMessage() {
+		return BUSY_MESSAGE + ": " + this.running + " queries running and " + this.queued + " waiting.  Try again later.";
+	}
+
+	private void startThread() {
+		this.threads++;
+		Thread t = new Thread(this::work, "DispatchExecutor-" + this.threads);
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Take the next waiting job from the user whose turn it is, and send that user to the back of the line
+	 */
+	private QueuedJob next() {
+		Iterator<Map.Entry<String, ArrayDeque<QueuedJob>>> it = this.userQueues.entrySet().iterator();
+		Map.Entry<String, ArrayDeque<QueuedJob>> entry = it.next();
+		it.remove();
+		QueuedJob job = entry.getValue().poll();
+		if (!entry.getValue().isEmpty()) {
+			this.userQueues.put(entry.getKey(), entry.getValue());
+		}
+		this.queued--;
+		return job;
+	}
+
+	private void work() {
+		try {
+			while (true) {
+				QueuedJob job;
+				synchronized (this) {
+					while (this.queued == 0) {
+						try {
+							this.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					job = this.next();
+					this.running++;
+
+					long waitMsec = System.currentTimeMillis() - job.queuedMsec;
+					this.startedCount++;
+					this.totalWaitMsec += waitMsec;
+					this.maxWaitMsec = Math.max(this.maxWaitMsec, waitMsec);
+				}
+
+				try {
+					job.work.run();
+				} catch (RuntimeException e) {
+					// keep the thread alive no matter what
+					LocalLogger.printStackTrace(e);
+				} finally {
+					synchronized (this) {
+						this.running--;
+					}
+				}
+			}
+		} finally {
+			// thread is ending, even on an Error:  replace it if jobs are left waiting
+			synchronized (this) {
+				this.threads--;
+				if (this.threads - this.running < this.queued && this.threads < this.maxThreads) {
+					this.startThread();
+				}
+			}
+		}
+	}
+}
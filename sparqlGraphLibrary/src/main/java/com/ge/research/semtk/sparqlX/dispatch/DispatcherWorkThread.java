@@ -26,7 +26,11 @@ import com.ge.research.semtk.resultSet.TableOrJobIdResultSet;
 import com.ge.research.semtk.sparqlX.dispatch.QueryGroup.DispatchQueryGroup;
 import com.ge.research.semtk.utility.LocalLogger;
 
-public class DispatcherWorkThread extends Thread {
+/**
+ * Runs one EDC subquery and adds its results to a query group.
+ * Runs on EdcDispatcher's per-user pool.
+ */
+public class DispatcherWorkThread implements Runnable {
 
 	private DispatchQueryGroup queryGroup;
 	private String query;
@@ -80,7 +84,7 @@ public class DispatcherWorkThread extends Thread {
 				
 				// TODO: this allows a string overflow to happen and generate an error
 				//t = this.resultsClient.getTableResultsJson(jobId, Integer.MAX_VALUE);
-				t = Table.fromJson(this.resultsClient.execGetBlobResult(jobId));
+				t = this.resultsClient.execGetBlobResultTable(jobId);
 				LocalLogger.logToStdOut("Job " + jobId + ": DispatcherWorkThread returning " + t.getNumRows() + " rows");
 			}
 			// end of consider replacing
@@ -98,6 +102,9 @@ public class DispatcherWorkThread extends Thread {
     		LocalLogger.printStackTrace(e);
     		
     		this.exceptionArr[this.myEntryNumber] = e;
+		} finally {
+			// may be running on a pooled thread
+			ThreadAuthenticator.unAuthenticateThisThread();
 		}
     	
     }
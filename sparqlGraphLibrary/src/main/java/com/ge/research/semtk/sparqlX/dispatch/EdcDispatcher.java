@@ -20,10 +20,18 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
+import com.ge.research.semtk.auth.ThreadAuthenticator;
 import com.ge.research.semtk.belmont.AutoGeneratedQueryTypes;
 import com.ge.research.semtk.belmont.NodeGroup;
 import com.ge.research.semtk.belmont.Returnable;
@@ -43,6 +51,7 @@ import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 import com.ge.research.semtk.sparqlX.SparqlResultTypes;
 import com.ge.research.semtk.sparqlX.dispatch.QueryGroup.DispatchQueryGroup;
 import com.ge.research.semtk.sparqlX.dispatch.QueryGroup.QueryGroupCollection;
+import com.ge.research.semtk.sparqlX.dispatch.QueryGroup.QueryGroupFusion;
 import com.ge.research.semtk.sparqlX.asynchronousQuery.*;
 import com.ge.research.semtk.utility.LocalLogger;
 import com.ge.research.semtk.utilityge.Utility;
@@ -50,6 +59,10 @@ import com.ge.research.semtk.utilityge.Utility;
 public class EdcDispatcher extends AsynchronousNodeGroupBasedQueryDispatcher {
 	
 	protected static final int MAX_NUMBER_SIMULTANEOUS_QUERIES_PER_USER = 50;  // maybe move this to a configured value?
+	protected static final int STREAM_FUSED_RESULTS_MIN_ROWS = 100000;         // stream fused results this large to the results service
+	
+	// EDC subquery pools, shared by all of a user's jobs
+	private static final ConcurrentHashMap<String, ExecutorService> userPools = new ConcurrentHashMap<String, ExecutorService>();
 	
 	DispatchServiceManager dispatchServiceMgr; 
 	QueryGroupCollection queryGroupColl;
@@ -218,11 +231,25 @@ public class EdcDispatcher extends AsynchronousNodeGroupBasedQueryDispatcher {
 					this.updateStatus(75);
 					
 					// merge results
-					LocalLogger.logToStdOut("Job " + this.jobID + ": fuse results");	
-					startTimeMillis = System.currentTimeMillis();
 					String[] columnNamesInOrder = this.queryGroupColl.getColumnNames();
 					String[] columnTypesInNameOrder = this.getColumnTypes(columnNamesInOrder);  // TODO: figure out how to get column types. they are elusive...
-					Table retTable = this.fuseResults(columnNamesInOrder, columnTypesInNameOrder);
+					QueryGroupFusion fusion = this.queryGroupColl.getFusion(columnNamesInOrder);
+					
+					if (fusion.getNumRows() >= STREAM_FUSED_RESULTS_MIN_ROWS) {
+						// large results:  fuse each row as it is sent, instead of building the table
+						this.updateStatus(95);
+						LocalLogger.logToStdOut("Job " + this.jobID + ": stream " + fusion.getNumRows() + " fused results");	
+						startTimeMillis = System.currentTimeMillis();
+						this.sendResultsToService(columnNamesInOrder, columnTypesInNameOrder, fusion.getNumRows(), fusion.iterator());
+						LocalLogger.logToStdOut("Job " + this.jobID + ": stream fused results completed in " + com.ge.research.semtk.utility.Utility.getSecondsSince(startTimeMillis) + " sec");
+						
+						this.updateStatus(100);
+						return retval;
+					}
+					
+					LocalLogger.logToStdOut("Job " + this.jobID + ": fuse results");	
+					startTimeMillis = System.currentTimeMillis();
+					Table retTable = fusion.fuseParallel(columnTypesInNameOrder, Runtime.getRuntime().availableProcessors());
 					LocalLogger.logToStdOut("Job " + this.jobID + ": fuse results completed in " + com.ge.research.semtk.utility.Utility.getSecondsSince(startTimeMillis) + " sec");
 					
 					LocalLogger.logToStdOut("Job " + this.jobID + ": add results to table");	
@@ -274,82 +301,57 @@ public class EdcDispatcher extends AsynchronousNodeGroupBasedQueryDispatcher {
 		
 		LocalLogger.logToStdErr("About to start edc work");
 		
-		// create the group of threads 
+		// pull the columns out once, rather than copying a column per query
 		int numQueries = queryGenTable.getNumRows();   // the total we will try.
-		DispatcherWorkThread[] spunup = new DispatcherWorkThread[numQueries]; // the array of them. 
+		String[] uuids = queryGenTable.getColumn(Utility.COL_NAME_UUID);
+		String[] queries = queryGenTable.getColumn(Utility.COL_NAME_QUERY);
+		String[] configs = queryGenTable.getColumn(Utility.COL_NAME_CONFIGJSON);
+		
+		// submit everything to this user's pool:  a query starts as soon as any of the user's slots frees up
+		ExecutorService pool = getUserPool(ThreadAuthenticator.getThreadUserName());
+		ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+		ArrayList<Future<Integer>> futures = new ArrayList<Future<Integer>>(numQueries);
 		try{
-			int threadLimit = MAX_NUMBER_SIMULTANEOUS_QUERIES_PER_USER;
-			int finished = 0;
-			int iteration = 0;
-			int running = 0;
-			int currentReq = 0;
-			while(finished < numQueries){
-				if(running == numQueries){
-					// nothing left to do... just wait for them to finish. 
-					break;
-				}
-				if(running >= threadLimit || currentReq >= numQueries){
-					for(int joined = 0; joined < threadLimit; joined += 1){
-						try {
-							spunup[joined + (threadLimit * iteration)].join();
-							finished += 1;
-							running = running - 1;
-							this.jobTracker.incrementPercentComplete(this.jobID, Math.round(increment), highestStatPercent);
-							if(finished >= numQueries){break;}
-						} catch (Exception e) {
-							LocalLogger.printStackTrace(e);
-							throw new IOException("(Join failure in dispatch threading : joined value was "+ joined + ":: " + e.getClass().toString() + " : "+ e.getMessage() + ")");
-						}
+			JSONParser jParser = new JSONParser();
+			for (int currentReq = 0; currentReq < numQueries; currentReq++) {
+				try {
+					// get the right DispatchQueryGroup
+					DispatchQueryGroup currDQG = this.queryGroupColl.getGroupByUUID(UUID.fromString(uuids[currentReq]));
+					
+					// get the JSON config from the generator return statement
+					JSONObject configJSON = (JSONObject) jParser.parse(configs[currentReq]);
+
+					String currentJobId = this.getJobId() + "_edc_" + String.valueOf(currentReq);
+					LocalLogger.logToStdErr("config for current qry:");
+					LocalLogger.logToStdErr(configJSON.toString() + " jobId: " + currentJobId);
+					
+					QueryExecuteClient clnt = this.dispatchServiceMgr.getExecuteClient(configJSON, currentJobId );
+					ResultsClient rClient = new ResultsClient(this.resConfig);
+					queryExecClientName = clnt.getClass().getSimpleName();
+					JobTracker tracker = new JobTracker(this.jobTrackerSei);
+					
+					// TESTING ONLY
+					// clnt.getConfig().setServiceServer("localhost");
+					
+					DispatcherWorkThread work = new DispatcherWorkThread(currDQG, queries[currentReq], clnt, tracker, rClient, threadExceptionArr, currentReq);
+					LocalLogger.logToStdErr("Queueing EDC query " + currentReq + " of a total of " + numQueries);
+					futures.add(completion.submit(work, currentReq));
+				} catch (Exception EEE) {
+					for (Future<Integer> f : futures) {
+						f.cancel(true);
 					}
-					if(currentReq%threadLimit == 0){ iteration += 1;}
-				}
-				else{
-					if (currentReq < numQueries) {
-						try {
-							// get the right DispatchQueryGroup
-							DispatchQueryGroup currDQG = this.queryGroupColl.getGroupByUUID(UUID.fromString(queryGenTable.getCell(currentReq, Utility.COL_NAME_UUID)));
-													
-							// get the JSON config from the generator return statement
-							JSONObject configJSON = null;
-							JSONParser jParser = new JSONParser();
-							
-							configJSON = (JSONObject) jParser.parse(queryGenTable.getCell(currentReq, Utility.COL_NAME_CONFIGJSON));
-	
-							String currentJobId = this.getJobId() + "_edc_" + String.valueOf(currentReq);
-							LocalLogger.logToStdErr("config for current qry:");
-							LocalLogger.logToStdErr(configJSON.toString() + " jobId: " + currentJobId);
-							
-							QueryExecuteClient clnt = this.dispatchServiceMgr.getExecuteClient(configJSON, currentJobId );
-							ResultsClient rClient = new ResultsClient(this.resConfig);
-							queryExecClientName = clnt.getClass().getSimpleName();
-							JobTracker tracker = new JobTracker(this.jobTrackerSei);
-							String query = queryGenTable.getColumn(Utility.COL_NAME_QUERY)[currentReq];
-							
-							// TESTING ONLY
-							// clnt.getConfig().setServiceServer("localhost");
-							
-							spunup[currentReq] = new DispatcherWorkThread(currDQG, query, clnt, tracker, rClient, threadExceptionArr, currentReq);
-							LocalLogger.logToStdErr("Starting EDC thread " + currentReq + " of a total of " + numQueries);
-							spunup[currentReq].start();
-						} catch (Exception EEE) {
-							throw new Exception("spin up of query thread failed. reported:" + EEE.getMessage());
-						}
-						// update the counters
-						running += 1;
-						currentReq += 1;	
-					}	
+					throw new Exception("spin up of query thread failed. reported:" + EEE.getMessage());
 				}
-			
 			}
-			// make sure it all really closed.
-			for(int joined = 0; joined < running; joined += 1){
+			
+			// update status as each one finishes, in whatever order
+			for (int finished = 0; finished < numQueries; finished++) {
 				try {
-					spunup[joined + (iteration * threadLimit)].join();
+					completion.take().get();
 					this.jobTracker.incrementPercentComplete(this.jobID, Math.round(increment), highestStatPercent);
-					continue;
 				} catch (Exception e) {
 					LocalLogger.printStackTrace(e);
-					throw new Exception("(Join failure in dispatch threading : joined value was "+ joined + ":: " + e.getClass().toString() + " : "+ e.getMessage() + ")");
+					throw new IOException("(Join failure in dispatch threading : " + e.getClass().toString() + " : "+ e.getMessage() + ")");
 				}
 			}
 		}
@@ -375,6 +377,23 @@ public class EdcDispatcher extends AsynchronousNodeGroupBasedQueryDispatcher {
 		return numberThreadsCompletedSuccessfully;
 	}
 	
+	/**
+	 * Get the bounded pool that runs a user's EDC subqueries.
+	 * Threads are daemons and time out when the user is idle.
+	 */
+	private static ExecutorService getUserPool(String userName) {
+		return userPools.computeIfAbsent(userName, u -> {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_NUMBER_SIMULTANEOUS_QUERIES_PER_USER, MAX_NUMBER_SIMULTANEOUS_QUERIES_PER_USER, 
+					60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+						Thread t = new Thread(r, "EdcDispatcher-" + u);
+						t.setDaemon(true);
+						return t;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		});
+	}
+	
 	/**
 	 * placeholder for eventual real getting of column types
 	 * @param columnNames
@@ -456,19 +475,6 @@ public class EdcDispatcher extends AsynchronousNodeGroupBasedQueryDispatcher {
 		return retval;
 	}
 	
-	/**
-	 * pass through to the QueryGroupCollection to get the results.
-	 * @param columnNamesInOrder
-	 * @param columnTypesInnameOrder
-	 * @return
-	 * @throws Exception 
-	 */
-	private Table fuseResults(String[] columnNamesInOrder, String[] columnTypesInNameOrder) throws Exception{
-		Table retval = this.queryGroupColl.returnFusedResults_parallel(columnNamesInOrder, columnTypesInNameOrder);
-		//Table retval = this.qgc.returnFusedResults_parallel(columnNamesInOrder, columnTypesInNameOrder);
-		return retval;
-	}
-
 	@Override
 	public String getConstraintType() throws Exception {
 		return this.dispatchServiceMgr.getConstraintType();
@@ -16,9 +16,17 @@
  */
 package com.ge.research.semtk.sparqlX.dispatch;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.ge.research.semtk.auth.HeaderTable;
+import com.ge.research.semtk.auth.ThreadAuthenticator;
 import com.ge.research.semtk.belmont.Node;
 import com.ge.research.semtk.belmont.NodeGroup;
 import com.ge.research.semtk.edc.client.OntologyInfoClient;
@@ -31,6 +39,7 @@ import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.nodeGroupStore.client.NodeGroupStoreRestClient;
 import com.ge.research.semtk.resultSet.Table;
 import com.ge.research.semtk.resultSet.TableResultSet;
+import com.ge.research.semtk.sparqlX.InMemoryInterface;
 import com.ge.research.semtk.sparqlX.SparqlConnection;
 import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 import com.ge.research.semtk.sparqlX.asynchronousQuery.DispatcherSupportedQueryTypes;
@@ -44,12 +53,40 @@ import com.ge.research.semtk.utility.LocalLogger;
  */
 public class FdcDispatcher extends EdcDispatcher {
 	
+	private static final int MAX_SIMULTANEOUS_FDC_NODES = 8;   // FDC nodes of one query that may run at once
+	
+	/**
+	 * How FDC results are staged for the final query.
+	 * TRIPLESTORE - ingest each FDC node's results directly into the temp graph
+	 * INMEMORY    - ingest into a per-query in-memory graph, uploaded to the temp graph only when a query needs it
+	 *               (usually once, before the final query).  The temp graph is never created if there are no results.
+	 */
+	public static enum FdcStaging { TRIPLESTORE, INMEMORY };
+	private static FdcStaging staging = FdcStaging.TRIPLESTORE;
+	
+	public static void setStaging(FdcStaging s) {
+		staging = s;
+	}
+	
+	public static FdcStaging getStaging() {
+		return staging;
+	}
+	
 	private FdcServiceManager fdcServiceManager = null;
 	private String tmpGraphUser = null;
 	private String tmpGraphPassword = null;
 	private SparqlEndpointInterface extConfigSei;
 	private OntologyInfoClient oInfoClient = null;
 	
+	// temp graph holding FDC results for the current query
+	private SparqlEndpointInterface tempDataSei = null;
+	private boolean tempGraphCreated = false;
+	
+	// INMEMORY staging: FDC results not yet sent to the temp graph
+	private final Object stagingLock = new Object();
+	private InMemoryInterface stagedSei = null;
+	private int stagedRecords = 0;
+	
 	public FdcDispatcher(String jobId, SparqlGraphJson sgJson, SparqlEndpointInterface jobTrackerSei, ResultsClientConfig resConfig, SparqlEndpointInterface extConfigSei, boolean heedRestrictions, OntologyInfoClient oInfoClient, NodeGroupStoreRestClient ngStoreClient) throws Exception{
 		
 		super(jobId, sgJson, jobTrackerSei, resConfig, extConfigSei, false, oInfoClient, ngStoreClient);
@@ -112,100 +149,62 @@ public class FdcDispatcher extends EdcDispatcher {
 	 */
 	private void executeFdc(DispatcherSupportedQueryTypes qt, String targetSparqlID) {
 		String errorHeader = "";
-
+		ExecutorService pool = null;
+		
 		try {
 	
 			long startMsec = System.currentTimeMillis();
 			
 			SparqlEndpointInterface tempDataSei = this.createTempSei();
+			this.tempDataSei = tempDataSei;
+			this.stagedSei = new InMemoryInterface(tempDataSei.getGraph());
+			this.stagedRecords = 0;
+			this.tempGraphCreated = false;
+			if (staging == FdcStaging.TRIPLESTORE) {
+				this.createTempGraph();
+			}
 			SparqlConnection ingestConn = this.createIngestConn(tempDataSei);
 			SparqlConnection expandedConn = this.createExpandedConn(tempDataSei);
 			
 			int statusIncrement = 99 / (4 * this.fdcServiceManager.getFdcNodeCount() + 1);
-			int percentComplete = 1;
+			AtomicInteger percentComplete = new AtomicInteger(1);
 			
-			// loop through FDC nodes
-			// TODO: this should be smarter and manage dependencies/order 
-			HashMap<String, Table> paramSetTables = new HashMap<String, Table>();
-			while (this.fdcServiceManager.nextFdcNode()) {
-				Node node = this.fdcServiceManager.getCurrentFdcNode();
-				String fdcName = node.getSparqlID();
-				errorHeader = "setting up FDC node " + fdcName;
-				
-				// get and execute each param nodegroup
-				// TODO this could break queries into LIMIT/OFFSET chunks
-				// TODO this might be async
-				
-				this.jobTracker.setJobPercentComplete(this.jobID, percentComplete, "FDC Query: " + fdcName + " - getting inputs " );
-				
-				HashMap<String, NodeGroup> paramSetNodeGroups = this.fdcServiceManager.getParamNodeGroups(node);
-				for (String paramSet : paramSetNodeGroups.keySet()) {
-					errorHeader = "querying " + fdcName + " param set " + paramSet;
-					NodeGroup ng = paramSetNodeGroups.get(paramSet);
-					
-					if (ng == null) {
-						// if nodegroup doesn't have necessary subgraph to generate param
-						paramSetTables.put(paramSet, null);
-						break;
-						
-					} else {
-						// if param can be calculated with nodegroup, do so
-						ng.setSparqlConnection(expandedConn);
-						String query = ng.generateSparqlSelect();
-						paramSetTables.put(paramSet, this.querySei.executeQueryToTable(query));
-					}
+			// run each FDC node as soon as the FDC nodes its inputs depend on have finished.
+			// Independent nodes run at the same time.
+			errorHeader = "running FDC nodes";
+			HeaderTable headerTable = ThreadAuthenticator.getThreadHeaderTable();
+			pool = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_SIMULTANEOUS_FDC_NODES, this.fdcServiceManager.getFdcNodeCount())));
+			ExecutorCompletionService<Node> completion = new ExecutorCompletionService<Node>(pool);
+			int running = 0;
+			while (true) {
+				for (Node node : this.fdcServiceManager.startReadyFdcNodes()) {
+					completion.submit(() -> {
+						ThreadAuthenticator.authenticateThisThread(headerTable);
+						try {
+							this.executeFdcNode(node, expandedConn, ingestConn, percentComplete, statusIncrement);
+						} finally {
+							ThreadAuthenticator.unAuthenticateThisThread();
+						}
+						return node;
+					});
+					running += 1;
 				}
-				
-				percentComplete += statusIncrement;   // 1 of FDC - finished retrieval
-				this.jobTracker.setJobPercentComplete(this.jobID, percentComplete, "FDC Query: " + fdcName + " - running" );
-				
-				// log inputs
-				LocalLogger.logToStdErr("FDC call: " + this.fdcServiceManager.getCurrentServiceUrl());
-				//for (Table t : paramSetTables.values()) {
-				//	LocalLogger.logToStdErr("Input table: \n" + (t == null ? "null" : t.toCSVString()));
-				//}
-				
-				// if nodegroup had subgraphs available to generate all parameter tables
-				// run the FDC service
-				if (! paramSetTables.containsValue(null)) {
-					errorHeader = "running fdc service " + this.fdcServiceManager.getCurrentServiceUrl();
-					
-					// execute FDC call
-					FdcClient fdcClient = new FdcClient(FdcClientConfig.fromFullEndpoint(this.fdcServiceManager.getCurrentServiceUrl(), paramSetTables));
-					TableResultSet fdcResultSet = fdcClient.executeWithTableResultReturn();
-					fdcResultSet.throwExceptionIfUnsuccessful("Error making FDC call");
-					Table fdcResults = fdcResultSet.getTable();
-					String fdcCsv = fdcResults.toCSVString();
-					
-					// log outputs
-					LocalLogger.logToStdOut("FDC results returned " + String.valueOf(fdcResults.getNumRows()) + " rows");
-					
-					// ingest
-					percentComplete += statusIncrement; // 2 of FDC - finished running FDC client
-					this.jobTracker.setJobPercentComplete(this.jobID, percentComplete, "FDC Query: " + fdcName + " - ingesting " + String.valueOf(fdcResults.getNumRows()) + " rows of results" );
-					
-					String ingestId = this.fdcServiceManager.getCurrentIngestNodegroupId();
-					errorHeader = "ingesting fdc results using " + ingestId;
-					
-					// try retrieving nodegroup from fdcClient first, failures will be silent
-					FdcClient fdcGetNgClient = new FdcClient(FdcClientConfig.buildGetNodegroup(this.fdcServiceManager.getCurrentServiceUrl(), ingestId));
-					SparqlGraphJson sgJson = fdcGetNgClient.executeGetNodegroup();
-					if (sgJson == null) {
-						// try nodegroup store if not found yet.  This one will throw an exception on failure.
-						sgJson = this.ngStoreClient.executeGetNodeGroupByIdToSGJson(ingestId);
-					}
-					
-					sgJson.setSparqlConn(ingestConn);
-					boolean precheck = false;
-					DataLoader.loadFromCsvString(sgJson.getJson(), fdcCsv, this.tmpGraphUser, this.tmpGraphPassword, precheck);	
+				if (running == 0) {
+					break;
+				}
+				try {
+					this.fdcServiceManager.finishFdcNode(completion.take().get());
+				} catch (ExecutionException e) {
+					throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
 				}
-				percentComplete += 2 * statusIncrement; // 3 and 4 of FDC - finished ingestion
+				running -= 1;
 			}
 			
 			errorHeader = "running final sparql query";
 
 			// run regular query
-			this.jobTracker.setJobPercentComplete(this.jobID, percentComplete, "FDC Query: running final query" );
+			this.jobTracker.setJobPercentComplete(this.jobID, percentComplete.get(), "FDC Query: running final query" );
+			this.flushStagedResults();
 			
 			this.queryNodeGroup.setSparqlConnection(expandedConn);
 			
@@ -219,7 +218,9 @@ public class FdcDispatcher extends EdcDispatcher {
 			LocalLogger.logToStdErr("FDC query milliseconds: " + String.valueOf(endMsec - startMsec));
 			
 			// delete temp graph
-			tempDataSei.dropGraph();
+			if (this.tempGraphCreated) {
+				tempDataSei.dropGraph();
+			}
 			
 			
 		} catch (Exception e) {
@@ -229,6 +230,10 @@ public class FdcDispatcher extends EdcDispatcher {
 			} catch (Exception ee) {}
 			
 		} finally {
+			if (pool != null) {
+				// on failure, don't leave other nodes running
+				pool.shutdownNow();
+			}
 			try {
 				FdcServiceManager.suggestReCache(this.extConfigSei, this.oInfoClient);
 			} catch (Exception e) {
@@ -237,11 +242,147 @@ public class FdcDispatcher extends EdcDispatcher {
 		}
 	}
 	
+	/**
+	 * Query one FDC node's inputs, call its service, and ingest the results into the temp graph
+	 * @throws Exception with a message saying which step failed
+	 */
+	private void executeFdcNode(Node node, SparqlConnection expandedConn, SparqlConnection ingestConn, AtomicInteger percentComplete, int statusIncrement) throws Exception {
+		String fdcName = node.getSparqlID();
+		String errorHeader = "setting up FDC node " + fdcName;
+		
+		try {
+			// get and execute each param nodegroup
+			// TODO this could break queries into LIMIT/OFFSET chunks
+			// TODO this might be async
+			
+			this.jobTracker.setJobPercentComplete(this.jobID, percentComplete.get(), "FDC Query: " + fdcName + " - getting inputs " );
+			
+			// inputs may come from FDC nodes that have finished
+			this.flushStagedResults();
+			
+			HashMap<String, Table> paramSetTables = new HashMap<String, Table>();
+			HashMap<String, NodeGroup> paramSetNodeGroups = this.fdcServiceManager.getParamNodeGroups(node);
+			for (String paramSet : paramSetNodeGroups.keySet()) {
+				errorHeader = "querying " + fdcName + " param set " + paramSet;
+				NodeGroup ng = paramSetNodeGroups.get(paramSet);
+				
+				if (ng == null) {
+					// if nodegroup doesn't have necessary subgraph to generate param
+					paramSetTables.put(paramSet, null);
+					break;
+					
+				} else {
+					// if param can be calculated with nodegroup, do so
+					ng.setSparqlConnection(expandedConn);
+					String query = ng.generateSparqlSelect();
+					paramSetTables.put(paramSet, this.querySei.executeQueryToTable(query));
+				}
+			}
+			
+			// 1 of FDC - finished retrieval
+			this.jobTracker.setJobPercentComplete(this.jobID, percentComplete.addAndGet(statusIncrement), "FDC Query: " + fdcName + " - running" );
+			
+			String serviceUrl = this.fdcServiceManager.getServiceUrl(node);
+			
+			// log inputs
+			LocalLogger.logToStdErr("FDC call: " + serviceUrl);
+			
+			// if nodegroup had subgraphs available to generate all parameter tables
+			// run the FDC service
+			if (! paramSetTables.containsValue(null)) {
+				errorHeader = "running fdc service " + serviceUrl;
+				
+				// execute FDC call
+				FdcClient fdcClient = new FdcClient(FdcClientConfig.fromFullEndpoint(serviceUrl, paramSetTables));
+				TableResultSet fdcResultSet = fdcClient.executeWithTableResultReturn();
+				fdcResultSet.throwExceptionIfUnsuccessful("Error making FDC call");
+				Table fdcResults = fdcResultSet.getTable();
+				String fdcCsv = fdcResults.toCSVString();
+				
+				// log outputs
+				LocalLogger.logToStdOut("FDC results returned " + String.valueOf(fdcResults.getNumRows()) + " rows");
+				
+				// ingest
+				// 2 of FDC - finished running FDC client
+				this.jobTracker.setJobPercentComplete(this.jobID, percentComplete.addAndGet(statusIncrement), "FDC Query: " + fdcName + " - ingesting " + String.valueOf(fdcResults.getNumRows()) + " rows of results" );
+				
+				String ingestId = this.fdcServiceManager.getIngestNodegroupId(node);
+				errorHeader = "ingesting fdc results using " + ingestId;
+				
+				// try retrieving nodegroup from fdcClient first, failures will be silent
+				FdcClient fdcGetNgClient = new FdcClient(FdcClientConfig.buildGetNodegroup(serviceUrl, ingestId));
+				SparqlGraphJson sgJson = fdcGetNgClient.executeGetNodegroup();
+				if (sgJson == null) {
+					// try nodegroup store if not found yet.  This one will throw an exception on failure.
+					sgJson = this.ngStoreClient.executeGetNodeGroupByIdToSGJson(ingestId);
+				}
+				
+				this.stageFdcResults(sgJson, fdcCsv, ingestConn);
+			}
+			percentComplete.addAndGet(2 * statusIncrement); // 3 and 4 of FDC - finished ingestion
+		} catch (Exception e) {
+			throw new Exception(errorHeader + ": " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Ingest FDC results into the temp graph (the only data interface of ingestConn),
+	 * or into the job's in-memory staging graph
+	 */
+	private void stageFdcResults(SparqlGraphJson sgJson, String fdcCsv, SparqlConnection ingestConn) throws Exception {
+		boolean precheck = false;
+		
+		if (staging == FdcStaging.INMEMORY) {
+			// ingest into a private in-memory graph so parallel nodes don't interleave, then add it to the staged results
+			InMemoryInterface memSei = new InMemoryInterface(this.tempDataSei.getGraph());
+			SparqlConnection memConn = SparqlConnection.deepCopy(ingestConn);
+			memConn.clearDataInterfaces();
+			memConn.addDataInterface(memSei);
+			
+			sgJson.setSparqlConn(memConn);
+			int records = DataLoader.loadFromCsvString(sgJson, fdcCsv, this.tmpGraphUser, this.tmpGraphPassword, precheck);
+			if (records > 0) {
+				byte[] ttl = memSei.dumpToTurtle().getBytes(StandardCharsets.UTF_8);
+				synchronized (this.stagingLock) {
+					this.stagedSei.authUploadTurtle(ttl);
+					this.stagedRecords += records;
+				}
+			}
+			
+		} else {
+			sgJson.setSparqlConn(ingestConn);
+			DataLoader.loadFromCsvString(sgJson.getJson(), fdcCsv, this.tmpGraphUser, this.tmpGraphPassword, precheck);	
+		}
+	}
+	
+	/**
+	 * Make staged in-memory results visible to queries by sending them to the temp graph in one upload.
+	 * The temp graph is only created once there is something to put in it.
+	 */
+	private void flushStagedResults() throws Exception {
+		synchronized (this.stagingLock) {
+			if (this.stagedRecords == 0) {
+				return;
+			}
+			if (!this.tempGraphCreated) {
+				this.createTempGraph();
+			}
+			LocalLogger.logToStdOut("Uploading " + this.stagedRecords + " staged FDC records to temp graph");
+			this.tempDataSei.authUploadTurtle(this.stagedSei.dumpToTurtle().getBytes(StandardCharsets.UTF_8));
+			this.stagedSei = new InMemoryInterface(this.tempDataSei.getGraph());
+			this.stagedRecords = 0;
+		}
+	}
+	
+	private void createTempGraph() throws Exception {
+		this.tempDataSei.createGraph();
+		this.tempGraphCreated = true;
+	}
+	
 	private SparqlEndpointInterface createTempSei() throws Exception {
 		SparqlEndpointInterface tempDataSei = querySei.copy();
 		tempDataSei.setGraph(querySei.getGraph() + "/FDC_" +  UUID.randomUUID().toString());     // "FDC_TEMP");  PEC TODO test
 		tempDataSei.setUserAndPassword(this.tmpGraphUser, this.tmpGraphPassword);
-		tempDataSei.createGraph();
 		LocalLogger.logToStdOut("Using temp graph: " + tempDataSei.getGraph());
 		return tempDataSei;
 	}
@@ -54,6 +54,7 @@ public class FdcServiceManager {
 	private HashMap<String,HashMap<String, NodeGroup>> paramNodegroups;     //  paramNodegroups.get(fdc_orig_sparqlId).get(param_set_int)=NodeGroup
 	private HashMap<String,HashMap<String, Node>> paramHeadNodes;   // paramHeadNodes.get(fdc_orig_sparqlId).get(param_set_int)=head node in param nodegroup
 	private HashSet<String> unprocessedFdcNodes;                   // set of unprocessed fdc node ?fdc_orig_sparqlId
+	private HashSet<String> startedFdcNodes = new HashSet<String>();   // unprocessed nodes handed out by startReadyFdcNodes() and still running
 	private HashMap<String,HashSet<Node>> fdcNodeCopies;   // fdcNodeCopies.get(fdc_orig_sparqlId)=copies of orig node in param nodegroups
 	
 	static String FDC_DATA_SUPERCLASS = "http://research.ge.com/semtk/federatedDataConnection#FDCData";
@@ -322,81 +323,125 @@ public class FdcServiceManager {
 
 		// loop through looking for an easy answer
 		for (String sparqlId : this.unprocessedFdcNodes) {
-			Node fdcNode = this.nodegroup.getNodeBySparqlID(sparqlId);
-
 			// does it have no unprocessed dependencies
 			if (! this.hasUnresolvedDependencies(sparqlId)) {
-
-				// mark this node as processed
-				this.unprocessedFdcNodes.remove(sparqlId);
-
-				// return it
-				this.currFdcDataNode = fdcNode;
-				this.currFdcTypeCache = FdcServiceManager.getFdcTypeCache().getSubsetWhereMatches("fdcClass", this.currFdcDataNode.getFullUriName());
+				this.setCurrentFdcNode(sparqlId);
 				return true;
 			} 
-
 		}
 		
-
 		// Didn't find one with no dependencies
 		// so loop through again and try removing some dependencies
 		for (String sparqlId : this.unprocessedFdcNodes) {
-			Node fdcNode = this.nodegroup.getNodeBySparqlID(sparqlId);
-
-			HashMap<String, NodeGroup> ngHashEntryCopy = new HashMap<String, NodeGroup>();
-			boolean failFlag = false;
-
-			// loop through paramsets
-			for (String paramSet : this.paramNodegroups.get(sparqlId).keySet()) {
-
-				// copy the param nodegroup
-				NodeGroup paramNg = this.paramNodegroups.get(sparqlId).get(paramSet);
-				NodeGroup paramNgCopy = NodeGroup.deepCopy(paramNg);
-				ngHashEntryCopy.put(paramSet, paramNgCopy);
-
-				// delete all unresolved Fdc nodes and their subgraphs
-				for (Node unresolvedNode : this.getUnresolvedNodes(paramNg)) {
-					Node unresolvedCopy = paramNgCopy.getNodeBySparqlID(unresolvedNode.getSparqlID());
-					// if deleting a previous subgraph didn't already delete this unresolved fdc node
-					if (unresolvedCopy != null) {
-						paramNgCopy.deleteNode(unresolvedCopy, paramHeadNodes.get(sparqlId).get(paramSet));  
-					}
+			if (this.removeUnresolvedDependencies(sparqlId)) {
+				this.setCurrentFdcNode(sparqlId);
+				return true;
+			}
+		}
+		
+		throw new Exception("Can't untangle FDC dependencies: " + this.unprocessedFdcNodes);
+	}
+	
+	private void setCurrentFdcNode(String sparqlId) throws Exception {
+		// mark this node as processed
+		this.unprocessedFdcNodes.remove(sparqlId);
+		
+		this.currFdcDataNode = this.nodegroup.getNodeBySparqlID(sparqlId);
+		this.currFdcTypeCache = FdcServiceManager.getFdcTypeCache().getSubsetWhereMatches("fdcClass", this.currFdcDataNode.getFullUriName());
+	}
+	
+	/**
+	 * Alternative to nextFdcNode() for running FDC nodes in parallel.
+	 * Start every FDC node whose param nodegroups don't depend on an unfinished FDC node.
+	 * Nodes become unfinished when started, and finished with finishFdcNode().
+	 * 
+	 * If nothing is ready and nothing is running, dependencies are whittled away the same
+	 * way as nextFdcNode() so that one node may start.
+	 * @return nodes to run now.  Empty if waiting on running nodes or if all nodes have been started.
+	 * @throws Exception if dependencies can't be untangled
+	 */
+	public synchronized ArrayList<Node> startReadyFdcNodes() throws Exception {
+		ArrayList<Node> ret = new ArrayList<Node>();
+		
+		for (String sparqlId : this.unprocessedFdcNodes) {
+			if (!this.startedFdcNodes.contains(sparqlId) && !this.hasUnresolvedDependencies(sparqlId)) {
+				ret.add(this.nodegroup.getNodeBySparqlID(sparqlId));
+			}
+		}
+		
+		if (ret.size() == 0 && this.startedFdcNodes.size() == 0) {
+			for (String sparqlId : this.unprocessedFdcNodes) {
+				if (this.removeUnresolvedDependencies(sparqlId)) {
+					ret.add(this.nodegroup.getNodeBySparqlID(sparqlId));
+					break;
 				}
-
-				// check to see if new param nodegroup still has all the necessary returns
-				ArrayList<String> remainingSparqlIDs = paramNgCopy.getReturnedSparqlIDs();
-				String [] columnNames = this.getInputColumnNames(fdcNode.getFullUriName(), paramSet);
-				for (String col : columnNames) {
-					if (! remainingSparqlIDs.contains("?" + col)) {
-						failFlag = true;
-					}
+			}
+			if (ret.size() == 0 && this.unprocessedFdcNodes.size() > 0) {
+				throw new Exception("Can't untangle FDC dependencies: " + this.unprocessedFdcNodes);
+			}
+		}
+		
+		for (Node n : ret) {
+			this.startedFdcNodes.add(n.getSparqlID());
+		}
+		return ret;
+	}
+	
+	/**
+	 * Mark a node from startReadyFdcNodes() as done, so nodes depending on it may start
+	 * @param fdcNode
+	 */
+	public synchronized void finishFdcNode(Node fdcNode) {
+		this.startedFdcNodes.remove(fdcNode.getSparqlID());
+		this.unprocessedFdcNodes.remove(fdcNode.getSparqlID());
+	}
+	
+	/**
+	 * Delete all unresolved Fdc nodes from a node's param nodegroups, if they will still return all params
+	 * @param sparqlId
+	 * @return true if this node no longer has dependencies
+	 */
+	private boolean removeUnresolvedDependencies(String sparqlId) throws Exception {
+		Node fdcNode = this.nodegroup.getNodeBySparqlID(sparqlId);
+
+		HashMap<String, NodeGroup> ngHashEntryCopy = new HashMap<String, NodeGroup>();
+		boolean failFlag = false;
+
+		// loop through paramsets
+		for (String paramSet : this.paramNodegroups.get(sparqlId).keySet()) {
+
+			// copy the param nodegroup
+			NodeGroup paramNg = this.paramNodegroups.get(sparqlId).get(paramSet);
+			NodeGroup paramNgCopy = NodeGroup.deepCopy(paramNg);
+			ngHashEntryCopy.put(paramSet, paramNgCopy);
+
+			// delete all unresolved Fdc nodes and their subgraphs
+			for (Node unresolvedNode : this.getUnresolvedNodes(paramNg)) {
+				Node unresolvedCopy = paramNgCopy.getNodeBySparqlID(unresolvedNode.getSparqlID());
+				// if deleting a previous subgraph didn't already delete this unresolved fdc node
+				if (unresolvedCopy != null) {
+					paramNgCopy.deleteNode(unresolvedCopy, paramHeadNodes.get(sparqlId).get(paramSet));  
 				}
-
 			}
 
-			// dependent fdc nodes were removed from all param nodegroups and they still contain all necessary returns
-			if (! failFlag) {
-				// replace param nodegroups with whittled down copies
-				this.paramNodegroups.put(sparqlId, ngHashEntryCopy);
-
-				// mark this node as processed
-				this.unprocessedFdcNodes.remove(sparqlId);
-
-				// return it
-				this.currFdcDataNode = fdcNode;
-				this.currFdcTypeCache = FdcServiceManager.getFdcTypeCache().getSubsetWhereMatches("fdcClass", this.currFdcDataNode.getFullUriName());
-				return true;
+			// check to see if new param nodegroup still has all the necessary returns
+			ArrayList<String> remainingSparqlIDs = paramNgCopy.getReturnedSparqlIDs();
+			String [] columnNames = this.getInputColumnNames(fdcNode.getFullUriName(), paramSet);
+			for (String col : columnNames) {
+				if (! remainingSparqlIDs.contains("?" + col)) {
+					failFlag = true;
+				}
 			}
 
 		}
-		
-			
-		if (this.unprocessedFdcNodes.size() != 0) {
-			throw new Exception("Can't untangle FDC dependencies: " + this.unprocessedFdcNodes);
-		} else {
-			return false;
+
+		// dependent fdc nodes were removed from all param nodegroups and they still contain all necessary returns
+		if (! failFlag) {
+			// replace param nodegroups with whittled down copies
+			this.paramNodegroups.put(sparqlId, ngHashEntryCopy);
+			return true;
 		}
+		return false;
 	}
 	
 	public String[] getInputColumnNames(String className, String inputIndex) throws Exception {
@@ -420,6 +465,14 @@ public class FdcServiceManager {
 		return currFdcTypeCache.getCell(0, "ingestNodegroupId");
 	}
 	
+	public String getServiceUrl(Node fdcNode) throws Exception {
+		return FdcServiceManager.getFdcTypeCache().getSubsetWhereMatches("fdcClass", fdcNode.getFullUriName()).getCell(0, "serviceURL");
+	}
+	
+	public String getIngestNodegroupId(Node fdcNode) throws Exception {
+		return FdcServiceManager.getFdcTypeCache().getSubsetWhereMatches("fdcClass", fdcNode.getFullUriName()).getCell(0, "ingestNodegroupId");
+	}
+	
 	public String getCurrentOwlImport() {
 		OntologyName classUri = new OntologyName(this.getCurrentFdcNode().getFullUriName());
 		return classUri.getNamespace();
@@ -435,7 +488,7 @@ public class FdcServiceManager {
 	 * @return
 	 * @throws Exception
 	 */
-	public HashMap<String, NodeGroup> getParamNodeGroups(Node fdcNode) throws Exception {
+	public synchronized HashMap<String, NodeGroup> getParamNodeGroups(Node fdcNode) throws Exception {
 		return this.paramNodegroups.get(fdcNode.getSparqlID());
 	}
 
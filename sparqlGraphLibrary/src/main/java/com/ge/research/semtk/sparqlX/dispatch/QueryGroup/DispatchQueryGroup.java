@@ -22,7 +22,6 @@ import java.util.Set;
 import java.util.UUID;
 
 import com.ge.research.semtk.resultSet.Table;
-import com.ge.research.semtk.utility.LocalLogger;
 
 public class DispatchQueryGroup {
 
@@ -263,71 +262,6 @@ public class DispatchQueryGroup {
 		return this.partialResults;
 	}
 	
-	/**
-	 * using columnsInOrder, create an export of the partial results in this group, complete with the semantic results fused in
-	 * @param columnsInOrder
-	 * @return
-	 */
-	// Appears to be dead code: PEC 6/13/2018
-	public ArrayList<ArrayList<String>> exportResultsInOrder(String[] columnsInOrder){
-		ArrayList<ArrayList<String>> retval = new ArrayList<ArrayList<String>>();
-		
-		for(Table currPartial : this.partialResults){
-			// spin through each row and build our result. 
-			for(ArrayList<String> row : currPartial.getRows()){
-				
-				ArrayList<String> outRow = new ArrayList<String>();
-				
-				// get the values for each column we care about. things are about to get big. 
-				for(String currCol : columnsInOrder){
-					if(this.semanticColumnValues.keySet().contains(currCol)){
-						// get the data from the semantic values.
-						outRow.add(this.semanticColumnValues.get(currCol));
-					}
-					else{
-						try{
-							outRow.add(row.get(currPartial.getColumnIndex(currCol)));
-						}
-						catch(Exception e){
-							outRow.add(" --- ");
-						}
-					}
-				}
-				retval.add(outRow);
-			}
-		}
-		return retval;
-	}
-	
-	
-	public void exportResultsInOrder_Parallel(String[] columnsInOrder, int initialOffset, Object[] retval){		
-		int rollingOffset = 0;
-		
-		QueryGroupFusionWorkerThread[] waitingOn = new QueryGroupFusionWorkerThread[this.partialResults.size()];
-			
-		int ii = 0;
-		for(Table currPartial : this.partialResults){
-			int offset = initialOffset + rollingOffset;
-			QueryGroupFusionWorkerThread curr = new QueryGroupFusionWorkerThread(currPartial, offset, retval, columnsInOrder, this.semanticColumnValues);
-			
-			waitingOn[ii] = curr;
-			curr.start();
-			ii += 1;
-			
-			rollingOffset += currPartial.getNumRows();
-		}
-		
-		// check for all threads joined. 
-		for(int k = 0; k < waitingOn.length; k += 1){
-			try {
-				waitingOn[k].join();
-			} catch (InterruptedException e) {
-				LocalLogger.printStackTrace(e);
-			}
-		}
-		
-	}
-	
 	public int getTotalResultOffset(){
 		int retval = 0;
 		
@@ -1,39 +0,0 @@
-/**
- ** Copyright 2016-2020 General Electric Company
- **
- **
- ** Licensed under the Apache License, Version 2.0 (the "License");
- ** you may not use this file except in compliance with the License.
- ** You may obtain a copy of the License at
- ** 
- **     http://www.apache.org/licenses/LICENSE-2.0
- ** 
- ** Unless required by applicable law or agreed to in writing, software
- ** distributed under the License is distributed on an "AS IS" BASIS,
- ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- ** See the License for the specific language governing permissions and
- ** limitations under the License.
- */
-package com.ge.research.semtk.sparqlX.dispatch.QueryGroup;
-
-public class OverallFusionWorkerThread extends Thread {
-
-	private DispatchQueryGroup myDqg;
-	Object[] globalRowSet;
-	private int startingOffset;
-	private String[] columnNamesInOrder;
-	
-	
-	public OverallFusionWorkerThread(DispatchQueryGroup dqg, int startOffset, String[] columnNamesInOrder, Object[] totalResultSet){
-		
-		this.myDqg = dqg;
-		this.globalRowSet = totalResultSet;
-		this.startingOffset = startOffset;
-		this.columnNamesInOrder = columnNamesInOrder;
-	}
-	
-	public void run(){
-		//LocalLogger.logToStdOut("starting thread to handle fusions for a dispatch group with ID: " + myDqg.getUUID());
-		this.myDqg.exportResultsInOrder_Parallel(this.columnNamesInOrder, this.startingOffset, this.globalRowSet);
-	}
-}
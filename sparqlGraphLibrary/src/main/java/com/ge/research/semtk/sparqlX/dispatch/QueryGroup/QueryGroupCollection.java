@@ -16,14 +16,11 @@
  */
 package com.ge.research.semtk.sparqlX.dispatch.QueryGroup;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.UUID;
 
 import com.ge.research.semtk.resultSet.Table;
-import com.ge.research.semtk.utility.LocalLogger;
 import com.ge.research.semtk.utilityge.Utility;
 
 
@@ -219,75 +216,29 @@ public class QueryGroupCollection {
 	 * @return
 	 * @throws Exception
 	 */
-	// Appears to be dead code: PEC 6/13/2018
 	public Table returnFusedResults(String[] columnNamesInOrder, String[] columnTypesInNameOrder) throws Exception{
-		Table retval = null;
-		
-		// interrogate each DQG for its results. 
-		ArrayList<ArrayList<String>> tableRows = new ArrayList<ArrayList<String>>();
-		for(DispatchQueryGroup dqg : this.dispatchQueryGroupHash.values()){
-			tableRows.addAll(dqg.exportResultsInOrder(columnNamesInOrder));
-		}
-		// create a new table to return results into. 
-		retval = new Table(columnNamesInOrder, columnTypesInNameOrder, tableRows);
-		// ship it out.
-		return retval;
+		return this.getFusion(columnNamesInOrder).fuse(columnTypesInNameOrder);
 	}
 	
+	/**
+	 * same as returnFusedResults, but split across threads
+	 * @param columnNamesInOrder
+	 * @param columnTypesInNameOrder
+	 * @return
+	 * @throws Exception
+	 */
 	public Table returnFusedResults_parallel(String[] columnNamesInOrder, String[] columnTypesInNameOrder) throws Exception{
-
-		DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-		
-		// allocate blank results and rows
-		Table retval = null;
-		ArrayList<ArrayList<String>> tableRows = new ArrayList<ArrayList<String>>();
-		
-		// get sum of rows in each returned table
-		int fullSet = 0;
-		for(DispatchQueryGroup d : this.dispatchQueryGroupHash.values()){
-			fullSet += d.getTotalResultOffset();
-		}
-
-		// create results as array instead of ArrayList so threads don't compete
-		// WARNING:  MEMORY CRUNCH OCCURS HERE
-		Object[] tempStorage = new Object[fullSet];
-		
-		// create thread for each DispatchQueryGroup 
-		int allThreads = 0;
-		OverallFusionWorkerThread[] threads = new OverallFusionWorkerThread[this.dispatchQueryGroupHash.values().size()];
-		int startOffset = 0;
-		
-		// launch threads, which write to tempStorage
-		for(DispatchQueryGroup dqg : this.dispatchQueryGroupHash.values()){
-			
-			OverallFusionWorkerThread currThread = new OverallFusionWorkerThread(dqg, startOffset, columnNamesInOrder, tempStorage);
-			threads[allThreads] = currThread;
-			
-			currThread.start();
-			allThreads += 1;
-			// calculate offset for next thread
-			startOffset += dqg.getTotalResultOffset();
-		}
-		
-		// wait on the results...
-		for(int k = 0; k < threads.length; k += 1){
-			try {
-				threads[k].join();
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				LocalLogger.printStackTrace(e);
-			}
-		}
-		
-		// add everything from tempStorage to tableRows...
-		for(Object n : tempStorage){
-			ArrayList<String> currRow = (ArrayList<String>)n;
-			tableRows.add(currRow);
-		}
-				
-		// create a new table containing tableRows 
-		retval = new Table(columnNamesInOrder, columnTypesInNameOrder, tableRows);		
-		return retval;
+		return this.getFusion(columnNamesInOrder).fuseParallel(columnTypesInNameOrder, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * get a fusion of all the partial results, which may be iterated to stream the fused rows
+	 * instead of building a table.
+	 * @param columnNamesInOrder
+	 * @return
+	 */
+	public QueryGroupFusion getFusion(String[] columnNamesInOrder){
+		return new QueryGroupFusion(this.dispatchQueryGroupHash.values(), columnNamesInOrder);
 	}
 	
 	/**
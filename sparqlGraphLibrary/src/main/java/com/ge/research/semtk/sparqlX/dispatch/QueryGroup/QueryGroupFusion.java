@@ -0,0 +1,243 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.dispatch.QueryGroup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ge.research.semtk.resultSet.Table;
+
+/**
+ * Joins the partial (external) results of each DispatchQueryGroup with that group's semantic values.
+ *
+ * The join key is the group UUID:  the semantic values for each UUID are hashed once into a row
+ * laid out in output column order, and each partial results table is matched to its group's row.
+ * The source of every output column is resolved once per distinct partial results layout
+ * rather than by column name for each row.
+ *
+ * Rows can be fused into one pre-sized Table, in parallel, or streamed one at a time
+ * so that they never all need to be in memory.
+ */
+public class QueryGroupFusion implements Iterable<ArrayList<String>> {
+
+	public static final String MISSING_VALUE = "---";
+
+	private static final int FROM_SEMANTIC = -1;
+	private static final int FROM_NOWHERE = -2;
+	private static final int ROWS_PER_TASK = 10000;
+
+	private String[] columnNamesInOrder;
+	private HashMap<UUID, String[]> semanticRows = new HashMap<UUID, String[]>();	// build side of the join
+	private HashMap<String, int[]> plans = new HashMap<String, int[]>();			// column sources, by partial results column names
+	private ArrayList<Segment> segments = new ArrayList<Segment>();					// probe side:  one per partial results table
+	private int numRows = 0;
+
+	/**
+	 * One partial results table, with everything needed to fuse its rows
+	 */
+	private static class Segment {
+		ArrayList<ArrayList<String>> rows;
+		String[] semanticRow;
+		int[] plan;
+		int outputOffset;
+
+		Segment(ArrayList<ArrayList<String>> rows, String[] semanticRow, int[] plan, int outputOffset) {
+			this.rows = rows;
+			this.semanticRow = semanticRow;
+			this.plan = plan;
+			this.outputOffset = outputOffset;
+		}
+	}
+
+	/**
+	 * Plan the fusion
+	 * @param groups the query groups, with their partial results
+	 * @param columnNamesInOrder output columns:  semantic columns first, then external
+	 */
+	public QueryGroupFusion(Collection<DispatchQueryGroup> groups, String[] columnNamesInOrder) {
+		this.columnNamesInOrder = columnNamesInOrder;
+
+		for (DispatchQueryGroup dqg : groups) {
+			HashMap<String, String> semanticValues = dqg.getSemanticColumnInfo();
+			String[] semanticRow = this.semanticRows.computeIfAbsent(dqg.getUUID(), k -> this.buildSemanticRow(semanticValues));
+
+			for (Table partial : dqg.getPartialResults()) {
+				if (partial == null || partial.getNumRows() == 0) {
+					continue;
+				}
+				// semantic columns are the same for every group, so a plan depends only on the partial's columns
+				String layout = String.join("\u0000", partial.getColumnNames());
+				int[] plan = this.plans.computeIfAbsent(layout, k -> this.buildPlan(partial, semanticValues));
+
+				this.segments.add(new Segment(partial.getRows(), semanticRow, plan, this.numRows));
+				this.numRows += partial.getNumRows();
+			}
+		}
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public String[] getColumnNames() {
+		return this.columnNamesInOrder;
+	}
+
+	/**
+	 * Fuse all rows into a new table
+	 * @param columnTypesInNameOrder
+	 * @return
+	 * @throws Exception
+	 */
+	public Table fuse(String[] columnTypesInNameOrder) throws Exception {
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>(this.numRows);
+		for (ArrayList<String> row : this) {
+			rows.add(row);
+		}
+		return new Table(this.columnNamesInOrder, columnTypesInNameOrder, rows);
+	}
+
+	/**
+	 * Fuse all rows into a new table, splitting the work across threads
+	 * @param columnTypesInNameOrder
+	 * @param maxThreads
+	 * @return
+	 * @throws Exception
+	 */
+	public Table fuseParallel(String[] columnTypesInNameOrder, int maxThreads) throws Exception {
+		// size the output once.  Each task fills its own range.
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>(this.numRows);
+		rows.addAll(Collections.nCopies(this.numRows, (ArrayList<String>) null));
+
+		ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+		for (Segment seg : this.segments) {
+			for (int start = 0; start < seg.rows.size(); start += ROWS_PER_TASK) {
+				final int from = start;
+				final int to = Math.min(start + ROWS_PER_TASK, seg.rows.size());
+				tasks.add(() -> {
+					for (int i = from; i < to; i++) {
+						rows.set(seg.outputOffset + i, this.fuseRow(seg, i));
+					}
+				});
+			}
+		}
+
+		if (tasks.size() <= 1 || maxThreads <= 1) {
+			for (Runnable task : tasks) {
+				task.run();
+			}
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxThreads, tasks.size()));
+			try {
+				ArrayList<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+				for (Runnable task : tasks) {
+					futures.add(pool.submit(task));
+				}
+				for (Future<?> f : futures) {
+					f.get();
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		return new Table(this.columnNamesInOrder, columnTypesInNameOrder, rows);
+	}
+
+	/**
+	 * Fused rows, produced one at a time as they are read
+	 */
+	@Override
+	public Iterator<ArrayList<String>> iterator() {
+		return new Iterator<ArrayList<String>>() {
+			private int segIndex = 0;
+			private int rowIndex = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (this.segIndex < segments.size() && this.rowIndex >= segments.get(this.segIndex).rows.size()) {
+					this.segIndex++;
+					this.rowIndex = 0;
+				}
+				return this.segIndex < segments.size();
+			}
+
+			@Override
+			public ArrayList<String> next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return fuseRow(segments.get(this.segIndex), this.rowIndex++);
+			}
+		};
+	}
+
+	private ArrayList<String> fuseRow(Segment seg, int i) {
+		ArrayList<String> in = seg.rows.get(i);
+		ArrayList<String> out = new ArrayList<String>(seg.plan.length);
+		for (int c = 0; c < seg.plan.length; c++) {
+			int src = seg.plan[c];
+			if (src >= 0) {
+				out.add(in.get(src));
+			} else if (src == FROM_SEMANTIC) {
+				out.add(seg.semanticRow[c]);
+			} else {
+				out.add(MISSING_VALUE);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Semantic values laid out in output column order (null where the column isn't semantic)
+	 */
+	private String[] buildSemanticRow(HashMap<String, String> semanticValues) {
+		String[] ret = new String[this.columnNamesInOrder.length];
+		for (int c = 0; c < ret.length; c++) {
+			ret[c] = semanticValues.get(this.columnNamesInOrder[c]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Decide where each output column comes from.
+	 * Semantic columns come first in the output.  A name that is both semantic and external appears twice:
+	 * its first instance is the semantic value and any later one is the external value.
+	 */
+	private int[] buildPlan(Table partial, HashMap<String, String> semanticValues) {
+		int numSemantic = semanticValues.size();
+		int[] plan = new int[this.columnNamesInOrder.length];
+		for (int c = 0; c < plan.length; c++) {
+			String col = this.columnNamesInOrder[c];
+			int idx = partial.getColumnIndex(col);
+			if (semanticValues.containsKey(col) && (idx < 0 || c < numSemantic)) {
+				plan[c] = FROM_SEMANTIC;
+			} else {
+				plan[c] = (idx >= 0) ? idx : FROM_NOWHERE;
+			}
+		}
+		return plan;
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.auth.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.auth.AuthorizationException;
+import com.ge.research.semtk.auth.SparqlQueryInterrogator;
+
+public class SparqlQueryInterrogatorTest {
+
+	@Test
+	public void testSelect() throws Exception {
+		SparqlQueryInterrogator sqi = new SparqlQueryInterrogator(
+				"SELECT ?x FROM <http://g1> FROM\n<http://g2> WHERE { GRAPH <http://g3> { ?x ?p \"insert into <http://g4>\" } }");
+		assertTrue(sqi.isReadOnly());
+		assertEquals(Arrays.asList("http://g1", "http://g2", "http://g3"), sqi.getGraphNames());
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		SparqlQueryInterrogator sqi = new SparqlQueryInterrogator(
+				"prefix ex:<http://ex#> Insert { GRAPH <http://g1> { ex:a ex:b 'it''s \\' select' } } WHERE { ?service ex:service ?y }");
+		assertFalse(sqi.isReadOnly());
+		assertEquals(Arrays.asList("http://g1"), sqi.getGraphNames());
+
+		assertFalse(new SparqlQueryInterrogator("CLEAR GRAPH <http://g>").isReadOnly());
+		assertFalse(new SparqlQueryInterrogator("delete where { ?s ?p ?o }").isReadOnly());
+	}
+
+	@Test
+	public void testKeywordsAreWholeWords() throws Exception {
+		// selected, _insert and deleted are not keywords
+		SparqlQueryInterrogator sqi = new SparqlQueryInterrogator("select ?selected ?_insert ?deleted where { ?x <http://a#deleted_by> ?y }");
+		assertTrue(sqi.isReadOnly());
+
+		try {
+			new SparqlQueryInterrogator("describe <http://x>").isReadOnly();
+			fail("Missing exception on query with no recognized keywords");
+		} catch (AuthorizationException e) {
+			assertTrue(e.getMessage().contains("none of"));
+		}
+	}
+
+	@Test
+	public void testService() throws Exception {
+		try {
+			new SparqlQueryInterrogator("select * where { SERVICE <http://other/sparql> { ?s ?p ?o } }");
+			fail("Missing exception on SERVICE keyword");
+		} catch (AuthorizationException e) {
+			assertTrue(e.getMessage().contains("SERVICE"));
+		}
+		// in a string is fine
+		new SparqlQueryInterrogator("select * where { ?s ?p \"service\" }");
+	}
+
+	@Test
+	public void testUnparsableGraph() throws Exception {
+		SparqlQueryInterrogator sqi = new SparqlQueryInterrogator("select * from <http://g?x=1> where { ?s ?p ?o }");
+		try {
+			sqi.getGraphNames();
+			fail("Missing exception on graph containing ?");
+		} catch (AuthorizationException e) {
+			assertEquals("Can not authorize query with un-parsable graph: from <http://g?x=1>", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testQuoteInGraphIri() throws Exception {
+		// ' is legal in an IRI and must not start a string hiding later graphs
+		SparqlQueryInterrogator sqi = new SparqlQueryInterrogator(
+				"INSERT DATA { GRAPH <http://x/a'b> { <http://s> <http://p> 'o' } GRAPH <http://y> { <http://s'> <http://p> \"o\" } }");
+		assertFalse(sqi.isReadOnly());
+		assertEquals(Arrays.asList("http://x/a'b", "http://y"), sqi.getGraphNames());
+
+		sqi = new SparqlQueryInterrogator("select * from <http://g'1> from <http://g2> where { ?s ?p \"<http://g3>\" . filter(?o < 3 && ?s != 'x') }");
+		assertEquals(Arrays.asList("http://g'1", "http://g2"), sqi.getGraphNames());
+	}
+
+	@Test
+	public void testBadGraphIri() throws Exception {
+		String[] queries = {
+				"INSERT DATA { GRAPH <http://x/a b> { <http://s> <http://p> 'o' } }",
+				"INSERT DATA { GRAPH <http://x/\"a> { <http://s> <http://p> 'o' } }",
+				"INSERT DATA { GRAPH <> { <http://s> <http://p> 'o' } }",
+				"DROP GRAPH <http://x/a",
+		};
+		for (String q : queries) {
+			SparqlQueryInterrogator sqi = new SparqlQueryInterrogator(q);
+			try {
+				sqi.getGraphNames();
+				fail("Missing exception on bad graph IRI: " + q);
+			} catch (AuthorizationException e) {
+				assertTrue(e.getMessage().startsWith("Can not authorize query with un-parsable graph: GRAPH <"));
+			}
+		}
+	}
+
+	@Test
+	public void testLongQueryMessage() throws Exception {
+		StringBuilder q = new StringBuilder("SERVICE ");
+		for (int i=0; i < 10000; i++) {
+			q.append("x ");
+		}
+		try {
+			new SparqlQueryInterrogator(q.toString());
+			fail("Missing exception on SERVICE keyword");
+		} catch (AuthorizationException e) {
+			assertTrue(e.getMessage().length() < 1200);
+			assertTrue(e.getMessage().endsWith("(20008 chars)"));
+		}
+	}
+}
@@ -416,5 +416,119 @@ public class NodeGroupTest {
 		
 		
 	}
+
+	@Test
+	public void testLookupsFollowChanges() throws Exception {
+		String jsonPath = "src/test/resources/sampleBatteryThreeCells.json";
+		SparqlGraphJson sgJson = new SparqlGraphJson(Utility.getJSONObjectFromFilePath(jsonPath));
+		NodeGroup nodegroup = sgJson.getNodeGroup();
+		
+		Node battery = nodegroup.getNodeBySparqlID("?Battery");
+		Node cell1 = nodegroup.getNodeBySparqlID("?Cell_1");
+		Node color1 = nodegroup.getNodeBySparqlID("?Color_1");
+		NodeItem cellEdge = battery.getNodeItemList().get(0);
+		NodeItem colorEdge1 = cell1.getNodeItemList().get(0);
+		PropertyItem cellId = cell1.getPropertyItemBySparqlID("?cellId");
+		
+		assertEquals(1, nodegroup.getNodeIndexBySparqlID("?Color_1"));
+		assertEquals(4, nodegroup.getNodeIndexBySparqlID("Cell_1"));
+		assertEquals(-1, nodegroup.getNodeIndexBySparqlID("?Nothing"));
+		assertEquals(3, nodegroup.getNodesByURI("http://kdl.ge.com/batterydemo#Cell").size());
+		assertEquals(cell1, nodegroup.getNodesByURI("http://kdl.ge.com/batterydemo#Cell").get(1));
+		assertEquals(battery, nodegroup.getNodeItemParentSNode(cellEdge));
+		assertEquals(cell1, nodegroup.getPropertyItemParentSNode(cellId));
+		assertEquals(1, nodegroup.getConnectingNodeItems(color1).size());
+		assertEquals(colorEdge1, nodegroup.getConnectingNodeItems(color1).get(0));
+		assertEquals(battery, nodegroup.getOrderedNodeList().get(0));
+		
+		// edit nodes directly, behind the nodegroup's back
+		cellEdge.pushNode(color1);
+		assertEquals(2, nodegroup.getConnectingNodeItems(color1).size());
+		assertEquals(cellEdge, nodegroup.getConnectingNodeItems(color1).get(1));
+		
+		cellEdge.removeNode(color1);
+		colorEdge1.removeNode(color1);
+		assertEquals(0, nodegroup.getConnectingNodeItems(color1).size());
+		
+		nodegroup.changeSparqlID(cell1, "?Renamed");
+		assertEquals(4, nodegroup.getNodeIndexBySparqlID("?Renamed"));
+		assertEquals(-1, nodegroup.getNodeIndexBySparqlID("?Cell_1"));
+		assertEquals(cellEdge, nodegroup.getConnectingNodeItems(cell1).get(0));
+		
+		cell1.setFullURIname("http://kdl.ge.com/batterydemo#Other");
+		assertEquals(2, nodegroup.getNodesByURI("http://kdl.ge.com/batterydemo#Cell").size());
+		assertEquals(cell1, nodegroup.getNodesByURI("http://kdl.ge.com/batterydemo#Other").get(0));
+		
+		cell1.rmPropItem(cellId);
+		assertEquals(null, nodegroup.getPropertyItemParentSNode(cellId));
+		
+		nodegroup.deleteNode(color1, false);
+		assertEquals(-1, nodegroup.getNodeIndexBySparqlID("?Color_1"));
+		assertEquals(1, nodegroup.getNodeIndexBySparqlID("?Color_0"));
+	}
+
+	@Test
+	public void testIndexPerNodeGroup() throws Exception {
+		String jsonPath = "src/test/resources/sampleBatteryThreeCells.json";
+		NodeGroup ng1 = new SparqlGraphJson(Utility.getJSONObjectFromFilePath(jsonPath)).getNodeGroup();
+		NodeGroup ng2 = new SparqlGraphJson(Utility.getJSONObjectFromFilePath(jsonPath)).getNodeGroup();
+		NodeGroup ng3 = NodeGroup.deepCopy(ng1);
+		
+		assertEquals(4, ng1.getNodeIndexBySparqlID("?Cell_1"));
+		int builds = ng1.getNodeIndexBuildCount();
+		
+		// changes to other nodegroups, including a copy of this one, leave its index alone
+		ng2.changeSparqlID(ng2.getNodeBySparqlID("?Cell_1"), "?Renamed");
+		ng2.getNodeBySparqlID("?Battery").getNodeItemList().get(0).pushNode(ng2.getNodeBySparqlID("?Color_1"));
+		ng2.deleteNode(ng2.getNodeBySparqlID("?Color_1"), false);
+		ng3.getNodeBySparqlID("?Cell_1").setFullURIname("http://kdl.ge.com/batterydemo#Other");
+		assertEquals(-1, ng2.getNodeIndexBySparqlID("?Cell_1"));
+		assertEquals(3, ng1.getNodesByURI("http://kdl.ge.com/batterydemo#Cell").size());
+		assertEquals(builds, ng1.getNodeIndexBuildCount());
+		
+		// its own changes still rebuild it
+		ng1.getNodeBySparqlID("?Cell_1").setFullURIname("http://kdl.ge.com/batterydemo#Other");
+		assertEquals(2, ng1.getNodesByURI("http://kdl.ge.com/batterydemo#Cell").size());
+		assertEquals(builds + 1, ng1.getNodeIndexBuildCount());
+	}
+	
+	@Test
+	public void testDeepCopy() throws Exception {
+		for (String jsonPath : new String[] {"src/test/resources/sampleBattery.json", "src/test/resources/sampleBattery Optional Props.json", "src/test/resources/animalSubPropsCatNItemUnion.json"}) {
+			SparqlGraphJson sgJson = new SparqlGraphJson(Utility.getJSONObjectFromFilePath(jsonPath));
+			NodeGroup nodegroup = sgJson.getNodeGroup();
+			nodegroup.setSparqlConnection(sgJson.getSparqlConn());
+			nodegroup.setLimit(12);
+			
+			// same as a json round trip
+			NodeGroup copy = NodeGroup.deepCopy(nodegroup);
+			NodeGroup fromJson = NodeGroup.getInstanceFromJson(nodegroup.toJson());
+			assertEquals(jsonPath, fromJson.toJson().toJSONString(), copy.toJson().toJSONString());
+			fromJson.setSparqlConnection(sgJson.getSparqlConn());
+			assertEquals(jsonPath, fromJson.generateSparqlSelect(), copy.generateSparqlSelect());
+			for (int i=0; i < copy.getNodeCount(); i++) {
+				assertEquals(fromJson.getNode(i).getSparqlID(), copy.getNode(i).getSparqlID());
+			}
+			
+			// nothing is shared
+			String before = nodegroup.toJson().toJSONString();
+			for (Node n : copy.getNodeList()) {
+				assertTrue(nodegroup.getNodeList().indexOf(n) == -1);
+				n.setIsReturned(!n.getIsReturned());
+				n.addValueConstraint("FILTER(?x = 1)");
+				for (PropertyItem p : n.getPropertyItems()) {
+					p.getInstanceValues().add("junk");
+				}
+				for (NodeItem nItem : n.getNodeItemList()) {
+					for (Node target : nItem.getNodeList()) {
+						assertTrue(nodegroup.getNodeList().indexOf(target) == -1);
+					}
+					nItem.getNodeList().clear();
+				}
+			}
+			copy.getSparqlConnection().setName("junk");
+			assertEquals(jsonPath, before, nodegroup.toJson().toJSONString());
+		}
+	}
 	
 }
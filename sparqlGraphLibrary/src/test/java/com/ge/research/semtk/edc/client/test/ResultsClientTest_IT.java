@@ -591,6 +591,39 @@ public class ResultsClientTest_IT {
 		// so leave "success" test to the fileStagingService Client test
 	}
 	
+	@Test
+	public void testStoreBlobAndRetrieveTable() throws Exception {
+
+		String jobId = "test_jobid_" + UUID.randomUUID();
+		
+		String [] cols = {"col1", "col2"};
+		String [] types = {"String", "String"};
+		Table table = new Table(cols, types, null);
+		for (int i=0; i < 1000; i++) {
+			ArrayList<String> row = new ArrayList<String>();
+			row.add("one" + i);
+			row.add("two \"quoted\"" + i);
+			table.addRow(row);
+		}
+		
+		try {
+			client.execStoreBlobResults(jobId, table.toJson());
+			
+			// read straight from the response
+			Table tbl = client.execGetBlobResultTable(jobId);
+			assertEquals(table.toJson().toJSONString(), tbl.toJson().toJSONString());
+		} finally {
+			cleanup(client, jobId);
+		}
+		
+		// bad jobId gives an empty response
+		try {
+			client.execGetBlobResultTable("wrongId");
+			fail("Missing exception for bad jobId");
+		} catch (Exception e) {
+		}
+	}
+	
 	@Test
 	public void testAuthenticationFailures() throws Exception {
 		// moved to AuthorizationTest_IT
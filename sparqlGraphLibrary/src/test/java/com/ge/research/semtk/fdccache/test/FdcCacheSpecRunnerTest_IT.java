@@ -28,6 +28,8 @@ import com.ge.research.semtk.fdccache.FdcCacheSpecRunner;
 import com.ge.research.semtk.load.utility.SparqlGraphJson;
 import com.ge.research.semtk.resultSet.Table;
 import com.ge.research.semtk.sparqlX.SparqlConnection;
+import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
+import com.ge.research.semtk.sparqlX.SparqlToXUtils;
 import com.ge.research.semtk.test.IntegrationTestUtility;
 import com.ge.research.semtk.test.TestGraph;
 import com.ge.research.semtk.utility.Utility;
@@ -166,6 +168,53 @@ public class FdcCacheSpecRunnerTest_IT {
 		assertTrue("Expired cache was not re-cached.", tracker.getJobStatusMessage(runner.getJobId()).contains("Successfully cached data"));
 	}
 	
+	@Test
+	public void testRecacheKeepsUnchangedResults() throws Exception {
+		cacheConn.getDataInterface(0).clearGraph();
+		JobTracker tracker = new JobTracker(TestGraph.getSei());
+		
+		FdcCacheSpecRunner runner = runStandard(60);
+		
+		if (tracker.jobSucceeded(runner.getJobId()) == false) {
+			fail(tracker.getJobStatusMessage(runner.getJobId()));
+		}
+		
+		// expired:  steps run again, but the services return the same results
+		runner = runStandard(0);
+		if (tracker.jobSucceeded(runner.getJobId()) == false) {
+			fail(tracker.getJobStatusMessage(runner.getJobId()));
+		}
+		
+		verifyResults();
+		assertTrue("Expired cache with unchanged results was re-ingested.", tracker.getJobStatusMessage(runner.getJobId()).contains("unchanged"));
+	}
+	
+	@Test
+	public void testRecacheChangedResults() throws Exception {
+		cacheConn.getDataInterface(0).clearGraph();
+		JobTracker tracker = new JobTracker(TestGraph.getSei());
+		
+		FdcCacheSpecRunner runner = runStandard(60);
+		
+		if (tracker.jobSucceeded(runner.getJobId()) == false) {
+			fail(tracker.getJobStatusMessage(runner.getJobId()));
+		}
+		
+		// pretend the services returned something else last time
+		SparqlEndpointInterface sei = cacheConn.getDataInterface(0);
+		sei.executeQueryAndConfirm(SparqlToXUtils.generateDeleteURISubjectQuery(sei, "http://fdc/cache#info", "http://fdc/cache#stepHash"));
+		sei.executeQueryAndConfirm(SparqlToXUtils.generateInsertTripleQuery(sei, "<http://fdc/cache#info>", "<http://fdc/cache#stepHash>", "\"stale\""));
+		
+		// expired:  rebuilt from the new results
+		runner = runStandard(0);
+		if (tracker.jobSucceeded(runner.getJobId()) == false) {
+			fail(tracker.getJobStatusMessage(runner.getJobId()));
+		}
+		
+		verifyResults();
+		assertFalse("Expired cache with changed results was kept.", tracker.getJobStatusMessage(runner.getJobId()).contains("unchanged"));
+	}
+	
 	@Test
 	public void testErrChangeCacheSpecId() throws Exception {
 		cacheConn.getDataInterface(0).clearGraph();
@@ -0,0 +1,102 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.load.dataset.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.load.dataset.JdbcDataset;
+
+
+public class JdbcDatasetTest {
+
+	@Test
+	public void testIntegerRanges() throws Exception {
+		Object[][] r = JdbcDataset.computeRanges(1L, 100L, 4);
+		assertEquals(4, r.length);
+		assertEquals(1L, r[0][0]);
+		assertEquals(26L, r[0][1]);
+		assertEquals(26L, r[1][0]);     // half-open ranges are contiguous
+		assertEquals(100L, r[3][1]);
+
+		// never split below one value per range
+		r = JdbcDataset.computeRanges(5L, 7L, 10);
+		assertEquals(3, r.length);
+		assertEquals(7L, r[2][1]);
+
+		r = JdbcDataset.computeRanges(Long.MIN_VALUE, Long.MAX_VALUE, 2);
+		assertEquals(2, r.length);
+		assertEquals(Long.MIN_VALUE, r[0][0]);
+		assertEquals(Long.MAX_VALUE, r[1][1]);
+	}
+
+	@Test
+	public void testDoubleAndTimestampRanges() throws Exception {
+		Object[][] r = JdbcDataset.computeRanges(0.0, 1.0, 4);
+		assertEquals(4, r.length);
+		assertEquals(0.25, (Double) r[1][0], 0.0);
+		assertEquals(1.0, (Double) r[3][1], 0.0);
+
+		r = JdbcDataset.computeRanges(2.0, 2.0, 4);
+		assertEquals(1, r.length);
+
+		Timestamp lo = Timestamp.valueOf("2020-01-01 00:00:00");
+		Timestamp hi = Timestamp.valueOf("2020-01-01 00:00:10.5");
+		r = JdbcDataset.computeRanges(lo, hi, 2);
+		assertEquals(2, r.length);
+		assertEquals(lo, r[0][0]);
+		assertEquals(Timestamp.valueOf("2020-01-01 00:00:05.25"), r[1][0]);
+		assertEquals(hi, r[1][1]);
+	}
+
+	@Test
+	public void testDateAndTimeRanges() throws Exception {
+		Date lo = Date.valueOf("2020-01-01");
+		Date hi = Date.valueOf("2020-01-05");
+		Object[][] r = JdbcDataset.computeRanges(lo, hi, 2);
+		assertEquals(2, r.length);
+		assertEquals(lo, r[0][0]);
+		assertTrue(r[0][1] instanceof Date);
+		assertEquals(Date.valueOf("2020-01-03"), r[1][0]);
+		assertEquals(hi, r[1][1]);
+
+		r = JdbcDataset.computeRanges(Time.valueOf("10:00:00"), Time.valueOf("12:00:00"), 2);
+		assertEquals(2, r.length);
+		assertEquals(Time.valueOf("11:00:00"), r[1][0]);
+		assertTrue(r[1][1] instanceof Time);
+	}
+
+	@Test
+	public void testEmptyAndBadRanges() throws Exception {
+		assertEquals(0, JdbcDataset.computeRanges(null, null, 4).length);
+		try {
+			JdbcDataset.computeRanges("a", "z", 4);
+			fail("Missing exception on non-numeric partition column");
+		} catch (Exception e) {
+			assertEquals("Partition column must be numeric or timestamp: String", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+
+package com.ge.research.semtk.load.dataset.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.ge.research.semtk.load.dataset.CSVDataset;
+import com.ge.research.semtk.load.dataset.ParallelCSVDataset;
+import com.sun.management.UnixOperatingSystemMXBean;
+
+
+public class ParallelCSVDatasetTest {
+
+	@Test
+	public void testBadFile() throws Exception {
+		try{
+			new ParallelCSVDataset("src/test/resources/bad/path.csv");
+			fail("Did not throw expected exception");
+		}catch(Exception e){
+			// expect to get here
+		}
+	}
+
+	@Test
+	public void testFromPath() throws Exception {
+		String[] headers = {"HEADER3","HEADER1"}; // subset, in reverse order
+		ParallelCSVDataset ds = new ParallelCSVDataset("src/test/resources/test.csv", headers);
+		try {
+			assertEquals(7, ds.getNumRows());
+
+			ArrayList<ArrayList<String>> records = ds.getNextRecords(5);
+			assertEquals(5, records.size());
+			assertEquals(Arrays.asList("a3", "a1"), records.get(0));
+			assertEquals(Arrays.asList("e3", "e1"), records.get(4));
+
+			records = ds.getNextRecords(5);  // ask for 5, should get 2
+			assertEquals(2, records.size());
+			assertEquals(Arrays.asList("g3", "g1"), records.get(1));
+			assertEquals(0, ds.getNextRecords(5).size());
+
+			assertEquals("header3", ds.getColumnNamesinOrder().get(0));
+			assertEquals(1, ds.getColumnIndex("Header1"));
+
+			ds.reset();
+			records = ds.getNextRecords(5);
+			assertEquals(5, records.size());
+			assertEquals(Arrays.asList("a3", "a1"), records.get(0));
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void testMissingHeader() throws Exception {
+		try{
+			new ParallelCSVDataset("src/test/resources/test.csv", new String[] {"HEADER1", "nope"});
+			fail("Did not throw expected exception");
+		}catch(Exception e){
+			assertEquals("Header 'nope' not found in CSV file", e.getMessage());
+		}
+	}
+
+	/**
+	 * Quotes, escapes, spaces, empty lines, CRLF and a BOM, in chunks much smaller than the file:
+	 * results must match CSVDataset
+	 */
+	@Test
+	public void testMatchesCSVDatasetAcrossChunks() throws Exception {
+		StringBuilder content = new StringBuilder("﻿id, name ,note\r\n");
+		for (int i=0; i < 2000; i++) {
+			content.append(i).append(",");
+			switch (i % 5) {
+			case 0: content.append("\"quoted, with comma\"");            break;
+			case 1: content.append("\"multi\nline \"\"quote\"\"\"");       break;
+			case 2: content.append("  spaced out  ");                     break;
+			case 3: content.append("esc\\,aped \\\"");                    break;
+			default: content.append("café 5\" pipe");
+			}
+			content.append(",n").append(i).append(i % 7 == 0 ? "\r\n" : "\n");
+			if (i % 100 == 0) {
+				content.append("\n   \n");
+				content.append("\"  \"\n \" \\t\"  \n");    // quoted blank records are skipped too
+			}
+		}
+		File f = File.createTempFile("ParallelCSVDatasetTest", ".csv");
+		f.deleteOnExit();
+		Files.write(f.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+		CSVDataset expected = new CSVDataset(content.toString(), true);
+		ParallelCSVDataset actual = new ParallelCSVDataset(f.getAbsolutePath(), null, StandardCharsets.UTF_8, 1024, 4);
+		try {
+			assertEquals(expected.getColumnNamesinOrder(), actual.getColumnNamesinOrder());
+			assertEquals(2000, actual.getNumRows());
+
+			for (int pass=0; pass < 2; pass++) {
+				ArrayList<ArrayList<String>> e = expected.getNextRecords(3000);
+				ArrayList<ArrayList<String>> a = new ArrayList<ArrayList<String>>();
+				ArrayList<ArrayList<String>> batch;
+				while ((batch = actual.getNextRecords(37)).size() > 0) {
+					a.addAll(batch);
+				}
+				assertEquals(e, a);
+				expected.reset();
+				actual.reset();
+			}
+		} finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+	/**
+	 * A record that is only "" is skipped, so it must not be counted either
+	 */
+	@Test
+	public void testQuotedEmptyRecords() throws Exception {
+		File f = File.createTempFile("ParallelCSVDatasetTest", ".csv");
+		f.deleteOnExit();
+		Files.write(f.toPath(), "a,b\n1,2\n\"\"\n  \"\"  \n3,4\n\"\",\n\"\"\"\"\n\"\"".getBytes(StandardCharsets.UTF_8));
+
+		ParallelCSVDataset ds = new ParallelCSVDataset(f.getAbsolutePath(), null, StandardCharsets.UTF_8, 8, 2);
+		try {
+			ArrayList<ArrayList<String>> records = ds.getNextRecords(100);
+			assertEquals(4, records.size());
+			assertEquals(Arrays.asList("", ""), records.get(2));
+			assertEquals(Arrays.asList("\""), records.get(3));
+			assertEquals(records.size(), ds.getNumRows());
+		} finally {
+			ds.close();
+		}
+	}
+
+	/**
+	 * Same blank-record rule as CSVDataset: a single field that is empty after trim()
+	 */
+	@Test
+	public void testQuotedBlankRecords() throws Exception {
+		String content = "a,b\n1,2\n\"   \"\n\"\t\"\n\" \\n \"\n\" x \"\n\"  \",\n\\,\n";
+		File f = File.createTempFile("ParallelCSVDatasetTest", ".csv");
+		f.deleteOnExit();
+		Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+		CSVDataset expected = new CSVDataset(content, true);
+		ParallelCSVDataset ds = new ParallelCSVDataset(f.getAbsolutePath(), null, StandardCharsets.UTF_8, 8, 2);
+		try {
+			ArrayList<ArrayList<String>> records = ds.getNextRecords(100);
+			assertEquals(expected.getNextRecords(100), records);
+			assertEquals(4, records.size());
+			assertEquals(records.size(), ds.getNumRows());
+		} finally {
+			expected.close();
+			ds.close();
+		}
+	}
+
+	/**
+	 * A bad header must not leave the file open
+	 */
+	@Test
+	public void testBadHeaderClosesFile() throws Exception {
+		File f = File.createTempFile("ParallelCSVDatasetTest", ".csv");
+		f.deleteOnExit();
+		Files.write(f.toPath(), "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8));
+
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		Assume.assumeTrue(os instanceof UnixOperatingSystemMXBean);
+		long before = ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+		for (int i=0; i < 200; i++) {
+			try {
+				new ParallelCSVDataset(f.getAbsolutePath(), new String[] {"nope"});
+				fail("Did not throw expected exception");
+			} catch (Exception e) {
+				assertEquals("Header 'nope' not found in CSV file", e.getMessage());
+			}
+		}
+		assertTrue(((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount() < before + 100);
+	}
+
+	@Test
+	public void testDeleteOnClose() throws Exception {
+		File f = File.createTempFile("ParallelCSVDatasetTest", ".csv");
+		f.deleteOnExit();
+		Files.write(f.toPath(), "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8));
+
+		ParallelCSVDataset ds = new ParallelCSVDataset(f.getAbsolutePath());
+		ds.setDeleteOnClose(true);
+		assertEquals(1, ds.getNextRecords(10).size());
+		assertTrue(f.exists());
+		ds.close();
+		assertFalse(f.exists());
+	}
+}
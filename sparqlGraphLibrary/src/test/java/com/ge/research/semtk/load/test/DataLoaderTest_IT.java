@@ -501,6 +501,23 @@ public class DataLoaderTest_IT {
 		
 	}
 	
+	@Test
+	public void testLoadDataPrecheckSpill() throws Exception {
+		// same as doLoadData, but the ingest replays the precheck's insert queries
+		Dataset ds = new CSVDataset("src/test/resources/loadTestData.csv", false);
+
+		TestGraph.clearGraph();
+		TestGraph.uploadOwlResource(this, "/loadTest.owl");
+		SparqlGraphJson sgJson = TestGraph.getSparqlGraphJsonFromFile("src/test/resources/loadTest.json");
+
+		DataLoader dl = new DataLoader(sgJson, ds, TestGraph.getUsername(), TestGraph.getPassword());
+		dl.setPrecheckSpill(true);
+		dl.importData(true);
+
+		assertEquals(1998, dl.getTotalRecordsProcessed());
+		TestGraph.queryAndCheckResults(sgJson, this, "/loadTestResults.csv");
+	}
+	
 	@Test
 	public void testLoadWithBindings() throws Exception {
 		
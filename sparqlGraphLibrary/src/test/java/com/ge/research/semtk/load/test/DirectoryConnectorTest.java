@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.UUID;
 
 import org.apache.commons.io.FileUtils;
@@ -57,4 +58,28 @@ public class DirectoryConnectorTest {
 
 	}
 
+	@Test
+	public void testPutInParts() throws Exception {
+		File tempDir = Files.createTempDir();
+		DirectoryConnector dirconn = new DirectoryConnector(tempDir.getAbsolutePath());
+		
+		byte data[] = new byte[10007];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		dirconn.putObjectInParts("parts.bin", data, 1000, 4);
+		assertTrue(Arrays.equals(data, dirconn.getObject("parts.bin")));
+		
+		File local = File.createTempFile("DirectoryConnectorTest", ".bin");
+		local.deleteOnExit();
+		FileUtils.writeByteArrayToFile(local, data);
+		dirconn.putObjectInParts("parts2.bin", local, 999, 3);
+		assertTrue(Arrays.equals(data, dirconn.getObject("parts2.bin")));
+		
+		// no part files left behind
+		assertEquals(2, tempDir.list().length);
+		
+		FileUtils.deleteDirectory(tempDir);
+	}
+
 }
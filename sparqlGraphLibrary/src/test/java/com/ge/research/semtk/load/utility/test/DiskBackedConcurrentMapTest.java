@@ -0,0 +1,85 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.load.utility.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.load.utility.DiskBackedConcurrentMap;
+
+public class DiskBackedConcurrentMapTest {
+
+	private static DiskBackedConcurrentMap<String, String> newMap() {
+		return new DiskBackedConcurrentMap<String, String>("test", DiskBackedConcurrentMap.STRING_CODEC, DiskBackedConcurrentMap.STRING_CODEC, 64);
+	}
+
+	@Test
+	public void testIterateAndRemove() throws Exception {
+		DiskBackedConcurrentMap<String, String> map = newMap();
+		try {
+			for (int i=0; i < 5000; i++) {
+				map.put("k" + i, "v" + i);
+			}
+			HashSet<String> seen = new HashSet<String>();
+			for (Iterator<Map.Entry<String, String>> it = map.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<String, String> e = it.next();
+				assertEquals("v" + e.getKey().substring(1), e.getValue());
+				assertTrue(seen.add(e.getKey()));
+				if (seen.size() % 2 == 0) {
+					it.remove();
+				}
+			}
+			assertEquals(5000, seen.size());
+			assertEquals(2500, map.size());
+		} finally {
+			map.close();
+		}
+	}
+
+	@Test
+	public void testDataFileIsCompacted() throws Exception {
+		DiskBackedConcurrentMap<String, String> map = newMap();
+		String big = new String(new char[1000]).replace('\0', 'x');
+		try {
+			// overwrite and remove far more than is ever live
+			for (int round=0; round < 50; round++) {
+				for (int i=0; i < 1000; i++) {
+					map.put("k" + i, big + round);
+				}
+				for (int i=500; i < 1000; i++) {
+					map.remove("k" + i);
+				}
+			}
+			assertEquals(500, map.size());
+			// about 50MB was written.  Each of 64 segments may hold 64k of garbage before compacting.
+			long liveBytes = 500L * (8 + 4 + big.length() + 2);
+			assertTrue(map.getDataFileBytes() < 2 * liveBytes + 64L * 64 * 1024);
+			for (int i=0; i < 500; i++) {
+				assertEquals(big + 49, map.get("k" + i));
+			}
+		} finally {
+			map.close();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.load.utility.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.load.utility.InsertSpillFile;
+
+public class InsertSpillFileTest {
+
+	@Test
+	public void testWriteAndReplay() throws Exception {
+		InsertSpillFile spill = new InsertSpillFile();
+		try {
+			spill.write(1, 3, new ArrayList<String>(Arrays.asList("insert data { <a> <b> \"café\" }", "")));
+			spill.write(4, 2, new ArrayList<String>());
+
+			spill.rewind();
+			InsertSpillFile.Batch b = spill.readNext();
+			assertEquals(1, b.startingRow);
+			assertEquals(3, b.numRecords);
+			assertEquals(Arrays.asList("insert data { <a> <b> \"café\" }", ""), b.queries);
+			b = spill.readNext();
+			assertEquals(4, b.startingRow);
+			assertEquals(0, b.queries.size());
+			assertNull(spill.readNext());
+
+			// replay again
+			spill.rewind();
+			assertEquals(1, spill.readNext().startingRow);
+		} finally {
+			spill.close();
+		}
+	}
+
+	@Test
+	public void testConcurrentWrites() throws Exception {
+		InsertSpillFile spill = new InsertSpillFile();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < 200; i++) {
+				final int row = i * 10;
+				futures.add(pool.submit(() -> {
+					ArrayList<String> queries = new ArrayList<String>();
+					for (int q = 0; q < 3; q++) {
+						queries.add("insert " + row + " " + q);
+					}
+					spill.write(row, 10, queries);
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+			assertEquals(200, spill.getNumBatches());
+
+			spill.rewind();
+			HashSet<Integer> rows = new HashSet<Integer>();
+			InsertSpillFile.Batch b;
+			while ((b = spill.readNext()) != null) {
+				assertEquals("insert " + b.startingRow + " 2", b.queries.get(2));
+				rows.add(b.startingRow);
+			}
+			assertEquals(200, rows.size());
+		} finally {
+			pool.shutdownNow();
+			spill.close();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ ** Copyright 2018 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.load.utility.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.belmont.NodeGroup;
+import com.ge.research.semtk.load.utility.UriCache;
+import com.ge.research.semtk.load.utility.UriResolver;
+import com.ge.research.semtk.ontologyTools.OntologyInfo;
+
+public class UriCacheTest {
+
+	private static ArrayList<String> strs(String... s) {
+		return new ArrayList<String>(Arrays.asList(s));
+	}
+
+	@Test
+	public void testPutGet() throws Exception {
+		UriCache cache = new UriCache(new NodeGroup());
+		cache.putUri("md5", strs("a", "b"), "http://found#ab");
+
+		assertEquals("http://found#ab", cache.getUri("md5", strs("a", "b")));
+		assertNull(cache.getUri("md5", strs("a-b")));       // no longer collides with joined key
+		assertNull(cache.getUri("other", strs("a", "b")));
+		assertTrue(cache.wasFound("http://found#ab"));
+		assertFalse(cache.isNotFound("md5", strs("a", "b")));
+	}
+
+	@Test
+	public void testStoredKeyIsCopied() throws Exception {
+		UriCache cache = new UriCache(new NodeGroup());
+		ArrayList<String> built = strs("a");
+		cache.putUri("md5", built, "http://found#a");
+		built.set(0, "changed");
+
+		assertEquals("http://found#a", cache.getUri("md5", strs("a")));
+		assertNull(cache.getUri("md5", strs("changed")));
+	}
+
+	@Test
+	public void testNotFoundAndGenerate() throws Exception {
+		UriCache cache = new UriCache(new NodeGroup());
+		cache.setUriNotFound("md5", strs("x"), null);
+		cache.setUriNotFound("md5", strs("x"), null);            // same value is fine
+		cache.setUriNotFound("md5", strs("y"), "http://gen#y");
+
+		assertTrue(cache.isNotFound("md5", strs("x")));
+		assertTrue(cache.isGenerated("http://gen#y"));
+
+		try {
+			cache.setUriNotFound("md5", strs("y"), "http://gen#other");
+			fail("Missing exception on two different values for the same URI");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains("two different values"));
+		}
+
+		cache.generateNotFoundURIs(new UriResolver("http://base#", new OntologyInfo()));
+
+		String x = cache.getUri("md5", strs("x"));
+		assertTrue(x.startsWith("http://base#"));
+		assertTrue(cache.isGenerated(x));
+		assertFalse(cache.wasFound(x));
+		assertFalse(cache.isNotFound("md5", strs("x")));
+		assertEquals("http://gen#y", cache.getUri("md5", strs("y")));
+	}
+
+	@Test
+	public void testPutIfNewElseDelete() throws Exception {
+		UriCache cache = new UriCache(new NodeGroup());
+		cache.putIfNewElseDelete("md5", strs("a"), "http://one");
+		cache.putIfNewElseDelete("md5", strs("a"), "http://one");
+		assertEquals("http://one", cache.getUri("md5", strs("a")));
+
+		cache.putIfNewElseDelete("md5", strs("a"), "http://two");
+		assertNull(cache.getUri("md5", strs("a")));
+	}
+
+	@Test
+	public void testThreadedNotFound() throws Exception {
+		UriCache cache = new UriCache(new NodeGroup());
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		for (int t=0; t < 8; t++) {
+			pool.submit(() -> {
+				for (int i=0; i < 1000; i++) {
+					cache.setUriNotFound("md5", strs("k" + i), null);
+				}
+				return null;
+			});
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+
+		cache.generateNotFoundURIs(new UriResolver("http://base#", new OntologyInfo()));
+		for (int i=0; i < 1000; i++) {
+			assertTrue(cache.isGenerated(cache.getUri("md5", strs("k" + i))));
+		}
+	}
+
+	@Test
+	public void testSpillToDisk() throws Exception {
+		// 64 entries on heap, 20000 keys
+		UriCache cache = new UriCache(new NodeGroup(), 64);
+		try {
+			for (int i=0; i < 10000; i++) {
+				cache.putUri("md5", strs("found", String.valueOf(i)), "http://found#" + i);
+				cache.setUriNotFound("md5", strs("new", String.valueOf(i)), null);
+			}
+			cache.generateNotFoundURIs(new UriResolver("http://base#", new OntologyInfo()));
+
+			for (int i=0; i < 10000; i++) {
+				assertEquals("http://found#" + i, cache.getUri("md5", strs("found", String.valueOf(i))));
+				assertTrue(cache.wasFound("http://found#" + i));
+			}
+			// generated URIs are stable across repeated lookups
+			String first = cache.getUri("md5", strs("new", "5"));
+			for (int i=0; i < 10000; i++) {
+				String uri = cache.getUri("md5", strs("new", String.valueOf(i)));
+				assertTrue(cache.isGenerated(uri));
+				assertFalse(cache.isNotFound("md5", strs("new", String.valueOf(i))));
+			}
+			assertEquals(first, cache.getUri("md5", strs("new", "5")));
+
+			// same rules as the in-memory cache
+			cache.setUriNotFound("md5", strs("gen"), "http://gen#1");
+			try {
+				cache.setUriNotFound("md5", strs("gen"), "http://gen#2");
+				fail("Missing exception on two different values for the same URI");
+			} catch (Exception e) {
+				assertTrue(e.getMessage().contains("two different values"));
+			}
+		} finally {
+			cache.close();
+		}
+		assertNull(cache.getUri("md5", strs("found", "1")));
+	}
+}
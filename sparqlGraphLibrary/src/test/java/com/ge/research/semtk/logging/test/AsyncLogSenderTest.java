@@ -0,0 +1,133 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.logging.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.logging.easyLogger.AsyncLogSender;
+import com.ge.research.semtk.logging.easyLogger.AsyncLogSender.OverflowPolicy;
+
+public class AsyncLogSenderTest {
+
+	/**
+	 * Sender that records posts instead of calling a logging service
+	 */
+	private static class FakeSender extends AsyncLogSender {
+		List<String> posted;
+		volatile boolean serviceDown = false;
+		CountDownLatch gate = null;
+		CountDownLatch entered = new CountDownLatch(1);
+
+		FakeSender(int queueSize, OverflowPolicy policy, File fallback) {
+			super("http://localhost:1/Logging/usageLog", queueSize, policy, fallback.getAbsolutePath());
+		}
+
+		@Override
+		protected void post(String jsonEvent) throws Exception {
+			this.entered.countDown();
+			if (this.gate != null) {
+				this.gate.await();
+			}
+			if (this.serviceDown) {
+				throw new Exception("connection refused");
+			}
+			this.posted.add(jsonEvent);
+		}
+	}
+
+	private static File tempFile() throws Exception {
+		File f = File.createTempFile("AsyncLogSenderTest", ".jsonl");
+		f.delete();
+		f.deleteOnExit();
+		return f;
+	}
+
+	@Test
+	public void testSendsInOrder() throws Exception {
+		FakeSender sender = new FakeSender(100, OverflowPolicy.DROP, tempFile());
+		sender.posted = Collections.synchronizedList(new ArrayList<String>());
+		for (int i=0; i < 50; i++) {
+			assertTrue(sender.send("{\"n\":" + i + "}"));
+		}
+		assertTrue(sender.flush(10000));
+		assertEquals(50, sender.posted.size());
+		assertEquals("{\"n\":49}", sender.posted.get(49));
+		assertEquals(50, sender.getSentCount());
+		assertFalse(sender.getFallbackFile().exists());
+	}
+
+	@Test
+	public void testFallbackFile() throws Exception {
+		FakeSender sender = new FakeSender(100, OverflowPolicy.DROP, tempFile());
+		sender.posted = Collections.synchronizedList(new ArrayList<String>());
+		sender.serviceDown = true;
+		for (int i=0; i < 10; i++) {
+			sender.send("{\"n\":" + i + "}");
+		}
+		assertTrue(sender.flush(10000));
+
+		List<String> lines = Files.readAllLines(sender.getFallbackFile().toPath(), StandardCharsets.UTF_8);
+		assertEquals(10, lines.size());
+		assertEquals("{\"n\":0}", lines.get(0));
+		assertEquals(10, sender.getFallbackCount());
+		assertEquals(0, sender.posted.size());
+	}
+
+	@Test
+	public void testDropWhenFull() throws Exception {
+		FakeSender sender = new FakeSender(5, OverflowPolicy.DROP, tempFile());
+		sender.posted = Collections.synchronizedList(new ArrayList<String>());
+		sender.gate = new CountDownLatch(1);    // hold the flusher in its first post so the queue fills
+		assertTrue(sender.send("{}"));
+		assertTrue(sender.entered.await(10, TimeUnit.SECONDS));
+
+		int accepted = 0;
+		for (int i=0; i < 20; i++) {
+			accepted += sender.send("{}") ? 1 : 0;
+		}
+		assertEquals(5, accepted);
+		assertEquals(15, sender.getDroppedCount());
+
+		sender.gate.countDown();
+		assertTrue(sender.flush(10000));
+		assertEquals(6, sender.posted.size());
+	}
+
+	@Test
+	public void testDefaultFallbackPathPerService() throws Exception {
+		String oinfo = AsyncLogSender.getDefaultFallbackPath("Ontology_Info_Service");
+		String results = AsyncLogSender.getDefaultFallbackPath("Results Service");
+		assertFalse(oinfo.equals(results));
+		assertEquals(new File(System.getProperty("java.io.tmpdir")), new File(oinfo).getParentFile());
+		assertTrue(results.endsWith("semtk_log_fallback_Results_Service.jsonl"));
+		assertTrue(AsyncLogSender.getDefaultFallbackPath("../x").endsWith("semtk_log_fallback_.._x.jsonl"));
+	}
+}
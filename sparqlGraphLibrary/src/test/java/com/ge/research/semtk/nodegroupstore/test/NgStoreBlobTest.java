@@ -0,0 +1,161 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.nodegroupstore.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ge.research.semtk.load.DirectoryConnector;
+import com.ge.research.semtk.load.utility.SparqlGraphJson;
+import com.ge.research.semtk.resultSet.Table;
+import com.ge.research.semtk.services.nodegroupStore.NgStore;
+import com.ge.research.semtk.services.nodegroupStore.NgStoreCache;
+import com.ge.research.semtk.sparqlX.InMemoryInterface;
+import com.ge.research.semtk.utility.Utility;
+
+/**
+ * NgStore with nodegroup json in blobs, on an in-memory triplestore
+ */
+public class NgStoreBlobTest {
+
+	private File blobDir;
+	private InMemoryInterface sei;
+	private DirectoryConnector blobs;
+
+	@Before
+	public void setup() throws Exception {
+		this.blobDir = Files.createTempDirectory("NgStoreBlobTest").toFile();
+		this.blobs = new DirectoryConnector(this.blobDir.getAbsolutePath());
+		this.sei = new InMemoryInterface("http://test/ngstore");
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteDirectory(this.blobDir);
+	}
+
+	private int countTriples() throws Exception {
+		return this.sei.executeQueryToTable("select ?s ?p ?o from <http://test/ngstore> where { ?s ?p ?o . }").getNumRows();
+	}
+
+	@Test
+	public void testInsertGetDelete() throws Exception {
+		NgStore store = new NgStore(this.sei, this.blobs, null);
+		SparqlGraphJson sgjson = new SparqlGraphJson(Utility.getResourceAsJson(this, "/sampleBattery.json"));
+		String expected = sgjson.toJson().toJSONString();
+
+		store.insertNodeGroup(sgjson.toJson(), sgjson.getSparqlConnJson(), "ng1", "comments", "junit");
+		assertEquals(1, this.blobDir.list().length);
+
+		Table tbl = store.getNodegroupTable("ng1");
+		assertEquals(1, tbl.getNumRows());
+		assertEquals(expected, tbl.getCellAsString(0, "NodeGroup"));
+		assertEquals("comments", tbl.getCellAsString(0, "comments"));
+		assertEquals(expected, store.getNodegroup("ng1").toJson().toJSONString());
+
+		Table full = store.getFullNodeGroupList();
+		assertEquals(expected, full.getCellAsString(0, "NodeGroup"));
+		assertEquals("ng1", store.getNodeGroupMetadata().getCellAsString(0, "ID"));
+
+		store.deleteNodeGroup("ng1");
+		assertNull(store.getNodegroup("ng1"));
+		assertEquals(0, this.blobDir.list().length);
+		assertEquals(0, this.countTriples());
+	}
+
+	@Test
+	public void testDeletesChunkedNodegroups() throws Exception {
+		// stored in the triplestore the old way
+		SparqlGraphJson sgjson = new SparqlGraphJson(Utility.getResourceAsJson(this, "/sampleBattery.json"));
+		new NgStore(this.sei).insertNodeGroup(sgjson.toJson(), sgjson.getSparqlConnJson(), "old", "", "junit");
+
+		NgStore store = new NgStore(this.sei, this.blobs, new NgStoreCache(10, 0));
+		assertEquals(1, store.getNodeGroupIdList().getNumRows());
+		store.deleteNodeGroup("old");
+		assertEquals(0, this.countTriples());
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		NgStoreCache cache = new NgStoreCache(2, 0);
+		NgStore store = new NgStore(this.sei, this.blobs, cache);
+		SparqlGraphJson sgjson = new SparqlGraphJson(Utility.getResourceAsJson(this, "/sampleBattery.json"));
+		String expected = sgjson.toJson().toJSONString();
+		for (String id : new String[] {"a", "b", "c"}) {
+			store.insertNodeGroup(sgjson.toJson(), sgjson.getSparqlConnJson(), id, "", "junit");
+		}
+
+		assertNotNull(store.getNodegroup("a"));
+		assertEquals(1, cache.size());
+		long hits = cache.getHitCount();
+
+		// hits need neither the triplestore nor the blob
+		FileUtils.cleanDirectory(this.blobDir);
+		SparqlGraphJson hit = store.getNodegroup("a");
+		assertEquals(expected, hit.toJson().toJSONString());
+		assertEquals(expected, store.getNodegroupTable("a").getCellAsString(0, "NodeGroup"));
+		assertEquals(hits + 2, cache.getHitCount());
+
+		// callers get their own copy
+		hit.getJson().put("junk", "junk");
+		assertNull(store.getNodegroup("a").getJson().get("junk"));
+
+		// another store sharing the cache sees it
+		assertNotNull(new NgStore(this.sei, this.blobs, cache).getNodegroup("a"));
+
+		// storing or deleting invalidates
+		JSONObject changed = sgjson.toJson();
+		changed.put("changed", "yes");
+		store.deleteNodeGroup("a");
+		assertEquals(0, cache.size());
+		assertNull(store.getNodegroup("a"));
+		store.insertNodeGroup(changed, sgjson.getSparqlConnJson(), "a", "", "junit");
+		assertEquals("yes", store.getNodegroup("a").getJson().get("changed"));
+	}
+
+	@Test
+	public void testReadDuringWrite() throws Exception {
+		NgStoreCache cache = new NgStoreCache(10, 0);
+		SparqlGraphJson sgjson = new SparqlGraphJson(Utility.getResourceAsJson(this, "/sampleBattery.json"));
+		new NgStore(this.sei, this.blobs, cache).insertNodeGroup(sgjson.toJson(), sgjson.getSparqlConnJson(), "a", "", "junit");
+
+		// another store reads "a" while its new blob is written
+		NgStore reader = new NgStore(this.sei, this.blobs, cache);
+		DirectoryConnector readingBlobs = new DirectoryConnector(this.blobDir.getAbsolutePath()) {
+			@Override
+			public void putObject(String fileName, byte [] data) throws Exception {
+				assertNotNull(reader.getNodegroup("a"));
+				super.putObject(fileName, data);
+			}
+		};
+		new NgStore(this.sei, readingBlobs, cache).insertNodeGroup(sgjson.toJson(), sgjson.getSparqlConnJson(), "a", "", "junit");
+
+		// what it cached is from before the write
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.ontologyTools.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ge.research.semtk.ontologyTools.CachedOntologyInfo;
+import com.ge.research.semtk.ontologyTools.ModelGraphVersion;
+import com.ge.research.semtk.ontologyTools.OntologyInfo;
+import com.ge.research.semtk.ontologyTools.OntologyInfoCache;
+import com.ge.research.semtk.sparqlX.InMemoryInterface;
+import com.ge.research.semtk.sparqlX.SparqlConnection;
+import com.ge.research.semtk.utility.Utility;
+
+/**
+ * Per-graph reloading of cached oInfo on an in-memory store
+ */
+public class CachedOntologyInfoTest {
+	private static final long NEVER = 60L * 60 * 1000;
+
+	private InMemoryInterface battery;
+	private InMemoryInterface pet;
+	private SparqlConnection conn;
+
+	@Before
+	public void setup() throws Exception {
+		this.battery = new InMemoryInterface("http://test/oinfocache/battery");
+		this.pet = new InMemoryInterface("http://test/oinfocache/pet");
+		this.upload(this.battery, "/sampleBattery.owl");
+		this.upload(this.pet, "/Pet.owl");
+
+		this.conn = new SparqlConnection();
+		this.conn.addModelInterface(this.battery);
+		this.conn.addModelInterface(this.pet);
+	}
+
+	private void upload(InMemoryInterface sei, String resource) throws Exception {
+		sei.executeAuthUploadOwl(Utility.getResourceAsBytes(this, resource));
+		ModelGraphVersion.recordUpload(sei);
+	}
+
+	private void assertMatchesFullLoad(OntologyInfo oInfo) throws Exception {
+		assertEquals(new OntologyInfo(this.conn).toJson().toJSONString(), oInfo.toJson().toJSONString());
+	}
+
+	@Test
+	public void testVersion() throws Exception {
+		InMemoryInterface sei = new InMemoryInterface("http://test/oinfocache/version");
+		assertNull(ModelGraphVersion.get(sei));
+
+		this.upload(sei, "/sampleBattery.owl");
+		String v1 = ModelGraphVersion.get(sei);
+		assertNotNull(v1);
+
+		// same file again still adds blank nodes
+		this.upload(sei, "/sampleBattery.owl");
+		assertFalse(v1.equals(ModelGraphVersion.get(sei)));
+
+		ModelGraphVersion.clear(sei);
+		assertNull(ModelGraphVersion.get(sei));
+
+		// versions stay out of the graph itself
+		this.upload(sei, "/sampleBattery.owl");
+		assertEquals(0, sei.executeQueryToTable(
+				"SELECT ?s FROM <" + sei.getGraph() + "> WHERE { ?s <" + ModelGraphVersion.VERSION_PROP + "> ?v . }").getNumRows());
+	}
+
+	@Test
+	public void testReloadsOnlyChangedGraphs() throws Exception {
+		CachedOntologyInfo cached = new CachedOntologyInfo(this.conn);
+		OntologyInfo oInfo = cached.getOInfo(NEVER);
+		assertEquals(2, cached.getGraphLoadCount());
+		assertMatchesFullLoad(oInfo);
+
+		// version unchanged: nothing is queried and the oInfo is kept
+		assertTrue(cached.markChanged(this.battery.getGraph()));
+		assertSame(oInfo, cached.getOInfo(NEVER));
+		assertEquals(2, cached.getGraphLoadCount());
+		assertEquals(1, cached.getBuildCount());
+
+		// new file in one graph
+		this.upload(this.pet, "/annotationBattery.owl");
+		assertTrue(cached.markChanged(this.pet.getGraph()));
+		oInfo = cached.getOInfo(NEVER);
+		assertEquals(3, cached.getGraphLoadCount());
+		assertMatchesFullLoad(oInfo);
+
+		// unknown version is always queried
+		ModelGraphVersion.clear(this.battery);
+		assertTrue(cached.markChanged(this.battery.getGraph()));
+		cached.getOInfo(NEVER);
+		assertEquals(4, cached.getGraphLoadCount());
+
+		assertFalse(cached.markChanged("http://test/oinfocache/other"));
+		cached.getOInfo(NEVER);
+		assertEquals(4, cached.getGraphLoadCount());
+
+		// expired reloads everything
+		cached.getOInfo(-1);
+		assertEquals(6, cached.getGraphLoadCount());
+	}
+
+	@Test
+	public void testKeptRowsLimit() throws Exception {
+		// keep no tables: any rebuild queries every graph
+		CachedOntologyInfo cached = new CachedOntologyInfo(this.conn, 0);
+		OntologyInfo oInfo = cached.getOInfo(NEVER);
+		assertEquals(2, cached.getGraphLoadCount());
+
+		// version unchanged: still no queries or rebuild
+		assertTrue(cached.markChanged(this.battery.getGraph()));
+		assertSame(oInfo, cached.getOInfo(NEVER));
+		assertEquals(2, cached.getGraphLoadCount());
+		assertEquals(1, cached.getBuildCount());
+
+		this.upload(this.pet, "/annotationBattery.owl");
+		assertTrue(cached.markChanged(this.pet.getGraph()));
+		oInfo = cached.getOInfo(NEVER);
+		assertEquals(4, cached.getGraphLoadCount());
+		assertEquals(2, cached.getBuildCount());
+		assertMatchesFullLoad(oInfo);
+	}
+
+	@Test
+	public void testRemoveSimilar() throws Exception {
+		OntologyInfoCache cache = new OntologyInfoCache(NEVER);
+		OntologyInfo oInfo = cache.get(this.conn);
+
+		// dropped even though no version changed
+		SparqlConnection changed = new SparqlConnection();
+		changed.addModelInterface(this.pet);
+		cache.removeSimilar(changed);
+
+		OntologyInfo reloaded = cache.get(this.conn);
+		assertFalse(oInfo == reloaded);
+		assertMatchesFullLoad(reloaded);
+	}
+
+	@Test
+	public void testRevalidateSimilar() throws Exception {
+		OntologyInfoCache cache = new OntologyInfoCache(NEVER);
+		OntologyInfo oInfo = cache.get(this.conn);
+
+		// version unchanged: kept
+		SparqlConnection changed = new SparqlConnection();
+		changed.addModelInterface(this.pet);
+		cache.revalidateSimilar(changed);
+		assertSame(oInfo, cache.get(this.conn));
+
+		this.upload(this.pet, "/annotationBattery.owl");
+		cache.revalidateSimilar(changed);
+		OntologyInfo reloaded = cache.get(this.conn);
+		assertFalse(oInfo == reloaded);
+		assertMatchesFullLoad(reloaded);
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.ontologyTools.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ge.research.semtk.belmont.NodeGroup;
+import com.ge.research.semtk.load.DirectoryConnector;
+import com.ge.research.semtk.load.utility.SparqlGraphJson;
+import com.ge.research.semtk.ontologyTools.NodeGroupCache;
+import com.ge.research.semtk.ontologyTools.OntologyInfo;
+import com.ge.research.semtk.services.nodegroupStore.NgStore;
+import com.ge.research.semtk.sparqlX.InMemoryInterface;
+import com.ge.research.semtk.utility.Utility;
+
+/**
+ * Lazy loading NodeGroupCache on an in-memory store
+ */
+public class NodeGroupCacheTest {
+
+	private File blobDir;
+	private NgStore store;
+	private SparqlGraphJson sgJson;
+	private OntologyInfo oInfo;
+
+	@Before
+	public void setup() throws Exception {
+		this.blobDir = Files.createTempDirectory("NodeGroupCacheTest").toFile();
+		this.store = new NgStore(new InMemoryInterface("http://test/ngcache"), new DirectoryConnector(this.blobDir.getAbsolutePath()), null);
+		this.sgJson = new SparqlGraphJson(Utility.getResourceAsJson(this, "/sampleBattery.json"));
+
+		InMemoryInterface model = new InMemoryInterface("http://test/ngcache/model");
+		model.executeAuthUploadOwl(Utility.getResourceAsBytes(this, "/sampleBattery.owl"));
+		this.oInfo = new OntologyInfo();
+		this.oInfo.load(model, false);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteDirectory(this.blobDir);
+	}
+
+	private void storeDirectly(String id) throws Exception {
+		this.store.deleteNodeGroup(id);
+		this.store.insertNodeGroup(this.sgJson.toJson(), this.sgJson.getSparqlConnJson(), id, "", "junit");
+	}
+
+	@Test
+	public void testLazyLoadAndRevalidate() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			this.storeDirectly("ng" + i);
+		}
+
+		NodeGroupCache cache = new NodeGroupCache(this.store, this.oInfo, NodeGroupCache.DEFAULT_MAX_BYTES, 0);
+		assertEquals(0, cache.getLoadCount());
+
+		String sparql = this.sgJson.getNodeGroup(this.oInfo).generateSparqlSelect();
+		assertEquals(sparql, cache.get("ng1").generateSparqlSelect());
+		assertEquals(1, cache.getLoadCount());
+		assertNull(cache.get("missing"));
+
+		// unchanged: revalidated without reloading
+		assertNotNull(cache.get("ng1"));
+		assertEquals(1, cache.getLoadCount());
+
+		// changed behind the cache's back: reloaded
+		this.storeDirectly("ng1");
+		assertNotNull(cache.get("ng1"));
+		assertEquals(2, cache.getLoadCount());
+
+		// deleted behind the cache's back
+		this.store.deleteNodeGroup("ng1");
+		assertNull(cache.get("ng1"));
+
+		// put through the cache doesn't need a reload
+		NodeGroup ng = this.sgJson.getNodeGroup(this.oInfo);
+		cache.put("ng2", ng, this.sgJson.getSparqlConn(), "comments");
+		assertEquals(sparql, cache.get("ng2").generateSparqlSelect());
+		assertEquals(2, cache.getLoadCount());
+
+		cache.delete("ng2");
+		assertNull(cache.get("ng2"));
+	}
+
+	@Test
+	public void testEvictBySize() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			this.storeDirectly("ng" + i);
+		}
+		long oneSize = 2L * this.sgJson.toJson().toJSONString().length() + 64;
+		NodeGroupCache cache = new NodeGroupCache(this.store, this.oInfo, oneSize * 2, 60000);
+
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cache.get("ng" + i));
+		}
+		assertEquals(2, cache.size());
+		assertTrue(cache.getBytes() <= oneSize * 2);
+
+		// the most recent are still there
+		assertNotNull(cache.get("ng4"));
+		assertEquals(5, cache.getLoadCount());
+		assertNotNull(cache.get("ng0"));
+		assertEquals(6, cache.getLoadCount());
+	}
+
+	@Test
+	public void testConcurrentLoadsShared() throws Exception {
+		this.storeDirectly("shared");
+		NodeGroupCache cache = new NodeGroupCache(this.store, this.oInfo, NodeGroupCache.DEFAULT_MAX_BYTES, 60000);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			ArrayList<Future<NodeGroup>> futures = new ArrayList<Future<NodeGroup>>();
+			Callable<NodeGroup> get = () -> cache.get("shared");
+			for (int i = 0; i < 16; i++) {
+				futures.add(pool.submit(get));
+			}
+			for (Future<NodeGroup> f : futures) {
+				assertNotNull(f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(1, cache.getLoadCount());
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.query.rdb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.query.rdb.JdbcConnectionPool;
+
+public class JdbcConnectionPoolTest {
+
+	/**
+	 * Pool whose physical connections are stand-ins that count opens and closes
+	 */
+	private static class FakePool extends JdbcConnectionPool {
+		AtomicInteger opened = new AtomicInteger(0);
+		AtomicInteger closed = new AtomicInteger(0);
+		ArrayList<String> executed = new ArrayList<String>();
+		boolean valid = true;
+
+		FakePool() {
+			this(new String[0]);
+		}
+
+		FakePool(String[] initStatements) {
+			super("fake.Driver", "jdbc:fake://host", new Properties(), null, initStatements);
+		}
+
+		@Override
+		protected Connection connect() {
+			this.opened.incrementAndGet();
+			boolean[] isClosed = { false };
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				switch (method.getName()) {
+				case "close":		isClosed[0] = true; this.closed.incrementAndGet(); return null;
+				case "isClosed":	return isClosed[0];
+				case "isValid":		return this.valid;
+				case "getAutoCommit":	return true;
+				case "createStatement":	return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { Statement.class }, (sProxy, sMethod, sArgs) -> {
+											if (sMethod.getName().equals("execute")) {
+												synchronized (this.executed) { this.executed.add((String) sArgs[0]); }
+												return false;
+											}
+											return null;
+										});
+				case "hashCode":	return System.identityHashCode(proxy);
+				case "equals":		return proxy == args[0];
+				default:			return null;
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		FakePool pool = new FakePool();
+		Connection c1 = pool.getConnection();
+		c1.close();
+		c1.close();    // second close is harmless
+		assertTrue(c1.isClosed());
+
+		Connection c2 = pool.getConnection();
+		assertNotSame(c1, c2);
+		assertFalse(c2.isClosed());
+		c2.close();
+
+		assertEquals(1, pool.opened.get());
+		assertEquals(0, pool.closed.get());
+		assertEquals("1", pool.getMetrics().get(3));  // idle
+		assertEquals("2", pool.getMetrics().get(5));  // borrowed
+
+		try {
+			c1.createStatement();
+			fail("Missing exception using a returned connection");
+		} catch (SQLException e) {
+			assertEquals("Connection is closed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDiscardOnClose() throws Exception {
+		FakePool pool = new FakePool();
+		Connection c1 = pool.getConnection();
+		JdbcConnectionPool.discardOnClose(c1);
+		c1.close();
+		assertEquals(1, pool.closed.get());
+		assertEquals("0", pool.getMetrics().get(3));  // idle
+
+		// a fresh connection for the next caller
+		pool.getConnection().close();
+		assertEquals(2, pool.opened.get());
+		assertEquals(1, pool.closed.get());
+	}
+
+	@Test
+	public void testInitStatements() throws Exception {
+		FakePool pool = new FakePool(new String[] {"set a=1", "set b=2"});
+		Connection c1 = pool.getConnection();
+		Connection c2 = pool.getConnection();
+		c1.close();
+		c2.close();
+
+		// once per physical connection, and reused without discarding
+		pool.getConnection().close();
+		assertEquals(2, pool.opened.get());
+		assertEquals(0, pool.closed.get());
+		assertEquals(Arrays.asList("set a=1", "set b=2", "set a=1", "set b=2"), pool.executed);
+	}
+
+	@Test
+	public void testMaxSizeAndWait() throws Exception {
+		FakePool pool = new FakePool();
+		pool.setMaxSize(2);
+		pool.setMaxWaitSec(1);
+		ArrayList<Connection> leased = new ArrayList<Connection>();
+		leased.add(pool.getConnection());
+		leased.add(pool.getConnection());
+		try {
+			pool.getConnection();
+			fail("Missing exception on exhausted pool");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().startsWith("Timed out waiting for a connection"));
+		}
+
+		// a waiter gets the next returned connection
+		Thread t = new Thread(() -> {
+			try { Thread.sleep(200); leased.get(0).close(); } catch (Exception e) { }
+		});
+		t.start();
+		pool.getConnection().close();
+		t.join();
+		assertEquals(2, pool.opened.get());
+	}
+
+	@Test
+	public void testEvictionAndValidation() throws Exception {
+		FakePool pool = new FakePool();
+		pool.getConnection().close();
+
+		// stale idle connection that fails validation is replaced
+		pool.setValidateAfterSec(0);
+		pool.valid = false;
+		Thread.sleep(5);
+		pool.getConnection().close();
+		assertEquals(2, pool.opened.get());
+		assertEquals(1, pool.closed.get());
+		assertEquals("1", pool.getMetrics().get(9));  // validationFailures
+
+		pool.setIdleTimeoutSec(0);
+		Thread.sleep(5);
+		pool.evictIdle();
+		assertEquals(2, pool.closed.get());
+		assertEquals("0", pool.getMetrics().get(3));  // idle
+
+		pool.close();
+		try {
+			pool.getConnection();
+			fail("Missing exception on closed pool");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("closed"));
+		}
+	}
+}
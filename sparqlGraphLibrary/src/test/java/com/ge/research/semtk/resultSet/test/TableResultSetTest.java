@@ -20,6 +20,7 @@ package com.ge.research.semtk.resultSet.test;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.StringWriter;
 import java.util.ArrayList;
 
 import org.json.simple.JSONObject;
@@ -77,7 +78,30 @@ public class TableResultSetTest {
 			
 		assertEquals(mergedTableResultSet.getTable().getRows().size(),5);
 			
-	}	
+	}
 	
-
+	@Test
+	public void testWriteJson() throws Exception {
+		Table table = new Table(new String[] {"colA","colB"}, new String[] {"String","String"});
+		table.addRow(new String[] {"apple", "has \"quotes\""});
+		TableResultSet res = new TableResultSet(true);
+		res.addResults(table);
+		res.addRationaleMessage("some rationale");
+		
+		StringWriter writer = new StringWriter();
+		res.writeJson(writer);
+		JSONParser parser = new JSONParser();
+		JSONObject written = (JSONObject) parser.parse(writer.toString());
+		assertEquals(parser.parse(res.toJson().toJSONString()), written);
+		assertEquals(table.toCSVString(), new TableResultSet(written).getTable().toCSVString());
+		
+		// table isn't shared with callers
+		res.getTable().setCell(0, 0, "changed");
+		table.setCell(0, 0, "changed");
+		table.addRow(new String[] {"added", "row"});
+		assertEquals("apple", res.getTable().getCell(0, 0));
+		writer = new StringWriter();
+		res.writeJson(writer);
+		assertEquals(written, parser.parse(writer.toString()));
+	}
 }
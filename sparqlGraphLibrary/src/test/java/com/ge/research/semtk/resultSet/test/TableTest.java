@@ -22,9 +22,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -694,4 +697,113 @@ public class TableTest {
 		
 
 	}
+	
+	@Test
+	public void testWriteAndReadJson() throws Exception {
+		Table table = new Table(new String[] {"colA","colB","colC"}, new String[] {"String","int","String"});
+		table.addRow(new String[] {"apple", "1", "has \"quotes\", commas"});
+		table.addRow(new String[] {"line\nbreak", "2", "back\\slash \u00e9"});
+		table.addRow(new String[] {"", "3", "/"});
+		
+		StringWriter writer = new StringWriter();
+		table.writeJson(writer);
+		
+		// same json as toJson()
+		JSONParser parser = new JSONParser();
+		assertEquals(parser.parse(table.toJson().toJSONString()), parser.parse(writer.toString()));
+		
+		// and reads back the same table
+		Table copy = Table.fromJson(new StringReader(writer.toString()));
+		assertEquals(table.toCSVString(), copy.toCSVString());
+		assertEquals(Arrays.asList(table.getColumnTypes()), Arrays.asList(copy.getColumnTypes()));
+		
+		// toJson() output reads too, ignoring unknown keys and nulls
+		JSONObject json = table.toJson();
+		json.put("extra", new JSONObject());
+		((ArrayList<Object>) ((ArrayList<Object>) json.get(Table.JSON_KEY_ROWS)).get(0)).set(0, null);
+		copy = Table.fromJson(new StringReader(json.toJSONString()));
+		assertEquals("null", copy.getCell(0, 0));
+		assertEquals(3, copy.getNumRows());
+	}
+	
+	@Test
+	public void testWriteCsv() throws Exception {
+		Table table = new Table(new String[] {"colA","colB"}, new String[] {"String","String"});
+		table.addRow(new String[] {"apple", "has \"quotes\", commas"});
+		table.addRow(new String[] {"", "b"});
+		
+		StringWriter writer = new StringWriter();
+		table.writeCsv(writer);
+		assertEquals("colA,colB\napple,\"has \"\"quotes\"\", commas\"\n\"\",b\n", writer.toString());
+		
+		writer = new StringWriter();
+		table.writeCsv(writer, 1);
+		assertEquals(table.toCSVString(1), writer.toString());
+	}
+	
+	@Test
+	public void testSortLargeTable() throws Exception {
+		// big enough to sort in parallel
+		int n = Table.PARALLEL_SORT_MIN_ROWS + 10;
+		Table table = new Table(new String[] {"val", "order"}, new String[] {"double", "int"});
+		for (int i = 0; i < n; i++) {
+			table.addRow(new String[] {String.valueOf((i * 7919) % 1000 / 10.0), String.valueOf(i)});
+		}
+		
+		table.sortByColumnDouble("val");
+		for (int i = 1; i < n; i++) {
+			double prev = table.getCellAsFloat(i - 1, 0);
+			double cur = table.getCellAsFloat(i, 0);
+			assertTrue("not sorted at row " + i, prev <= cur);
+			if (prev == cur) {
+				assertTrue("sort is not stable at row " + i, table.getCellAsInt(i - 1, 1) < table.getCellAsInt(i, 1));
+			}
+		}
+		
+		table.sortByColumnDoubleRev("val");
+		assertEquals("99.9", table.getCell(0, 0));
+		assertEquals("0.0", table.getCell(n - 1, 0));
+		
+		table.sortByColumnInt("order");
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, table.getCellAsInt(i, 1));
+		}
+	}
+	
+	@Test
+	public void testUniquifyKeysWithDelimiters() throws Exception {
+		Table table = new Table(new String[] {"colA", "colB"}, new String[] {"String", "String"});
+		table.addRow(new String[] {"a|b", "c"});
+		table.addRow(new String[] {"a", "b|c"});
+		table.addRow(new String[] {"a", "b|c"});
+		table.uniquify(new String [] {"colA", "colB"});
+		assertEquals(2, table.getNumRows());
+	}
+	
+	@Test
+	public void testSubsetsByColumn() throws Exception {
+		Table table = new Table(new String[] {"key", "val"}, new String[] {"String", "int"});
+		for (int i = 0; i < 30; i++) {
+			table.addRow(new String[] {"k" + (i % 4), String.valueOf(i)});
+		}
+		
+		LinkedHashMap<String, Table> subsets = table.getSubsetsByColumn("key", new String[] {"val"});
+		assertEquals(Arrays.asList(table.getColumnUniqueValues("key")), new ArrayList<String>(subsets.keySet()));
+		for (String k : subsets.keySet()) {
+			assertEquals(table.getSubsetWhereMatches("key", k, new String[] {"val"}).toCSVString(), subsets.get(k).toCSVString());
+			assertEquals("int", subsets.get(k).getColumnType("val"));
+		}
+	}
+	
+	@Test
+	public void testMergeLeavesTablesAlone() throws Exception {
+		Table t1 = new Table(new String[] {"colA", "colB"}, new String[] {"String", "String"});
+		t1.addRow(new String[] {"a1", "b1"});
+		Table t2 = new Table(new String[] {"colB", "colA"}, new String[] {"String", "String"});
+		t2.addRow(new String[] {"b2", "a2"});
+		
+		Table merged = Table.merge(new ArrayList<Table>(Arrays.asList(t1, t2)));
+		assertEquals("colA,colB\na1,b1\na2,b2\n", merged.toCSVString());
+		assertEquals(1, t1.getNumRows());
+	}
 }
@@ -0,0 +1,138 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.dispatch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.sparqlX.dispatch.DispatchExecutor;
+
+public class DispatchExecutorTest {
+
+	/**
+	 * Job that records its name, and optionally waits for a latch
+	 */
+	private Runnable job(List<String> log, String name, CountDownLatch started, CountDownLatch release, CountDownLatch done) {
+		return () -> {
+			log.add(name);
+			if (started != null) {
+				started.countDown();
+			}
+			try {
+				if (release != null) {
+					release.await(10, TimeUnit.SECONDS);
+				}
+			} catch (InterruptedException e) {
+			}
+			if (done != null) {
+				done.countDown();
+			}
+		};
+	}
+
+	@Test
+	public void testUsersTakeTurns() throws Exception {
+		DispatchExecutor executor = new DispatchExecutor(1, 10);
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(5);
+
+		// hold the only thread while the rest queue up
+		assertEquals(0, executor.submit("a", job(log, "a1", started, release, done)));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(1, executor.submit("a", job(log, "a2", null, null, done)));
+		assertEquals(2, executor.submit("a", job(log, "a3", null, null, done)));
+		assertEquals(3, executor.submit("a", job(log, "a4", null, null, done)));
+		assertEquals(4, executor.submit("b", job(log, "b1", null, null, done)));
+		assertEquals(4, executor.getQueueDepth());
+		assertEquals(1, executor.getRunningCount());
+
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		// b doesn't wait behind all of a's queries
+		assertEquals(Arrays.asList("a1", "a2", "b1", "a3", "a4"), log);
+	}
+
+	@Test
+	public void testBusy() throws Exception {
+		DispatchExecutor executor = new DispatchExecutor(2, 1);
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+
+		executor.submit("a", job(log, "a1", started, release, done));
+		executor.submit("b", job(log, "b1", started, release, done));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(1, executor.submit("a", job(log, "a2", null, null, done)));
+
+		try {
+			executor.submit("c", job(log, "c1", null, null, null));
+			fail("Missing exception when queue is full");
+		} catch (Exception e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(DispatchExecutor.BUSY_MESSAGE));
+		}
+		assertEquals(1, executor.getRejectedCount());
+
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(3, log.size());
+
+		// room again
+		executor.checkNotBusy();
+	}
+
+	@Test
+	public void testJobThrowsError() throws Exception {
+		DispatchExecutor executor = new DispatchExecutor(1, 10);
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+
+		// the only thread dies with a job still waiting
+		executor.submit("a", () -> {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+			}
+			throw new Error("testJobThrowsError");
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		executor.submit("a", job(log, "a2", null, null, done));
+		release.countDown();
+
+		// waiting job and new ones still run
+		executor.submit("b", job(log, "b1", null, null, done));
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a2", "b1"), log);
+	}
+}
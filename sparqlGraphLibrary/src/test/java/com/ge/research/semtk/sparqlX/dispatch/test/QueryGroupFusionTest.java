@@ -0,0 +1,100 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.dispatch.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.resultSet.Table;
+import com.ge.research.semtk.sparqlX.dispatch.QueryGroup.DispatchQueryGroup;
+import com.ge.research.semtk.sparqlX.dispatch.QueryGroup.QueryGroupFusion;
+
+public class QueryGroupFusionTest {
+
+	private DispatchQueryGroup buildGroup(String asset, String location) throws Exception {
+		DispatchQueryGroup dqg = new DispatchQueryGroup();
+		HashMap<String, String> sem = new HashMap<String, String>();
+		sem.put("asset", asset);
+		sem.put("location", location);
+		dqg.addSemanticColumnValues(sem);
+		return dqg;
+	}
+
+	private Table buildPartial(String[] cols, int numRows, String prefix) throws Exception {
+		Table t = new Table(cols);
+		for (int i = 0; i < numRows; i++) {
+			ArrayList<String> row = new ArrayList<String>();
+			for (String c : cols) {
+				row.add(prefix + c + i);
+			}
+			t.addRow(row);
+		}
+		return t;
+	}
+
+	@Test
+	public void testFuse() throws Exception {
+		DispatchQueryGroup g1 = buildGroup("a1", "l1");
+		g1.addResults(buildPartial(new String[] {"time", "value"}, 2, "x"));
+		DispatchQueryGroup g2 = buildGroup("a2", "l2");
+		g2.addResults(buildPartial(new String[] {"value", "location", "time"}, 1, "y"));    // different layout, repeats a semantic column
+
+		String[] cols = {"asset", "location", "time", "value", "location"};
+		QueryGroupFusion fusion = new QueryGroupFusion(Arrays.asList(g1, g2), cols);
+		assertEquals(3, fusion.getNumRows());
+
+		Table t = fusion.fuse(null);
+		assertEquals(Arrays.asList("a1", "l1", "xtime0", "xvalue0", "l1"), t.getRow(0));
+		assertEquals(Arrays.asList("a1", "l1", "xtime1", "xvalue1", "l1"), t.getRow(1));
+		assertEquals(Arrays.asList("a2", "l2", "ytime0", "yvalue0", "ylocation0"), t.getRow(2));
+
+		// columns in no partial results are filled in
+		fusion = new QueryGroupFusion(Arrays.asList(g1), new String[] {"asset", "other"});
+		assertEquals(Arrays.asList("a1", QueryGroupFusion.MISSING_VALUE), fusion.iterator().next());
+	}
+
+	@Test
+	public void testParallelAndStreamingMatch() throws Exception {
+		ArrayList<DispatchQueryGroup> groups = new ArrayList<DispatchQueryGroup>();
+		for (int i = 0; i < 5; i++) {
+			DispatchQueryGroup g = buildGroup("a" + i, "l" + i);
+			g.addResults(buildPartial(new String[] {"time", "value"}, 12345, "p" + i));
+			g.addResults(buildPartial(new String[] {"value", "time"}, 0, "q" + i));
+			g.addResults(buildPartial(new String[] {"value", "time"}, 7, "r" + i));
+			groups.add(g);
+		}
+		String[] cols = {"asset", "location", "time", "value"};
+		QueryGroupFusion fusion = new QueryGroupFusion(groups, cols);
+
+		Table serial = fusion.fuse(null);
+		Table parallel = fusion.fuseParallel(null, 4);
+		assertEquals(5 * 12352, serial.getNumRows());
+		assertEquals(serial.getRows(), parallel.getRows());
+
+		int i = 0;
+		for (ArrayList<String> row : fusion) {
+			assertEquals(serial.getRow(i++), row);
+		}
+		assertEquals(serial.getNumRows(), i);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.ge.research.semtk.sparqlX.InMemoryInterface;
+import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
+import com.ge.research.semtk.sparqlX.SparqlResultTypes;
+import com.ge.research.semtk.sparqlX.SparqlToXUtils;
+
+public class ClearGraphInChunksTest {
+
+	private int countTriples(SparqlEndpointInterface sei) throws Exception {
+		return sei.executeToTable(SparqlToXUtils.generateSelectSPOSparql(sei, "")).getNumRows();
+	}
+
+	@Test
+	public void testParallelClear() throws Exception {
+		InMemoryInterface sei = new InMemoryInterface("http://test/clear");
+		SparqlEndpointInterface other = sei.copy();		// same dataset
+		other.setGraph("http://test/other");
+
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			data.append("<http://test#s" + i + "> <http://test#p> \"" + i + "\" . ");
+			data.append("<http://test#s" + i + "> <http://test#q> [ <http://test#r> " + i + " ] . ");
+			// partitions by type:  some subjects have two types, some none
+			if (i % 2 == 0) {
+				data.append("<http://test#s" + i + "> a <http://test#A> . ");
+			}
+			if (i % 3 == 0) {
+				data.append("<http://test#s" + i + "> a <http://test#B> . ");
+			}
+		}
+		sei.executeQuery("insert data { graph <http://test/clear> { " + data + "} }", SparqlResultTypes.CONFIRM);
+		other.executeQuery("insert data { graph <http://test/other> { <http://test#a> <http://test#p> \"1\" . } }", SparqlResultTypes.CONFIRM);
+		assertEquals(1500 + 250 + 167, countTriples(sei));
+
+		sei.clearGraphInChunks(40, 8, null, null);
+		assertEquals(0, countTriples(sei));
+
+		// other graphs are untouched
+		assertEquals(1, countTriples(other));
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ge.research.semtk.load.DirectoryConnector;
+import com.ge.research.semtk.sparqlX.NeptuneBulkLoader;
+
+/**
+ * Bulk loads against a directory standing in for S3 and a simulated Neptune loader
+ */
+public class NeptuneBulkLoaderTest {
+
+	/**
+	 * Runs one job at a time, in the order queued, advancing a step each time any status is polled.
+	 * A payload containing FAIL fails to load.
+	 * Also tracks how far staging gets ahead of the jobs.
+	 */
+	private static class StandInLoader implements NeptuneBulkLoader.LoaderClient {
+		private final DirectoryConnector store;
+		private final int queueLimit;
+		private final LinkedHashMap<String, String> jobs = new LinkedHashMap<String, String>();
+		private final LinkedHashMap<String, String> jobKeys = new LinkedHashMap<String, String>();
+		private final LinkedHashMap<String, List<String>> jobDeps = new LinkedHashMap<String, List<String>>();
+		ArrayList<byte[]> loaded = new ArrayList<byte[]>();
+		int maxQueued = 0;
+		File stageDir = null;
+		int maxStagedAhead = 0;		// staged objects beyond those of jobs already started
+		int busyRejections = 1;		// reject this many starts as if the loader were busy
+
+		StandInLoader(DirectoryConnector store, int queueLimit) {
+			this.store = store;
+			this.queueLimit = queueLimit;
+		}
+
+		public synchronized String startLoad(String keyName, String format, List<String> dependencies) throws Exception {
+			if (this.busyRejections > 0) {
+				this.busyRejections--;
+				throw new Exception("Failed to start new load: Max concurrent load limit breached");
+			}
+			if (!this.store.checkExists(keyName)) {
+				throw new Exception("No such source: " + keyName);
+			}
+			int queued = this.countPending() + 1;
+			if (queued > this.queueLimit) {
+				throw new Exception("Unexpected: load queue is over its limit");
+			}
+			this.maxQueued = Math.max(this.maxQueued, queued);
+			this.maxStagedAhead = Math.max(this.maxStagedAhead, this.stageDir.list().length - this.jobs.size());
+
+			String loadId = "load-" + this.jobs.size();
+			// like Neptune, a job with dependencies waits in the queue
+			this.jobs.put(loadId, dependencies.isEmpty() ? NeptuneBulkLoader.STATUS_NOT_STARTED : NeptuneBulkLoader.STATUS_IN_QUEUE);
+			this.jobKeys.put(loadId, keyName);
+			this.jobDeps.put(loadId, dependencies);
+			return loadId;
+		}
+
+		public synchronized String getLoadStatus(String loadId) throws Exception {
+			// report status as of the poll, then let the loader move on
+			String ret = this.jobs.get(loadId);
+			this.step(loadId);
+			return ret;
+		}
+
+		public synchronized String getLoadErrors(String loadId) throws Exception {
+			return "errors of " + this.jobKeys.get(loadId);
+		}
+
+		private int countPending() {
+			int ret = 0;
+			for (String s : this.jobs.values()) {
+				if (s.equals(NeptuneBulkLoader.STATUS_NOT_STARTED) || s.equals(NeptuneBulkLoader.STATUS_IN_QUEUE) || s.equals(NeptuneBulkLoader.STATUS_IN_PROGRESS)) {
+					ret++;
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * Move a job one step along.  Dependencies run first, so a dependent job is seen in the queue.
+		 */
+		private void step(String loadId) throws Exception {
+			String s = this.jobs.get(loadId);
+			if (s.equals(NeptuneBulkLoader.STATUS_IN_QUEUE)) {
+				boolean ready = true;
+				for (String dep : this.jobDeps.get(loadId)) {
+					String depStatus = this.jobs.get(dep);
+					if (depStatus.startsWith("LOAD_FAILED")) {
+						this.jobs.put(loadId, "LOAD_FAILED_BECAUSE_DEPENDENCY_NOT_SATISFIED");
+						return;
+					}
+					ready = ready && depStatus.equals(NeptuneBulkLoader.STATUS_COMPLETE);
+				}
+				if (ready) {
+					this.jobs.put(loadId, NeptuneBulkLoader.STATUS_NOT_STARTED);
+				}
+			} else if (s.equals(NeptuneBulkLoader.STATUS_NOT_STARTED)) {
+				this.jobs.put(loadId, NeptuneBulkLoader.STATUS_IN_PROGRESS);
+			} else if (s.equals(NeptuneBulkLoader.STATUS_IN_PROGRESS)) {
+				byte [] data = this.store.getObject(this.jobKeys.get(loadId));
+				if (new String(data, StandardCharsets.UTF_8).contains("FAIL")) {
+					this.jobs.put(loadId, "LOAD_FAILED");
+				} else {
+					this.loaded.add(data);
+					this.jobs.put(loadId, NeptuneBulkLoader.STATUS_COMPLETE);
+				}
+			}
+		}
+	}
+
+	private File stageDir;
+	private File srcDir;
+	private DirectoryConnector store;
+
+	@Before
+	public void setup() throws Exception {
+		this.stageDir = Files.createTempDirectory("NeptuneBulkLoaderTest-s3").toFile();
+		this.srcDir = Files.createTempDirectory("NeptuneBulkLoaderTest-src").toFile();
+		this.store = new DirectoryConnector(this.stageDir.getAbsolutePath());
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		FileUtils.deleteDirectory(this.stageDir);
+		FileUtils.deleteDirectory(this.srcDir);
+	}
+
+	private File writeFile(int i, String content) throws Exception {
+		File f = new File(this.srcDir, "payload" + i + ".ttl");
+		Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return f;
+	}
+
+	private String payload(int i) {
+		StringBuilder ret = new StringBuilder();
+		for (int j = 0; j < 50 + i * 7; j++) {
+			ret.append("<http://x#s").append(i).append("_").append(j).append("> <http://x#p> \"").append(j).append("\" .\n");
+		}
+		return ret.toString();
+	}
+
+	private NeptuneBulkLoader buildLoader(StandInLoader loader) {
+		loader.stageDir = this.stageDir;
+		NeptuneBulkLoader ret = new NeptuneBulkLoader(this.store, loader);
+		ret.setUploadParts(1000, 3);	// several parts per payload
+		ret.setPollMsec(1, 4);
+		return ret;
+	}
+
+	@Test
+	public void testLoadInOrder() throws Exception {
+		ArrayList<File> files = new ArrayList<File>();
+		for (int i = 0; i < 10; i++) {
+			files.add(this.writeFile(i, this.payload(i)));
+		}
+		StandInLoader loader = new StandInLoader(this.store, 3);
+		NeptuneBulkLoader bulk = this.buildLoader(loader);
+		bulk.setMaxJobs(3);
+
+		NeptuneBulkLoader.Status status = bulk.load(files, "turtle");
+
+		assertTrue(status.toString(), status.isSuccess());
+		assertEquals(10, status.getNumCompleted());
+		assertEquals(Collections.singletonMap(NeptuneBulkLoader.STATUS_COMPLETE, 10), status.getStatusCounts());
+		assertEquals(3, loader.maxQueued);
+
+		// this one and the next
+		assertTrue(String.valueOf(loader.maxStagedAhead), loader.maxStagedAhead <= 2);
+		assertEquals(null, status.getFirstErrors());
+
+		// every part of every file made it, in order
+		assertEquals(10, loader.loaded.size());
+		for (int i = 0; i < 10; i++) {
+			assertArrayEquals(this.payload(i).getBytes(StandardCharsets.UTF_8), loader.loaded.get(i));
+		}
+
+		// each job waited on the one before
+		ArrayList<String> ids = status.getLoadIds();
+		assertTrue(loader.jobDeps.get(ids.get(0)).isEmpty());
+		for (int i = 1; i < ids.size(); i++) {
+			assertEquals(Collections.singletonList(ids.get(i - 1)), loader.jobDeps.get(ids.get(i)));
+		}
+
+		// staged objects are cleaned up
+		assertEquals(0, this.stageDir.list().length);
+	}
+
+	@Test
+	public void testFailureCancelsLaterLoads() throws Exception {
+		ArrayList<File> files = new ArrayList<File>();
+		for (int i = 0; i < 8; i++) {
+			files.add(this.writeFile(i, (i == 2) ? "FAIL\n" : this.payload(i)));
+		}
+		StandInLoader loader = new StandInLoader(this.store, 64);
+		NeptuneBulkLoader bulk = this.buildLoader(loader);
+		bulk.setMaxJobs(4);
+
+		NeptuneBulkLoader.Status status = bulk.load(files, "turtle");
+
+		assertFalse(status.isSuccess());
+		assertEquals(2, status.getNumCompleted());
+		assertEquals(Integer.valueOf(1), status.getStatusCounts().get("LOAD_FAILED"));
+		assertEquals(Integer.valueOf(status.getLoadIds().size() - 3), status.getStatusCounts().get("LOAD_FAILED_BECAUSE_DEPENDENCY_NOT_SATISFIED"));
+		assertTrue(status.toString(), status.toString().startsWith("2 of 8 loads completed"));
+		assertEquals("load-2: errors of " + loader.jobKeys.get("load-2"), status.getFirstErrors());
+		assertEquals(2, loader.loaded.size());
+		assertEquals(0, this.stageDir.list().length);
+	}
+
+	@Test
+	public void testLoadBytes() throws Exception {
+		StandInLoader loader = new StandInLoader(this.store, 64);
+		byte [] data = this.payload(40).getBytes(StandardCharsets.UTF_8);
+
+		NeptuneBulkLoader.Status status = this.buildLoader(loader).load(data, "turtle");
+
+		assertTrue(status.toString(), status.isSuccess());
+		assertArrayEquals(data, loader.loaded.get(0));
+		assertEquals(0, this.stageDir.list().length);
+	}
+}
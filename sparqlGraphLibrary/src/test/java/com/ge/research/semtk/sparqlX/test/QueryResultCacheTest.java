@@ -0,0 +1,88 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ **
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ **
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.sparqlX.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+import com.ge.research.semtk.resultSet.TableResultSet;
+import com.ge.research.semtk.sparqlX.InMemoryInterface;
+import com.ge.research.semtk.sparqlX.QueryResultCache;
+import com.ge.research.semtk.sparqlX.SparqlResultTypes;
+
+public class QueryResultCacheTest {
+
+	private static final String SELECT = "select ?s ?o where { ?s <http://test#p> ?o . }";
+
+	private int countRows(JSONObject json) throws Exception {
+		return new TableResultSet(json).getTable().getNumRows();
+	}
+
+	@Test
+	public void testNormalizeQuery() throws Exception {
+		assertEquals("select ?s where { ?s ?p \"a  b\" . }", QueryResultCache.normalizeQuery("  select ?s\n\twhere {  ?s ?p \"a  b\" .\n}  "));
+		assertEquals("select ?s where { ?s ?p 'it\\'s  here' }", QueryResultCache.normalizeQuery("select ?s where { ?s ?p 'it\\'s  here' }"));
+
+		// comments end at the newline, and a quote in one doesn't start a string
+		assertEquals("select ?s where { ?s ?p ?o . ?o ?q \"x  y\" }",
+				QueryResultCache.normalizeQuery("select ?s  # don't\nwhere { ?s ?p ?o . # comment\n ?o ?q \"x  y\" }"));
+		assertEquals("select ?s where { ?s <http://a#p> \"#  not a comment\" }",
+				QueryResultCache.normalizeQuery("select ?s where { ?s <http://a#p>  \"#  not a comment\" }"));
+		assertEquals("select ?s where { ?s <http://a'b> ?o . ?o ?p 'c  d' }",
+				QueryResultCache.normalizeQuery("select ?s where { ?s <http://a'b>  ?o . ?o ?p 'c  d' }"));
+		assertEquals("select ?s where { ?s ?p '''a'  'b''' }",
+				QueryResultCache.normalizeQuery("select ?s where { ?s ?p '''a'  'b''' }"));
+	}
+
+	@Test
+	public void testWriteInvalidates() throws Exception {
+		InMemoryInterface sei = new InMemoryInterface("http://test/cache");
+		sei.executeQuery("insert data { <http://test#a> <http://test#p> \"1\" . }", SparqlResultTypes.CONFIRM);
+
+		QueryResultCache cache = new QueryResultCache(1024 * 1024, 0);
+		assertEquals(1, countRows(cache.executeQueryToJson(sei, SELECT, SparqlResultTypes.TABLE)));
+		assertEquals(1, countRows(cache.executeQueryToJson(sei, SELECT.replace(" ", "\n  "), SparqlResultTypes.TABLE)));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// a write through any interface to the same graph
+		sei.copy().executeQuery("insert data { <http://test#b> <http://test#p> \"2\" . }", SparqlResultTypes.CONFIRM);
+		assertEquals(2, countRows(cache.executeQueryToJson(sei, SELECT, SparqlResultTypes.TABLE)));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		// updates aren't cached
+		cache.executeQueryToJson(sei, "delete { ?s ?p ?o } where { ?s ?p ?o }", SparqlResultTypes.CONFIRM);
+		assertEquals(1, cache.size());
+		assertEquals(0, countRows(cache.executeQueryToJson(sei, SELECT, SparqlResultTypes.TABLE)));
+	}
+
+	@Test
+	public void testEvict() throws Exception {
+		InMemoryInterface sei = new InMemoryInterface("http://test/evict");
+		QueryResultCache cache = new QueryResultCache(1000, 0);
+		for (int i = 0; i < 20; i++) {
+			cache.executeQueryToJson(sei, SELECT + " limit " + (i + 1), SparqlResultTypes.TABLE);
+		}
+		assertEquals(true, cache.getBytes() <= 1000);
+		assertEquals(true, cache.size() < 20);
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** 
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ ** 
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.services.sparql;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import com.ge.research.semtk.properties.Properties;
+
+/**
+ * Settings for caching /query results
+ */
+@Configuration
+@ConfigurationProperties(prefix="query.cache", ignoreUnknownFields = true)
+public class QueryCacheProperties extends Properties {
+	private boolean enabled = false;
+	private int maxMegabytes = 256;
+	private int ttlSeconds = 60;			// for graphs written by other processes
+	
+	public QueryCacheProperties() {
+		super();
+		this.setPrefix("query.cache");
+	}
+	
+	public boolean getEnabled() {
+		return enabled;
+	}
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	public int getMaxMegabytes() {
+		return maxMegabytes;
+	}
+	public void setMaxMegabytes(int maxMegabytes) {
+		this.maxMegabytes = maxMegabytes;
+	}
+	
+	public int getTtlSeconds() {
+		return ttlSeconds;
+	}
+	public void setTtlSeconds(int ttlSeconds) {
+		this.ttlSeconds = ttlSeconds;
+	}
+	
+	public void validate() throws Exception {
+		super.validate();
+		checkNone("enabled", enabled);
+		checkRangeInclusive("maxMegabytes", maxMegabytes, 1, 1000000);
+		checkRangeInclusive("ttlSeconds", ttlSeconds, 0, 86400);
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ ** Copyright 2020 General Electric Company
+ **
+ **
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** 
+ **     http://www.apache.org/licenses/LICENSE-2.0
+ ** 
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ */
+
+package com.ge.research.semtk.services.sparql;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import com.ge.research.semtk.properties.Properties;
+
+/**
+ * Settings for /clearAll on triplestores without a bulk clear that handles large graphs
+ */
+@Configuration
+@ConfigurationProperties(prefix="query.clear", ignoreUnknownFields = true)
+public class QueryClearProperties extends Properties {
+	private int maxThreads = 4;				// 0 to use CLEAR GRAPH
+	private int chunkSize = 50000;			// initial triples per delete
+	
+	public QueryClearProperties() {
+		super();
+		this.setPrefix("query.clear");
+	}
+	
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+	
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+	
+	public void validate() throws Exception {
+		super.validate();
+		checkRangeInclusive("maxThreads", maxThreads, 0, 64);
+		checkRangeInclusive("chunkSize", chunkSize, 16, 10000000);
+	}
+}
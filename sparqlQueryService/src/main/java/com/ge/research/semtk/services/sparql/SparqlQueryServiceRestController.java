@@ -33,6 +33,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletResponse;
@@ -43,6 +44,7 @@ import com.ge.research.semtk.auth.AuthorizationManager;
 import com.ge.research.semtk.aws.S3Connector;
 import com.ge.research.semtk.edc.client.OntologyInfoClient;
 import com.ge.research.semtk.edc.client.OntologyInfoClientConfig;
+import com.ge.research.semtk.ontologyTools.ModelGraphVersion;
 import com.ge.research.semtk.ontologyTools.OntologyInfo;
 import com.ge.research.semtk.resultSet.GeneralResultSet;
 import com.ge.research.semtk.resultSet.SimpleResultSet;
@@ -53,6 +55,7 @@ import com.ge.research.semtk.services.sparql.requests.SparqlPrefixesAuthRequestB
 import com.ge.research.semtk.services.sparql.requests.SparqlQueryAuthRequestBody;
 import com.ge.research.semtk.services.sparql.requests.SparqlQueryRequestBody;
 import com.ge.research.semtk.sparqlX.NeptuneSparqlEndpointInterface;
+import com.ge.research.semtk.sparqlX.QueryResultCache;
 import com.ge.research.semtk.sparqlX.SparqlConnection;
 import com.ge.research.semtk.sparqlX.SparqlEndpointInterface;
 import com.ge.research.semtk.sparqlX.SparqlResultTypes;
@@ -107,9 +110,15 @@ public class SparqlQueryServiceRestController {
 	private QueryUploadNeptuneProperties serviceProps; 
 	@Autowired
 	private AuthProperties auth_prop; 
+	@Autowired
+	private QueryCacheProperties cache_props;
+	@Autowired
+	private QueryClearProperties clear_props;
 	@Autowired 
 	private ApplicationContext appContext;
 	
+	private QueryResultCache resultCache = null;		// null unless enabled
+	
 	@PostConstruct
     public void init() {
 		EnvironmentProperties env_prop = new EnvironmentProperties(appContext, EnvironmentProperties.SEMTK_REQ_PROPS, EnvironmentProperties.SEMTK_OPT_PROPS);
@@ -120,7 +129,12 @@ public class SparqlQueryServiceRestController {
 		auth_prop.validateWithExit();
 		
 		AuthorizationManager.authorizeWithExit(auth_prop);
-
+		
+		cache_props.validateWithExit();
+		if (cache_props.getEnabled()) {
+			this.resultCache = new QueryResultCache(cache_props.getMaxMegabytes() * 1024L * 1024L, cache_props.getTtlSeconds());
+		}
+		clear_props.validateWithExit();
 	}
 	
 	/**
@@ -128,10 +142,12 @@ public class SparqlQueryServiceRestController {
 	 */
 	@CrossOrigin
 	@RequestMapping(value="/query", method= RequestMethod.POST)
-	public JSONObject query(@RequestBody SparqlQueryRequestBody requestBody, @RequestHeader HttpHeaders headers) {
+	public void query(@RequestBody SparqlQueryRequestBody requestBody, @RequestHeader HttpHeaders headers, HttpServletResponse resp) throws IOException {
 		HeadersManager.setHeaders(headers);	
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		
 		GeneralResultSet resultSet = null;
+		JSONObject cachedJson = null;
 		SparqlEndpointInterface sei = null;
 		LocalLogger.logToStdOut("Sparql Query Service start query");
 		long startTime = System.nanoTime();
@@ -143,19 +159,25 @@ public class SparqlQueryServiceRestController {
 			if(SparqlResultTypes.isDropGraphQuery(requestBody.query)){ 
 				SimpleResultSet res = new SimpleResultSet(false);
 				res.addRationaleMessage(SERVICE_NAME, "query", "This query must be run using the /dropGraph endpoint");
-				return res.toJson();
+				res.writeJson(resp.getWriter());
+				return;
 			}
 			// disallow running auth queries here (they'll get rejected later anyway)
 			if(SparqlResultTypes.valueOf(requestBody.resultType) == SparqlResultTypes.CONFIRM){ 
 				SimpleResultSet res = new SimpleResultSet(false);
 				res.addRationaleMessage(SERVICE_NAME, "query", "A query expecting resultType " + requestBody.resultType + " must be run using the /queryAuth endpoint");
-				return res.toJson();
+				res.writeJson(resp.getWriter());
+				return;
 			}
 		
 			requestBody.printInfo(); 	// print info to console			
 			requestBody.validate(); 	// check inputs 			
 			sei = SparqlEndpointInterface.getInstance(requestBody.getServerType(), requestBody.getServerAndPort(), requestBody.getGraph());
-			resultSet = sei.executeQueryAndBuildResultSet(requestBody.query, SparqlResultTypes.valueOf(requestBody.resultType));
+			if (this.resultCache != null) {
+				cachedJson = this.resultCache.executeQueryToJson(sei, requestBody.query, SparqlResultTypes.valueOf(requestBody.resultType));
+			} else {
+				resultSet = sei.executeQueryAndBuildResultSet(requestBody.query, SparqlResultTypes.valueOf(requestBody.resultType));
+			}
 			
 		} catch (Exception e) {			
 			LocalLogger.printStackTrace(e);	
@@ -171,7 +193,13 @@ public class SparqlQueryServiceRestController {
 		double elapsed = ((endTime - startTime) / 1000000000.0);
 		LocalLogger.logToStdOut(String.format("Query time: %.2f sec", elapsed));
 			
-		return resultSet.toJson();
+		if (cachedJson != null) {
+			cachedJson.writeJSONString(resp.getWriter());
+			resp.getWriter().flush();
+		} else {
+			// write a table straight from its rows rather than building it all as json first
+			resultSet.writeJson(resp.getWriter());
+		}
 		
 	}		
 	
@@ -181,8 +209,9 @@ public class SparqlQueryServiceRestController {
 	 */
 	@CrossOrigin
 	@RequestMapping(value="/queryAuth", method= RequestMethod.POST)
-	public JSONObject queryAuth(@RequestBody SparqlQueryAuthRequestBody requestBody, @RequestHeader HttpHeaders headers) {
+	public void queryAuth(@RequestBody SparqlQueryAuthRequestBody requestBody, @RequestHeader HttpHeaders headers, HttpServletResponse resp) throws IOException {
 		HeadersManager.setHeaders(headers);
+		resp.addHeader("content-type", "application/json; charset=utf-8");
 		
 		
 		GeneralResultSet resultSet = null;
@@ -192,7 +221,8 @@ public class SparqlQueryServiceRestController {
 		try{
 			// disallow running drop graph query here - require client to explicitly use /dropGraph to avoid accidental drops
 			if(SparqlResultTypes.isDropGraphQuery(requestBody.query)){ 
-				return (new SimpleResultSet(false, "This query must be run using the /dropGraph endpoint")).toJson();
+				(new SimpleResultSet(false, "This query must be run using the /dropGraph endpoint")).writeJson(resp.getWriter());
+				return;
 			}
 			requestBody.printInfo(); 	// print info to console			
 			requestBody.validate(); 	// check inputs 		
@@ -204,12 +234,13 @@ public class SparqlQueryServiceRestController {
 			resultSet = new SimpleResultSet();
 			resultSet.setSuccess(false);
 			resultSet.addRationaleMessage(SERVICE_NAME, "queryAuth", e);
-			return resultSet.toJson();
+			resultSet.writeJson(resp.getWriter());
+			return;
 		} finally {
 			HeadersManager.setHeaders(new HttpHeaders());
 		}		
 		LocalLogger.logToStdOut("Result code:" + resultSet.getResultCodeString());
-		return resultSet.toJson();
+		resultSet.writeJson(resp.getWriter());
 	}	
 	
 	
@@ -397,7 +428,8 @@ public class SparqlQueryServiceRestController {
 	
 	
 	/**
-	 * Execute clear all query 
+	 * Clear the graph.
+	 * Triplestores without a bulk clear for large graphs are cleared with parallel chunked deletes, unless query.clear.maxThreads is 0
 	 */
 	@CrossOrigin
 	@RequestMapping(value="/clearAll", method= RequestMethod.POST)
@@ -411,7 +443,11 @@ public class SparqlQueryServiceRestController {
 			requestBody.printInfo(); 	// print info to console			
 			requestBody.validate(); 	// check inputs 		
 			sei = SparqlEndpointInterface.getInstance(requestBody.getServerType(), requestBody.getServerAndPort(), requestBody.getGraph(), requestBody.getUser(), requestBody.getPassword());	
-			sei.clearGraph();
+			if (clear_props.getMaxThreads() > 0) {
+				sei.clearGraphInChunks(clear_props.getChunkSize(), clear_props.getMaxThreads(), null, null);
+			} else {
+				sei.clearGraph();
+			}
 			uncacheChangedModel(sei);
 			resultSet = new SimpleResultSet(true);
 			
@@ -476,7 +512,7 @@ public class SparqlQueryServiceRestController {
 			simpleResultSetJson = sei.executeAuthUploadOwl(owlFile.getBytes());
 			SimpleResultSet sResult = SimpleResultSet.fromJson(simpleResultSetJson);
 			if (sResult.getSuccess()) {
-				uncacheChangedModel(sei);
+				uncacheChangedModel(sei, true);
 			}
 			
 		} catch (Exception e) {			
@@ -534,7 +570,7 @@ public class SparqlQueryServiceRestController {
 			simpleResultSetJson = sei.executeAuthUploadTurtle(ttlFile.getBytes());
 			SimpleResultSet sResult = SimpleResultSet.fromJson(simpleResultSetJson);
 			if (sResult.getSuccess()) {
-				uncacheChangedModel(sei);
+				uncacheChangedModel(sei, true);
 			}
 			
 		} catch (Exception e) {			
@@ -593,7 +629,7 @@ public class SparqlQueryServiceRestController {
 			// clear the graph, upload owl, uncache the ontology
 			sei.clearGraph();
 			simpleResultSetJson = sei.executeAuthUploadOwl(owlFile.getBytes());
-			uncacheChangedModel(sei);
+			uncacheChangedModel(sei, SimpleResultSet.fromJson(simpleResultSetJson).getSuccess());
 			
 		} catch (Exception e) {			
 			LocalLogger.printStackTrace(e);
@@ -609,14 +645,42 @@ public class SparqlQueryServiceRestController {
 	}	
 	 
 	/**
-	 * Remove ontology and anything that looks like it from SemTK cache
+	 * Remove ontology and anything that looks like it from SemTK caches, including query results
 	 * @param sei
 	 * @throws Exception
 	 */
 	private void uncacheChangedModel(SparqlEndpointInterface sei) throws Exception {
+		this.uncacheChangedModel(sei, false);
+	}
+	
+	/**
+	 * Update the graph's ModelGraphVersion and have SemTK caches re-check it.
+	 * If the version can't be written, remove the graph from caches instead.
+	 * @param sei
+	 * @param uploaded - true if sei changed by a successful upload, false if some other way
+	 * @throws Exception
+	 */
+	private void uncacheChangedModel(SparqlEndpointInterface sei, boolean uploaded) throws Exception {
+		boolean versioned = false;
+		try {
+			if (uploaded) {
+				ModelGraphVersion.recordUpload(sei);
+			} else {
+				ModelGraphVersion.clear(sei);
+			}
+			versioned = true;
+		} catch (Exception e) {
+			LocalLogger.logToStdErr("Can't update model graph version of " + sei.getGraph() + ", uncaching it: " + e.getMessage());
+		}
+		QueryResultCache.graphsWritten(sei, null);
+
 		OntologyInfoClient oClient = new OntologyInfoClient(new OntologyInfoClientConfig(oinfo_props.getProtocol(), oinfo_props.getServer(), oinfo_props.getPort()));
 		SparqlConnection conn = new SparqlConnection();
 		conn.addModelInterface(sei);
-		oClient.uncacheChangedModel(conn);
+		if (versioned) {
+			oClient.revalidateChangedModel(conn);
+		} else {
+			oClient.uncacheChangedModel(conn);
+		}
 	}
 }